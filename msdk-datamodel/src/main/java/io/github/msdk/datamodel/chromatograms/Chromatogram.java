@@ -84,6 +84,23 @@ public interface Chromatogram {
   @Nonnull
   float[] getRetentionTimes();
 
+  /**
+   * Returns the retention times of this chromatogram in the given array, if it has space for at
+   * least {@link #getNumberOfDataPoints()} values, otherwise in a new array. The default
+   * implementation copies the array returned by {@link #getRetentionTimes()}.
+   *
+   * @param array an array of float, or null.
+   * @return an array of float.
+   */
+  @Nonnull
+  default float[] getRetentionTimes(@Nullable float array[]) {
+    final float rtValues[] = getRetentionTimes();
+    if ((array == null) || (array.length < rtValues.length))
+      return rtValues;
+    System.arraycopy(rtValues, 0, array, 0, rtValues.length);
+    return array;
+  }
+
   /**
    * <p>
    * getIntensityValues.
@@ -115,6 +132,24 @@ public interface Chromatogram {
   @Nullable
   double[] getMzValues();
 
+  /**
+   * Returns the m/z values of this chromatogram in the given array, if it has space for at least
+   * {@link #getNumberOfDataPoints()} values, otherwise in a new array. Returns null if the
+   * chromatogram has no m/z values. The default implementation copies the array returned by
+   * {@link #getMzValues()}.
+   *
+   * @param array an array of double, or null.
+   * @return an array of double.
+   */
+  @Nullable
+  default double[] getMzValues(@Nullable double array[]) {
+    final double mzValues[] = getMzValues();
+    if ((mzValues == null) || (array == null) || (array.length < mzValues.length))
+      return mzValues;
+    System.arraycopy(mzValues, 0, array, 0, mzValues.length);
+    return array;
+  }
+
   /**
    * Returns the m/z value of this chromatogram, or null if no m/z value is set for the
    * chromatogram.
@@ -45,4 +45,29 @@ public class DataPointStoreFactory {
     return new TmpFileDataStore();
   }
 
+  /**
+   * <p>
+   * getMappedFileDataStore.
+   * </p>
+   *
+   * @return a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   */
+  public static final @Nonnull DataPointStore getMappedFileDataStore() {
+    return new MappedFileDataStore(false);
+  }
+
+  /**
+   * <p>
+   * getMappedFileDataStore.
+   * </p>
+   *
+   * @param backgroundCompaction if true, the released space in the temporary file is reclaimed by
+   *        a background thread
+   * @return a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   */
+  public static final @Nonnull DataPointStore getMappedFileDataStore(
+      boolean backgroundCompaction) {
+    return new MappedFileDataStore(backgroundCompaction);
+  }
+
 }
@@ -0,0 +1,509 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.datastore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.github.msdk.MSDKRuntimeException;
+
+/**
+ * A DataPointStore implementation that stores the data points in a memory-mapped temporary file.
+ * The file is mapped in fixed-size segments, so the data are copied directly between the arrays
+ * and the OS page cache without any intermediate buffer.
+ *
+ * Each stored array occupies a slot whose capacity is rounded up to a power of two. Space is
+ * reserved by atomically advancing a shared write cursor, so multiple threads can store data at
+ * the same time without waiting for each other. Slots released by removeData() are kept in
+ * per-capacity free lists and reused by subsequent storeData() calls. Optionally, a background
+ * compaction pass packs the remaining data to the beginning of the file once more than half of the
+ * used space has been released, and truncates the file after the last segment that still holds
+ * data, so a store that is continuously used to add and remove data points does not grow
+ * indefinitely and returns the released space to the file system.
+ *
+ * Reading data does not acquire any lock. The only exclusive operations are the compaction and
+ * dispose(); a read that overlaps with the compaction is detected and repeated.
+ *
+ * Since this class stores data on disk, there is a risk that IOException may occur. If that
+ * happens, the IOException is wrapped in a MSDKRuntimeException and thrown.
+ */
+class MappedFileDataStore implements DataPointStore {
+
+  /** Size of one mapped segment of the temporary file (64 MB). */
+  static final int SEGMENT_SIZE = 1 << 26;
+
+  /** Smallest slot capacity in bytes. Also guarantees alignment of all slots. */
+  private static final int MIN_SLOT_SIZE = 64;
+
+  /** Compaction is not worth it if less than this number of bytes would be reclaimed. */
+  private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+  /** Single daemon thread shared by all stores for background compaction. */
+  private static final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("msdk-datastore-compaction-%d")
+          .build());
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+  private final File tmpDataFileName;
+  private final RandomAccessFile tmpDataFile;
+  private final FileChannel fileChannel;
+
+  private final boolean backgroundCompaction;
+
+  // Segments are appended on growth and dropped by the compaction, the array reference is
+  // replaced on each change
+  private volatile MappedByteBuffer segments[] = new MappedByteBuffer[0];
+  private final Object segmentGrowthLock = new Object();
+
+  private final ConcurrentHashMap<Integer, Slot> slots = new ConcurrentHashMap<>();
+
+  // Free slots, indexed by the binary logarithm of their capacity
+  private final List<ConcurrentLinkedQueue<Long>> freeSlots = new ArrayList<>(Long.SIZE);
+
+  private final AtomicLong writeCursor = new AtomicLong(0);
+  private final AtomicLong freeBytes = new AtomicLong(0);
+  private final AtomicInteger lastStorageId = new AtomicInteger(0);
+  private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+  /*
+   * Stores and removals hold the lock in shared (read) mode, so they run concurrently. The
+   * compaction and dispose() hold it in exclusive (write) mode. Loads only validate an optimistic
+   * stamp.
+   */
+  private final StampedLock lock = new StampedLock();
+
+  private volatile boolean disposed = false;
+
+  /**
+   * Immutable location of one stored array.
+   */
+  private static final class Slot {
+    final long offset;
+    final int size;
+    final int numOfBytes;
+    final int capacityLog;
+
+    Slot(long offset, int size, int numOfBytes, int capacityLog) {
+      this.offset = offset;
+      this.size = size;
+      this.numOfBytes = numOfBytes;
+      this.capacityLog = capacityLog;
+    }
+
+    long getCapacity() {
+      return 1L << capacityLog;
+    }
+  }
+
+  MappedFileDataStore(boolean backgroundCompaction) {
+
+    this.backgroundCompaction = backgroundCompaction;
+
+    for (int i = 0; i < Long.SIZE; i++)
+      freeSlots.add(new ConcurrentLinkedQueue<>());
+
+    try {
+      tmpDataFileName = File.createTempFile("msdk", ".tmp");
+
+      logger.debug("Initializing a new memory-mapped data store in " + tmpDataFileName);
+
+      tmpDataFile = new RandomAccessFile(tmpDataFileName, "rw");
+
+      /*
+       * Lock the temporary file.
+       */
+      fileChannel = tmpDataFile.getChannel();
+      fileChannel.lock();
+
+      tmpDataFileName.deleteOnExit();
+
+    } catch (IOException e) {
+      throw new MSDKRuntimeException(e);
+    }
+
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Object storeData(@Nonnull Object array, @Nonnull Integer size) {
+
+    final int objectSize = getObjectSize(array);
+    final long totalBytes = (long) size * objectSize;
+    if ((size < 0) || (totalBytes > Integer.MAX_VALUE))
+      throw new IllegalArgumentException("Cannot store " + size + " values in one array");
+    // Checked before a slot is reserved, so a failed store does not leak its capacity
+    if (size > Array.getLength(array))
+      throw new IllegalArgumentException("The provided array has less than " + size + " values");
+    final int numOfBytes = (int) totalBytes;
+    final int capacityLog = getCapacityLog(numOfBytes);
+
+    final long stamp = lock.readLock();
+    try {
+      checkNotDisposed();
+
+      // Reuse a released slot of the same capacity, if there is one
+      Long offset = freeSlots.get(capacityLog).poll();
+      if (offset != null) {
+        freeBytes.addAndGet(-(1L << capacityLog));
+      } else {
+        offset = writeCursor.getAndAdd(1L << capacityLog);
+        ensureMapped(offset + (1L << capacityLog));
+      }
+
+      final Slot slot = new Slot(offset, size, numOfBytes, capacityLog);
+      copyToSegments(array, slot);
+
+      final Integer storageId = lastStorageId.incrementAndGet();
+      slots.put(storageId, slot);
+      return storageId;
+
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void loadData(@Nonnull Object id, @Nonnull Object array) {
+
+    checkNotDisposed();
+
+    if (!array.getClass().isArray())
+      throw new IllegalArgumentException("The provided argument is not an array");
+
+    // Optimistic attempt, does not block
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L) {
+      final Slot slot = slots.get(id);
+      try {
+        if (slot != null)
+          copyFromSegments(slot, array);
+      } catch (InternalError | IndexOutOfBoundsException e) {
+        // A concurrent compaction dropped or truncated the segment being read
+        if (lock.validate(stamp))
+          throw e;
+      }
+      if (lock.validate(stamp)) {
+        if (slot == null)
+          throw new IllegalArgumentException(
+              "ID " + id + " not found in storage file " + tmpDataFileName);
+        return;
+      }
+    }
+
+    // The data were moved by a concurrent compaction, read again under the lock
+    stamp = lock.readLock();
+    try {
+      checkNotDisposed();
+      final Slot slot = slots.get(id);
+      if (slot == null)
+        throw new IllegalArgumentException(
+            "ID " + id + " not found in storage file " + tmpDataFileName);
+      copyFromSegments(slot, array);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void removeData(@Nonnull Object id) {
+
+    final long stamp = lock.readLock();
+    try {
+      checkNotDisposed();
+
+      final Slot slot = slots.remove(id);
+      if (slot == null)
+        return;
+
+      freeSlots.get(slot.capacityLog).offer(slot.offset);
+      freeBytes.addAndGet(slot.getCapacity());
+    } finally {
+      lock.unlockRead(stamp);
+    }
+
+    if (backgroundCompaction)
+      scheduleCompactionIfNeeded();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void dispose() {
+
+    final long stamp = lock.writeLock();
+    try {
+      if (disposed)
+        return;
+      disposed = true;
+
+      // Discard the slot tables. The mapped segments are released when this object is garbage
+      // collected, so that a concurrent optimistic read never touches an unmapped segment.
+      slots.clear();
+      for (ConcurrentLinkedQueue<Long> freeList : freeSlots)
+        freeList.clear();
+
+      // Remove the temporary file
+      if (tmpDataFileName.exists()) {
+        logger.debug("Removing tmp-file " + tmpDataFileName);
+
+        try {
+          tmpDataFile.close();
+          tmpDataFileName.delete();
+        } catch (IOException e) {
+          logger.warn("Could not close and remove temporary file " + tmpDataFileName, e);
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * When this object is garbage collected, remove the associated temporary data file from disk.
+   */
+  @Override
+  protected void finalize() {
+    dispose();
+  }
+
+  /**
+   * Packs all stored data to the beginning of the file, so the released slots are merged into one
+   * free area at the end of the file, and truncates the file after the last segment that still
+   * holds data. Stores and removals wait until the compaction is finished, loads are repeated if
+   * they overlap with it.
+   */
+  void compact() {
+
+    final long stamp = lock.writeLock();
+    try {
+      if (disposed)
+        return;
+
+      final long freedBytes = freeBytes.get();
+
+      // Process the slots in the order of their position in the file
+      List<Map.Entry<Integer, Slot>> liveSlots = new ArrayList<>(slots.entrySet());
+      liveSlots.sort((e1, e2) -> Long.compare(e1.getValue().offset, e2.getValue().offset));
+
+      // Slots are only moved towards the beginning of the file, so a slot never overwrites data
+      // that have not been moved yet
+      long newOffset = 0;
+      byte buffer[] = new byte[0];
+      for (Map.Entry<Integer, Slot> entry : liveSlots) {
+        final Slot slot = entry.getValue();
+        if (slot.offset != newOffset) {
+          if (buffer.length < slot.numOfBytes)
+            buffer = new byte[slot.numOfBytes];
+          copyBytes(slot.offset, buffer, slot.numOfBytes, false);
+          copyBytes(newOffset, buffer, slot.numOfBytes, true);
+          entry.setValue(new Slot(newOffset, slot.size, slot.numOfBytes, slot.capacityLog));
+        }
+        newOffset += slot.getCapacity();
+      }
+
+      for (ConcurrentLinkedQueue<Long> freeList : freeSlots)
+        freeList.clear();
+      freeBytes.set(0);
+      writeCursor.set(newOffset);
+
+      // Drop the segments past the cursor and return their space to the file system. The file is
+      // truncated at a segment boundary, because the last remaining segment stays mapped in full.
+      final int requiredSegments = (int) ((newOffset + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+      synchronized (segmentGrowthLock) {
+        if (segments.length > requiredSegments)
+          segments = Arrays.copyOf(segments, requiredSegments);
+      }
+      try {
+        fileChannel.truncate((long) requiredSegments * SEGMENT_SIZE);
+      } catch (IOException e) {
+        logger.warn("Could not truncate temporary file " + tmpDataFileName, e);
+      }
+
+      logger.debug("Compacted " + tmpDataFileName + ", reclaimed " + freedBytes + " bytes");
+
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private void scheduleCompactionIfNeeded() {
+
+    final long released = freeBytes.get();
+    if ((released < MIN_COMPACTION_SIZE) || (released * 2 < writeCursor.get()))
+      return;
+
+    if (!compactionScheduled.compareAndSet(false, true))
+      return;
+
+    compactionExecutor.execute(() -> {
+      try {
+        compact();
+      } catch (Exception e) {
+        logger.warn("Compaction of " + tmpDataFileName + " failed: " + e.toString());
+      } finally {
+        compactionScheduled.set(false);
+      }
+    });
+  }
+
+  private void checkNotDisposed() {
+    if (disposed)
+      throw new IllegalStateException("This object has been disposed");
+  }
+
+  private static int getObjectSize(Object array) {
+    final Class<?> componentType = array.getClass().getComponentType();
+    if (Double.TYPE.equals(componentType))
+      return Double.SIZE / 8;
+    else if (Float.TYPE.equals(componentType))
+      return Float.SIZE / 8;
+    else
+      throw new IllegalArgumentException("Unsupported array type");
+  }
+
+  private static int getCapacityLog(int numOfBytes) {
+    final int capacity = Math.max(numOfBytes, MIN_SLOT_SIZE);
+    return Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1);
+  }
+
+  /**
+   * Makes sure the file is mapped at least up to the given offset.
+   */
+  private void ensureMapped(long endOffset) {
+
+    final int requiredSegments = (int) ((endOffset + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    if (segments.length >= requiredSegments)
+      return;
+
+    synchronized (segmentGrowthLock) {
+      MappedByteBuffer currentSegments[] = segments;
+      if (currentSegments.length >= requiredSegments)
+        return;
+
+      MappedByteBuffer newSegments[] = Arrays.copyOf(currentSegments, requiredSegments);
+      try {
+        for (int i = currentSegments.length; i < requiredSegments; i++) {
+          newSegments[i] =
+              fileChannel.map(FileChannel.MapMode.READ_WRITE, (long) i * SEGMENT_SIZE, SEGMENT_SIZE);
+        }
+      } catch (IOException e) {
+        throw new MSDKRuntimeException(e);
+      }
+      segments = newSegments;
+    }
+  }
+
+  /**
+   * Returns a view of the segment with independent position, so that multiple threads can access
+   * the same segment at the same time.
+   */
+  private ByteBuffer getSegmentView(MappedByteBuffer currentSegments[], long offset) {
+    final ByteBuffer view = currentSegments[(int) (offset / SEGMENT_SIZE)].duplicate();
+    view.order(ByteOrder.nativeOrder());
+    view.position((int) (offset % SEGMENT_SIZE));
+    return view;
+  }
+
+  private void copyToSegments(Object array, Slot slot) {
+
+    final MappedByteBuffer currentSegments[] = segments;
+    final int objectSize = getObjectSize(array);
+    final boolean isDouble = array instanceof double[];
+
+    // Slots are aligned, so a single value never crosses a segment boundary
+    long offset = slot.offset;
+    int copied = 0;
+    while (copied < slot.size) {
+      final ByteBuffer view = getSegmentView(currentSegments, offset);
+      final int count = Math.min(slot.size - copied, view.remaining() / objectSize);
+      if (isDouble)
+        view.asDoubleBuffer().put((double[]) array, copied, count);
+      else
+        view.asFloatBuffer().put((float[]) array, copied, count);
+      copied += count;
+      offset += (long) count * objectSize;
+    }
+  }
+
+  private void copyFromSegments(Slot slot, Object array) {
+
+    final int objectSize = getObjectSize(array);
+
+    if (Array.getLength(array) < slot.size)
+      throw new IllegalArgumentException("The provided array does not fit all loaded objects");
+
+    final MappedByteBuffer currentSegments[] = segments;
+    final boolean isDouble = array instanceof double[];
+
+    long offset = slot.offset;
+    int copied = 0;
+    while (copied < slot.size) {
+      final ByteBuffer view = getSegmentView(currentSegments, offset);
+      final int count = Math.min(slot.size - copied, view.remaining() / objectSize);
+      if (isDouble)
+        view.asDoubleBuffer().get((double[]) array, copied, count);
+      else
+        view.asFloatBuffer().get((float[]) array, copied, count);
+      copied += count;
+      offset += (long) count * objectSize;
+    }
+  }
+
+  private void copyBytes(long offset, byte buffer[], int numOfBytes, boolean write) {
+
+    final MappedByteBuffer currentSegments[] = segments;
+
+    int copied = 0;
+    while (copied < numOfBytes) {
+      final ByteBuffer view = getSegmentView(currentSegments, offset + copied);
+      final int count = Math.min(numOfBytes - copied, view.remaining());
+      if (write)
+        view.put(buffer, copied, count);
+      else
+        view.get(buffer, copied, count);
+      copied += count;
+    }
+  }
+
+}
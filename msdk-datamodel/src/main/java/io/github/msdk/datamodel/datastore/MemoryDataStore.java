@@ -48,9 +48,8 @@ class MemoryDataStore implements DataPointStore {
       // Increase the storage ID
       lastStorageId++;
       storageMap.put(lastStorageId, clone);
+      return lastStorageId;
     }
-
-    return lastStorageId;
   }
 
   /** {@inheritDoc} */
@@ -67,7 +66,10 @@ class MemoryDataStore implements DataPointStore {
       throw new IllegalStateException("This object has been disposed");
 
     // Get the stored array
-    final Object storedArray = storageMap.get(ID);
+    final Object storedArray;
+    synchronized (storageMap) {
+      storedArray = storageMap.get(ID);
+    }
 
     if (storedArray == null)
       throw new IllegalArgumentException("ID " + ID + " not found in storage");
@@ -90,7 +92,9 @@ class MemoryDataStore implements DataPointStore {
     if (storageMap == null)
       throw new IllegalStateException("This object has been disposed");
 
-    storageMap.remove(ID);
+    synchronized (storageMap) {
+      storageMap.remove(ID);
+    }
   }
 
 }
@@ -82,6 +82,26 @@ public abstract class AbstractSpectrum implements MsSpectrum {
     return array;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public synchronized int getMzValues(@Nonnull double array[]) {
+    Preconditions.checkArgument(array.length >= numOfDataPoints,
+        "The array is too small for " + numOfDataPoints + " values");
+    if (dataStoreMzId != null)
+      dataPointStore.loadData(dataStoreMzId, array);
+    return numOfDataPoints;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized int getIntensityValues(@Nonnull float array[]) {
+    Preconditions.checkArgument(array.length >= numOfDataPoints,
+        "The array is too small for " + numOfDataPoints + " values");
+    if (dataStoreIntensityId != null)
+      dataPointStore.loadData(dataStoreIntensityId, array);
+    return numOfDataPoints;
+  }
+
   /**
    * {@inheritDoc}
    *
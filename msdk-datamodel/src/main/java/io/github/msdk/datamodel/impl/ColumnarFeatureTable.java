@@ -0,0 +1,309 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.featuretables.FeatureTableColumn;
+import io.github.msdk.datamodel.featuretables.FeatureTableRow;
+
+/**
+ * Implementation of the FeatureTable interface which stores the data of its rows by column instead
+ * of by row.
+ *
+ * <p>
+ * The rows created for this table by {@link MSDKObjectBuilder#getFeatureTableRow} hold only their
+ * ordinal in the table. Their values are kept in one array per column, which is a primitive array
+ * for columns of the type Double, Float or Integer, such as the m/z, RT, area and height columns,
+ * so numeric values are neither boxed nor kept in a map for every row. Rows of other
+ * implementations can still be added to the table, they keep their own data.
+ * </p>
+ *
+ * <p>
+ * The values of a Double or Float column can also be read for all rows at once with
+ * {@link #getDoubleValues} and {@link #getFloatValues}, which return a copy of the primitive array
+ * indexed by the ordinal of the rows (see {@link #getOrdinal}).
+ * </p>
+ *
+ * <p>
+ * The storage of a row is allocated when the row is created and is not reused after the row was
+ * removed. The values of a column are dropped when the column is removed.
+ * </p>
+ */
+public class ColumnarFeatureTable extends SimpleFeatureTable {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // Guarded by this
+  private final @Nonnull Map<FeatureTableColumn<?>, ColumnData> columnData = new HashMap<>();
+  private int numOfRows = 0, capacity = INITIAL_CAPACITY;
+
+  ColumnarFeatureTable(@Nonnull String name, @Nonnull DataPointStore dataPointStore) {
+    super(name, dataPointStore);
+  }
+
+  /**
+   * Creates a new row which stores its data in this table. The row is not added to the table.
+   */
+  @Nonnull
+  ColumnarFeatureTableRow createRow(int rowId) {
+    final int ordinal;
+    synchronized (this) {
+      ordinal = numOfRows++;
+      if (numOfRows > capacity) {
+        capacity = Math.max(numOfRows, capacity + (capacity >> 1));
+        for (ColumnData data : columnData.values())
+          data.grow(capacity);
+      }
+    }
+    return new ColumnarFeatureTableRow(this, rowId, ordinal);
+  }
+
+  /**
+   * Returns the value of the given column of the row with the given ordinal, or null.
+   */
+  @Nullable
+  synchronized Object getData(int ordinal, @Nonnull FeatureTableColumn<?> column) {
+    ColumnData data = columnData.get(column);
+    return data == null ? null : data.get(ordinal);
+  }
+
+  /**
+   * Sets the value of the given column of the row with the given ordinal and returns the previous
+   * value.
+   */
+  @Nullable
+  synchronized Object setData(int ordinal, @Nonnull FeatureTableColumn<?> column,
+      @Nonnull Object value) {
+    ColumnData data = columnData.get(column);
+    if (data == null) {
+      data = ColumnData.create(column.getDataTypeClass(), capacity);
+      columnData.put(column, data);
+    }
+    return data.set(ordinal, value);
+  }
+
+  /**
+   * Returns the ordinal of the given row, which is its index in the arrays returned by
+   * {@link #getDoubleValues} and {@link #getFloatValues}.
+   *
+   * @param row a row of this table.
+   * @return the ordinal of the row, or -1 if the row does not store its data in this table.
+   */
+  public int getOrdinal(@Nonnull FeatureTableRow row) {
+    Preconditions.checkNotNull(row);
+    if (row instanceof ColumnarFeatureTableRow && row.getFeatureTable() == this)
+      return ((ColumnarFeatureTableRow) row).getOrdinal();
+    return -1;
+  }
+
+  /**
+   * Returns a copy of the values of the given Double column, indexed by the ordinal of the rows.
+   * The values and the rows which have one are read together under one lock.
+   *
+   * @param column a column of the type Double.
+   * @param present cleared and set for the ordinals of the rows which have a value.
+   * @return a copy of the values, which is 0 for the rows without a value.
+   */
+  public synchronized @Nonnull double[] getDoubleValues(@Nonnull FeatureTableColumn<Double> column,
+      @Nonnull BitSet present) {
+    Preconditions.checkArgument(column.getDataTypeClass() == Double.class,
+        "Column " + column.getName() + " is not of the type Double");
+    DoubleColumnData data = (DoubleColumnData) columnData.get(column);
+    present.clear();
+    if (data == null)
+      return new double[numOfRows];
+    present.or(data.present);
+    return Arrays.copyOf(data.values, numOfRows);
+  }
+
+  /**
+   * Returns a copy of the values of the given Float column, indexed by the ordinal of the rows.
+   * The values and the rows which have one are read together under one lock.
+   *
+   * @param column a column of the type Float.
+   * @param present cleared and set for the ordinals of the rows which have a value.
+   * @return a copy of the values, which is 0 for the rows without a value.
+   */
+  public synchronized @Nonnull float[] getFloatValues(@Nonnull FeatureTableColumn<Float> column,
+      @Nonnull BitSet present) {
+    Preconditions.checkArgument(column.getDataTypeClass() == Float.class,
+        "Column " + column.getName() + " is not of the type Float");
+    FloatColumnData data = (FloatColumnData) columnData.get(column);
+    present.clear();
+    if (data == null)
+      return new float[numOfRows];
+    present.or(data.present);
+    return Arrays.copyOf(data.values, numOfRows);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void removeColumn(@Nonnull FeatureTableColumn<?> col) {
+    super.removeColumn(col);
+    synchronized (this) {
+      columnData.remove(col);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void dispose() {
+    synchronized (this) {
+      columnData.clear();
+    }
+    super.dispose();
+  }
+
+  /**
+   * Values of one column for all rows of the table, indexed by the ordinal of the rows.
+   */
+  private abstract static class ColumnData {
+
+    // Rows which have a value in this column
+    final BitSet present = new BitSet();
+
+    static ColumnData create(Class<?> dataTypeClass, int capacity) {
+      if (dataTypeClass == Double.class)
+        return new DoubleColumnData(capacity);
+      if (dataTypeClass == Float.class)
+        return new FloatColumnData(capacity);
+      if (dataTypeClass == Integer.class)
+        return new IntegerColumnData(capacity);
+      return new ObjectColumnData(capacity);
+    }
+
+    @Nullable
+    Object get(int ordinal) {
+      return present.get(ordinal) ? getValue(ordinal) : null;
+    }
+
+    @Nullable
+    Object set(int ordinal, @Nonnull Object value) {
+      Object previousValue = get(ordinal);
+      setValue(ordinal, value);
+      present.set(ordinal);
+      return previousValue;
+    }
+
+    abstract @Nonnull Object getValue(int ordinal);
+
+    abstract void setValue(int ordinal, @Nonnull Object value);
+
+    abstract void grow(int capacity);
+  }
+
+  private static class DoubleColumnData extends ColumnData {
+    double values[];
+
+    DoubleColumnData(int capacity) {
+      values = new double[capacity];
+    }
+
+    @Override
+    Object getValue(int ordinal) {
+      return values[ordinal];
+    }
+
+    @Override
+    void setValue(int ordinal, Object value) {
+      values[ordinal] = (Double) value;
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  private static class FloatColumnData extends ColumnData {
+    float values[];
+
+    FloatColumnData(int capacity) {
+      values = new float[capacity];
+    }
+
+    @Override
+    Object getValue(int ordinal) {
+      return values[ordinal];
+    }
+
+    @Override
+    void setValue(int ordinal, Object value) {
+      values[ordinal] = (Float) value;
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  private static class IntegerColumnData extends ColumnData {
+    int values[];
+
+    IntegerColumnData(int capacity) {
+      values = new int[capacity];
+    }
+
+    @Override
+    Object getValue(int ordinal) {
+      return values[ordinal];
+    }
+
+    @Override
+    void setValue(int ordinal, Object value) {
+      values[ordinal] = (Integer) value;
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  private static class ObjectColumnData extends ColumnData {
+    Object values[];
+
+    ObjectColumnData(int capacity) {
+      values = new Object[capacity];
+    }
+
+    @Override
+    Object getValue(int ordinal) {
+      return values[ordinal];
+    }
+
+    @Override
+    void setValue(int ordinal, Object value) {
+      Preconditions.checkNotNull(value);
+      values[ordinal] = value;
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+}
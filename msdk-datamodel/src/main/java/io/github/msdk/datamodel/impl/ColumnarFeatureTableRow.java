@@ -0,0 +1,111 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+
+import io.github.msdk.datamodel.featuretables.FeatureTable;
+import io.github.msdk.datamodel.featuretables.FeatureTableColumn;
+import io.github.msdk.datamodel.featuretables.FeatureTableDataConverter;
+import io.github.msdk.datamodel.featuretables.FeatureTableRow;
+
+/**
+ * Row of a {@link ColumnarFeatureTable}, which keeps its data in the columns of the table.
+ */
+public class ColumnarFeatureTableRow implements FeatureTableRow {
+
+  private final int rowId, ordinal;
+  private final @Nonnull ColumnarFeatureTable featureTable;
+
+  ColumnarFeatureTableRow(@Nonnull ColumnarFeatureTable featureTable, int rowId, int ordinal) {
+    Preconditions.checkNotNull(featureTable);
+    this.featureTable = featureTable;
+    this.rowId = rowId;
+    this.ordinal = ordinal;
+  }
+
+  /**
+   * Returns the index of the values of this row in the columns of its table.
+   */
+  int getOrdinal() {
+    return ordinal;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public @Nonnull FeatureTable getFeatureTable() {
+    return featureTable;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public @Nonnull Integer getId() {
+    return rowId;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Double getMz() {
+    return getData(MSDKObjectBuilder.getMzFeatureTableColumn());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Float getRT() {
+    return getData(MSDKObjectBuilder.getRetentionTimeFeatureTableColumn());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <DATATYPE> void setData(FeatureTableColumn<? extends DATATYPE> column,
+      @Nonnull DATATYPE data) {
+    Preconditions.checkNotNull(column);
+    Preconditions.checkNotNull(data);
+    Object previousData = featureTable.setData(ordinal, column, data);
+    if (column.equals(MSDKObjectBuilder.getMzFeatureTableColumn()) && !data.equals(previousData))
+      featureTable.rowMzChanged(this);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <DATATYPE> DATATYPE getData(@Nonnull FeatureTableColumn<? extends DATATYPE> column) {
+    Preconditions.checkNotNull(column);
+    return column.getDataTypeClass().cast(featureTable.getData(ordinal, column));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <DATATYPE> void copyData(FeatureTableColumn<? extends DATATYPE> sourceColumn,
+      FeatureTableRow targetRow, FeatureTableColumn<? extends DATATYPE> targetColumn,
+      FeatureTableDataConverter<DATATYPE> featureTableDataConverter) {
+    featureTableDataConverter.apply(this, sourceColumn, targetRow, targetColumn);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    List<FeatureTableColumn<?>> columns = featureTable.getColumns();
+    List<String> contents = new ArrayList<String>();
+    for (FeatureTableColumn<?> column : columns) {
+      contents.add(column.getName() + "=" + getData(column));
+    }
+
+    return contents.toString();
+  }
+}
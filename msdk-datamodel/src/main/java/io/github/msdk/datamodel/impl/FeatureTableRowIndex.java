@@ -0,0 +1,140 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+
+import io.github.msdk.datamodel.featuretables.FeatureTableRow;
+
+/**
+ * Index of the rows of a feature table by their m/z value, used to answer m/z and RT range
+ * queries without scanning all the rows. The m/z lookup is logarithmic, the RT values are checked
+ * for the rows within the m/z range only. The index must be told when the m/z value of a row
+ * changes, see {@link #update(FeatureTableRow)}. Not thread-safe.
+ */
+class FeatureTableRowIndex {
+
+  private static class Entry {
+    final @Nonnull FeatureTableRow row;
+    final long sequence;
+    Double mz;
+
+    Entry(@Nonnull FeatureTableRow row, long sequence) {
+      this.row = row;
+      this.sequence = sequence;
+    }
+  }
+
+  // Rows by m/z value, rows without m/z value are not in the tree
+  private final TreeMap<Double, List<Entry>> mzIndex = new TreeMap<>();
+  private final Map<FeatureTableRow, Entry> entries = new IdentityHashMap<>();
+  private long nextSequence = 0;
+
+  /**
+   * Adds a row to the index.
+   */
+  void add(@Nonnull FeatureTableRow row) {
+    if (entries.containsKey(row))
+      return;
+    Entry entry = new Entry(row, nextSequence++);
+    entries.put(row, entry);
+    insert(entry);
+  }
+
+  /**
+   * Removes a row from the index.
+   */
+  void remove(@Nonnull FeatureTableRow row) {
+    Entry entry = entries.remove(row);
+    if (entry != null)
+      delete(entry);
+  }
+
+  /**
+   * Moves a row to its current m/z value, after the m/z value was changed. Rows which are not in
+   * the index are ignored.
+   */
+  void update(@Nonnull FeatureTableRow row) {
+    Entry entry = entries.get(row);
+    if (entry == null)
+      return;
+    Double mz = row.getMz();
+    if (mz == null ? entry.mz == null : mz.equals(entry.mz))
+      return;
+    delete(entry);
+    insert(entry);
+  }
+
+  /**
+   * Returns the rows within the given ranges, in the order they were added to the index.
+   */
+  @Nonnull
+  List<FeatureTableRow> getRowsInsideRange(@Nonnull Range<Float> rtRange,
+      @Nonnull Range<Double> mzRange) {
+
+    final List<Entry> matches = new ArrayList<>();
+    for (List<Entry> sameMzEntries : subMap(mzRange).values()) {
+      for (Entry entry : sameMzEntries) {
+        Float rowRT = entry.row.getRT();
+        if ((rowRT != null) && rtRange.contains(rowRT))
+          matches.add(entry);
+      }
+    }
+
+    matches.sort((e1, e2) -> Long.compare(e1.sequence, e2.sequence));
+    final List<FeatureTableRow> result = new ArrayList<>(matches.size());
+    for (Entry entry : matches)
+      result.add(entry.row);
+    return result;
+  }
+
+  private NavigableMap<Double, List<Entry>> subMap(@Nonnull Range<Double> mzRange) {
+    NavigableMap<Double, List<Entry>> map = mzIndex;
+    if (mzRange.hasLowerBound())
+      map = map.tailMap(mzRange.lowerEndpoint(), mzRange.lowerBoundType() == BoundType.CLOSED);
+    if (mzRange.hasUpperBound())
+      map = map.headMap(mzRange.upperEndpoint(), mzRange.upperBoundType() == BoundType.CLOSED);
+    return map;
+  }
+
+  private void insert(@Nonnull Entry entry) {
+    entry.mz = entry.row.getMz();
+    if (entry.mz == null)
+      return;
+    mzIndex.computeIfAbsent(entry.mz, mz -> new ArrayList<>(1)).add(entry);
+  }
+
+  private void delete(@Nonnull Entry entry) {
+    if (entry.mz == null)
+      return;
+    Collection<Entry> sameMzEntries = mzIndex.get(entry.mz);
+    if (sameMzEntries == null)
+      return;
+    sameMzEntries.remove(entry);
+    if (sameMzEntries.isEmpty())
+      mzIndex.remove(entry.mz);
+  }
+
+}
@@ -25,6 +25,7 @@ import io.github.msdk.datamodel.datastore.DataPointStore;
 import io.github.msdk.datamodel.featuretables.ColumnName;
 import io.github.msdk.datamodel.featuretables.FeatureTable;
 import io.github.msdk.datamodel.featuretables.FeatureTableColumn;
+import io.github.msdk.datamodel.featuretables.FeatureTableRow;
 import io.github.msdk.datamodel.featuretables.Sample;
 import io.github.msdk.datamodel.rawdata.MsFunction;
 
@@ -130,6 +131,21 @@ public class MSDKObjectBuilder {
     return new SimpleFeatureTable(featureTableName, dataPointStore);
   }
 
+  /**
+   * Creates a new feature table which stores the data of its rows by column, in primitive arrays
+   * for the numeric columns. This takes much less memory than the tables created by
+   * {@link #getFeatureTable(String, DataPointStore)} for tables with many rows and samples. The
+   * rows of the table should be created by {@link #getFeatureTableRow(FeatureTable, int)}.
+   *
+   * @param featureTableName a {@link java.lang.String} object.
+   * @param dataPointStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   * @return a {@link io.github.msdk.datamodel.featuretables.FeatureTable} object.
+   */
+  public static final @Nonnull FeatureTable getColumnarFeatureTable(
+      @Nonnull String featureTableName, @Nonnull DataPointStore dataPointStore) {
+    return new ColumnarFeatureTable(featureTableName, dataPointStore);
+  }
+
   /**
    * <p>
    * getMsSpectrum.
@@ -217,14 +233,17 @@ public class MSDKObjectBuilder {
   }
 
   /**
-   * Creates a new FeatureTableRow instance.
+   * Creates a new FeatureTableRow instance. Rows of a table created by
+   * {@link #getColumnarFeatureTable(String, DataPointStore)} store their data in the table.
    *
-   * @return new SimpleFeatureTableRow
+   * @return new FeatureTableRow
    * @param featureTable a {@link io.github.msdk.datamodel.featuretables.FeatureTable} object.
    * @param rowId a int.
    */
-  public static @Nonnull SimpleFeatureTableRow getFeatureTableRow(
-      @Nonnull FeatureTable featureTable, int rowId) {
+  public static @Nonnull FeatureTableRow getFeatureTableRow(@Nonnull FeatureTable featureTable,
+      int rowId) {
+    if (featureTable instanceof ColumnarFeatureTable)
+      return ((ColumnarFeatureTable) featureTable).createRow(rowId);
     return new SimpleFeatureTableRow(featureTable, rowId);
   }
 
@@ -132,12 +132,8 @@ public class SimpleChromatogram implements Chromatogram {
     return getRetentionTimes(null);
   }
 
-  /**
-   * {@inheritDoc}
-   *
-   * @param array an array of float.
-   * @return an array of float.
-   */
+  /** {@inheritDoc} */
+  @Override
   public @Nonnull float[] getRetentionTimes(@Nullable float[] array) {
     if ((array == null) || (array.length < numOfDataPoints))
       array = new float[numOfDataPoints];
@@ -147,8 +143,17 @@ public class SimpleChromatogram implements Chromatogram {
 
   /** {@inheritDoc} */
   @Override
-  public @Nonnull double[] getMzValues() {
-    double [] array = new double[numOfDataPoints];
+  public @Nullable double[] getMzValues() {
+    return getMzValues(null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public @Nullable double[] getMzValues(@Nullable double array[]) {
+    if (dataStoreMzId == null)
+      return null;
+    if ((array == null) || (array.length < numOfDataPoints))
+      array = new double[numOfDataPoints];
     dataPointStore.loadData(dataStoreMzId, array);
     return array;
   }
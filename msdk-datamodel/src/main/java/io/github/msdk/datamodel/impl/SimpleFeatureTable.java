@@ -14,9 +14,14 @@
 package io.github.msdk.datamodel.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -32,6 +37,12 @@ import io.github.msdk.datamodel.featuretables.Sample;
 /**
  * Implementation of the FeatureTable interface.
  *
+ * <p>
+ * The lists returned by {@link #getRows()}, {@link #getColumns()} and {@link #getSamples()} are
+ * immutable snapshots, which are only rebuilt after the table was modified, so repeated calls do
+ * not copy the table. Columns are looked up by their name and sample in a hash map.
+ * </p>
+ *
  * @author plusik
  * @version $Id: $Id
  */
@@ -42,6 +53,47 @@ public class SimpleFeatureTable implements FeatureTable {
   private final @Nonnull ArrayList<FeatureTableRow> featureTableRows;
   private final @Nonnull ArrayList<FeatureTableColumn<?>> featureTableColumns;
 
+  // Guarded by featureTableRows
+  private final @Nonnull FeatureTableRowIndex rowIndex = new FeatureTableRowIndex();
+
+  // Snapshot of the rows, null if it has to be rebuilt. Modified only
+  // while holding the lock on featureTableRows
+  private volatile ImmutableList<FeatureTableRow> rowsSnapshot = ImmutableList.of();
+
+  // Views of the columns, replaced while holding the lock on
+  // featureTableColumns whenever the columns change
+  private volatile @Nonnull ImmutableList<FeatureTableColumn<?>> columnsSnapshot =
+      ImmutableList.of();
+  private volatile @Nonnull Map<ColumnKey, FeatureTableColumn<?>> columnsByKey =
+      Collections.emptyMap();
+  private volatile @Nonnull ImmutableList<Sample> samplesSnapshot = ImmutableList.of();
+
+  /**
+   * Key of the column lookup table, the name and the sample of a column.
+   */
+  private static final class ColumnKey {
+    private final @Nonnull String name;
+    private final @Nullable Sample sample;
+
+    ColumnKey(@Nonnull String name, @Nullable Sample sample) {
+      this.name = name;
+      this.sample = sample;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ColumnKey))
+        return false;
+      ColumnKey key = (ColumnKey) o;
+      return name.equals(key.name) && Objects.equals(sample, key.sample);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * name.hashCode() + Objects.hashCode(sample);
+    }
+  }
+
   SimpleFeatureTable(@Nonnull String name, @Nonnull DataPointStore dataPointStore) {
     Preconditions.checkNotNull(name);
     Preconditions.checkNotNull(dataPointStore);
@@ -67,16 +119,30 @@ public class SimpleFeatureTable implements FeatureTable {
   /** {@inheritDoc} */
   @Override
   public @Nonnull List<FeatureTableRow> getRows() {
-    List<FeatureTableRow> featureTableRowCopy = ImmutableList.copyOf(featureTableRows);
-    return featureTableRowCopy;
+    ImmutableList<FeatureTableRow> snapshot = rowsSnapshot;
+    if (snapshot == null) {
+      synchronized (featureTableRows) {
+        snapshot = rowsSnapshot;
+        if (snapshot == null) {
+          snapshot = ImmutableList.copyOf(featureTableRows);
+          rowsSnapshot = snapshot;
+        }
+      }
+    }
+    return snapshot;
   }
 
   /** {@inheritDoc} */
   @Override
   public void addRow(@Nonnull FeatureTableRow row) {
     Preconditions.checkNotNull(row);
+    // Register first, so no change of the m/z value is missed
+    if (row instanceof SimpleFeatureTableRow)
+      ((SimpleFeatureTableRow) row).addIndexingTable(this);
     synchronized (featureTableRows) {
       featureTableRows.add(row);
+      rowIndex.add(row);
+      rowsSnapshot = null;
     }
   }
 
@@ -86,21 +152,28 @@ public class SimpleFeatureTable implements FeatureTable {
     Preconditions.checkNotNull(row);
     synchronized (featureTableRows) {
       featureTableRows.remove(row);
+      rowIndex.remove(row);
+      rowsSnapshot = null;
     }
+    if (row instanceof SimpleFeatureTableRow)
+      ((SimpleFeatureTableRow) row).removeIndexingTable(this);
   }
 
   /** {@inheritDoc} */
   @Override
   public @Nonnull List<FeatureTableColumn<?>> getColumns() {
-    List<FeatureTableColumn<?>> featureTableColumnsCopy = ImmutableList.copyOf(featureTableColumns);
-    return featureTableColumnsCopy;
+    return columnsSnapshot;
   }
 
   /** {@inheritDoc} */
   @Override
   public <DATATYPE> FeatureTableColumn<DATATYPE> getColumn(@Nonnull String columnName,
       Sample sample, Class<? extends DATATYPE> dtClass) {
-    for (FeatureTableColumn<?> column : featureTableColumns) {
+    FeatureTableColumn<?> indexedColumn = columnsByKey.get(new ColumnKey(columnName, sample));
+    // Columns can be renamed, in that case fall back to a full search
+    if (indexedColumn != null && indexedColumn.getName().equals(columnName))
+      return (FeatureTableColumn<DATATYPE>) indexedColumn;
+    for (FeatureTableColumn<?> column : columnsSnapshot) {
       if (column.getName().equals(columnName)) {
 
         if (column.getSample() == null) {
@@ -134,6 +207,7 @@ public class SimpleFeatureTable implements FeatureTable {
     Preconditions.checkNotNull(col);
     synchronized (featureTableColumns) {
       featureTableColumns.add(col);
+      updateColumnViews();
     }
   }
 
@@ -143,21 +217,33 @@ public class SimpleFeatureTable implements FeatureTable {
     Preconditions.checkNotNull(col);
     synchronized (featureTableColumns) {
       featureTableColumns.remove(col);
+      updateColumnViews();
     }
   }
 
   /** {@inheritDoc} */
   @Override
   public @Nonnull List<Sample> getSamples() {
+    return samplesSnapshot;
+  }
+
+  /**
+   * Rebuilds the column list, the column lookup table and the sample list. Must be called while
+   * holding the lock on featureTableColumns.
+   */
+  private void updateColumnViews() {
+    Map<ColumnKey, FeatureTableColumn<?>> byKey = new HashMap<>();
     ArrayList<Sample> sampleList = new ArrayList<Sample>();
-    synchronized (featureTableColumns) {
-      for (FeatureTableColumn<?> col : featureTableColumns) {
-        Sample s = col.getSample();
-        if (s != null && !sampleList.contains(s))
-          sampleList.add(s);
-      }
+    for (FeatureTableColumn<?> col : featureTableColumns) {
+      // The first column with the given name and sample wins
+      byKey.putIfAbsent(new ColumnKey(col.getName(), col.getSample()), col);
+      Sample s = col.getSample();
+      if (s != null && !sampleList.contains(s))
+        sampleList.add(s);
     }
-    return ImmutableList.copyOf(sampleList);
+    columnsSnapshot = ImmutableList.copyOf(featureTableColumns);
+    columnsByKey = byKey;
+    samplesSnapshot = ImmutableList.copyOf(sampleList);
   }
 
   /** {@inheritDoc} */
@@ -166,17 +252,28 @@ public class SimpleFeatureTable implements FeatureTable {
     dataPointStore.dispose();
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   * The rows are looked up in an index of the m/z values of the rows, so the cost depends on the
+   * number of rows within the m/z range, not on the size of the table.
+   * </p>
+   */
   @Override
   public List<FeatureTableRow> getRowsInsideRange(Range<Float> rtRange, Range<Double> mzRange) {
-    List<FeatureTableRow> result = new ArrayList<FeatureTableRow>();
-    for (FeatureTableRow row : featureTableRows) {
-      Float rowRT = row.getRT();
-      if ((rowRT != null) && rtRange.contains(rowRT)
-          && mzRange.contains(row.getMz()))
-        result.add(row);
+    synchronized (featureTableRows) {
+      return rowIndex.getRowsInsideRange(rtRange, mzRange);
+    }
+  }
+
+  /**
+   * Called by the rows of this table when their m/z value was changed.
+   */
+  void rowMzChanged(@Nonnull FeatureTableRow row) {
+    synchronized (featureTableRows) {
+      rowIndex.update(row);
     }
-    return result;
   }
 
 }
@@ -38,6 +38,9 @@ public class SimpleFeatureTableRow implements FeatureTableRow {
   private final @Nonnull FeatureTable featureTable;
   private final @Nonnull Map<FeatureTableColumn<?>, Object> rowData;
 
+  // Tables which index this row by its m/z value, usually just one
+  private final @Nonnull List<SimpleFeatureTable> indexingTables = new ArrayList<>(1);
+
   /**
    * <p>Constructor for SimpleFeatureTableRow.</p>
    *
@@ -81,7 +84,26 @@ public class SimpleFeatureTableRow implements FeatureTableRow {
       @Nonnull DATATYPE data) {
     Preconditions.checkNotNull(column);
     Preconditions.checkNotNull(data);
-    rowData.put(column, data);
+    Object previousData = rowData.put(column, data);
+    if (column.equals(MSDKObjectBuilder.getMzFeatureTableColumn()) && !data.equals(previousData)) {
+      synchronized (indexingTables) {
+        for (SimpleFeatureTable table : indexingTables)
+          table.rowMzChanged(this);
+      }
+    }
+  }
+
+  void addIndexingTable(@Nonnull SimpleFeatureTable table) {
+    synchronized (indexingTables) {
+      if (!indexingTables.contains(table))
+        indexingTables.add(table);
+    }
+  }
+
+  void removeIndexingTable(@Nonnull SimpleFeatureTable table) {
+    synchronized (indexingTables) {
+      indexingTables.remove(table);
+    }
   }
 
   /** {@inheritDoc} */
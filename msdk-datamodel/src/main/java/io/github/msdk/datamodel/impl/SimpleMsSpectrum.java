@@ -93,6 +93,24 @@ public class SimpleMsSpectrum implements MsSpectrum {
     return array;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public synchronized int getMzValues(@Nonnull double array[]) {
+    Preconditions.checkArgument(array.length >= numOfDataPoints,
+        "The array is too small for " + numOfDataPoints + " values");
+    System.arraycopy(mzValues, 0, array, 0, numOfDataPoints);
+    return numOfDataPoints;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized int getIntensityValues(@Nonnull float array[]) {
+    Preconditions.checkArgument(array.length >= numOfDataPoints,
+        "The array is too small for " + numOfDataPoints + " values");
+    System.arraycopy(intensityValues, 0, array, 0, numOfDataPoints);
+    return numOfDataPoints;
+  }
+
   /**
    * {@inheritDoc}
    *
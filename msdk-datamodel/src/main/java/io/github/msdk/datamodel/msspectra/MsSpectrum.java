@@ -16,6 +16,7 @@ package io.github.msdk.datamodel.msspectra;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Range;
 
 import io.github.msdk.util.tolerances.MzTolerance;
@@ -74,6 +75,43 @@ public interface MsSpectrum {
   @Nonnull
   float[] getIntensityValues();
 
+  /**
+   * <p>
+   * Copies the m/z values of this spectrum into the given array, so that a caller which processes
+   * many spectra can reuse the same array. The default implementation copies the array returned by
+   * {@link #getMzValues()}, implementations should override it to avoid the allocation.
+   * </p>
+   *
+   * @param array an array of at least {@link #getNumberOfDataPoints()} values.
+   * @return the number of data points.
+   */
+  default int getMzValues(@Nonnull double array[]) {
+    final double mzValues[] = getMzValues();
+    Preconditions.checkArgument(array.length >= mzValues.length,
+        "The array is too small for " + mzValues.length + " values");
+    System.arraycopy(mzValues, 0, array, 0, mzValues.length);
+    return mzValues.length;
+  }
+
+  /**
+   * <p>
+   * Copies the intensity values of this spectrum into the given array, so that a caller which
+   * processes many spectra can reuse the same array. The default implementation copies the array
+   * returned by {@link #getIntensityValues()}, implementations should override it to avoid the
+   * allocation.
+   * </p>
+   *
+   * @param array an array of at least {@link #getNumberOfDataPoints()} values.
+   * @return the number of data points.
+   */
+  default int getIntensityValues(@Nonnull float array[]) {
+    final float intensityValues[] = getIntensityValues();
+    Preconditions.checkArgument(array.length >= intensityValues.length,
+        "The array is too small for " + intensityValues.length + " values");
+    System.arraycopy(intensityValues, 0, array, 0, intensityValues.length);
+    return intensityValues.length;
+  }
+
   /**
    * Returns the sum of intensities of all data points (total ion current or TIC).
    *
@@ -0,0 +1,247 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * ChromatogramMetrics computes all the feature descriptors of {@link ChromatogramUtil} (RT, start
+ * and end RT, duration, area, height, FWHM, tailing factor and asymmetry factor) of a chromatogram
+ * in two passes over its data points: one for the apex and the area, and one which finds the RTs of
+ * the 50%, 10% and 5% intensity levels together. The results are kept in primitive fields, so one
+ * instance can be reused for many chromatograms. Instances are not thread safe.
+ * </p>
+ *
+ * <p>
+ * The values are the same as the ones of the ChromatogramUtil methods. The RT, area and height,
+ * which those methods return as null for an empty chromatogram, are NaN. The FWHM, tailing factor
+ * and asymmetry factor are null exactly where those methods return null, and NaN where they return
+ * NaN, e.g. the factors of a chromatogram with a single data point.
+ * </p>
+ */
+public class ChromatogramMetrics {
+
+  private int size = 0;
+  private float rt = Float.NaN, rtStart = Float.NaN, rtEnd = Float.NaN, height = Float.NaN;
+  private double area = Double.NaN;
+
+  // Negative if the value is undefined, which ChromatogramUtil returns as null
+  private double fwhm = -1, tailingFactor = -1, asymmetryFactor = -1;
+
+  // Closest data points to the intensity levels on both sides of the apex
+  private final Crossing halfHeight = new Crossing(), tenPercent = new Crossing(),
+      fivePercent = new Crossing();
+
+  /**
+   * <p>
+   * This method computes the metrics of a chromatogram.
+   * </p>
+   *
+   * @param rtValues an array of float.
+   * @param intensityValues an array of float.
+   * @param size the number of data points.
+   */
+  public void compute(@Nonnull float rtValues[], @Nonnull float intensityValues[], int size) {
+
+    // Parameter check
+    Preconditions.checkNotNull(rtValues);
+    Preconditions.checkNotNull(intensityValues);
+    Preconditions.checkPositionIndex(size, rtValues.length);
+    Preconditions.checkPositionIndex(size, intensityValues.length);
+
+    this.size = size;
+    if (size == 0) {
+      rt = rtStart = rtEnd = height = Float.NaN;
+      area = Double.NaN;
+      fwhm = tailingFactor = asymmetryFactor = -1;
+      return;
+    }
+
+    // First pass: apex and area
+    int apex = 0;
+    double area = 0;
+    for (int i = 0; i < size - 1; i++) {
+      if (intensityValues[i + 1] > intensityValues[apex])
+        apex = i + 1;
+      double rtDifference = rtValues[i + 1] - rtValues[i];
+      area += (rtDifference * ((double) intensityValues[i] + intensityValues[i + 1]) / 2);
+    }
+    this.area = area;
+    height = intensityValues[apex];
+    rt = rtValues[apex];
+    rtStart = rtValues[0];
+    rtEnd = rtValues[size - 1];
+
+    // Second pass: RTs of the intensity levels
+    halfHeight.reset(height / 2);
+    tenPercent.reset(height * 0.1);
+    fivePercent.reset(height * 0.05);
+    for (int i = 1; i < size - 1; i++) {
+      halfHeight.update(i, rtValues, intensityValues, rt);
+      tenPercent.update(i, rtValues, intensityValues, rt);
+      fivePercent.update(i, rtValues, intensityValues, rt);
+    }
+
+    halfHeight.findRTs(rtValues, size);
+    fwhm = halfHeight.rt2 - halfHeight.rt1;
+
+    fivePercent.findRTs(rtValues, size);
+    if (fivePercent.rt2 == 0)
+      fivePercent.rt2 = rtEnd;
+    tailingFactor = (fivePercent.rt2 - fivePercent.rt1) / (2 * (rt - fivePercent.rt1));
+
+    tenPercent.findRTs(rtValues, size);
+    asymmetryFactor = (tenPercent.rt2 - rt) / (rt - tenPercent.rt1);
+  }
+
+  /**
+   * @return the number of data points.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return the retention time of the highest data point, see
+   *         {@link ChromatogramUtil#getRt(float[], float[], Integer)}.
+   */
+  public float getRt() {
+    return rt;
+  }
+
+  /**
+   * @return the retention time of the first data point.
+   */
+  public float getRtStart() {
+    return rtStart;
+  }
+
+  /**
+   * @return the retention time of the last data point.
+   */
+  public float getRtEnd() {
+    return rtEnd;
+  }
+
+  /**
+   * @return the difference of the end and start retention times.
+   */
+  public float getDuration() {
+    return rtEnd - rtStart;
+  }
+
+  /**
+   * @return the area, see {@link ChromatogramUtil#getArea(float[], float[], Integer)}.
+   */
+  public double getArea() {
+    return area;
+  }
+
+  /**
+   * @return the highest intensity.
+   */
+  public float getHeight() {
+    return height;
+  }
+
+  /**
+   * @return the full width at half maximum or null, see
+   *         {@link ChromatogramUtil#getFwhm(float[], float[], Integer)}.
+   */
+  public @Nullable Double getFwhm() {
+    return nullIfNegative(fwhm);
+  }
+
+  /**
+   * @return the tailing factor or null, see
+   *         {@link ChromatogramUtil#getTailingFactor(float[], float[], Integer)}.
+   */
+  public @Nullable Double getTailingFactor() {
+    return nullIfNegative(tailingFactor);
+  }
+
+  /**
+   * @return the asymmetry factor or null, see
+   *         {@link ChromatogramUtil#getAsymmetryFactor(float[], float[], Integer)}.
+   */
+  public @Nullable Double getAsymmetryFactor() {
+    return nullIfNegative(asymmetryFactor);
+  }
+
+  // NaN is not negative and is returned as NaN
+  private static @Nullable Double nullIfNegative(double value) {
+    return value < 0 ? null : value;
+  }
+
+  /**
+   * The search of the private ChromatogramUtil.findRTs() method for one intensity level.
+   */
+  private static class Crossing {
+
+    private double intensity, lastDiff1, lastDiff2;
+    private double x1, x2, x3, x4, y1, y2, y3, y4;
+    private double rt1, rt2;
+
+    private void reset(double intensity) {
+      this.intensity = lastDiff1 = lastDiff2 = intensity;
+      x1 = x2 = x3 = x4 = y1 = y2 = y3 = y4 = 0;
+    }
+
+    private void update(int i, float rtValues[], float intensityValues[], float rt) {
+      final double currentDiff = Math.abs(intensity - intensityValues[i]);
+      final double currentRT = rtValues[i];
+      if (currentDiff < lastDiff1 & currentDiff > 0 & currentRT <= rt) {
+        x1 = rtValues[i];
+        y1 = intensityValues[i];
+        x2 = rtValues[i + 1];
+        y2 = intensityValues[i + 1];
+        lastDiff1 = currentDiff;
+      } else if (currentDiff < lastDiff2 & currentDiff > 0 & currentRT >= rt) {
+        x3 = rtValues[i - 1];
+        y3 = intensityValues[i - 1];
+        x4 = rtValues[i];
+        y4 = intensityValues[i];
+        lastDiff2 = currentDiff;
+      }
+    }
+
+    // Calculate RT value for input intensity based on linear regression
+    private void findRTs(float rtValues[], int size) {
+      double slope, intercept;
+      if (y1 > 0) {
+        slope = (y2 - y1) / (x2 - x1);
+        intercept = y1 - (slope * x1);
+        rt1 = (intensity - intercept) / slope;
+      } else if (x2 > 0) { // Straight drop of peak to 0 intensity
+        rt1 = x2;
+      } else {
+        rt1 = rtValues[0];
+      }
+      if (y4 > 0) {
+        slope = (y4 - y3) / (x4 - x3);
+        intercept = y3 - (slope * x3);
+        rt2 = (intensity - intercept) / slope;
+      } else if (x3 > 0) { // Straight drop of peak to 0 intensity
+        rt2 = x3;
+      } else {
+        rt2 = rtValues[size - 1];
+      }
+    }
+  }
+
+}
@@ -13,15 +13,16 @@
 
 package io.github.msdk.util;
 
-import java.lang.reflect.Array;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-
 /**
  * <p>
- * DataPointSorter class.
+ * DataPointSorter class. Sorts parallel arrays of data point values in place.
+ * </p>
+ *
+ * <p>
+ * The arrays are sorted by primitive keys, without boxing, in O(n log n) time. Equal values keep
+ * their original order (the sort is stable), in both directions. The scratch arrays are kept per
+ * thread and reused, so sorting does not allocate memory once they have grown to the size of the
+ * largest sorted spectrum.
  * </p>
  *
  * @author plusik
@@ -37,40 +38,30 @@ public class DataPointSorter {
     ASCENDING, DESCENDING
   }
 
-  private static class DataPointComparator implements Comparator<Integer> {
-
-    private final double mzBuffer[];
-    private final float intensityBuffer[];
-    private final SortingProperty prop;
-    private final SortingDirection dir;
+  // Below this size, ranges are sorted by insertion sort
+  private static final int INSERTION_SORT_THRESHOLD = 24;
 
-    DataPointComparator(final double mzBuffer[], final float intensityBuffer[],
-        SortingProperty prop, SortingDirection dir) {
-      this.mzBuffer = mzBuffer;
-      this.intensityBuffer = intensityBuffer;
-      this.prop = prop;
-      this.dir = dir;
-    }
+  /**
+   * Per-thread scratch arrays: the sort keys and the original positions of the data points.
+   */
+  private static class Scratch {
+    long keys[] = new long[0];
+    int positions[] = new int[0];
 
-    @Override
-    public int compare(Integer i1, Integer i2) {
-      switch (prop) {
-        case INTENSITY:
-          if (dir == SortingDirection.ASCENDING)
-            return Float.compare(intensityBuffer[i1], intensityBuffer[i2]);
-          else
-            return Float.compare(intensityBuffer[i2], intensityBuffer[i1]);
-        case MZ:
-          if (dir == SortingDirection.ASCENDING)
-            return Double.compare(mzBuffer[i1], mzBuffer[i2]);
-          else
-            return Double.compare(mzBuffer[i2], mzBuffer[i1]);
+    /**
+     * Returns the key array, with room for at least the given number of data points.
+     */
+    long[] keys(int size) {
+      if (keys.length < size) {
+        keys = new long[size];
+        positions = new int[size];
       }
-      return 0;
+      return keys;
     }
-
   }
 
+  private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
   /**
    * Sort the given data points by m/z order
    *
@@ -83,67 +74,261 @@ public class DataPointSorter {
   public static void sortDataPoints(final double mzBuffer[], final float intensityBuffer[],
       final int size, SortingProperty prop, SortingDirection dir) {
 
-    // Use Collections.sort to obtain index mapping from old arrays to the
-    // new sorted array
-    final List<Integer> idx = new ArrayList<>(size);
-    for (int i = 0; i < size; i++)
-      idx.add(i);
-    Comparator<Integer> comp = new DataPointComparator(mzBuffer, intensityBuffer, prop, dir);
-
-    Collections.sort(idx, comp);
-    // Remap the values according to the index map idx
-    remapArray(mzBuffer, idx);
-    remapArray(intensityBuffer, idx);
+    final Scratch s = scratch.get();
+    final long keys[] = s.keys(size);
+    final boolean descending = (dir == SortingDirection.DESCENDING);
+    for (int i = 0; i < size; i++) {
+      long key = (prop == SortingProperty.MZ) ? doubleKey(mzBuffer[i])
+          : floatKey(intensityBuffer[i]);
+      keys[i] = descending ? ~key : key;
+    }
 
+    final int positions[] = sortPositions(s, size);
+    permute(mzBuffer, positions, size);
+    permute(intensityBuffer, positions, size);
   }
 
-  private static void remapArray(Object array, List<Integer> indices) {
-
-    // Make a copy of indices, to prevent modifying the list
-    List<Integer> idx = new ArrayList<>(indices);
-
-    for (int i = 0; i < idx.size(); i++) {
-      final int newIndex = idx.get(i);
-      if (newIndex == i)
-        continue;
+  /**
+   * Sort the given data points by RT order
+   *
+   * @param rtBuffer an array
+   * @param mzBuffer an array of double.
+   * @param intensityBuffer an array of float.
+   * @param size a int.
+   */
+  public static void sortDataPoints(final Float rtBuffer[], final double mzBuffer[],
+      final float intensityBuffer[], final int size) {
 
-      Object tmp = Array.get(array, i);
-      Array.set(array, i, Array.get(array, newIndex));
+    final Scratch s = scratch.get();
+    final long keys[] = s.keys(size);
+    for (int i = 0; i < size; i++)
+      keys[i] = floatKey(rtBuffer[i]);
 
-      final int swapIndex = idx.indexOf(i);
-      Array.set(array, newIndex, tmp);
-      idx.set(swapIndex, newIndex);
-      idx.set(i, i);
-    }
+    final int positions[] = sortPositions(s, size);
+    permute(rtBuffer, positions, size);
+    permute(mzBuffer, positions, size);
+    permute(intensityBuffer, positions, size);
   }
 
   /**
    * Sort the given data points by RT order
    *
-   * @param rtBuffer an array
+   * @param rtBuffer an array of float.
    * @param mzBuffer an array of double.
    * @param intensityBuffer an array of float.
    * @param size a int.
    */
-  public static void sortDataPoints(final Float rtBuffer[], final double mzBuffer[],
+  public static void sortDataPoints(final float rtBuffer[], final double mzBuffer[],
       final float intensityBuffer[], final int size) {
 
-    // Use Collections.sort to obtain index mapping from old arrays to the
-    // new sorted array
-    final List<Integer> idx = new ArrayList<>(size);
+    final Scratch s = scratch.get();
+    final long keys[] = s.keys(size);
     for (int i = 0; i < size; i++)
-      idx.add(i);
-    Collections.sort(idx, new Comparator<Integer>() {
-      public int compare(Integer i1, Integer i2) {
-        return rtBuffer[i1].compareTo(rtBuffer[i2]);
+      keys[i] = floatKey(rtBuffer[i]);
+
+    final int positions[] = sortPositions(s, size);
+    permute(rtBuffer, positions, size);
+    permute(mzBuffer, positions, size);
+    permute(intensityBuffer, positions, size);
+  }
+
+  /**
+   * Sorts the first size keys of the scratch arrays and returns the permutation: the data point at
+   * position positions[i] moves to position i.
+   */
+  private static int[] sortPositions(Scratch s, int size) {
+    final int positions[] = s.positions;
+    for (int i = 0; i < size; i++)
+      positions[i] = i;
+    sort(s.keys, positions, 0, size);
+    return positions;
+  }
+
+  /*
+   * The permute() methods move the values along the cycles of the permutation. The positions which
+   * were visited are marked by complementing them, and unmarked at the end, so the same permutation
+   * can be applied to the next array.
+   */
+
+  private static void permute(double values[], int positions[], int size) {
+    for (int i = 0; i < size; i++) {
+      if (positions[i] < 0 || positions[i] == i)
+        continue;
+      final double value = values[i];
+      int j = i;
+      for (int k = positions[j]; k != i; k = positions[j]) {
+        positions[j] = ~k;
+        values[j] = values[k];
+        j = k;
       }
-    });
+      positions[j] = ~i;
+      values[j] = value;
+    }
+    unmark(positions, size);
+  }
 
-    // Remap the values according to the index map idx
-    remapArray(rtBuffer, idx);
-    remapArray(mzBuffer, idx);
-    remapArray(intensityBuffer, idx);
+  private static void permute(float values[], int positions[], int size) {
+    for (int i = 0; i < size; i++) {
+      if (positions[i] < 0 || positions[i] == i)
+        continue;
+      final float value = values[i];
+      int j = i;
+      for (int k = positions[j]; k != i; k = positions[j]) {
+        positions[j] = ~k;
+        values[j] = values[k];
+        j = k;
+      }
+      positions[j] = ~i;
+      values[j] = value;
+    }
+    unmark(positions, size);
+  }
+
+  private static void permute(Object values[], int positions[], int size) {
+    for (int i = 0; i < size; i++) {
+      if (positions[i] < 0 || positions[i] == i)
+        continue;
+      final Object value = values[i];
+      int j = i;
+      for (int k = positions[j]; k != i; k = positions[j]) {
+        positions[j] = ~k;
+        values[j] = values[k];
+        j = k;
+      }
+      positions[j] = ~i;
+      values[j] = value;
+    }
+    unmark(positions, size);
+  }
+
+  private static void unmark(int positions[], int size) {
+    for (int i = 0; i < size; i++) {
+      if (positions[i] < 0)
+        positions[i] = ~positions[i];
+    }
+  }
+
+  /**
+   * Maps a double to a long with the same order as {@link Double#compare(double, double)}.
+   */
+  private static long doubleKey(double value) {
+    final long bits = Double.doubleToLongBits(value);
+    return bits ^ ((bits >> 63) & 0x7fffffffffffffffL);
+  }
+
+  /**
+   * Maps a float to a long with the same order as {@link Float#compare(float, float)}.
+   */
+  private static long floatKey(float value) {
+    final int bits = Float.floatToIntBits(value);
+    return bits ^ ((bits >> 31) & 0x7fffffff);
+  }
+
+  /**
+   * Sorts the range [from, to) by key, then by position. As the positions are unique, the order is
+   * total and the result is the same as of a stable sort by key. Quicksort, which falls back to
+   * heapsort when the partitioning goes badly, so the worst case stays O(n log n).
+   */
+  private static void sort(long keys[], int positions[], int from, int to) {
+    sort(keys, positions, from, to, 2 * (32 - Integer.numberOfLeadingZeros(to - from)));
+  }
+
+  private static void sort(long keys[], int positions[], int from, int to, int depthLimit) {
+    while (to - from > INSERTION_SORT_THRESHOLD) {
+
+      if (depthLimit-- == 0) {
+        heapSort(keys, positions, from, to);
+        return;
+      }
+
+      // Median of three as the pivot
+      final int mid = (from + to) >>> 1;
+      if (less(keys, positions, mid, from))
+        swap(keys, positions, mid, from);
+      if (less(keys, positions, to - 1, mid)) {
+        swap(keys, positions, to - 1, mid);
+        if (less(keys, positions, mid, from))
+          swap(keys, positions, mid, from);
+      }
+      final long pivotKey = keys[mid];
+      final int pivotPosition = positions[mid];
+
+      // Hoare partition, all the elements are distinct
+      int i = from, j = to - 1;
+      while (i <= j) {
+        while (compare(keys[i], positions[i], pivotKey, pivotPosition) < 0)
+          i++;
+        while (compare(keys[j], positions[j], pivotKey, pivotPosition) > 0)
+          j--;
+        if (i <= j)
+          swap(keys, positions, i++, j--);
+      }
+
+      // Recurse into the smaller part, loop on the larger one
+      if (j - from < to - i) {
+        sort(keys, positions, from, j + 1, depthLimit);
+        from = i;
+      } else {
+        sort(keys, positions, i, to, depthLimit);
+        to = j + 1;
+      }
+    }
+
+    for (int i = from + 1; i < to; i++) {
+      final long key = keys[i];
+      final int position = positions[i];
+      int j = i - 1;
+      while (j >= from && compare(keys[j], positions[j], key, position) > 0) {
+        keys[j + 1] = keys[j];
+        positions[j + 1] = positions[j];
+        j--;
+      }
+      keys[j + 1] = key;
+      positions[j + 1] = position;
+    }
+  }
+
+  private static void heapSort(long keys[], int positions[], int from, int to) {
+    final int size = to - from;
+    for (int i = size / 2 - 1; i >= 0; i--)
+      siftDown(keys, positions, from, i, size);
+    for (int end = size - 1; end > 0; end--) {
+      swap(keys, positions, from, from + end);
+      siftDown(keys, positions, from, 0, end);
+    }
+  }
+
+  private static void siftDown(long keys[], int positions[], int offset, int root, int size) {
+    while (true) {
+      int child = 2 * root + 1;
+      if (child >= size)
+        return;
+      if (child + 1 < size && less(keys, positions, offset + child, offset + child + 1))
+        child++;
+      if (!less(keys, positions, offset + root, offset + child))
+        return;
+      swap(keys, positions, offset + root, offset + child);
+      root = child;
+    }
+  }
+
+  private static int compare(long key1, int position1, long key2, int position2) {
+    if (key1 != key2)
+      return key1 < key2 ? -1 : 1;
+    return Integer.compare(position1, position2);
+  }
+
+  private static boolean less(long keys[], int positions[], int i, int j) {
+    return compare(keys[i], positions[i], keys[j], positions[j]) < 0;
+  }
 
+  private static void swap(long keys[], int positions[], int i, int j) {
+    final long key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+    final int position = positions[i];
+    positions[i] = positions[j];
+    positions[j] = position;
   }
 
 }
@@ -12,6 +12,7 @@
  */
 package io.github.msdk.util;
 
+import java.util.BitSet;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -25,6 +26,7 @@ import io.github.msdk.datamodel.featuretables.FeatureTable;
 import io.github.msdk.datamodel.featuretables.FeatureTableColumn;
 import io.github.msdk.datamodel.featuretables.FeatureTableRow;
 import io.github.msdk.datamodel.featuretables.Sample;
+import io.github.msdk.datamodel.impl.ColumnarFeatureTable;
 import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
 import io.github.msdk.datamodel.impl.converter.CopyConverter;
 import io.github.msdk.datamodel.impl.converter.IonAnnotationConverter;
@@ -41,7 +43,8 @@ import io.github.msdk.datamodel.ionannotations.IonAnnotation;
 public class FeatureTableUtil {
 
   /**
-   * Re-calculates the average m/z and RT values for a feature table
+   * Re-calculates the average m/z and RT values for a feature table. The sample m/z and RT values
+   * of a {@link ColumnarFeatureTable} are read as primitive arrays, one column at a time.
    *
    * @param featureTable the {@link io.github.msdk.datamodel.featuretables.FeatureTable} to apply
    *        the recalculation on.
@@ -66,32 +69,82 @@ public class FeatureTableUtil {
       featureTable.addColumn(column);
     }
 
+    // The sample columns of a columnar table are summed for all its rows at once
+    List<Sample> samples = featureTable.getSamples();
+    ColumnarFeatureTable columnarTable = null;
+    double columnarTotalMz[] = null;
+    float columnarTotalRt[] = null;
+    int columnarMzCount[] = null, columnarRtCount[] = null;
+    if (featureTable instanceof ColumnarFeatureTable) {
+      columnarTable = (ColumnarFeatureTable) featureTable;
+      BitSet present = new BitSet();
+      for (Sample sample : samples) {
+        FeatureTableColumn<Double> mzColumn = featureTable.getColumn(ColumnName.MZ, sample);
+        if (mzColumn != null) {
+          double mzValues[] = columnarTable.getDoubleValues(mzColumn, present);
+          if (columnarTotalMz == null) {
+            columnarTotalMz = new double[mzValues.length];
+            columnarMzCount = new int[mzValues.length];
+          }
+          for (int i = present.nextSetBit(0); i >= 0 && i < columnarTotalMz.length;
+              i = present.nextSetBit(i + 1)) {
+            columnarTotalMz[i] += mzValues[i];
+            columnarMzCount[i]++;
+          }
+        }
+
+        FeatureTableColumn<Float> rtColumn = featureTable.getColumn(ColumnName.RT, sample);
+        if (rtColumn != null) {
+          float rtValues[] = columnarTable.getFloatValues(rtColumn, present);
+          if (columnarTotalRt == null) {
+            columnarTotalRt = new float[rtValues.length];
+            columnarRtCount = new int[rtValues.length];
+          }
+          for (int i = present.nextSetBit(0); i >= 0 && i < columnarTotalRt.length;
+              i = present.nextSetBit(i + 1)) {
+            columnarTotalRt[i] += rtValues[i];
+            columnarRtCount[i]++;
+          }
+        }
+      }
+    }
+
     for (FeatureTableRow row : rows) {
-      List<Sample> samples = featureTable.getSamples();
 
       totalMz = 0;
       totalRt = 0;
       mzCount = 0;
       rtCount = 0;
-      for (Sample sample : samples) {
-        FeatureTableColumn<Double> mzColumn = featureTable.getColumn(ColumnName.MZ, sample);
-        if (mzColumn != null) {
-          mz = row.getData(mzColumn);
-          if (mz != null) {
-            totalMz += mz;
-            mzCount++;
-          }
+      final int ordinal = columnarTable == null ? -1 : columnarTable.getOrdinal(row);
+      if (ordinal >= 0) {
+        if (columnarTotalMz != null && ordinal < columnarTotalMz.length) {
+          totalMz = columnarTotalMz[ordinal];
+          mzCount = columnarMzCount[ordinal];
         }
+        if (columnarTotalRt != null && ordinal < columnarTotalRt.length) {
+          totalRt = columnarTotalRt[ordinal];
+          rtCount = columnarRtCount[ordinal];
+        }
+      } else {
+        for (Sample sample : samples) {
+          FeatureTableColumn<Double> mzColumn = featureTable.getColumn(ColumnName.MZ, sample);
+          if (mzColumn != null) {
+            mz = row.getData(mzColumn);
+            if (mz != null) {
+              totalMz += mz;
+              mzCount++;
+            }
+          }
 
-        FeatureTableColumn<Float> rtColumn =
-            featureTable.getColumn(ColumnName.RT, sample);
-        if (rtColumn != null) {
+          FeatureTableColumn<Float> rtColumn = featureTable.getColumn(ColumnName.RT, sample);
+          if (rtColumn != null) {
             rt = row.getData(rtColumn);
             if (rt != null) {
               totalRt += rt;
               rtCount++;
             }
           }
+        }
       }
 
       // Update m/z
@@ -17,6 +17,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 
 import io.github.msdk.datamodel.msspectra.MsSpectrum;
@@ -26,6 +27,13 @@ import io.github.msdk.datamodel.msspectra.MsSpectrum;
  * MsSpectrumUtil class.
  * </p>
  *
+ * <p>
+ * The methods taking an m/z range expect the m/z values to be sorted in ascending order, as
+ * guaranteed by {@link io.github.msdk.datamodel.impl.AbstractSpectrum#setDataPoints}. They locate
+ * the range by binary search, so their cost depends on the number of data points within the range,
+ * not on the size of the spectrum.
+ * </p>
+ *
  * @author plusik
  * @version $Id: $Id
  */
@@ -95,10 +103,10 @@ public class MsSpectrumUtil {
     Preconditions.checkPositionIndex(size, intensityValues.length);
     Preconditions.checkNotNull(mzRange);
 
+    final int end = getMzRangeEnd(mzValues, size, mzRange);
     float tic = 0f;
-    for (int i = 0; i < size; i++) {
-      if (mzRange.contains(mzValues[i]))
-        tic += intensityValues[i];
+    for (int i = getMzRangeStart(mzValues, size, mzRange); i < end; i++) {
+      tic += intensityValues[i];
     }
     return tic;
   }
@@ -194,15 +202,256 @@ public class MsSpectrumUtil {
     Preconditions.checkPositionIndex(size, intensityValues.length);
     Preconditions.checkNotNull(mzRange);
 
-    Integer topIndex = null;
-    for (int i = 0; i < size; i++) {
-      if ((topIndex == null || intensityValues[i] > intensityValues[topIndex])
-          && mzRange.contains(mzValues[i]))
+    final int topIndex = getBasePeakIndex(intensityValues, getMzRangeStart(mzValues, size, mzRange),
+        getMzRangeEnd(mzValues, size, mzRange));
+    return topIndex < 0 ? null : topIndex;
+  }
+
+  /**
+   * Returns the index of the first data point within the given m/z range, or the index where such
+   * a data point would be inserted if there is none. The m/z values must be sorted in ascending
+   * order. Together with {@link #getMzRangeEnd(double[], int, Range)}, this defines the slice of
+   * the data point arrays which is within the m/z range, without copying them.
+   *
+   * @param mzValues an array of double, sorted in ascending order.
+   * @param size number of data points.
+   * @param mzRange a {@link com.google.common.collect.Range} object.
+   * @return index of the first data point within the range.
+   */
+  public static int getMzRangeStart(@Nonnull double mzValues[], int size,
+      @Nonnull Range<Double> mzRange) {
+
+    // Parameter check
+    Preconditions.checkNotNull(mzValues);
+    Preconditions.checkPositionIndex(size, mzValues.length);
+    Preconditions.checkNotNull(mzRange);
+
+    if (!mzRange.hasLowerBound())
+      return 0;
+    final double lowerMz = mzRange.lowerEndpoint();
+    return mzRange.lowerBoundType() == BoundType.CLOSED ? lowerBound(mzValues, 0, size, lowerMz)
+        : upperBound(mzValues, 0, size, lowerMz);
+  }
+
+  /**
+   * Returns the index after the last data point within the given m/z range. The m/z values must be
+   * sorted in ascending order. If no data point is within the range, the returned index is equal
+   * to the one returned by {@link #getMzRangeStart(double[], int, Range)}.
+   *
+   * @param mzValues an array of double, sorted in ascending order.
+   * @param size number of data points.
+   * @param mzRange a {@link com.google.common.collect.Range} object.
+   * @return index after the last data point within the range.
+   */
+  public static int getMzRangeEnd(@Nonnull double mzValues[], int size,
+      @Nonnull Range<Double> mzRange) {
+
+    // Parameter check
+    Preconditions.checkNotNull(mzValues);
+    Preconditions.checkPositionIndex(size, mzValues.length);
+    Preconditions.checkNotNull(mzRange);
+
+    if (!mzRange.hasUpperBound())
+      return size;
+    final double upperMz = mzRange.upperEndpoint();
+    final int end = mzRange.upperBoundType() == BoundType.CLOSED
+        ? upperBound(mzValues, 0, size, upperMz) : lowerBound(mzValues, 0, size, upperMz);
+    // Empty ranges such as (a..a] must not end before they start
+    return Math.max(end, getMzRangeStart(mzValues, size, mzRange));
+  }
+
+  /**
+   * Returns the sum of the intensity values within the closed m/z range [lowerMz, upperMz]. The m/z
+   * values must be sorted in ascending order.
+   *
+   * @param mzValues an array of double, sorted in ascending order.
+   * @param intensityValues an array of float.
+   * @param size number of data points.
+   * @param lowerMz lower end of the m/z range.
+   * @param upperMz upper end of the m/z range.
+   * @return sum of the intensities, 0 if there are no data points within the range.
+   */
+  public static float getTIC(@Nonnull double mzValues[], @Nonnull float intensityValues[],
+      int size, double lowerMz, double upperMz) {
+
+    // Parameter check
+    Preconditions.checkNotNull(mzValues);
+    Preconditions.checkNotNull(intensityValues);
+    Preconditions.checkPositionIndex(size, mzValues.length);
+    Preconditions.checkPositionIndex(size, intensityValues.length);
+
+    final int end = upperBound(mzValues, 0, size, upperMz);
+    float tic = 0f;
+    for (int i = lowerBound(mzValues, 0, size, lowerMz); i < end; i++) {
+      tic += intensityValues[i];
+    }
+    return tic;
+  }
+
+  /**
+   * Returns the index of the highest intensity value within the closed m/z range [lowerMz,
+   * upperMz]. The m/z values must be sorted in ascending order. If several data points have the
+   * highest intensity, the first one is returned.
+   *
+   * @param mzValues an array of double, sorted in ascending order.
+   * @param intensityValues an array of float.
+   * @param size number of data points.
+   * @param lowerMz lower end of the m/z range.
+   * @param upperMz upper end of the m/z range.
+   * @return index of the base peak, or -1 if there are no data points within the range.
+   */
+  public static int getBasePeakIndex(@Nonnull double mzValues[], @Nonnull float intensityValues[],
+      int size, double lowerMz, double upperMz) {
+
+    // Parameter check
+    Preconditions.checkNotNull(mzValues);
+    Preconditions.checkNotNull(intensityValues);
+    Preconditions.checkPositionIndex(size, mzValues.length);
+    Preconditions.checkPositionIndex(size, intensityValues.length);
+
+    return getBasePeakIndex(intensityValues, lowerBound(mzValues, 0, size, lowerMz),
+        upperBound(mzValues, 0, size, upperMz));
+  }
+
+  /**
+   * Finds the base peak within each of the closed m/z windows [lowerMz[i], upperMz[i]], for
+   * example the target ions of an extracted ion chromatogram. The m/z values must be sorted in
+   * ascending order. The windows may be given in any order and may overlap, but windows sorted by
+   * their lower end are searched faster, as each search then continues from the previous window.
+   *
+   * @param mzValues an array of double, sorted in ascending order.
+   * @param intensityValues an array of float.
+   * @param size number of data points.
+   * @param lowerMz lower ends of the m/z windows.
+   * @param upperMz upper ends of the m/z windows.
+   * @param numOfWindows number of m/z windows.
+   * @param basePeakIndices array which receives the index of the base peak of each window, or -1
+   *        for windows without data points.
+   */
+  public static void getBasePeakIndices(@Nonnull double mzValues[],
+      @Nonnull float intensityValues[], int size, @Nonnull double lowerMz[],
+      @Nonnull double upperMz[], int numOfWindows, @Nonnull int basePeakIndices[]) {
+
+    // Parameter check
+    Preconditions.checkNotNull(mzValues);
+    Preconditions.checkNotNull(intensityValues);
+    Preconditions.checkNotNull(lowerMz);
+    Preconditions.checkNotNull(upperMz);
+    Preconditions.checkNotNull(basePeakIndices);
+    Preconditions.checkPositionIndex(size, mzValues.length);
+    Preconditions.checkPositionIndex(size, intensityValues.length);
+    Preconditions.checkPositionIndex(numOfWindows, lowerMz.length);
+    Preconditions.checkPositionIndex(numOfWindows, upperMz.length);
+    Preconditions.checkPositionIndex(numOfWindows, basePeakIndices.length);
+
+    int start = 0;
+    for (int w = 0; w < numOfWindows; w++) {
+      start = nextWindowStart(mzValues, size, lowerMz, w, start);
+      basePeakIndices[w] =
+          getBasePeakIndex(intensityValues, start, upperBound(mzValues, start, size, upperMz[w]));
+    }
+  }
+
+  /**
+   * Calculates the sum of the intensity values within each of the closed m/z windows [lowerMz[i],
+   * upperMz[i]]. The m/z values must be sorted in ascending order. The windows may be given in any
+   * order and may overlap, but windows sorted by their lower end are searched faster.
+   *
+   * @param mzValues an array of double, sorted in ascending order.
+   * @param intensityValues an array of float.
+   * @param size number of data points.
+   * @param lowerMz lower ends of the m/z windows.
+   * @param upperMz upper ends of the m/z windows.
+   * @param numOfWindows number of m/z windows.
+   * @param tics array which receives the sum of the intensities of each window.
+   */
+  public static void getTICs(@Nonnull double mzValues[], @Nonnull float intensityValues[],
+      int size, @Nonnull double lowerMz[], @Nonnull double upperMz[], int numOfWindows,
+      @Nonnull float tics[]) {
+
+    // Parameter check
+    Preconditions.checkNotNull(mzValues);
+    Preconditions.checkNotNull(intensityValues);
+    Preconditions.checkNotNull(lowerMz);
+    Preconditions.checkNotNull(upperMz);
+    Preconditions.checkNotNull(tics);
+    Preconditions.checkPositionIndex(size, mzValues.length);
+    Preconditions.checkPositionIndex(size, intensityValues.length);
+    Preconditions.checkPositionIndex(numOfWindows, lowerMz.length);
+    Preconditions.checkPositionIndex(numOfWindows, upperMz.length);
+    Preconditions.checkPositionIndex(numOfWindows, tics.length);
+
+    int start = 0;
+    for (int w = 0; w < numOfWindows; w++) {
+      start = nextWindowStart(mzValues, size, lowerMz, w, start);
+      final int end = upperBound(mzValues, start, size, upperMz[w]);
+      float tic = 0f;
+      for (int i = start; i < end; i++)
+        tic += intensityValues[i];
+      tics[w] = tic;
+    }
+  }
+
+  /**
+   * Returns the first data point of window w. If the windows are sorted by their lower end, the
+   * search starts at the first data point of the previous window.
+   */
+  private static int nextWindowStart(double mzValues[], int size, double lowerMz[], int w,
+      int previousStart) {
+    final int from = (w > 0 && lowerMz[w] >= lowerMz[w - 1]) ? previousStart : 0;
+    return lowerBound(mzValues, from, size, lowerMz[w]);
+  }
+
+  /**
+   * Returns the index of the first highest intensity value between from (inclusive) and to
+   * (exclusive), or -1 if the slice is empty.
+   */
+  private static int getBasePeakIndex(float intensityValues[], int from, int to) {
+    if (from >= to)
+      return -1;
+    int topIndex = from;
+    float topIntensity = intensityValues[from];
+    for (int i = from + 1; i < to; i++) {
+      if (intensityValues[i] > topIntensity) {
         topIndex = i;
+        topIntensity = intensityValues[i];
+      }
     }
     return topIndex;
   }
 
+  /**
+   * Returns the index of the first m/z value between from and to which is not lower than mz, or to
+   * if there is none.
+   */
+  private static int lowerBound(double mzValues[], int from, int to, double mz) {
+    int low = from, high = to;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzValues[mid] < mz)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first m/z value between from and to which is higher than mz, or to if
+   * there is none.
+   */
+  private static int upperBound(double mzValues[], int from, int to, double mz) {
+    int low = from, high = to;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzValues[mid] <= mz)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
   /**
    * <p>
    * normalizeIntensity.
@@ -0,0 +1,201 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.datapointstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+
+/**
+ * Tests for MappedFileDataStore
+ */
+public class MappedFileDataStoreTest {
+
+  @Test
+  public void testStoreReadDataPoints() {
+
+    DataPointStore store = DataPointStoreFactory.getMappedFileDataStore();
+
+    int count = 1000;
+    final double mzValues[] = new double[count];
+    final float intensityValues[] = new float[count];
+    for (int i = 0; i < count; i++) {
+      mzValues[i] = (double) count / (double) (count - i);
+      intensityValues[i] = (float) mzValues[i] * 2;
+    }
+
+    Object storageId = store.storeData(mzValues, count);
+    Object storageId2 = store.storeData(intensityValues, count);
+
+    double readMzValues[] = new double[count * 2];
+    float readIntensityValues[] = new float[count * 2];
+
+    // Retrieve
+    store.loadData(storageId2, readIntensityValues);
+    store.loadData(storageId, readMzValues);
+
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(mzValues[i], readMzValues[i], 0.000001);
+      Assert.assertEquals(intensityValues[i], readIntensityValues[i], 0.00001f);
+    }
+
+    store.dispose();
+  }
+
+  @Test
+  public void testSlotReuse() {
+
+    DataPointStore store = DataPointStoreFactory.getMappedFileDataStore();
+
+    int count = 500;
+    final double values[] = new double[count];
+    for (int i = 0; i < count; i++)
+      values[i] = i;
+
+    Object storageId = store.storeData(values, count);
+    Object storageId2 = store.storeData(values, count);
+    store.removeData(storageId);
+
+    // The new data go into the released slot and must not affect the other one
+    for (int i = 0; i < count; i++)
+      values[i] = -i;
+    Object storageId3 = store.storeData(values, count);
+
+    double readValues[] = new double[count];
+    store.loadData(storageId2, readValues);
+    for (int i = 0; i < count; i++)
+      Assert.assertEquals(i, readValues[i], 0.0);
+
+    store.loadData(storageId3, readValues);
+    for (int i = 0; i < count; i++)
+      Assert.assertEquals(-i, readValues[i], 0.0);
+
+    store.dispose();
+  }
+
+  @Test
+  public void testConcurrentAccessWithCompaction() throws Exception {
+
+    final DataPointStore store = DataPointStoreFactory.getMappedFileDataStore(true);
+
+    final int numOfThreads = 4;
+    final int numOfArrays = 300;
+    final int count = 2000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < numOfThreads; t++) {
+      final int threadIndex = t;
+      futures.add(executor.submit(() -> {
+        final double values[] = new double[count];
+        final double readValues[] = new double[count];
+        final Object ids[] = new Object[numOfArrays];
+        for (int round = 0; round < 3; round++) {
+          for (int a = 0; a < numOfArrays; a++) {
+            for (int i = 0; i < count; i++)
+              values[i] = threadIndex * 1e6 + a * 1e3 + i;
+            ids[a] = store.storeData(values, count);
+          }
+          // Release most of the data, so the compaction is triggered
+          for (int a = 0; a < numOfArrays; a++) {
+            if (a % 4 != 0)
+              store.removeData(ids[a]);
+          }
+          for (int a = 0; a < numOfArrays; a += 4) {
+            store.loadData(ids[a], readValues);
+            for (int i = 0; i < count; i++)
+              Assert.assertEquals(threadIndex * 1e6 + a * 1e3 + i, readValues[i], 0.0);
+            store.removeData(ids[a]);
+          }
+        }
+        return null;
+      }));
+    }
+
+    for (Future<?> future : futures)
+      future.get();
+    executor.shutdown();
+
+    store.dispose();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSizeOverflow() {
+
+    DataPointStore store = DataPointStoreFactory.getMappedFileDataStore();
+    try {
+      // Integer.MAX_VALUE doubles do not fit in an int number of bytes
+      store.storeData(new double[1], Integer.MAX_VALUE);
+    } finally {
+      store.dispose();
+    }
+
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testArrayTooSmall() {
+
+    DataPointStore store = DataPointStoreFactory.getMappedFileDataStore();
+    try {
+      store.storeData(new float[10], 11);
+    } finally {
+      store.dispose();
+    }
+
+  }
+
+  @SuppressWarnings("unused")
+  @Test(expected = IllegalArgumentException.class)
+  public void testRemoveDataPoints() {
+
+    DataPointStore store = DataPointStoreFactory.getMappedFileDataStore();
+
+    int count = 1000;
+    final double mzValues[] = new double[count];
+    final float intensityValues[] = new float[count];
+
+    Object storageId = store.storeData(mzValues, count);
+    Object storageId2 = store.storeData(intensityValues, count);
+
+    store.removeData(storageId);
+
+    store.loadData(storageId, mzValues);
+
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDispose() {
+
+    DataPointStore store = DataPointStoreFactory.getMappedFileDataStore();
+
+    int count = 1000;
+    final double mzValues[] = new double[count];
+
+    Object storageId = store.storeData(mzValues, count);
+
+    store.dispose();
+
+    store.loadData(storageId, mzValues);
+
+  }
+
+}
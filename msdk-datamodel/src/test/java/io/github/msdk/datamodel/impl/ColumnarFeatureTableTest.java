@@ -0,0 +1,234 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+import io.github.msdk.datamodel.featuretables.ColumnName;
+import io.github.msdk.datamodel.featuretables.FeatureTable;
+import io.github.msdk.datamodel.featuretables.FeatureTableColumn;
+import io.github.msdk.datamodel.featuretables.FeatureTableRow;
+import io.github.msdk.datamodel.featuretables.Sample;
+import io.github.msdk.util.FeatureTableUtil;
+
+public class ColumnarFeatureTableTest {
+
+  @Test
+  public void testSameDataAsSimpleFeatureTable() {
+
+    final Random random = new Random(15);
+    FeatureTable simpleTable =
+        MSDKObjectBuilder.getFeatureTable("simple", DataPointStoreFactory.getMemoryDataStore());
+    FeatureTable columnarTable = MSDKObjectBuilder.getColumnarFeatureTable("columnar",
+        DataPointStoreFactory.getMemoryDataStore());
+    Sample samples[] = {new SimpleSample("Sample 1"), new SimpleSample("Sample 2")};
+    for (FeatureTable table : Arrays.asList(simpleTable, columnarTable)) {
+      table.addColumn(MSDKObjectBuilder.getIdFeatureTableColumn());
+      table.addColumn(MSDKObjectBuilder.getMzFeatureTableColumn());
+      table.addColumn(MSDKObjectBuilder.getRetentionTimeFeatureTableColumn());
+      table.addColumn(MSDKObjectBuilder.getIonAnnotationFeatureTableColumn());
+      for (Sample sample : samples) {
+        table.addColumn(MSDKObjectBuilder.getFeatureTableColumn(ColumnName.MZ, sample));
+        table.addColumn(MSDKObjectBuilder.getFeatureTableColumn(ColumnName.RT, sample));
+        table.addColumn(MSDKObjectBuilder.getFeatureTableColumn(ColumnName.AREA, sample));
+        table.addColumn(MSDKObjectBuilder.getFeatureTableColumn(ColumnName.CHARGE, sample));
+      }
+    }
+
+    // Some values are missing, the rows are added before or after
+    // their data are set
+    for (int i = 0; i < 500; i++) {
+      final boolean addFirst = i % 2 == 0;
+      final long seed = random.nextLong();
+      final List<SimpleIonAnnotation> ionAnnotations = Arrays.asList(new SimpleIonAnnotation());
+      for (FeatureTable table : Arrays.asList(simpleTable, columnarTable)) {
+        final Random rowRandom = new Random(seed);
+        FeatureTableRow row = MSDKObjectBuilder.getFeatureTableRow(table, i);
+        if (addFirst)
+          table.addRow(row);
+        row.setData(table.getColumn(ColumnName.ID, null), i);
+        if (rowRandom.nextBoolean())
+          row.setData(table.getColumn(ColumnName.IONANNOTATION, null), ionAnnotations);
+        for (Sample sample : samples) {
+          if (rowRandom.nextInt(4) == 0)
+            continue;
+          row.setData(table.getColumn(ColumnName.MZ, sample), 100.0 + rowRandom.nextDouble());
+          row.setData(table.getColumn(ColumnName.RT, sample), rowRandom.nextFloat() * 20f);
+          row.setData(table.getColumn(ColumnName.AREA, sample), rowRandom.nextDouble() * 1e6);
+          row.setData(table.getColumn(ColumnName.CHARGE, sample), rowRandom.nextInt(3));
+        }
+        if (!addFirst)
+          table.addRow(row);
+      }
+    }
+    FeatureTableUtil.recalculateAverages(simpleTable);
+    FeatureTableUtil.recalculateAverages(columnarTable);
+    assertSameData(simpleTable, columnarTable);
+    Assert.assertTrue(columnarTable.getRows().get(0) instanceof ColumnarFeatureTableRow);
+
+    // Removed rows
+    for (FeatureTable table : Arrays.asList(simpleTable, columnarTable)) {
+      List<FeatureTableRow> rows = table.getRows();
+      for (int i = 0; i < rows.size(); i += 5)
+        table.removeRow(rows.get(i));
+    }
+    assertSameData(simpleTable, columnarTable);
+  }
+
+  @Test
+  public void testGetRowsInsideRange() {
+
+    FeatureTable table = MSDKObjectBuilder.getColumnarFeatureTable("test",
+        DataPointStoreFactory.getMemoryDataStore());
+    FeatureTableColumn<Double> mzColumn = MSDKObjectBuilder.getMzFeatureTableColumn();
+    FeatureTableColumn<Float> rtColumn = MSDKObjectBuilder.getRetentionTimeFeatureTableColumn();
+    table.addColumn(mzColumn);
+    table.addColumn(rtColumn);
+
+    FeatureTableRow row1 = MSDKObjectBuilder.getFeatureTableRow(table, 1);
+    row1.setData(mzColumn, 300.0);
+    row1.setData(rtColumn, 5f);
+    table.addRow(row1);
+
+    // Rows of other implementations keep their own data
+    FeatureTableRow row2 = new SimpleFeatureTableRow(table, 2);
+    row2.setData(mzColumn, 300.1);
+    row2.setData(rtColumn, 5f);
+    table.addRow(row2);
+
+    Range<Float> rtRange = Range.closed(4f, 6f);
+    Assert.assertEquals(Arrays.asList(row1, row2),
+        table.getRowsInsideRange(rtRange, Range.closed(299.0, 301.0)));
+
+    // Changes of the m/z values are reflected by the queries
+    row1.setData(mzColumn, 500.0);
+    Assert.assertEquals(Arrays.asList(row2),
+        table.getRowsInsideRange(rtRange, Range.closed(299.0, 301.0)));
+    Assert.assertEquals(Arrays.asList(row1),
+        table.getRowsInsideRange(rtRange, Range.closed(499.0, 501.0)));
+    Assert.assertEquals(500.0, row1.getMz(), 0.0);
+    Assert.assertEquals(5f, row1.getRT(), 0.0);
+  }
+
+  @Test
+  public void testRemoveColumn() {
+
+    FeatureTable table = MSDKObjectBuilder.getColumnarFeatureTable("test",
+        DataPointStoreFactory.getMemoryDataStore());
+    Sample sample = new SimpleSample("Sample 1");
+    FeatureTableColumn<Double> mzColumn = MSDKObjectBuilder.getMzFeatureTableColumn();
+    FeatureTableColumn<Double> areaColumn =
+        MSDKObjectBuilder.getFeatureTableColumn(ColumnName.AREA, sample);
+    table.addColumn(mzColumn);
+    table.addColumn(areaColumn);
+
+    FeatureTableRow row = MSDKObjectBuilder.getFeatureTableRow(table, 1);
+    row.setData(mzColumn, 300.0);
+    row.setData(areaColumn, 1000.0);
+    table.addRow(row);
+
+    // The same column instance is added again after its removal
+    table.removeColumn(mzColumn);
+    table.addColumn(mzColumn);
+    Assert.assertNull(row.getData(mzColumn));
+    Assert.assertNull(row.getMz());
+
+    // A new column with the same name
+    table.removeColumn(areaColumn);
+    FeatureTableColumn<Double> newAreaColumn =
+        MSDKObjectBuilder.getFeatureTableColumn(ColumnName.AREA, sample);
+    table.addColumn(newAreaColumn);
+    Assert.assertNull(row.getData(newAreaColumn));
+    Assert.assertNull(row.getData(table.getColumn(ColumnName.AREA, sample)));
+
+    row.setData(newAreaColumn, 2000.0);
+    Assert.assertEquals(2000.0, row.getData(newAreaColumn), 0.0);
+  }
+
+  @Test
+  public void testGetValues() {
+
+    ColumnarFeatureTable table = (ColumnarFeatureTable) MSDKObjectBuilder
+        .getColumnarFeatureTable("test", DataPointStoreFactory.getMemoryDataStore());
+    FeatureTableColumn<Double> mzColumn = MSDKObjectBuilder.getMzFeatureTableColumn();
+    FeatureTableColumn<Float> rtColumn = MSDKObjectBuilder.getRetentionTimeFeatureTableColumn();
+    table.addColumn(mzColumn);
+    table.addColumn(rtColumn);
+
+    // More rows than the initial capacity, every third one without an m/z value
+    for (int i = 0; i < 100; i++) {
+      FeatureTableRow row = MSDKObjectBuilder.getFeatureTableRow(table, i);
+      if (i % 3 != 0)
+        row.setData(mzColumn, 100.0 + i);
+      row.setData(rtColumn, (float) i);
+      table.addRow(row);
+    }
+    FeatureTableRow otherRow = new SimpleFeatureTableRow(table, 100);
+    otherRow.setData(mzColumn, 500.0);
+    table.addRow(otherRow);
+    Assert.assertEquals(-1, table.getOrdinal(otherRow));
+
+    BitSet present = new BitSet();
+    double mzValues[] = table.getDoubleValues(mzColumn, present);
+    for (FeatureTableRow row : table.getRows()) {
+      int ordinal = table.getOrdinal(row);
+      if (ordinal < 0)
+        continue;
+      Assert.assertEquals(row.getMz() != null, present.get(ordinal));
+      if (row.getMz() != null)
+        Assert.assertEquals(row.getMz(), mzValues[ordinal], 0.0);
+    }
+    Assert.assertEquals(66, present.cardinality());
+
+    float rtValues[] = table.getFloatValues(rtColumn, present);
+    Assert.assertEquals(100, present.cardinality());
+    Assert.assertEquals(42f, rtValues[table.getOrdinal(table.getRows().get(42))], 0f);
+
+    // The copies are not changed by later updates
+    table.getRows().get(1).setData(mzColumn, 1.0);
+    Assert.assertEquals(101.0, mzValues[1], 0.0);
+
+    // Columns without values
+    FeatureTableColumn<Double> ppmColumn = MSDKObjectBuilder.getPpmFeatureTableColumn();
+    Assert.assertEquals(100, table.getDoubleValues(ppmColumn, present).length);
+    Assert.assertTrue(present.isEmpty());
+  }
+
+  private static void assertSameData(FeatureTable expectedTable, FeatureTable actualTable) {
+    List<FeatureTableRow> expectedRows = expectedTable.getRows();
+    List<FeatureTableRow> actualRows = actualTable.getRows();
+    Assert.assertEquals(expectedRows.size(), actualRows.size());
+    List<FeatureTableColumn<?>> expectedColumns = expectedTable.getColumns();
+    List<FeatureTableColumn<?>> actualColumns = actualTable.getColumns();
+    Assert.assertEquals(expectedColumns.size(), actualColumns.size());
+    for (int r = 0; r < expectedRows.size(); r++) {
+      Assert.assertEquals(expectedRows.get(r).getId(), actualRows.get(r).getId());
+      for (int c = 0; c < expectedColumns.size(); c++) {
+        Object expected = expectedRows.get(r).getData(expectedColumns.get(c));
+        Object actual = actualRows.get(r).getData(actualColumns.get(c));
+        Assert.assertEquals(expected, actual);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+import io.github.msdk.datamodel.featuretables.ColumnName;
+import io.github.msdk.datamodel.featuretables.FeatureTable;
+import io.github.msdk.datamodel.featuretables.FeatureTableColumn;
+import io.github.msdk.datamodel.featuretables.FeatureTableRow;
+import io.github.msdk.datamodel.featuretables.Sample;
+
+public class SimpleFeatureTableTest {
+
+  @Test
+  public void testGetRowsInsideRange() {
+
+    final Random random = new Random(11);
+    FeatureTable table =
+        MSDKObjectBuilder.getFeatureTable("test", DataPointStoreFactory.getMemoryDataStore());
+    table.addColumn(MSDKObjectBuilder.getMzFeatureTableColumn());
+    table.addColumn(MSDKObjectBuilder.getRetentionTimeFeatureTableColumn());
+
+    for (int i = 0; i < 3000; i++) {
+      FeatureTableRow row = MSDKObjectBuilder.getFeatureTableRow(table, i);
+      // Some rows share the m/z value, some have no m/z value yet
+      if (i % 10 != 0)
+        row.setData(MSDKObjectBuilder.getMzFeatureTableColumn(),
+            100.0 + random.nextInt(5000) * 0.1);
+      row.setData(MSDKObjectBuilder.getRetentionTimeFeatureTableColumn(),
+          random.nextFloat() * 20f);
+      table.addRow(row);
+    }
+    assertSameAsLinearSearch(table, random);
+
+    // Changes of the m/z values and removed rows are reflected by the queries
+    List<FeatureTableRow> rows = table.getRows();
+    for (int i = 0; i < rows.size(); i += 3) {
+      rows.get(i).setData(MSDKObjectBuilder.getMzFeatureTableColumn(),
+          100.0 + random.nextInt(5000) * 0.1);
+    }
+    for (int i = 1; i < rows.size(); i += 7)
+      table.removeRow(rows.get(i));
+    assertSameAsLinearSearch(table, random);
+  }
+
+  @Test
+  public void testSnapshotsAndColumnLookup() {
+
+    FeatureTable table =
+        MSDKObjectBuilder.getFeatureTable("test", DataPointStoreFactory.getMemoryDataStore());
+    Sample sample1 = new SimpleSample("Sample 1");
+    Sample sample2 = new SimpleSample("Sample 2");
+    FeatureTableColumn<Double> mzColumn = MSDKObjectBuilder.getMzFeatureTableColumn();
+    FeatureTableColumn<Double> areaColumn1 =
+        MSDKObjectBuilder.getFeatureTableColumn(ColumnName.AREA, sample1);
+    FeatureTableColumn<Double> areaColumn2 =
+        MSDKObjectBuilder.getFeatureTableColumn(ColumnName.AREA, sample2);
+    table.addColumn(mzColumn);
+    table.addColumn(areaColumn1);
+    table.addColumn(areaColumn2);
+
+    // Unmodified tables return the same lists
+    FeatureTableRow row = MSDKObjectBuilder.getFeatureTableRow(table, 1);
+    table.addRow(row);
+    List<FeatureTableRow> rows = table.getRows();
+    Assert.assertSame(rows, table.getRows());
+    Assert.assertSame(table.getColumns(), table.getColumns());
+    Assert.assertSame(table.getSamples(), table.getSamples());
+
+    // Modifications create new lists, the old ones are not changed
+    table.addRow(MSDKObjectBuilder.getFeatureTableRow(table, 2));
+    Assert.assertEquals(1, rows.size());
+    Assert.assertEquals(2, table.getRows().size());
+    table.removeRow(row);
+    Assert.assertEquals(1, table.getRows().size());
+
+    Assert.assertEquals(Arrays.asList(sample1, sample2), table.getSamples());
+    Assert.assertSame(mzColumn, table.getColumn(ColumnName.MZ, null));
+    Assert.assertSame(areaColumn1, table.getColumn(ColumnName.AREA, sample1));
+    Assert.assertSame(areaColumn2, table.getColumn(ColumnName.AREA, sample2));
+    Assert.assertNull(table.getColumn(ColumnName.AREA, null));
+    Assert.assertNull(table.getColumn(ColumnName.RT, null));
+
+    // Renamed and removed columns
+    areaColumn2.setName("Renamed");
+    Assert.assertNull(table.getColumn(ColumnName.AREA, sample2));
+    Assert.assertSame(areaColumn2, table.getColumn("Renamed", sample2, Double.class));
+    table.removeColumn(areaColumn1);
+    Assert.assertNull(table.getColumn(ColumnName.AREA, sample1));
+    Assert.assertEquals(Arrays.asList(sample2), table.getSamples());
+  }
+
+  private static void assertSameAsLinearSearch(FeatureTable table, Random random) {
+    for (int i = 0; i < 200; i++) {
+      double mz = 100.0 + random.nextDouble() * 500.0;
+      float rt = random.nextFloat() * 20f;
+      Range<Double> mzRange = Range.closed(mz - 0.5, mz + 0.5);
+      Range<Float> rtRange = Range.closed(rt - 2f, rt + 2f);
+
+      List<FeatureTableRow> expected = new ArrayList<>();
+      for (FeatureTableRow row : table.getRows()) {
+        if (row.getMz() != null && mzRange.contains(row.getMz()) && rtRange.contains(row.getRT()))
+          expected.add(row);
+      }
+      Assert.assertEquals(expected, table.getRowsInsideRange(rtRange, mzRange));
+    }
+  }
+
+}
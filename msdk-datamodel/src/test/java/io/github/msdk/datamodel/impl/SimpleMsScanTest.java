@@ -193,6 +193,31 @@ public class SimpleMsScanTest {
 
   }
 
+  @Test
+  public void testFillBuffers() throws MSDKException {
+    SimpleMsScan scan = new SimpleMsScan(dataPointStore, 2, msFunction);
+    Assert.assertEquals(0, scan.getMzValues(new double[0]));
+
+    double mzValues[] = {100.0, 200.0, 300.0};
+    float intensityValues[] = {5f, 10f, 15f};
+    scan.setDataPoints(mzValues, intensityValues, 3);
+
+    // Larger buffers are filled up to the number of data points
+    double mzBuffer[] = new double[10];
+    float intensityBuffer[] = new float[10];
+    Assert.assertEquals(3, scan.getMzValues(mzBuffer));
+    Assert.assertEquals(3, scan.getIntensityValues(intensityBuffer));
+    Assert.assertEquals(200.0, mzBuffer[1], 0.0);
+    Assert.assertEquals(15f, intensityBuffer[2], 0.0);
+
+    try {
+      scan.getMzValues(new double[2]);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      // Expected, the buffer is too small
+    }
+  }
+
   @Test
   public void testSetRawDataFile() throws MSDKException {
     DataPointStore store = DataPointStoreFactory.getTmpFileDataStore();
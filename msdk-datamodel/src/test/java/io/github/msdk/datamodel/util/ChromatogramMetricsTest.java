@@ -0,0 +1,108 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.msdk.util.ChromatogramMetrics;
+import io.github.msdk.util.ChromatogramUtil;
+
+public class ChromatogramMetricsTest {
+
+  @Test
+  public void testSameAsChromatogramUtil() {
+
+    final Random random = new Random(23);
+    final ChromatogramMetrics metrics = new ChromatogramMetrics();
+    final float rtValues[] = new float[200], intensityValues[] = new float[200];
+
+    // Noisy, tailing Gaussian peaks, the buffers are reused and longer than the data
+    for (int n = 0; n < 200; n++) {
+      final int size = 3 + random.nextInt(rtValues.length - 3);
+      final float apex = 10f + random.nextFloat() * size * 0.1f;
+      final float width = 0.2f + random.nextFloat() * 2f;
+      for (int i = 0; i < size; i++) {
+        rtValues[i] = 10f + i * 0.1f;
+        final float sigma = rtValues[i] < apex ? width : width * 1.5f;
+        final double x = (rtValues[i] - apex) / sigma;
+        intensityValues[i] =
+            (float) (1e5 * Math.exp(-x * x / 2) + random.nextDouble() * 100.0);
+      }
+      metrics.compute(rtValues, intensityValues, size);
+      assertSame(rtValues, intensityValues, size, metrics);
+    }
+
+    // Peak dropping straight to 0 intensity
+    float dropRtValues[] = {1f, 2f, 3f, 4f, 5f, 6f};
+    float dropIntensityValues[] = {0f, 0f, 500f, 1000f, 0f, 0f};
+    metrics.compute(dropRtValues, dropIntensityValues, 6);
+    assertSame(dropRtValues, dropIntensityValues, 6, metrics);
+
+    // Single data point
+    metrics.compute(dropRtValues, dropIntensityValues, 1);
+    assertSame(dropRtValues, dropIntensityValues, 1, metrics);
+  }
+
+  @Test
+  public void testEmpty() {
+    ChromatogramMetrics metrics = new ChromatogramMetrics();
+    metrics.compute(new float[0], new float[0], 0);
+    Assert.assertEquals(0, metrics.getSize());
+    Assert.assertTrue(Float.isNaN(metrics.getRt()));
+    Assert.assertTrue(Double.isNaN(metrics.getArea()));
+    Assert.assertNull(metrics.getFwhm());
+    Assert.assertNull(metrics.getTailingFactor());
+    Assert.assertNull(metrics.getAsymmetryFactor());
+  }
+
+  @Test
+  public void testNaNFactors() {
+    ChromatogramMetrics metrics = new ChromatogramMetrics();
+
+    // With a single data point, the apex is also the start and end of the peak, so the factors
+    // are 0/0, which ChromatogramUtil returns as NaN and not as null
+    float rtValues[] = {5f}, intensityValues[] = {1000f};
+    metrics.compute(rtValues, intensityValues, 1);
+    Assert.assertEquals(Double.valueOf(Double.NaN),
+        ChromatogramUtil.getTailingFactor(rtValues, intensityValues, 1));
+    Assert.assertEquals(Double.valueOf(Double.NaN), metrics.getTailingFactor());
+    Assert.assertEquals(Double.valueOf(Double.NaN), metrics.getAsymmetryFactor());
+    Assert.assertEquals(Double.valueOf(0.0), metrics.getFwhm());
+    assertSame(rtValues, intensityValues, 1, metrics);
+  }
+
+  private static void assertSame(float rtValues[], float intensityValues[], int size,
+      ChromatogramMetrics metrics) {
+    Assert.assertEquals(size, metrics.getSize());
+    Assert.assertEquals(ChromatogramUtil.getRt(rtValues, intensityValues, size), metrics.getRt(),
+        0f);
+    Assert.assertEquals(ChromatogramUtil.getRtStart(rtValues, size), metrics.getRtStart(), 0f);
+    Assert.assertEquals(ChromatogramUtil.getRtEnd(rtValues, size), metrics.getRtEnd(), 0f);
+    Assert.assertEquals(ChromatogramUtil.getDuration(rtValues, size), metrics.getDuration(), 0f);
+    Assert.assertEquals(ChromatogramUtil.getMaxHeight(intensityValues, size),
+        metrics.getHeight(), 0f);
+    Assert.assertEquals(ChromatogramUtil.getArea(rtValues, intensityValues, size),
+        metrics.getArea(), 0.0);
+    Assert.assertEquals(ChromatogramUtil.getFwhm(rtValues, intensityValues, size),
+        metrics.getFwhm());
+    Assert.assertEquals(ChromatogramUtil.getTailingFactor(rtValues, intensityValues, size),
+        metrics.getTailingFactor());
+    Assert.assertEquals(ChromatogramUtil.getAsymmetryFactor(rtValues, intensityValues, size),
+        metrics.getAsymmetryFactor());
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.util;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.github.msdk.util.DataPointSorter;
+import io.github.msdk.util.DataPointSorter.SortingDirection;
+import io.github.msdk.util.DataPointSorter.SortingProperty;
+
+/**
+ * JMH benchmark of DataPointSorter on synthetic profile spectra of 1k to 200k data points, compared
+ * with the previous implementation (boxed index list and reflective remapping), which is only run
+ * on the smaller spectra as it is quadratic. Each invocation copies the unsorted spectrum first.
+ * Run the main() method from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataPointSorterBenchmark {
+
+  public abstract static class Spectrum {
+    double mzValues[], mzBuffer[];
+    float intensityValues[], intensityBuffer[];
+  }
+
+  @State(Scope.Thread)
+  public static class ProfileSpectrum extends Spectrum {
+
+    @Param({"1000", "10000", "50000", "200000"})
+    public int size;
+
+    @Setup
+    public void setup() {
+      createProfileSpectrum(this, size);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class SmallProfileSpectrum extends Spectrum {
+
+    @Param({"1000", "10000"})
+    public int smallSize;
+
+    @Setup
+    public void setup() {
+      createProfileSpectrum(this, smallSize);
+    }
+  }
+
+  @Benchmark
+  public double[] intensityDescending(ProfileSpectrum spectrum) {
+    copy(spectrum);
+    DataPointSorter.sortDataPoints(spectrum.mzBuffer, spectrum.intensityBuffer,
+        spectrum.mzBuffer.length, SortingProperty.INTENSITY, SortingDirection.DESCENDING);
+    return spectrum.mzBuffer;
+  }
+
+  @Benchmark
+  public double[] mzAscendingAfterIntensitySort(ProfileSpectrum spectrum) {
+    // Restoring the m/z order after picking by intensity
+    copy(spectrum);
+    DataPointSorter.sortDataPoints(spectrum.mzBuffer, spectrum.intensityBuffer,
+        spectrum.mzBuffer.length, SortingProperty.INTENSITY, SortingDirection.DESCENDING);
+    DataPointSorter.sortDataPoints(spectrum.mzBuffer, spectrum.intensityBuffer,
+        spectrum.mzBuffer.length, SortingProperty.MZ, SortingDirection.ASCENDING);
+    return spectrum.mzBuffer;
+  }
+
+  @Benchmark
+  public double[] mzAscendingSorted(ProfileSpectrum spectrum) {
+    copy(spectrum);
+    DataPointSorter.sortDataPoints(spectrum.mzBuffer, spectrum.intensityBuffer,
+        spectrum.mzBuffer.length, SortingProperty.MZ, SortingDirection.ASCENDING);
+    return spectrum.mzBuffer;
+  }
+
+  @Benchmark
+  public double[] previousIntensityDescending(SmallProfileSpectrum spectrum) {
+    copy(spectrum);
+    previousSortDataPoints(spectrum.mzBuffer, spectrum.intensityBuffer, spectrum.mzBuffer.length,
+        SortingProperty.INTENSITY, SortingDirection.DESCENDING);
+    return spectrum.mzBuffer;
+  }
+
+  private static void copy(Spectrum spectrum) {
+    System.arraycopy(spectrum.mzValues, 0, spectrum.mzBuffer, 0, spectrum.mzValues.length);
+    System.arraycopy(spectrum.intensityValues, 0, spectrum.intensityBuffer, 0,
+        spectrum.intensityValues.length);
+  }
+
+  /**
+   * Profile spectrum with equidistant m/z values and Gaussian peaks over a noisy baseline, with a
+   * run of zero intensities at the start, as written by many instruments.
+   */
+  private static void createProfileSpectrum(Spectrum spectrum, int size) {
+    final Random random = new Random(size);
+    spectrum.mzValues = new double[size];
+    spectrum.intensityValues = new float[size];
+    spectrum.mzBuffer = new double[size];
+    spectrum.intensityBuffer = new float[size];
+
+    final double mzStep = 1500.0 / size;
+    double peakCenter = 0, peakWidth = 1, peakHeight = 0;
+    for (int i = 0; i < size; i++) {
+      double mz = 100.0 + i * mzStep;
+      if (mz > peakCenter + 5 * peakWidth) {
+        peakWidth = mzStep * (3 + random.nextInt(10));
+        peakCenter = mz + peakWidth * (5 + random.nextInt(50));
+        peakHeight = Math.pow(10, 3 + 4 * random.nextDouble());
+      }
+      double distance = (mz - peakCenter) / peakWidth;
+      float intensity = (float) (peakHeight * Math.exp(-distance * distance / 2));
+      if (i < size / 20)
+        intensity = 0f;
+      else
+        intensity += random.nextInt(100);
+      spectrum.mzValues[i] = mz;
+      spectrum.intensityValues[i] = intensity;
+    }
+  }
+
+  /**
+   * The previous implementation of DataPointSorter.sortDataPoints.
+   */
+  private static void previousSortDataPoints(final double mzBuffer[],
+      final float intensityBuffer[], final int size, SortingProperty prop, SortingDirection dir) {
+    final List<Integer> idx = new ArrayList<>(size);
+    for (int i = 0; i < size; i++)
+      idx.add(i);
+    Collections.sort(idx, (i1, i2) -> {
+      int c = (prop == SortingProperty.MZ) ? Double.compare(mzBuffer[i1], mzBuffer[i2])
+          : Float.compare(intensityBuffer[i1], intensityBuffer[i2]);
+      return dir == SortingDirection.ASCENDING ? c : -c;
+    });
+    previousRemapArray(mzBuffer, idx);
+    previousRemapArray(intensityBuffer, idx);
+  }
+
+  private static void previousRemapArray(Object array, List<Integer> indices) {
+    List<Integer> idx = new ArrayList<>(indices);
+    for (int i = 0; i < idx.size(); i++) {
+      final int newIndex = idx.get(i);
+      if (newIndex == i)
+        continue;
+      Object tmp = Array.get(array, i);
+      Array.set(array, i, Array.get(array, newIndex));
+      final int swapIndex = idx.indexOf(i);
+      Array.set(array, newIndex, tmp);
+      idx.set(swapIndex, newIndex);
+      idx.set(i, i);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder().include(DataPointSorterBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+
+}
@@ -13,6 +13,12 @@
 
 package io.github.msdk.datamodel.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -73,4 +79,75 @@ public class DataPointSorterTest {
     }
   }
 
+  @Test
+  public void testSameOrderAsStableSort() {
+    Random random = new Random(3);
+    for (int size : new int[] {0, 1, 2, 10, 100, 5000}) {
+      for (SortingProperty prop : SortingProperty.values()) {
+        for (SortingDirection dir : SortingDirection.values()) {
+          // Few distinct values, to have many ties
+          double mzBuffer[] = new double[size + 2];
+          float intensityBuffer[] = new float[size + 2];
+          for (int i = 0; i < mzBuffer.length; i++) {
+            mzBuffer[i] = random.nextInt(50) * 0.5 - 5.0;
+            intensityBuffer[i] = i;
+          }
+          mzBuffer[0] = -0.0;
+
+          // Reference: stable sort of the positions
+          final double keys[] = mzBuffer.clone();
+          final float intensityKeys[] = intensityBuffer.clone();
+          List<Integer> order = new ArrayList<>();
+          for (int i = 0; i < size; i++)
+            order.add(i);
+          Comparator<Integer> comparator = (prop == SortingProperty.MZ)
+              ? (i1, i2) -> Double.compare(keys[i1], keys[i2])
+              : (i1, i2) -> Float.compare(intensityKeys[i1], intensityKeys[i2]);
+          Collections.sort(order,
+              dir == SortingDirection.ASCENDING ? comparator : comparator.reversed());
+
+          DataPointSorter.sortDataPoints(mzBuffer, intensityBuffer, size, prop, dir);
+          for (int i = 0; i < size; i++) {
+            Assert.assertEquals(keys[order.get(i)], mzBuffer[i], 0.0);
+            Assert.assertEquals((int) order.get(i), (int) intensityBuffer[i]);
+          }
+          // Values after size are not touched
+          Assert.assertEquals(keys[size], mzBuffer[size], 0.0);
+          Assert.assertEquals(size + 1, (int) intensityBuffer[size + 1]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRtSort() {
+    Random random = new Random(5);
+    final int size = 1000;
+    float rtBuffer[] = new float[size];
+    Float boxedRtBuffer[] = new Float[size];
+    double mzBuffer[] = new double[size];
+    float intensityBuffer[] = new float[size];
+    for (int i = 0; i < size; i++) {
+      rtBuffer[i] = random.nextInt(100);
+      boxedRtBuffer[i] = rtBuffer[i];
+      mzBuffer[i] = i;
+      intensityBuffer[i] = i;
+    }
+    double mzBuffer2[] = mzBuffer.clone();
+    float intensityBuffer2[] = intensityBuffer.clone();
+
+    DataPointSorter.sortDataPoints(rtBuffer, mzBuffer, intensityBuffer, size);
+    DataPointSorter.sortDataPoints(boxedRtBuffer, mzBuffer2, intensityBuffer2, size);
+    for (int i = 1; i < size; i++) {
+      Assert.assertTrue(rtBuffer[i] >= rtBuffer[i - 1]);
+      // Stable: points with the same RT stay in their original order
+      if (rtBuffer[i] == rtBuffer[i - 1])
+        Assert.assertTrue(mzBuffer[i] > mzBuffer[i - 1]);
+      Assert.assertEquals(rtBuffer[i], boxedRtBuffer[i], 0f);
+      Assert.assertEquals(mzBuffer[i], mzBuffer2[i], 0.0);
+      Assert.assertEquals(intensityBuffer[i], intensityBuffer2[i], 0f);
+      Assert.assertEquals(mzBuffer[i], intensityBuffer[i], 0.0);
+    }
+  }
+
 }
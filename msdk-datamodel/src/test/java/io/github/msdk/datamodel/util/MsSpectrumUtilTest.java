@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.datamodel.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+import io.github.msdk.util.MsSpectrumUtil;
+
+public class MsSpectrumUtilTest {
+
+  @Test
+  public void testMzRangeSlice() {
+    double mzValues[] = {100.0, 200.0, 200.0, 300.0, 400.0, 0.0};
+    int size = 5;
+
+    Assert.assertEquals(1,
+        MsSpectrumUtil.getMzRangeStart(mzValues, size, Range.closed(200.0, 300.0)));
+    Assert.assertEquals(4,
+        MsSpectrumUtil.getMzRangeEnd(mzValues, size, Range.closed(200.0, 300.0)));
+    Assert.assertEquals(3,
+        MsSpectrumUtil.getMzRangeStart(mzValues, size, Range.open(200.0, 300.0)));
+    Assert.assertEquals(3, MsSpectrumUtil.getMzRangeEnd(mzValues, size, Range.open(200.0, 300.0)));
+    Assert.assertEquals(0, MsSpectrumUtil.getMzRangeStart(mzValues, size, Range.atMost(150.0)));
+    Assert.assertEquals(5, MsSpectrumUtil.getMzRangeEnd(mzValues, size, Range.atLeast(150.0)));
+
+    // Empty ranges give empty slices
+    Assert.assertEquals(5,
+        MsSpectrumUtil.getMzRangeStart(mzValues, size, Range.closed(500.0, 600.0)));
+    Assert.assertEquals(5,
+        MsSpectrumUtil.getMzRangeEnd(mzValues, size, Range.closed(500.0, 600.0)));
+    Assert.assertEquals(3,
+        MsSpectrumUtil.getMzRangeStart(mzValues, size, Range.openClosed(200.0, 200.0)));
+    Assert.assertEquals(3,
+        MsSpectrumUtil.getMzRangeEnd(mzValues, size, Range.openClosed(200.0, 200.0)));
+  }
+
+  @Test
+  public void testSameResultsAsLinearScan() {
+
+    final Random random = new Random(12);
+    final int size = 2000;
+    double mzValues[] = new double[size + 10];
+    float intensityValues[] = new float[size + 10];
+    for (int i = 0; i < size; i++) {
+      // Repeated m/z and intensity values
+      mzValues[i] = 100.0 + (i / 2) * 0.5;
+      intensityValues[i] = random.nextInt(50);
+    }
+
+    final int numOfWindows = 300;
+    double lowerMz[] = new double[numOfWindows];
+    double upperMz[] = new double[numOfWindows];
+    int basePeaks[] = new int[numOfWindows];
+    float tics[] = new float[numOfWindows];
+    for (int w = 0; w < numOfWindows; w++) {
+      // Sorted windows first, then windows in random order
+      double center =
+          (w < numOfWindows / 2) ? 90.0 + w * 4.0 : 90.0 + random.nextDouble() * 540.0;
+      double width = random.nextInt(4) * 0.5;
+      lowerMz[w] = center - width;
+      upperMz[w] = center + width;
+    }
+    MsSpectrumUtil.getBasePeakIndices(mzValues, intensityValues, size, lowerMz, upperMz,
+        numOfWindows, basePeaks);
+    MsSpectrumUtil.getTICs(mzValues, intensityValues, size, lowerMz, upperMz, numOfWindows, tics);
+
+    for (int w = 0; w < numOfWindows; w++) {
+      Range<Double> mzRange = Range.closed(lowerMz[w], upperMz[w]);
+      int expectedBasePeak = -1;
+      float expectedTIC = 0f;
+      for (int i = 0; i < size; i++) {
+        if (!mzRange.contains(mzValues[i]))
+          continue;
+        expectedTIC += intensityValues[i];
+        if (expectedBasePeak < 0 || intensityValues[i] > intensityValues[expectedBasePeak])
+          expectedBasePeak = i;
+      }
+
+      Assert.assertEquals(expectedBasePeak, basePeaks[w]);
+      Assert.assertEquals(expectedBasePeak, MsSpectrumUtil.getBasePeakIndex(mzValues,
+          intensityValues, size, lowerMz[w], upperMz[w]));
+      Integer basePeak =
+          MsSpectrumUtil.getBasePeakIndex(mzValues, intensityValues, size, mzRange);
+      Assert.assertEquals(expectedBasePeak, basePeak == null ? -1 : basePeak.intValue());
+
+      Assert.assertEquals(expectedTIC, tics[w], 0.0);
+      Assert.assertEquals(expectedTIC,
+          MsSpectrumUtil.getTIC(mzValues, intensityValues, size, lowerMz[w], upperMz[w]), 0.0);
+      Assert.assertEquals(expectedTIC,
+          MsSpectrumUtil.getTIC(mzValues, intensityValues, size, mzRange), 0.0);
+    }
+  }
+
+}
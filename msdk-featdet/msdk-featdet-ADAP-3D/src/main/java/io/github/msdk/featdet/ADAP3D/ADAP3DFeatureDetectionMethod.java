@@ -0,0 +1,320 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+package io.github.msdk.featdet.ADAP3D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Range;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.MSDKMethod;
+import io.github.msdk.datamodel.chromatograms.ChromatogramType;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.features.Feature;
+import io.github.msdk.datamodel.impl.SimpleChromatogram;
+import io.github.msdk.datamodel.impl.SimpleFeature;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.datamodel.rawdata.SeparationType;
+import io.github.msdk.featdet.ADAP3D.common.algorithms.ContinuousWaveletTransform;
+import io.github.msdk.featdet.ADAP3D.common.algorithms.SignalToNoise;
+import io.github.msdk.featdet.ADAP3D.common.algorithms.SliceSparseMatrix;
+import io.github.msdk.featdet.ADAP3D.common.algorithms.SliceSparseMatrix.SparseMatrixTriplet;
+import io.github.msdk.featdet.ADAP3D.datamodel.Result;
+
+/**
+ * <p>
+ * ADAP3DFeatureDetectionMethod detects features in a raw data file with the ADAP-3D building
+ * blocks. Starting from the most intense data point which is not part of a feature yet, the m/z
+ * slice around it is searched for peaks with the continuous wavelet transform. If a peak contains
+ * the data point and its signal to noise ratio is high enough, it becomes a feature and its data
+ * points (the m/z bins next to it included) are removed from the further search.
+ * </p>
+ *
+ * <p>
+ * The slices are processed in parallel on a work-stealing pool. In each round, the next most
+ * intense data points which are not removed are taken as seeds, and their slices are searched
+ * concurrently, each thread with its own wavelet transform and buffers. The search of a slice only
+ * reads the data, so the results are then committed in the order of the seeds: the result of a
+ * seed whose data point was removed by a feature committed before it in the same round is dropped,
+ * as the seed would have been skipped by a sequential search. The features are therefore the same,
+ * and in the same order, for any number of threads.
+ * </p>
+ */
+public class ADAP3DFeatureDetectionMethod implements MSDKMethod<List<Feature>> {
+
+	// Number of seeds in each round, per thread
+	private static final int SEEDS_PER_THREAD = 4;
+
+	// Number of m/z bins next to a feature which are removed as well
+	private static final int MZ_BIN_TOLERANCE = 1;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final @Nonnull DataPointStore dataPointStore;
+	private final @Nonnull RawDataFile rawFile;
+	private final double minIntensity, minSignalToNoise, coefAreaRatioTolerance;
+	private final @Nonnull Range<Double> peakWidth;
+	private final int sliceHalfWidth, parallelism;
+
+	private List<Feature> result;
+	private volatile boolean canceled = false;
+	private volatile float finishedPercentage = 0f;
+
+	/**
+	 * <p>
+	 * Constructor for ADAP3DFeatureDetectionMethod.
+	 * </p>
+	 *
+	 * @param dataPointStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+	 * @param rawFile a {@link io.github.msdk.datamodel.rawdata.RawDataFile} object.
+	 * @param minIntensity the search stops at data points of lower intensity.
+	 * @param minSignalToNoise minimum signal to noise ratio of a feature.
+	 * @param peakWidth range of the width of a feature, in minutes.
+	 * @param coefAreaRatioTolerance minimum ratio of the wavelet coefficient to the peak area.
+	 * @param sliceHalfWidth number of scans on each side of a seed searched for its peak.
+	 * @param parallelism number of threads.
+	 */
+	public ADAP3DFeatureDetectionMethod(@Nonnull DataPointStore dataPointStore,
+			@Nonnull RawDataFile rawFile, double minIntensity, double minSignalToNoise,
+			@Nonnull Range<Double> peakWidth, double coefAreaRatioTolerance, int sliceHalfWidth,
+			int parallelism) {
+		Preconditions.checkArgument(sliceHalfWidth > 0);
+		Preconditions.checkArgument(parallelism > 0);
+		this.dataPointStore = dataPointStore;
+		this.rawFile = rawFile;
+		this.minIntensity = minIntensity;
+		this.minSignalToNoise = minSignalToNoise;
+		this.peakWidth = peakWidth;
+		this.coefAreaRatioTolerance = coefAreaRatioTolerance;
+		this.sliceHalfWidth = sliceHalfWidth;
+		this.parallelism = parallelism;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@Nullable
+	public List<Feature> execute() throws MSDKException {
+
+		logger.info("Started ADAP-3D feature detection on file " + rawFile.getName());
+
+		final SliceSparseMatrix sliceSparseMatrix = new SliceSparseMatrix(rawFile);
+		final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		final int seedsPerRound = parallelism * SEEDS_PER_THREAD;
+		final SparseMatrixTriplet seeds[] = new SparseMatrixTriplet[seedsPerRound];
+		final SlicePeak peaks[] = new SlicePeak[seedsPerRound];
+		float maxIntensity = Float.NaN;
+
+		result = new ArrayList<>();
+		try {
+			boolean finished = false;
+			while (!finished) {
+				if (canceled)
+					return null;
+
+				int numOfSeeds = 0;
+				while (numOfSeeds < seedsPerRound) {
+					SparseMatrixTriplet seed = sliceSparseMatrix.findNextMaxIntensity();
+					if (seed == null || seed.intensity < minIntensity) {
+						finished = true;
+						break;
+					}
+					seeds[numOfSeeds++] = seed;
+				}
+				if (numOfSeeds == 0)
+					break;
+				if (Float.isNaN(maxIntensity))
+					maxIntensity = seeds[0].intensity;
+
+				final int roundSeeds = numOfSeeds;
+				pool.submit(() -> IntStream.range(0, roundSeeds).parallel().forEach(
+						i -> peaks[i] = findPeak(sliceSparseMatrix, workspaces.get(), seeds[i])))
+						.get();
+
+				for (int i = 0; i < numOfSeeds; i++) {
+					if (peaks[i] == null || sliceSparseMatrix.isRemoved(seeds[i]))
+						continue;
+					commitPeak(sliceSparseMatrix, peaks[i]);
+				}
+				Arrays.fill(peaks, null);
+				updateFinishedPercentage(seeds[numOfSeeds - 1].intensity, maxIntensity);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new MSDKException(e);
+		} finally {
+			pool.shutdown();
+		}
+
+		finishedPercentage = 1f;
+		logger.info("Finished ADAP-3D feature detection on file " + rawFile.getName() + ", "
+				+ result.size() + " features found");
+
+		return result;
+	}
+
+	/**
+	 * Searches the slice of the given seed for a peak containing the seed. Only reads the sparse
+	 * matrix and writes the workspace of the current thread.
+	 */
+	private @Nullable SlicePeak findPeak(SliceSparseMatrix sliceSparseMatrix, Workspace workspace,
+			SparseMatrixTriplet seed) {
+
+		final double mz = sliceSparseMatrix.getMzValue(seed.mz);
+		final int lowerScan = Math.max(0, seed.scanNumber - sliceHalfWidth);
+		final int upperScan =
+				Math.min(sliceSparseMatrix.getNumberOfScans() - 1, seed.scanNumber + sliceHalfWidth);
+		sliceSparseMatrix.getSliceIntensities(mz, lowerScan, upperScan, workspace.sliceIntensities);
+
+		// Points of the scans with a retention time, in minutes
+		int size = 0, seedIndex = -1;
+		for (int scan = lowerScan; scan <= upperScan; scan++) {
+			float rt = sliceSparseMatrix.getRetentionTime(scan);
+			if (Float.isNaN(rt))
+				continue;
+			if (scan == seed.scanNumber)
+				seedIndex = size;
+			workspace.scans[size] = scan;
+			workspace.rt[size] = rt;
+			workspace.x[size] = rt / 60;
+			workspace.signal[size] = workspace.sliceIntensities[scan - lowerScan];
+			size++;
+		}
+		if (size < 3 || seedIndex < 0)
+			return null;
+
+		final double x[] = Arrays.copyOf(workspace.x, size);
+		final double signal[] = Arrays.copyOf(workspace.signal, size);
+		final ContinuousWaveletTransform cwt = workspace.continuousWavelet;
+		cwt.setX(x);
+		cwt.setSignal(signal);
+
+		for (Result peak : cwt.findPeaks()) {
+			if (peak.curLeftBound > seedIndex || peak.curRightBound < seedIndex)
+				continue;
+			double signalToNoise =
+					SignalToNoise.filterBySNWindowSweep(signal, peak.curLeftBound, peak.curRightBound);
+			if (!(signalToNoise >= minSignalToNoise))
+				return null;
+
+			final int numOfPoints = peak.curRightBound - peak.curLeftBound + 1;
+			SlicePeak slicePeak = new SlicePeak();
+			slicePeak.seed = seed;
+			slicePeak.mz = mz;
+			slicePeak.area = peak.curArea;
+			slicePeak.signalToNoise = signalToNoise;
+			slicePeak.firstScan = workspace.scans[peak.curLeftBound];
+			slicePeak.lastScan = workspace.scans[peak.curRightBound];
+			slicePeak.rtValues = Arrays.copyOfRange(workspace.rt, peak.curLeftBound,
+					peak.curRightBound + 1);
+			slicePeak.intensityValues = new float[numOfPoints];
+			for (int i = 0; i < numOfPoints; i++)
+				slicePeak.intensityValues[i] = (float) signal[peak.curLeftBound + i];
+			return slicePeak;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the feature of a peak to the result and removes its data points from the search.
+	 */
+	private void commitPeak(SliceSparseMatrix sliceSparseMatrix, SlicePeak peak) {
+		for (int bin = peak.seed.mz - MZ_BIN_TOLERANCE; bin <= peak.seed.mz
+				+ MZ_BIN_TOLERANCE; bin++) {
+			sliceSparseMatrix.removeDataPoints(sliceSparseMatrix.getMzValue(bin),
+					peak.firstScan, peak.lastScan);
+		}
+
+		SimpleChromatogram chromatogram = new SimpleChromatogram(dataPointStore, result.size() + 1,
+				ChromatogramType.XIC, SeparationType.UNKNOWN);
+		chromatogram.setDataPoints(peak.rtValues, null, peak.intensityValues,
+				peak.intensityValues.length);
+		chromatogram.setMz(peak.mz);
+
+		SimpleFeature feature = new SimpleFeature(peak.mz, peak.seed.rt);
+		feature.setHeight(peak.seed.intensity);
+		feature.setArea((float) peak.area);
+		feature.setSNRatio((float) peak.signalToNoise);
+		feature.setChromatogram(chromatogram);
+		result.add(feature);
+	}
+
+	/**
+	 * The search goes down from the highest intensity to the minimum intensity, the progress is
+	 * estimated on a logarithmic scale.
+	 */
+	private void updateFinishedPercentage(float intensity, float maxIntensity) {
+		if (!(maxIntensity > minIntensity) || !(intensity > 0) || minIntensity <= 0)
+			return;
+		double progress = Math.log(maxIntensity / intensity) / Math.log(maxIntensity / minIntensity);
+		finishedPercentage = (float) Math.min(0.99, Math.max(0.0, progress));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Float getFinishedPercentage() {
+		return finishedPercentage;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	@Nullable
+	public List<Feature> getResult() {
+		return result;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void cancel() {
+		this.canceled = true;
+	}
+
+	/**
+	 * Buffers and wavelet transform used by one thread.
+	 */
+	private class Workspace {
+		final float sliceIntensities[] = new float[2 * sliceHalfWidth + 1];
+		final int scans[] = new int[2 * sliceHalfWidth + 1];
+		final float rt[] = new float[2 * sliceHalfWidth + 1];
+		final double x[] = new double[2 * sliceHalfWidth + 1];
+		final double signal[] = new double[2 * sliceHalfWidth + 1];
+		final ContinuousWaveletTransform continuousWavelet = new ContinuousWaveletTransform(1, 10, 1);
+
+		Workspace() {
+			continuousWavelet.setPeakWidth(peakWidth);
+			continuousWavelet.setcoefAreaRatioTolerance(coefAreaRatioTolerance);
+		}
+	}
+
+	/**
+	 * Peak found in the slice of a seed.
+	 */
+	private static class SlicePeak {
+		SparseMatrixTriplet seed;
+		double mz, area, signalToNoise;
+		int firstScan, lastScan;
+		float rtValues[], intensityValues[];
+	}
+
+}
@@ -20,6 +20,7 @@ import java.util.Arrays;
 import static java.util.Arrays.fill;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 import com.google.common.collect.Range;
 
@@ -53,6 +54,10 @@ public class ContinuousWaveletTransform {
     private ArrayList<Ridgeline> ridgeLineArr = new ArrayList<Ridgeline>();
     private Range<Double> peakWidth;
     private double coefAreaRatioTolerance;
+    // computing the coefficients by FFT with cached kernels, and in parallel for all scales
+    private boolean useFFT = false;
+    private boolean parallelScales = false;
+    private FftWaveletTransform fftTransform;
     
     /**
 	 * <p>
@@ -101,6 +106,18 @@ public class ContinuousWaveletTransform {
     	coefAreaRatioTolerance = userInputCoefAreaRatioTolerance;
     }
     
+    // Computing the coefficients by FFT treats the points as equidistant with the average spacing,
+    // see FftWaveletTransform. The wavelet kernels are cached as long as the signal length and
+    // spacing do not change, so it pays off to reuse this object for the slices of one file.
+    public void setUseFFT(boolean useFFTIn){
+    	useFFT = useFFTIn;
+    }
+    
+    // computing the coefficients of the different scales in parallel
+    public void setParallelScales(boolean parallelScalesIn){
+    	parallelScales = parallelScalesIn;
+    }
+    
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     ///////////////////////////Cropped Peak width/////////////////////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -296,6 +313,8 @@ public class ContinuousWaveletTransform {
     }
     
     public void buildRidgelines(){
+        // start with no ridge lines, this object can be reused for another signal
+        ridgeLineArr = new ArrayList<Ridgeline>();
         getCoefficientsForAllScales();
 
 
@@ -385,12 +404,23 @@ public class ContinuousWaveletTransform {
     
     public void getCoefficientsForAllScales(){
         int NScales = arrScales.size();
+        if (useFFT){
+            if (fftTransform==null){
+                double[] scales = new double[NScales];
+                for (int i=0; i<NScales; i++){
+                    scales[i] = arrScales.get(i);
+                }
+                fftTransform = new FftWaveletTransform(scales, scaleCoefHowFarOut);
+            }
+            allCoefficients = fftTransform.getCoefficients(signal, avgXSpace, parallelScales);
+            return;
+        }
         allCoefficients = new double[NScales][];
-        int count = 0;
-        for (Double curScale: arrScales){
-            allCoefficients[count] = getCoefficientsForThisScale((double) curScale);
-            count+= 1;
+        IntStream scaleIndices = IntStream.range(0, NScales);
+        if (parallelScales){
+            scaleIndices = scaleIndices.parallel();
         }
+        scaleIndices.forEach(i -> allCoefficients[i] = getCoefficientsForThisScale(arrScales.get(i)));
         //writeAllCoeffs();
     }
     
@@ -501,6 +531,20 @@ public class ContinuousWaveletTransform {
         avgXSpace = curSumSpacing/((double) (listOfDataPoint.size()-1));
     }
     
+    // same as setSignal and setX, for signals which are not kept as DataPoint objects
+    public void setSignal(double[] signalIn){
+    	signal = signalIn;
+    }
+    public void setX(double[] xIn){
+    	x = xIn;
+        double curSumSpacing=0.0;
+        for (int i=0; i <x.length-1; i++){
+            curSumSpacing += x[i+1]-x[i];
+        }
+   
+        avgXSpace = curSumSpacing/((double) (x.length-1));
+    }
+    
     public double[] doubleTheNumberOfPtsX(double[] xIn)
     {
         double[] xOut = new double[xIn.length*2-1];
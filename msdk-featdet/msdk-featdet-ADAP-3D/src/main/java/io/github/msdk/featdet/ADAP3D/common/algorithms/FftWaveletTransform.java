@@ -0,0 +1,201 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.lang.Math;
+import java.util.stream.IntStream;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * FftWaveletTransform computes the Ricker wavelet coefficients of a signal for several scales by
+ * fast convolution. For each scale, the wavelet is sampled at the same points and over the same
+ * range (scaleCoefHowFarOut times the scale, plus one point, on both sides) as in
+ * {@link ContinuousWaveletTransform#signalWaveletInnerProductOnePoint(int, double)}, assuming
+ * equidistant points with the average spacing of the signal. The spectra of these kernels are
+ * cached for the sampling grid (the spacing and the padded signal length), so signals of the same
+ * grid only need one forward transform of the signal and one inverse transform per scale.
+ * </p>
+ *
+ * <p>
+ * On equidistant points, the coefficients are the same as the ones of the direct summation, up to
+ * rounding errors. Instances of this class are not thread safe, but the scales of one signal can be
+ * processed in parallel.
+ * </p>
+ */
+public class FftWaveletTransform {
+
+	private final double scales[];
+
+	// Kernel offsets of each scale and the largest reach of all kernels
+	private final int kernelStart[], kernelEnd[];
+	private final int maxReach;
+
+	// Sampling grid of the cached kernel spectra and twiddle factors
+	private int fftLength = 0;
+	private double spacing = Double.NaN;
+	private double kernelRe[][], kernelIm[][];
+	private double cosTable[], sinTable[];
+
+	/**
+	 * @param scales the wavelet scales, in units of points.
+	 * @param scaleCoefHowFarOut how far in each direction the wavelet is evaluated, as a factor of
+	 *        the scale.
+	 */
+	public FftWaveletTransform(double scales[], int scaleCoefHowFarOut) {
+		Preconditions.checkArgument(scales.length > 0);
+		this.scales = scales.clone();
+		kernelStart = new int[scales.length];
+		kernelEnd = new int[scales.length];
+		int reach = 0;
+		for (int s = 0; s < scales.length; s++) {
+			kernelStart[s] = (int) Math.round(-scaleCoefHowFarOut * scales[s] - 1.0);
+			kernelEnd[s] = (int) Math.round(scaleCoefHowFarOut * scales[s] + 1.0);
+			reach = Math.max(reach, Math.max(-kernelStart[s], kernelEnd[s]));
+		}
+		maxReach = reach;
+	}
+
+	/**
+	 * <p>
+	 * This method returns the wavelet coefficients of the signal for all scales.
+	 * </p>
+	 *
+	 * @param signal the signal.
+	 * @param signalSpacing the average distance of the points of the signal.
+	 * @param parallel whether the scales are processed in parallel.
+	 * @return the coefficients, indexed by scale and point.
+	 */
+	public double[][] getCoefficients(double signal[], double signalSpacing, boolean parallel) {
+		final int n = signal.length;
+		// Long enough to neither wrap the signal nor the kernels around
+		int length = 1;
+		while (length < n + maxReach || length <= 2 * maxReach)
+			length <<= 1;
+		prepareGrid(length, signalSpacing);
+
+		final double signalRe[] = new double[fftLength];
+		final double signalIm[] = new double[fftLength];
+		System.arraycopy(signal, 0, signalRe, 0, n);
+		fft(signalRe, signalIm, false);
+
+		final double coefficients[][] = new double[scales.length][];
+		IntStream scaleIndices = IntStream.range(0, scales.length);
+		if (parallel)
+			scaleIndices = scaleIndices.parallel();
+		scaleIndices.forEach(s -> {
+			final double re[] = new double[fftLength];
+			final double im[] = new double[fftLength];
+			final double hRe[] = kernelRe[s], hIm[] = kernelIm[s];
+			for (int i = 0; i < fftLength; i++) {
+				re[i] = signalRe[i] * hRe[i] - signalIm[i] * hIm[i];
+				im[i] = signalRe[i] * hIm[i] + signalIm[i] * hRe[i];
+			}
+			fft(re, im, true);
+			final double result[] = new double[n];
+			for (int i = 0; i < n; i++)
+				result[i] = re[i] / fftLength;
+			coefficients[s] = result;
+		});
+		return coefficients;
+	}
+
+	/**
+	 * <p>
+	 * This method returns the value of the Ricker wavelet of the given width at x, as
+	 * {@link ContinuousWaveletTransform#rickerWavelet(double, double)} does.
+	 * </p>
+	 *
+	 * @param x distance from the center of the wavelet.
+	 * @param width width of the wavelet, in the same unit as x.
+	 * @return the value of the wavelet.
+	 */
+	public static double rickerWavelet(double x, double width) {
+		double A = 2.0 / Math.sqrt(3.0 * width * Math.sqrt(Math.PI))
+				* (1.0 - Math.pow(x, 2.0) / Math.pow(width, 2.0));
+		return Math.exp(-Math.pow(x, 2.0) / (2.0 * Math.pow(width, 2))) * A;
+	}
+
+	/**
+	 * Computes the twiddle factors and the kernel spectra, unless they are cached for this grid.
+	 */
+	private void prepareGrid(int length, double signalSpacing) {
+		if (length == fftLength && Double.compare(signalSpacing, spacing) == 0)
+			return;
+
+		if (length != fftLength) {
+			cosTable = new double[length / 2];
+			sinTable = new double[length / 2];
+			for (int i = 0; i < length / 2; i++) {
+				cosTable[i] = Math.cos(2.0 * Math.PI * i / length);
+				sinTable[i] = Math.sin(2.0 * Math.PI * i / length);
+			}
+		}
+		fftLength = length;
+		spacing = signalSpacing;
+
+		// The coefficient at point c is the sum of signal[c + j] * kernel[j],
+		// so kernel[j] is stored at index -j to get it by convolution
+		kernelRe = new double[scales.length][];
+		kernelIm = new double[scales.length][];
+		for (int s = 0; s < scales.length; s++) {
+			final double re[] = new double[length];
+			final double im[] = new double[length];
+			final double width = scales[s] * signalSpacing;
+			for (int j = kernelStart[s]; j <= kernelEnd[s]; j++)
+				re[(length - j) % length] = rickerWavelet(j * signalSpacing, width);
+			fft(re, im, false);
+			kernelRe[s] = re;
+			kernelIm[s] = im;
+		}
+	}
+
+	/**
+	 * In-place iterative radix-2 FFT. The inverse transform is not scaled.
+	 */
+	private void fft(double re[], double im[], boolean inverse) {
+		final int n = re.length;
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1)
+				j ^= bit;
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		for (int size = 2; size <= n; size <<= 1) {
+			final int half = size >> 1, step = n / size;
+			for (int start = 0; start < n; start += size) {
+				for (int k = 0; k < half; k++) {
+					final double wRe = cosTable[k * step];
+					final double wIm = inverse ? sinTable[k * step] : -sinTable[k * step];
+					final int a = start + k, b = a + half;
+					final double tRe = re[b] * wRe - im[b] * wIm;
+					final double tIm = re[b] * wIm + im[b] * wRe;
+					re[b] = re[a] - tRe;
+					im[b] = im[a] - tIm;
+					re[a] += tRe;
+					im[a] += tIm;
+				}
+			}
+		}
+	}
+
+}
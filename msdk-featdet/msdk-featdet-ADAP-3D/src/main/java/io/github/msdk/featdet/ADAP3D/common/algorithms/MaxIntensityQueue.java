@@ -0,0 +1,123 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.lang.Math;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * <p>
+ * MaxIntensityQueue returns the data points of a {@link SparseIntensityMatrix} in the order of
+ * descending intensity, data points with the same intensity in the order of their scan index and
+ * m/z bin. The positions of all data points are sorted once when the queue is created, by a stable
+ * radix sort of their intensities. Removed data points are marked in a bit set shared with the
+ * owner of the matrix and are skipped when the queue reaches them, so each query takes amortized
+ * constant time.
+ * </p>
+ */
+public class MaxIntensityQueue {
+
+	private final BitSet removed;
+
+	// Positions of the data points in the matrix, in the order they are returned
+	private final int order[];
+	private int next = 0;
+
+	/**
+	 * <p>
+	 * This constructor sorts the data points of the given matrix by their intensity.
+	 * </p>
+	 *
+	 * @param matrix a {@link SparseIntensityMatrix} object
+	 * @param removed a {@link java.util.BitSet} object with the positions of removed data points
+	 */
+	public MaxIntensityQueue(SparseIntensityMatrix matrix, BitSet removed) {
+		this.removed = removed;
+		final int size = matrix.getNumberOfEntries();
+
+		// Order by scan index and m/z bin first, the radix sort keeps this
+		// order for data points with the same intensity
+		int maxScanIndex = -1;
+		for (int p = 0; p < size; p++)
+			maxScanIndex = Math.max(maxScanIndex, matrix.getScanIndexAt(p));
+		final int scanStarts[] = new int[maxScanIndex + 2];
+		for (int p = 0; p < size; p++)
+			scanStarts[matrix.getScanIndexAt(p) + 1]++;
+		for (int s = 0; s <= maxScanIndex; s++)
+			scanStarts[s + 1] += scanStarts[s];
+		int positions[] = new int[size];
+		for (int p = 0; p < size; p++)
+			positions[scanStarts[matrix.getScanIndexAt(p)]++] = p;
+
+		// Keys whose unsigned order is the descending order of the intensities
+		int keys[] = new int[size];
+		for (int i = 0; i < size; i++) {
+			final int bits = Float.floatToIntBits(matrix.getIntensityAt(positions[i]));
+			keys[i] = ~(bits ^ ((bits >> 31) | 0x80000000));
+		}
+
+		int sortedPositions[] = new int[size];
+		int sortedKeys[] = new int[size];
+		final int counts[] = new int[257];
+		for (int shift = 0; shift < 32; shift += 8) {
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < size; i++)
+				counts[((keys[i] >>> shift) & 0xff) + 1]++;
+			// Skip the digits which are the same for all keys
+			if (size == 0 || counts[((keys[0] >>> shift) & 0xff) + 1] == size)
+				continue;
+			for (int b = 0; b < 256; b++)
+				counts[b + 1] += counts[b];
+			for (int i = 0; i < size; i++) {
+				final int target = counts[(keys[i] >>> shift) & 0xff]++;
+				sortedPositions[target] = positions[i];
+				sortedKeys[target] = keys[i];
+			}
+			int swap[] = positions;
+			positions = sortedPositions;
+			sortedPositions = swap;
+			swap = keys;
+			keys = sortedKeys;
+			sortedKeys = swap;
+		}
+		order = positions;
+	}
+
+	/**
+	 * <p>
+	 * This method returns the position of the data point with the next maximum intensity which is
+	 * not removed, or -1 if there is none.
+	 * </p>
+	 *
+	 * @return position of the data point in the matrix
+	 */
+	public int next() {
+		while (next < order.length) {
+			final int position = order[next++];
+			if (!removed.get(position))
+				return position;
+		}
+		return -1;
+	}
+
+	/**
+	 * <p>
+	 * This method restarts the queue from the highest intensity.
+	 * </p>
+	 */
+	public void reset() {
+		next = 0;
+	}
+
+}
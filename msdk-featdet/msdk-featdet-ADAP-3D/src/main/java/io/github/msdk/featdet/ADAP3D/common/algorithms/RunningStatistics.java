@@ -0,0 +1,122 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+/**
+ * <p>
+ * RunningStatistics keeps the count, mean and variance of a growing set of values without storing
+ * the values, using Welford's update. It replaces a
+ * {@link org.apache.commons.math3.stat.descriptive.DescriptiveStatistics} that is cleared and
+ * refilled for each window of an expanding window sweep: the window only needs to be extended by
+ * the new points, so a sweep over w window sizes takes O(w) instead of O(w^2) time.
+ * </p>
+ *
+ * <p>
+ * Like DescriptiveStatistics, the standard deviation is the sample standard deviation, it is 0 for
+ * a single value and NaN for no values.
+ * </p>
+ */
+public class RunningStatistics {
+
+	private long n = 0;
+	private double mean = 0.0;
+	private double sumOfSquaredDeviations = 0.0;
+
+	/**
+	 * <p>
+	 * This method adds a value.
+	 * </p>
+	 *
+	 * @param value a double.
+	 */
+	public void addValue(double value) {
+		n++;
+		final double delta = value - mean;
+		mean += delta / n;
+		sumOfSquaredDeviations += delta * (value - mean);
+	}
+
+	/**
+	 * <p>
+	 * This method adds the values of an array in the range [from, to).
+	 * </p>
+	 *
+	 * @param values an array of double.
+	 * @param from index of the first value.
+	 * @param to index after the last value.
+	 */
+	public void addValues(double values[], int from, int to) {
+		for (int i = from; i < to; i++)
+			addValue(values[i]);
+	}
+
+	/**
+	 * <p>
+	 * This method removes all values.
+	 * </p>
+	 */
+	public void clear() {
+		n = 0;
+		mean = 0.0;
+		sumOfSquaredDeviations = 0.0;
+	}
+
+	/**
+	 * <p>
+	 * getN.
+	 * </p>
+	 *
+	 * @return the number of values.
+	 */
+	public long getN() {
+		return n;
+	}
+
+	/**
+	 * <p>
+	 * getMean.
+	 * </p>
+	 *
+	 * @return the mean of the values, or NaN if there are none.
+	 */
+	public double getMean() {
+		return n == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * <p>
+	 * getVariance.
+	 * </p>
+	 *
+	 * @return the sample variance of the values.
+	 */
+	public double getVariance() {
+		if (n == 0)
+			return Double.NaN;
+		if (n == 1)
+			return 0.0;
+		return sumOfSquaredDeviations / (n - 1);
+	}
+
+	/**
+	 * <p>
+	 * getStandardDeviation.
+	 * </p>
+	 *
+	 * @return the sample standard deviation of the values.
+	 */
+	public double getStandardDeviation() {
+		return java.lang.Math.sqrt(getVariance());
+	}
+
+}
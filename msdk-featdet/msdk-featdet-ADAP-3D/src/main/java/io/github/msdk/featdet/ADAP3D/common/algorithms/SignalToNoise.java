@@ -7,9 +7,7 @@ package io.github.msdk.featdet.ADAP3D.common.algorithms;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import org.apache.commons.lang3.ArrayUtils;
@@ -54,18 +52,19 @@ public class SignalToNoise {
             }
         }
         // Get the coefficients in some window. Use peakwidth to determine window
-        List <Double> coefsUsedForSN = new ArrayList<Double>();
+        double [] coefsUsedForSN = new double[2*java.lang.Math.max(leftRightWindowSize, 0)+peakWidth+1];
+        int numOfCoefs = 0;
         int index = peakRight+1;
         ///////////////////////////////////////////////////////////////////
         /////////////////// Stuff around the peak/////////////////////////
         ///////////////////////////////////////////////////////////////////
         while ((index<smallestScaleArr.length)&&((index-peakRight)<(leftRightWindowSize))){
-           coefsUsedForSN.add(smallestScaleArr[index]);
+           coefsUsedForSN[numOfCoefs++] = smallestScaleArr[index];
            index++;
         }
         index = peakLeft-1;
         while ((index>0)&&((peakLeft-index)<(leftRightWindowSize))){
-           coefsUsedForSN.add(smallestScaleArr[index]);
+           coefsUsedForSN[numOfCoefs++] = smallestScaleArr[index];
            index--;
         }
         ///////////////////////////////////////////////////////////////////
@@ -73,28 +72,13 @@ public class SignalToNoise {
         ///////////////////////////////////////////////////////////////////
         index = peakLeft;
         while (index <= peakRight){
-            coefsUsedForSN.add(smallestScaleArr[index]);
+            coefsUsedForSN[numOfCoefs++] = smallestScaleArr[index];
             index++;
         }
         
-        double quantile = getQuantile(coefsUsedForSN, 0.95);
-//        Collections.sort(coefsUsedForSN);
-//        double multiplier =((double)coefsUsedForSN.size())/100.0;
-//        // 5% from the spmalles will give you the 95th quartile
-//        int indexLocationOf95th = (int) java.lang.Math.round(5*multiplier);
+        double quantile = getQuantile(coefsUsedForSN, numOfCoefs, 0.95);
         
         toReturnSN = bestCoeff / quantile;
-        
-         
-//         double [] target = new double[coefsUsedForSN.size()];
-//         for (int i=0; i<target.length;i++){
-//             target[i] = coefsUsedForSN.get(i);
-//         }
-//         writeArray(target);
-         //Arrays.sort(smallestScaleArr);
-         
-         
-         
          
          return toReturnSN;
     }
@@ -113,19 +97,85 @@ public class SignalToNoise {
      */
     public static double getQuantile(List <Double> values, double probability)
     {
-        int size = values.size();
+        double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = values.get(i);
+        return getQuantile(array, array.length, probability);
+    }
 
+    /**
+     * Estimate quantile of the first size values of an array, in the same way as
+     * {@link #getQuantile(List, double)}.
+     *
+     * The two values adjacent to the quantile are found by selection instead of sorting,
+     * in linear time. The values are reordered in place.
+     *
+     * @param values array of doubles
+     * @param size number of values to use
+     * @param probability value between 0.0 and 1.0
+     * @return quantile
+     */
+    public static double getQuantile(double[] values, int size, double probability)
+    {
         if (size <= 1 || probability <= 0.0 || probability >= 1.0)
             throw new IllegalArgumentException("Cannot calculate quantile");
 
-        Collections.sort(values);
-
         int index1 = (int) (size * probability);
         int index2 = index1 + 1;
 
+        if (index1 < 1)
+            throw new IllegalArgumentException("Cannot calculate quantile");
+
         double gamma = (size - 1) * probability + 1 - index1;
 
-        return (1 - gamma) * values.get(index1 - 1) + gamma * values.get(index2 - 1);
+        // After the selection all values behind x[j] are at least as large,
+        // so x[j+1] is the smallest of them
+        select(values, size, index1 - 1);
+        double value1 = values[index1 - 1];
+        double value2 = values[index2 - 1];
+        for (int i = index2; i < size; i++)
+            value2 = java.lang.Math.min(value2, values[i]);
+
+        return (1 - gamma) * value1 + gamma * value2;
+    }
+
+    /**
+     * Partially reorders the first size values so that the value at index k is the one
+     * a sort would put there, smaller or equal values are in front of it and larger or
+     * equal values behind it (quickselect with a median of three pivot).
+     */
+    private static void select(double[] values, int size, int k)
+    {
+        int left = 0;
+        int right = size - 1;
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            double a = values[left], b = values[middle], c = values[right];
+            double pivot = a < b ? (b < c ? b : (a < c ? c : a)) : (a < c ? a : (b < c ? c : b));
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot)
+                    i++;
+                while (values[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    double swap = values[i];
+                    values[i] = values[j];
+                    values[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                return;
+        }
     }
 
     /**
@@ -138,20 +188,6 @@ public class SignalToNoise {
      */
     public static double filterBySNRandWindowSelect(double[] intensities,int peakLeft,int peakRight)
     {
-        
-        DescriptiveStatistics stdDevStats = new DescriptiveStatistics();
-        
-        DescriptiveStatistics toFindMinWithPeakNoise = new DescriptiveStatistics();
-        DescriptiveStatistics toFindLocalMean = new DescriptiveStatistics();
-        
-        // first get the value of the peak
-        for (int i=peakLeft; i<(peakRight+1); i++){
-            stdDevStats.addValue(intensities[i]);
-        }
-        double peakHeight = stdDevStats.getMax();
-        double meanOfSignal = stdDevStats.getMean();
-        stdDevStats.clear();
-        
         int peakWidth = peakRight-peakLeft;
         
         // Initial size of expanding window will be twice the peak width on either side of the peak
@@ -171,112 +207,43 @@ public class SignalToNoise {
         }
         
         //Make a new arr containing only the value in the window
-        List<Double> forNoiseCalc = new ArrayList<Double>();
+        int numOfRight = rightBound-peakRight;
+        int numOfLeft = peakLeft-leftBound;
+        double[] forNoiseCalc = new double[numOfRight+numOfLeft];
         // first find the standard deviation from the windows EXCLUDING the peak
-        for (int j = peakRight+1; j < (rightBound+1); j++){
-            forNoiseCalc.add(intensities[j]);
-        }
-        for (int j = leftBound; j < (peakLeft); j++){
-            forNoiseCalc.add(intensities[j]);
-        }
+        System.arraycopy(intensities, peakRight+1, forNoiseCalc, 0, numOfRight);
+        System.arraycopy(intensities, leftBound, forNoiseCalc, numOfRight, numOfLeft);
         
+        // The sum of any sample window is the difference of two cumulative sums
+        double[] cumulativeSums = new double[forNoiseCalc.length+1];
+        for (int i = 0; i < forNoiseCalc.length; i++){
+            cumulativeSums[i+1] = cumulativeSums[i]+forNoiseCalc[i];
+        }
         
-        toFindMinWithPeakNoise.clear();
-        DescriptiveStatistics toCollectSampleWindows = new DescriptiveStatistics();
         // See what you get when yu put all the windows together before final std calc.
-        DescriptiveStatistics allWindowSTD = new DescriptiveStatistics();
+        double allWindowSum = 0.0;
+        long allWindowCount = 0;
 
         for (int i = 0; i<1000; i++){
-            toCollectSampleWindows.clear();
-            toCollectSampleWindows.clear();
-            for (int j = 0; j<1; j++){
+            {
                 int min = 0;
-                int max = forNoiseCalc.size()/2-sampleWindowSize;
+                int max = forNoiseCalc.length/2-sampleWindowSize;
                 int windowStart = ThreadLocalRandom.current().nextInt(min, max);
-                for(int k=0; k<sampleWindowSize; k++){
-                    toCollectSampleWindows.addValue(forNoiseCalc.get(windowStart+k));
-                    allWindowSTD.addValue(forNoiseCalc.get(windowStart+k));
-                }
+                allWindowSum += cumulativeSums[windowStart+sampleWindowSize]-cumulativeSums[windowStart];
+                allWindowCount += sampleWindowSize;
             }
-            for (int j = 0; j<1; j++){
-                int min = forNoiseCalc.size()/2;
-                int max = forNoiseCalc.size()-sampleWindowSize;
+            {
+                int min = forNoiseCalc.length/2;
+                int max = forNoiseCalc.length-sampleWindowSize;
                 int windowStart = ThreadLocalRandom.current().nextInt(min, max);
-                for(int k=0; k<sampleWindowSize; k++){
-                    toCollectSampleWindows.addValue(forNoiseCalc.get(windowStart+k));
-                    allWindowSTD.addValue(forNoiseCalc.get(windowStart+k));
-                }
-            }
-            stdDevStats.addValue(toCollectSampleWindows.getStandardDeviation());
-            double curNoPeakMean = toCollectSampleWindows.getMean();
-            toFindLocalMean.addValue(curNoPeakMean);
-            
-            //Now add in the peak becausase the difference in std with the peak will tell us something about it height.
-            for (int j = peakLeft; j < (peakRight+1); j++){
-                toCollectSampleWindows.addValue(intensities[j]);
+                allWindowSum += cumulativeSums[windowStart+sampleWindowSize]-cumulativeSums[windowStart];
+                allWindowCount += sampleWindowSize;
             }
-            double curWithPeakNoise = toCollectSampleWindows.getStandardDeviation();
-            toFindMinWithPeakNoise.addValue(curWithPeakNoise);
-            
         }
-        //double bestNoise = stdDevStats.getMin();
-        // I think we should use the mean instead of the min. This assumes that the majority of the stuff within our max window
-        // is noise.
-        //double bestNoise = stdDevStats.getMean();
         // Lets try looking at the std from collecting all of the data first
-        double bestNoise = allWindowSTD.getMean();
+        double bestNoise = allWindowCount == 0 ? Double.NaN : allWindowSum/allWindowCount;
         
-        // for a good looking peak we think the difference between the noise with and without the peak included should
-        // be about a factor of 2. Specificaly with the peak the noise should be 2x higher than without if it is real.
-        double bestWithPeakNoise = toFindMinWithPeakNoise.getMin();
-        
-        double smallestLocalMean = toFindLocalMean.getMin();
-        double meanDifference = java.lang.Math.abs(smallestLocalMean-meanOfSignal);
-//        if (meanOfSignal>(1.2*smallestLocalMean)){
-//            return -1;
-//        }
-
-        // before calculating the signal to noise ratio we need to "normalize" the height.
-        // What can happen is if a bad peak is found on a plateau the local stadard deviation will be 
-        // small compared to the absolute height (or mean of peak) of peak.
-        // 
-        // Find the minimum intesity point starting at the boundry and going a boundry width out.
-        // Then subtract this from the peak value (height or mean) before comparing to the standard
-        // deviation.
-        
-        stdDevStats.clear();
-        rightBound = peakRight+peakWidth;
-        leftBound = peakLeft-peakWidth;
-        
-        // Make sure the these values don't go out of bounds
-        if (rightBound>=intensities.length){
-            rightBound = intensities.length - 1;
-        }
-        if (leftBound<0){
-            leftBound = 0;
-        }
-        // out to right
-        for (int i = peakRight; i <= rightBound; i++){
-            stdDevStats.addValue(intensities[i]);
-        }
-        double smallIntensity1 = stdDevStats.getMin();
-        stdDevStats.clear();
-        for (int i = leftBound; i <= peakLeft; i++){
-            stdDevStats.addValue(intensities[i]);
-        }
-        double smallIntensity2 = stdDevStats.getMin();
-        double smallIntensityAvg = (smallIntensity1+smallIntensity2)/2.0;
-        
-        
-        double SNRatio = (peakHeight-smallIntensityAvg)/bestNoise;
-        //double SNRatio = (meanOfSignal-smallIntensityAvg)/bestNoise;
-        
-        
-//        if (bestWithPeakNoise/bestNoise <= 1.2){
-//            return -1;
-//        }
-        
-        return SNRatio;
+        return findSNRatio(intensities, peakLeft, peakRight, bestNoise);
         
     }
     /**
@@ -289,20 +256,6 @@ public class SignalToNoise {
      */
     public static double filterBySNWindowSweep(double[] intensities,int peakLeft,int peakRight)
     {
-        DescriptiveStatistics stdDevStats = new DescriptiveStatistics();
-        DescriptiveStatistics toFindMinNoPeakNoise = new DescriptiveStatistics();
-        DescriptiveStatistics toFindMinWithPeakNoise = new DescriptiveStatistics();
-        DescriptiveStatistics toFindLocalMean = new DescriptiveStatistics();
-        
-        // first get the value of the peak
-        for (int i=peakLeft; i<(peakRight+1); i++){
-            stdDevStats.addValue(intensities[i]);
-        }
-        
-        double peakHeight = stdDevStats.getMax();
-        double meanOfSignal = stdDevStats.getMean();
-        stdDevStats.clear();
-        
         int peakWidth = peakRight-peakLeft;
         
         // Initial size of expanding window will be twice the peak width on either side of the peak
@@ -311,13 +264,15 @@ public class SignalToNoise {
         // final size of expanding window.
         int finalWindowSize = 9*peakWidth;
         
-        
-        toFindMinNoPeakNoise.clear();
-        toFindMinWithPeakNoise.clear();
+        // The windows only grow, so each window size just adds the new points to the
+        // statistics of the previous one.
+        RunningStatistics noPeakStats = new RunningStatistics();
+        int addedLeft = peakLeft;
+        int addedRight = peakRight;
+        double bestNoPeakNoise = Double.NaN;
         
         // loop over different window sizes
         for (int i = 0; i<(finalWindowSize+1); i++){
-            stdDevStats.clear();
             int curRight = peakRight + initialWindowSize + i;
             int curLeft = peakLeft - initialWindowSize - i;
             
@@ -330,76 +285,18 @@ public class SignalToNoise {
             }
             
             // first find the standard deviation from the windows EXCLUDING the peak
-            for (int j = peakRight+1; j < (curRight+1); j++){
-                stdDevStats.addValue(intensities[j]);
+            if (curRight>addedRight){
+                noPeakStats.addValues(intensities, addedRight+1, curRight+1);
+                addedRight = curRight;
             }
-            for (int j = curLeft; j < (peakLeft); j++){
-                stdDevStats.addValue(intensities[j]);
-            }
-            double curNoPeakNoise = stdDevStats.getStandardDeviation();
-            toFindMinNoPeakNoise.addValue(curNoPeakNoise);
-            double curNoPeakMean = stdDevStats.getMean();
-            toFindLocalMean.addValue(curNoPeakMean);
-            
-            //Now add in the peak becausase the difference in std with the peak will tell us something about it height.
-            for (int j = peakLeft; j < (peakRight+1); j++){
-                stdDevStats.addValue(intensities[j]);
+            if (curLeft<addedLeft){
+                noPeakStats.addValues(intensities, curLeft, addedLeft);
+                addedLeft = curLeft;
             }
-            double curWithPeakNoise = stdDevStats.getStandardDeviation();
-            toFindMinWithPeakNoise.addValue(curWithPeakNoise);
+            bestNoPeakNoise = minNoise(bestNoPeakNoise, noPeakStats.getStandardDeviation());
         }
         
-        // for a good looking peak we think the difference between the noise with and without the peak included should
-        // be about a factor of 2. Specificaly with the peak the noise should be 2x higher than without if it is real.
-        double bestNoPeakNoise = toFindMinNoPeakNoise.getMin();
-        double bestWithPeakNoise = toFindMinWithPeakNoise.getMin();
-        
-        double smallestLocalMean = toFindLocalMean.getMin();
-        double meanDifference = java.lang.Math.abs(smallestLocalMean-meanOfSignal);
-//        if (meanOfSignal>(1.5*smallestLocalMean)){
-//            
-//        }
-//        if (bestWithPeakNoise/bestNoPeakNoise <= 1.5){
-//            return false;
-//        }
-
-        
-        
-        // before calculating the signal to noise ratio we need to "normalize" the height.
-        // What can happen is if a bad peak is found on a plateau the local stadard deviation will be 
-        // small compared to the absolute height (or mean of peak) of peak.
-        // 
-        // Find the minimum intesity point starting at the boundry and going a boundry width out.
-        // Then subtract this from the peak value (height or mean) before comparing to the standard
-        // deviation.
-        
-        stdDevStats.clear();
-        int rightBound = peakRight+peakWidth;
-        int leftBound = peakLeft-peakWidth;
-        
-        // Make sure the these values don't go out of bounds
-        if (rightBound>=intensities.length){
-            rightBound = intensities.length - 1;
-        }
-        if (leftBound<0){
-            leftBound = 0;
-        }
-        // out to right
-        for (int i = peakRight; i <= rightBound; i++){
-            stdDevStats.addValue(intensities[i]);
-        }
-        double smallIntensity1 = stdDevStats.getMin();
-        stdDevStats.clear();
-        for (int i = leftBound; i <= peakLeft; i++){
-            stdDevStats.addValue(intensities[i]);
-        }
-        double smallIntensity2 = stdDevStats.getMin();
-        double smallIntensityAvg = (smallIntensity1+smallIntensity2)/2.0;
-        
-        
-        double SNRatio = (peakHeight-smallIntensityAvg)/bestNoPeakNoise;
-        //double SNRatio = (meanOfSignal-smallIntensityAvg)/bestNoPeakNoise;
-        return SNRatio;
+        return findSNRatio(intensities, peakLeft, peakRight, bestNoPeakNoise);
                 
     }
     // This sweeps the window size ffrom the points furthest from the peak out and then from the points closest to the peak
@@ -414,20 +311,6 @@ public class SignalToNoise {
      */
     public static double filterBySNWindowInOutSweep(double[] intensities,int peakLeft,int peakRight)
     {
-        DescriptiveStatistics stdDevStats = new DescriptiveStatistics();
-        DescriptiveStatistics toFindMinNoPeakNoise = new DescriptiveStatistics();
-        DescriptiveStatistics toFindMinWithPeakNoise = new DescriptiveStatistics();
-        DescriptiveStatistics toFindLocalMean = new DescriptiveStatistics();
-        
-        // first get the value of the peak
-        for (int i=peakLeft; i<(peakRight+1); i++){
-            stdDevStats.addValue(intensities[i]);
-        }
-        
-        double peakHeight = stdDevStats.getMax();
-        double meanOfSignal = stdDevStats.getMean();
-        stdDevStats.clear();
-        
         int peakWidth = peakRight-peakLeft;
         
         // Initial size of expanding window will be twice the peak width on either side of the peak
@@ -436,18 +319,17 @@ public class SignalToNoise {
         // final size of expanding window.
         int finalWindowSize = 8*peakWidth;
         
+        double bestNoPeakNoise = Double.NaN;
         
-        toFindMinNoPeakNoise.clear();
-        toFindMinWithPeakNoise.clear();
-        
-        // loop over different window sizes
+        // loop over different window sizes. A side is used once it is far enough from the
+        // peak and then only grows, so only the new points are added.
+        RunningStatistics stdDevStats = new RunningStatistics();
+        int addedLeft = peakLeft;
+        int addedRight = peakRight;
         for (int i = 0; i<(finalWindowSize+1); i++){
-            stdDevStats.clear();
             int curRight = peakRight + initialWindowSize + i+1;
             int curLeft = peakLeft - initialWindowSize - i-1;
             
-            int this_time_num_added = 0;
-            
             // Make sure the these values don't go out of bounds
             if (curRight>=intensities.length){
                 curRight = intensities.length - 1;
@@ -456,35 +338,17 @@ public class SignalToNoise {
                 curLeft = 0;
             }
             
-            if (!(java.lang.Math.abs(curLeft-peakLeft)<initialWindowSize)){
-                for (int j = curLeft; j < peakLeft;j++){
-                    stdDevStats.addValue(intensities[j]);
-                    this_time_num_added+=1;
-                }
-            }
-            if (!(java.lang.Math.abs(curRight-peakRight)<initialWindowSize)){
-                for (int j = curRight; j > peakRight ;j--){
-                    stdDevStats.addValue(intensities[j]);
-                    this_time_num_added+=1;
-                }
+            if (!(java.lang.Math.abs(curLeft-peakLeft)<initialWindowSize) && curLeft<addedLeft){
+                stdDevStats.addValues(intensities, curLeft, addedLeft);
+                addedLeft = curLeft;
             }
-            if (this_time_num_added ==0){
-                continue;
+            if (!(java.lang.Math.abs(curRight-peakRight)<initialWindowSize) && curRight>addedRight){
+                stdDevStats.addValues(intensities, addedRight+1, curRight+1);
+                addedRight = curRight;
             }
             
-            
             // first find the standard deviation from the windows EXCLUDING the peak
-            double curNoPeakNoise = stdDevStats.getStandardDeviation();
-            toFindMinNoPeakNoise.addValue(curNoPeakNoise);
-            double curNoPeakMean = stdDevStats.getMean();
-            toFindLocalMean.addValue(curNoPeakMean);
-            
-            //Now add in the peak becausase the difference in std with the peak will tell us something about it height.
-            for (int j = peakLeft; j < (peakRight+1); j++){
-                stdDevStats.addValue(intensities[j]);
-            }
-            double curWithPeakNoise = stdDevStats.getStandardDeviation();
-            toFindMinWithPeakNoise.addValue(curWithPeakNoise);
+            bestNoPeakNoise = minNoise(bestNoPeakNoise, stdDevStats.getStandardDeviation());
         }
         // Now sweep the points closest to the peak out
         int anchorRight = peakRight + initialWindowSize + finalWindowSize;
@@ -496,15 +360,17 @@ public class SignalToNoise {
         if (anchorLeft<0){
             anchorLeft = 0;
         }
+        
+        // The windows shrink from the side of the peak. Going through them backwards they only
+        // grow, so again only the new points are added.
+        stdDevStats.clear();
+        int addedLeftEnd = anchorLeft+1;
+        int addedRightStart = anchorRight;
+        for (int i = (finalWindowSize-initialWindowSize)-1; i>=0; i-- ){
             
-        for (int i = 0; i<(finalWindowSize-initialWindowSize); i++ ){
-            
-            stdDevStats.clear();
             int curRight = peakRight+1 + i;
             int curLeft = peakLeft-1 - i;
             
-            int this_time_num_added = 0;
-            
             // Make sure the these values don't go out of bounds
             if (curRight>=intensities.length){
                 curRight = intensities.length - 1;
@@ -513,39 +379,43 @@ public class SignalToNoise {
                 curLeft = 0;
             }
             
-            if (!(java.lang.Math.abs(curLeft-anchorLeft)<initialWindowSize)){
-                for (int j = curLeft; j > anchorLeft;j--){
-                    stdDevStats.addValue(intensities[j]);
-                    this_time_num_added+=1;
-                }
+            if (!(java.lang.Math.abs(curLeft-anchorLeft)<initialWindowSize) && curLeft>=addedLeftEnd){
+                stdDevStats.addValues(intensities, addedLeftEnd, curLeft+1);
+                addedLeftEnd = curLeft+1;
             }
-            if (!(java.lang.Math.abs(curRight-anchorRight)<initialWindowSize)){
-                for (int j = curRight; j < anchorRight ;j++){
-                    stdDevStats.addValue(intensities[j]);
-                    this_time_num_added+=1;
-                }
-            }
-            if (this_time_num_added ==0){
-                continue;
+            if (!(java.lang.Math.abs(curRight-anchorRight)<initialWindowSize) && curRight<addedRightStart){
+                stdDevStats.addValues(intensities, curRight, addedRightStart);
+                addedRightStart = curRight;
             }
             
-            double curNoPeakNoise = stdDevStats.getStandardDeviation();
-            toFindMinNoPeakNoise.addValue(curNoPeakNoise);
+            bestNoPeakNoise = minNoise(bestNoPeakNoise, stdDevStats.getStandardDeviation());
         }
         
-        // for a good looking peak we think the difference between the noise with and without the peak included should
-        // be about a factor of 2. Specificaly with the peak the noise should be 2x higher than without if it is real.
-        double bestNoPeakNoise = toFindMinNoPeakNoise.getMin();
+        return findSNRatio(intensities, peakLeft, peakRight, bestNoPeakNoise);
+                
+    }
 
-       
-   
-//        if (meanOfSignal>(1.5*smallestLocalMean)){
-//            
-//        }
-//        if (bestWithPeakNoise/bestNoPeakNoise <= 1.5){
-//            return false;
-//        }
+    /**
+     * Returns the smaller noise of the two, ignoring NaN noise of empty windows as
+     * {@link DescriptiveStatistics#getMin()} does.
+     */
+    private static double minNoise(double bestNoise, double noise)
+    {
+        if (Double.isNaN(bestNoise) || noise < bestNoise)
+            return noise;
+        return bestNoise;
+    }
 
+    /**
+     * Divides the height of the peak above the smallest intensities next to it by the noise.
+     */
+    private static double findSNRatio(double[] intensities, int peakLeft, int peakRight, double noise)
+    {
+        double peakHeight = intensities[peakLeft];
+        for (int i = peakLeft+1; i <= peakRight; i++){
+            peakHeight = java.lang.Math.max(peakHeight, intensities[i]);
+        }
+        int peakWidth = peakRight-peakLeft;
         
         // before calculating the signal to noise ratio we need to "normalize" the height.
         // What can happen is if a bad peak is found on a plateau the local stadard deviation will be 
@@ -555,7 +425,6 @@ public class SignalToNoise {
         // Then subtract this from the peak value (height or mean) before comparing to the standard
         // deviation.
         
-        stdDevStats.clear();
         int rightBound = peakRight+peakWidth;
         int leftBound = peakLeft-peakWidth;
         
@@ -567,23 +436,20 @@ public class SignalToNoise {
             leftBound = 0;
         }
         // out to right
-        for (int i = peakRight; i <= rightBound; i++){
-            stdDevStats.addValue(intensities[i]);
+        double smallIntensity1 = intensities[peakRight];
+        for (int i = peakRight+1; i <= rightBound; i++){
+            smallIntensity1 = java.lang.Math.min(smallIntensity1, intensities[i]);
         }
-        double smallIntensity1 = stdDevStats.getMin();
-        stdDevStats.clear();
-        for (int i = leftBound; i <= peakLeft; i++){
-            stdDevStats.addValue(intensities[i]);
+        double smallIntensity2 = intensities[peakLeft];
+        for (int i = leftBound; i < peakLeft; i++){
+            smallIntensity2 = java.lang.Math.min(smallIntensity2, intensities[i]);
         }
-        double smallIntensity2 = stdDevStats.getMin();
         double smallIntensityAvg = (smallIntensity1+smallIntensity2)/2.0;
         
         
-        double SNRatio = (peakHeight-smallIntensityAvg)/bestNoPeakNoise;
-        //double SNRatio = (meanOfSignal-smallIntensityAvg)/bestNoPeakNoise;
-        
+        double SNRatio = (peakHeight-smallIntensityAvg)/noise;
+        //double SNRatio = (meanOfSignal-smallIntensityAvg)/noise;
         return SNRatio;
-                
     }
     // Uses two windows on eaiter side of the peak that are a constand width. These windows then both
     // slide out to a set distance ithout changing side. The smallest standard deviation is taken to be 
@@ -13,6 +13,8 @@
 package io.github.msdk.featdet.ADAP3D.common.algorithms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -36,24 +38,24 @@ public class SliceSparseMatrix {
 	
 	/**
 	 * <p>
-	 *  tripletMap is used for creating MultiKeyMap type of hashmap from raw data file. 
+	 *  matrix keeps the intensities of the raw data file for each rounded mz value and scan number. 
 	 * </p>
 	 */
-	private final MultiKeyMap tripletMap;
+	private final SparseIntensityMatrix matrix;
 	
 	/**
 	 * <p>
-	 *  filterListOfTriplet is used for adding intensities for same mz values under same scan numbers. 
+	 *  removed marks the positions of the data points in the matrix which were removed. 
 	 * </p>
 	 */
-	private final List<SparseMatrixTriplet> filterListOfTriplet;
+	private final BitSet removed;
 	
 	/**
 	 * <p>
-	 *  maxIntensityIndex is used for keeping track of next maximum intensity in the loop. 
+	 *  maxIntensityQueue is used for finding the next maximum intensity, it is created when it is first used. 
 	 * </p>
 	 */
-	private int maxIntensityIndex=0;
+	private MaxIntensityQueue maxIntensityQueue;
 	
 	/**
 	 * <p>
@@ -69,6 +71,13 @@ public class SliceSparseMatrix {
 	 */
 	private final List<MsScan> listOfScans;
 	
+	/**
+	 * <p>
+	 *  rtValues contains the retention time of each scan, or NaN for scans which are not used. 
+	 * </p>
+	 */
+	private final float rtValues[];
+	
 	/**
 	 * <p>
 	 * This is the data model for creating triplet representation of sparse matrix. 
@@ -84,15 +93,20 @@ public class SliceSparseMatrix {
 	
 	/**
 	   * <p>
-	   * This constructor takes raw data file and create the triplet map which contains information
-	   * such as mz,intensity,rt,scan number
+	   * This constructor takes raw data file and creates the sparse matrix which contains the
+	   * intensities for each rounded mz value and scan number. The scans are read one by one into
+	   * reused buffers.
 	   * </p>
 	   * 
 	   *  @param rawFile a {@link io.github.msdk.datamodel.rawdata.RawDataFile} object
 	   */
 	public SliceSparseMatrix(RawDataFile rawFile){
 		listOfScans = rawFile.getScans();
-		List<SparseMatrixTriplet> listOfTriplet = new ArrayList<SparseMatrixTriplet>();
+		rtValues = new float[listOfScans.size()];
+		Arrays.fill(rtValues, Float.NaN);
+		SparseIntensityMatrix.Builder builder = new SparseIntensityMatrix.Builder(roundMz);
+		double mzBuffer[] = new double[0];
+		float intensityBuffer[] = new float[0];
 	    
 	    for(int i=0;i<listOfScans.size();i++){
 	    	MsScan scan = listOfScans.get(i);
@@ -100,72 +114,24 @@ public class SliceSparseMatrix {
 	    	if(scan==null)
 	    		continue;
 	    	
-	    	double mzBuffer[];
-	    	float intensityBuffer[];
-	    	Float rt;
-	    	mzBuffer = scan.getMzValues();
-	    	intensityBuffer = scan.getIntensityValues();
-	    	rt = scan.getRetentionTime();
+	    	Float rt = scan.getRetentionTime();
 	    	
 	    	if(rt==null)
 	    		continue;
 	    	
-	    	for(int j=0;j<mzBuffer.length;j++){
-	    		SparseMatrixTriplet triplet = new SparseMatrixTriplet();
-	    		triplet.intensity = intensityBuffer[j];
-	    		triplet.mz = roundMZ(mzBuffer[j]);
-	    		triplet.scanNumber  = i;
-	    		triplet.rt = rt;
-	    		triplet.removed = false;
-	    		listOfTriplet.add(triplet);
+	    	int size = scan.getNumberOfDataPoints();
+	    	if(mzBuffer.length<size){
+	    		mzBuffer = new double[size];
+	    		intensityBuffer = new float[size];
 	    	}
+	    	scan.getMzValues(mzBuffer);
+	    	scan.getIntensityValues(intensityBuffer);
+	    	rtValues[i] = rt;
+	    	builder.addScan(i, mzBuffer, intensityBuffer, size);
 	    }
 	    
-	   	    
-	    
-	    Comparator<SparseMatrixTriplet> compare = new Comparator<SparseMatrixTriplet>() {
-			
-			@Override
-			public int compare(SparseMatrixTriplet o1, SparseMatrixTriplet o2) {
-				
-				Integer  scan1 = o1.scanNumber;
-				Integer  scan2 = o2.scanNumber;
-				int scanCompare = scan1.compareTo(scan2);
-				
-				if(scanCompare!=0){
-					return scanCompare;
-				}
-				else {
-					Integer  mz1 = o1.mz;
-					Integer  mz2 = o2.mz;
-					return mz1.compareTo(mz2);
-				}
-			}
-		};
-		
-		
-		Collections.sort(listOfTriplet, compare);	
-		
-		filterListOfTriplet = new ArrayList<SparseMatrixTriplet>();
-		SparseMatrixTriplet currTriplet = new SparseMatrixTriplet();
-		SparseMatrixTriplet lastFilterTriplet = new SparseMatrixTriplet();
-		tripletMap = new MultiKeyMap ();
-		int index = 0;
-		filterListOfTriplet.add(listOfTriplet.get(0));
-		for(int i=1;i<listOfTriplet.size();i++){
-			currTriplet = listOfTriplet.get(i);
-			lastFilterTriplet = filterListOfTriplet.get(index);
-			if(currTriplet.mz == lastFilterTriplet.mz && currTriplet.scanNumber == lastFilterTriplet.scanNumber){
-				lastFilterTriplet.intensity += currTriplet.intensity;
-			}
-			else{
-				filterListOfTriplet.add(currTriplet);
-				tripletMap.put(currTriplet.scanNumber, currTriplet.mz,currTriplet);
-				index++;
-			}
-			
-		}
-		filterListOfTriplet.size();
+	    matrix = builder.build();
+	    removed = new BitSet(matrix.getNumberOfEntries());
 	}
 		
 	 /**
@@ -182,11 +148,13 @@ public class SliceSparseMatrix {
 		
 		int roundedmz = roundMZ(mz);
 		MultiKeyMap  sliceMap = new MultiKeyMap ();
+		int position = matrix.getSliceStart(roundedmz, lowerScanBound);
+		int end = matrix.getRowEnd(roundedmz);
 				
 		for(int i = lowerScanBound;i<=upperScanBound;i++){
-			if(tripletMap.containsKey(new Integer(i),new Integer(roundedmz))){
-				SparseMatrixTriplet triplet = (SparseMatrixTriplet)tripletMap.get(new Integer(i),new Integer(roundedmz));
-				sliceMap.put(i, roundedmz,triplet);
+			if(position<end && matrix.getScanIndexAt(position)==i){
+				sliceMap.put(i, roundedmz,createTriplet(position,roundedmz));
+				position++;
 			}
 			else{
 				sliceMap.put(i, roundedmz, null);
@@ -198,36 +166,37 @@ public class SliceSparseMatrix {
 	
 	/**
 	   * <p>
-	   * This method finds next maximum intensity from filterListOfTriplet
+	   * This method returns the intensities of the slice for given mz,lowerScanBound,upperScanBound
+	   * without creating objects for the data points. Scans without data point get zero intensity.
+	   * </p>
+	   * 
+	   * @param mz a {@link java.lang.Double} object
+	   * @param lowerScanBound a {@link java.lang.Integer} object
+	   * @param upperScanBound a {@link java.lang.Integer} object
+	   * @param sliceIntensities an array of at least upperScanBound-lowerScanBound+1 values
+	   * @return number of data points in the slice
+	   */
+	public int getSliceIntensities(double mz,int lowerScanBound,int upperScanBound,float sliceIntensities[]){
+		return matrix.getSlice(roundMZ(mz), lowerScanBound, upperScanBound, sliceIntensities);
+	}
+	
+	/**
+	   * <p>
+	   * This method finds next maximum intensity among the data points which are not removed. Data
+	   * points with the same intensity are returned in the order of their scan number and mz value.
 	   * </p>
 	   * 
 	   * @return tripletObject a {@link io.github.msdk.featdet.ADAP3D.common.algorithms.SliceSparseMatrix.SparseMatrixTriplet} object 
 	   */
 	public SparseMatrixTriplet findNextMaxIntensity(){
 		
-		SparseMatrixTriplet tripletObject = null;
-		 Comparator<SparseMatrixTriplet> compare = new Comparator<SparseMatrixTriplet>() {
-				
-				@Override
-				public int compare(SparseMatrixTriplet o1, SparseMatrixTriplet o2) {
-					
-					Float  intensity1 = o1.intensity;
-					Float  intensity2 = o2.intensity;
-					int intensityCompare = intensity2.compareTo(intensity1);
-					return intensityCompare;
-				}
-			};
-			Collections.sort(filterListOfTriplet,compare);
-			
-			for(int i=maxIntensityIndex;i<filterListOfTriplet.size();i++){
-				if(filterListOfTriplet.get(i).removed == false){
-					tripletObject = filterListOfTriplet.get(i);
-					maxIntensityIndex=i+1;
-					break;
-				}
-				
-			}
-			return tripletObject;
+		if(maxIntensityQueue==null)
+			maxIntensityQueue = new MaxIntensityQueue(matrix, removed);
+		
+		int position = maxIntensityQueue.next();
+		if(position<0)
+			return null;
+		return createTriplet(position,matrix.getBinAt(position));
 	}
 	
 	/**
@@ -283,17 +252,78 @@ public class SliceSparseMatrix {
 	   * @param mz a {@link java.lang.Double} object
 	   * @param lowerScanBound a {@link java.lang.Integer} object
 	   * @param upperScanBound a {@link java.lang.Integer} object
-	   * @return tripletMap a {@link org.apache.commons.collections4.map.MultiKeyMap} object
+	   * @return sliceMap a {@link org.apache.commons.collections4.map.MultiKeyMap} object with the removed data points
 	   */
 	public MultiKeyMap removeDataPoints(double mz,int lowerScanBound,int upperScanBound){
 		int roundedmz = roundMZ(mz);
-		for(int i = lowerScanBound;i<=upperScanBound;i++){
-			if(tripletMap.containsKey(new Integer(i),new Integer(roundedmz))){
-				SparseMatrixTriplet triplet = (SparseMatrixTriplet)tripletMap.get(new Integer(i),new Integer(roundedmz));
-				triplet.removed = true;
-			}
-		}
-		return tripletMap;
+		int start = matrix.getSliceStart(roundedmz, lowerScanBound);
+		int end = matrix.getSliceStart(roundedmz, upperScanBound+1);
+		if(start<end)
+			removed.set(start, end);
+		return getSlice(mz,lowerScanBound,upperScanBound);
+	}
+	
+	/**
+	   * <p>
+	   * This method checks whether the data point of given triplet was removed
+	   * </p>
+	   * 
+	   * @param triplet a {@link io.github.msdk.featdet.ADAP3D.common.algorithms.SliceSparseMatrix.SparseMatrixTriplet} object
+	   * @return true if the data point was removed
+	   */
+	public boolean isRemoved(SparseMatrixTriplet triplet){
+		int position = matrix.findPosition(triplet.mz, triplet.scanNumber);
+		return position>=0 && removed.get(position);
+	}
+	
+	/**
+	   * <p>
+	   * This method returns the retention time of given scan number, or NaN if the scan is not used
+	   * </p>
+	   * 
+	   * @param scanNumber a {@link java.lang.Integer} object
+	   * @return retention time a {@link java.lang.Float} object
+	   */
+	public float getRetentionTime(int scanNumber){
+		return rtValues[scanNumber];
+	}
+	
+	/**
+	   * <p>
+	   * This method returns the mz value of given rounded mz value, as used in the triplets
+	   * </p>
+	   * 
+	   * @param roundedmz a {@link java.lang.Integer} object
+	   * @return mz a {@link java.lang.Double} object
+	   */
+	public double getMzValue(int roundedmz){
+		return roundedmz/(double)roundMz;
+	}
+	
+	/**
+	   * <p>
+	   * This method returns the number of scans of the raw data file
+	   * </p>
+	   * 
+	   * @return number of scans a {@link java.lang.Integer} object
+	   */
+	public int getNumberOfScans(){
+		return rtValues.length;
+	}
+	
+	/**
+	   * <p>
+	   * This method creates the triplet of the data point at given position of the matrix
+	   * </p>
+	   */
+	private SparseMatrixTriplet createTriplet(int position,int roundedmz){
+		SparseMatrixTriplet triplet = new SparseMatrixTriplet();
+		triplet.mz = roundedmz;
+		triplet.scanNumber = matrix.getScanIndexAt(position);
+		triplet.intensity = matrix.getIntensityAt(position);
+		triplet.rt = rtValues[triplet.scanNumber];
+		triplet.removed = removed.get(position);
+		return triplet;
 	}
 	
 	/**
@@ -311,11 +341,12 @@ public class SliceSparseMatrix {
 
 	/**
 	   * <p>
-	   * This method sets maxIntensityIndex to 0
+	   * This method restarts the search for the next maximum intensity from the highest intensity
 	   * </p>
 	   */
 	public void setMaxIntensityIndexZero(){
-		maxIntensityIndex = 0;
+		if(maxIntensityQueue!=null)
+			maxIntensityQueue.reset();
 	}
 
 }
@@ -0,0 +1,412 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.lang.Math;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+import io.github.msdk.util.DataPointSorter;
+import io.github.msdk.util.DataPointSorter.SortingDirection;
+import io.github.msdk.util.DataPointSorter.SortingProperty;
+
+/**
+ * <p>
+ * SparseIntensityMatrix keeps the intensities of a raw data file in compressed sparse row form.
+ * Each row is one rounded m/z value (m/z bin) and each column is one scan. The data points are
+ * stored in two primitive arrays, the scan indices and the intensities, grouped by m/z bin and
+ * sorted by scan index within each bin. The start of every bin is kept in a row offset array
+ * indexed by the m/z bin, so the data points of a bin are found in constant time and the data
+ * points of a scan range by a binary search within the bin.
+ * </p>
+ *
+ * <p>
+ * Data points of the same scan which fall into the same m/z bin are summed up. The matrix is
+ * created by a {@link Builder}, which is fed one scan at a time.
+ * </p>
+ */
+public class SparseIntensityMatrix {
+
+	private final int binsPerMz;
+	private final int minBin;
+	private final int numOfBins;
+
+	// Data points of bin b are at positions rowOffsets[b - minBin] until
+	// rowOffsets[b - minBin + 1] - 1
+	private final int rowOffsets[];
+	private final int scanIndices[];
+	private final float intensities[];
+
+	private SparseIntensityMatrix(int binsPerMz, int minBin, int numOfBins, int rowOffsets[],
+			int scanIndices[], float intensities[]) {
+		this.binsPerMz = binsPerMz;
+		this.minBin = minBin;
+		this.numOfBins = numOfBins;
+		this.rowOffsets = rowOffsets;
+		this.scanIndices = scanIndices;
+		this.intensities = intensities;
+	}
+
+	/**
+	 * <p>
+	 * Builder of a {@link SparseIntensityMatrix}. The scans must be added in ascending order of their
+	 * scan index. Only the compressed data points of the scans added so far are kept in memory, so
+	 * the matrix can be built in a single pass over the scans of a raw data file.
+	 * </p>
+	 */
+	public static class Builder {
+
+		private final int binsPerMz;
+
+		// Data points grouped by scan and sorted by m/z bin within each scan
+		private int numOfEntries = 0;
+		private int bins[] = new int[1024];
+		private float entryIntensities[] = new float[1024];
+
+		// Scans which were added and the end of their data points
+		private int numOfScans = 0;
+		private int scans[] = new int[256];
+		private int scanEnds[] = new int[256];
+
+		private int minBin = Integer.MAX_VALUE, maxBin = Integer.MIN_VALUE;
+
+		// Copies of unsorted scans, which are sorted by m/z before they are added
+		private double sortMzBuffer[] = new double[0];
+		private float sortIntensityBuffer[] = new float[0];
+
+		/**
+		 * @param binsPerMz number of m/z bins per m/z unit, the m/z values are multiplied by this
+		 *        number and rounded to get their bin.
+		 */
+		public Builder(int binsPerMz) {
+			Preconditions.checkArgument(binsPerMz > 0);
+			this.binsPerMz = binsPerMz;
+		}
+
+		/**
+		 * <p>
+		 * Adds the data points of one scan. The given arrays are not modified and may be reused for
+		 * the next scan.
+		 * </p>
+		 *
+		 * @param scanIndex index of the scan, greater than the index of the previously added scan.
+		 * @param mzValues m/z values of the scan.
+		 * @param intensityValues intensity values of the scan.
+		 * @param size number of data points of the scan.
+		 */
+		public void addScan(int scanIndex, double mzValues[], float intensityValues[], int size) {
+			Preconditions.checkArgument(scanIndex >= 0);
+			Preconditions.checkArgument(numOfScans == 0 || scanIndex > scans[numOfScans - 1],
+					"Scans must be added in ascending order");
+			Preconditions.checkPositionIndex(size, mzValues.length);
+			Preconditions.checkPositionIndex(size, intensityValues.length);
+
+			if (!isSorted(mzValues, size)) {
+				if (sortMzBuffer.length < size) {
+					sortMzBuffer = new double[size];
+					sortIntensityBuffer = new float[size];
+				}
+				System.arraycopy(mzValues, 0, sortMzBuffer, 0, size);
+				System.arraycopy(intensityValues, 0, sortIntensityBuffer, 0, size);
+				DataPointSorter.sortDataPoints(sortMzBuffer, sortIntensityBuffer, size,
+						SortingProperty.MZ, SortingDirection.ASCENDING);
+				mzValues = sortMzBuffer;
+				intensityValues = sortIntensityBuffer;
+			}
+
+			ensureEntryCapacity(numOfEntries + size);
+			final int scanStart = numOfEntries;
+			for (int i = 0; i < size; i++) {
+				final int bin = getBin(mzValues[i], binsPerMz);
+				if (numOfEntries > scanStart && bins[numOfEntries - 1] == bin) {
+					entryIntensities[numOfEntries - 1] += intensityValues[i];
+					continue;
+				}
+				bins[numOfEntries] = bin;
+				entryIntensities[numOfEntries] = intensityValues[i];
+				numOfEntries++;
+			}
+			if (numOfEntries > scanStart) {
+				minBin = Math.min(minBin, bins[scanStart]);
+				maxBin = Math.max(maxBin, bins[numOfEntries - 1]);
+			}
+
+			if (numOfScans == scans.length) {
+				scans = Arrays.copyOf(scans, scans.length * 2);
+				scanEnds = Arrays.copyOf(scanEnds, scanEnds.length * 2);
+			}
+			scans[numOfScans] = scanIndex;
+			scanEnds[numOfScans] = numOfEntries;
+			numOfScans++;
+		}
+
+		/**
+		 * <p>
+		 * Creates the matrix from the added scans by counting the data points of each m/z bin and
+		 * moving them to their bins. The builder should not be used afterwards.
+		 * </p>
+		 *
+		 * @return the sparse matrix.
+		 */
+		public SparseIntensityMatrix build() {
+			if (numOfEntries == 0)
+				return new SparseIntensityMatrix(binsPerMz, 0, 0, new int[1], new int[0], new float[0]);
+
+			final int numOfBins = maxBin - minBin + 1;
+			final int rowOffsets[] = new int[numOfBins + 1];
+			for (int i = 0; i < numOfEntries; i++)
+				rowOffsets[bins[i] - minBin + 1]++;
+			for (int b = 0; b < numOfBins; b++)
+				rowOffsets[b + 1] += rowOffsets[b];
+
+			// Scans are visited in ascending order, so each bin is sorted by scan
+			final int nextPosition[] = Arrays.copyOf(rowOffsets, numOfBins);
+			final int scanIndices[] = new int[numOfEntries];
+			final float intensities[] = new float[numOfEntries];
+			int entry = 0;
+			for (int s = 0; s < numOfScans; s++) {
+				for (; entry < scanEnds[s]; entry++) {
+					final int position = nextPosition[bins[entry] - minBin]++;
+					scanIndices[position] = scans[s];
+					intensities[position] = entryIntensities[entry];
+				}
+			}
+
+			bins = null;
+			entryIntensities = null;
+			return new SparseIntensityMatrix(binsPerMz, minBin, numOfBins, rowOffsets, scanIndices,
+					intensities);
+		}
+
+		private void ensureEntryCapacity(int capacity) {
+			if (capacity <= bins.length)
+				return;
+			final int newCapacity = Math.max(capacity, bins.length + (bins.length >> 1));
+			bins = Arrays.copyOf(bins, newCapacity);
+			entryIntensities = Arrays.copyOf(entryIntensities, newCapacity);
+		}
+
+		private static boolean isSorted(double mzValues[], int size) {
+			for (int i = 1; i < size; i++) {
+				if (mzValues[i] < mzValues[i - 1])
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * <p>
+	 * This method returns the m/z bin of the given m/z value.
+	 * </p>
+	 *
+	 * @param mz a double.
+	 * @return the m/z bin.
+	 */
+	public int getBin(double mz) {
+		return getBin(mz, binsPerMz);
+	}
+
+	/**
+	 * <p>
+	 * This method returns the lowest m/z bin which contains data points.
+	 * </p>
+	 *
+	 * @return the lowest m/z bin.
+	 */
+	public int getMinBin() {
+		return minBin;
+	}
+
+	/**
+	 * <p>
+	 * This method returns the highest m/z bin which contains data points, or a value lower than
+	 * {@link #getMinBin()} if the matrix is empty.
+	 * </p>
+	 *
+	 * @return the highest m/z bin.
+	 */
+	public int getMaxBin() {
+		return minBin + numOfBins - 1;
+	}
+
+	/**
+	 * <p>
+	 * This method returns the number of stored data points.
+	 * </p>
+	 *
+	 * @return number of data points.
+	 */
+	public int getNumberOfEntries() {
+		return scanIndices.length;
+	}
+
+	/**
+	 * <p>
+	 * This method returns the position of the first data point of the given m/z bin. The data
+	 * points of the bin are at the positions from {@link #getRowStart(int)} to
+	 * {@link #getRowEnd(int)} (exclusive).
+	 * </p>
+	 *
+	 * @param bin a m/z bin.
+	 * @return position of the first data point.
+	 */
+	public int getRowStart(int bin) {
+		return rowOffsets[clampBin(bin)];
+	}
+
+	/**
+	 * <p>
+	 * This method returns the position after the last data point of the given m/z bin.
+	 * </p>
+	 *
+	 * @param bin a m/z bin.
+	 * @return position after the last data point.
+	 */
+	public int getRowEnd(int bin) {
+		final int row = clampBin(bin);
+		return (bin < minBin || bin >= minBin + numOfBins) ? rowOffsets[row] : rowOffsets[row + 1];
+	}
+
+	/**
+	 * <p>
+	 * This method returns the m/z bin of the data point at the given position.
+	 * </p>
+	 *
+	 * @param position position of a data point.
+	 * @return the m/z bin.
+	 */
+	public int getBinAt(int position) {
+		Preconditions.checkElementIndex(position, scanIndices.length);
+		// Last row whose offset is not greater than the position
+		int low = 0, high = numOfBins - 1;
+		while (low < high) {
+			final int mid = (low + high + 1) >>> 1;
+			if (rowOffsets[mid] <= position)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return minBin + low;
+	}
+
+	/**
+	 * <p>
+	 * This method returns the scan index of the data point at the given position.
+	 * </p>
+	 *
+	 * @param position position of a data point.
+	 * @return the scan index.
+	 */
+	public int getScanIndexAt(int position) {
+		return scanIndices[position];
+	}
+
+	/**
+	 * <p>
+	 * This method returns the intensity of the data point at the given position.
+	 * </p>
+	 *
+	 * @param position position of a data point.
+	 * @return the intensity.
+	 */
+	public float getIntensityAt(int position) {
+		return intensities[position];
+	}
+
+	/**
+	 * <p>
+	 * This method returns the position of the data point of the given m/z bin and scan, or -1 if
+	 * the scan has no data point in the bin.
+	 * </p>
+	 *
+	 * @param bin a m/z bin.
+	 * @param scanIndex a scan index.
+	 * @return position of the data point or -1.
+	 */
+	public int findPosition(int bin, int scanIndex) {
+		final int end = getRowEnd(bin);
+		final int position = findFirstScan(getRowStart(bin), end, scanIndex);
+		return (position < end && scanIndices[position] == scanIndex) ? position : -1;
+	}
+
+	/**
+	 * <p>
+	 * This method returns the position of the first data point of the given m/z bin whose scan
+	 * index is not lower than the given scan index. The data points of a slice from lowerScanIndex
+	 * to upperScanIndex are at the positions from
+	 * {@code getSliceStart(bin, lowerScanIndex)} to {@code getSliceStart(bin, upperScanIndex + 1)}
+	 * (exclusive).
+	 * </p>
+	 *
+	 * @param bin a m/z bin.
+	 * @param scanIndex a scan index.
+	 * @return position of the data point.
+	 */
+	public int getSliceStart(int bin, int scanIndex) {
+		return findFirstScan(getRowStart(bin), getRowEnd(bin), scanIndex);
+	}
+
+	/**
+	 * <p>
+	 * This method writes the intensities of the given m/z bin for the scans from lowerScanIndex to
+	 * upperScanIndex into the given array, scans without data point in the bin get zero intensity.
+	 * </p>
+	 *
+	 * @param bin a m/z bin.
+	 * @param lowerScanIndex first scan index of the slice.
+	 * @param upperScanIndex last scan index of the slice.
+	 * @param sliceIntensities an array of at least upperScanIndex - lowerScanIndex + 1 values.
+	 * @return number of data points found in the slice.
+	 */
+	public int getSlice(int bin, int lowerScanIndex, int upperScanIndex, float sliceIntensities[]) {
+		Preconditions.checkArgument(lowerScanIndex <= upperScanIndex);
+		final int length = upperScanIndex - lowerScanIndex + 1;
+		Preconditions.checkArgument(sliceIntensities.length >= length);
+		Arrays.fill(sliceIntensities, 0, length, 0f);
+		final int end = getRowEnd(bin);
+		int count = 0;
+		for (int p = getSliceStart(bin, lowerScanIndex); p < end
+				&& scanIndices[p] <= upperScanIndex; p++) {
+			sliceIntensities[scanIndices[p] - lowerScanIndex] = intensities[p];
+			count++;
+		}
+		return count;
+	}
+
+	private int findFirstScan(int start, int end, int scanIndex) {
+		int low = start, high = end;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (scanIndices[mid] < scanIndex)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private int clampBin(int bin) {
+		if (bin < minBin)
+			return 0;
+		if (bin >= minBin + numOfBins)
+			return numOfBins;
+		return bin - minBin;
+	}
+
+	private static int getBin(double mz, int binsPerMz) {
+		return (int) Math.round(mz * binsPerMz);
+	}
+
+}
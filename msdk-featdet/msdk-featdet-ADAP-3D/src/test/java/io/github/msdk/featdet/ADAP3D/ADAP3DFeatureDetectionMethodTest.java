@@ -0,0 +1,120 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.ADAP3D;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+import io.github.msdk.datamodel.features.Feature;
+import io.github.msdk.datamodel.files.FileType;
+import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
+import io.github.msdk.datamodel.impl.SimpleMsScan;
+import io.github.msdk.datamodel.impl.SimpleRawDataFile;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.util.DataPointSorter;
+import io.github.msdk.util.DataPointSorter.SortingDirection;
+import io.github.msdk.util.DataPointSorter.SortingProperty;
+
+public class ADAP3DFeatureDetectionMethodTest {
+
+	@Test
+	public void testSameFeaturesForAnyNumberOfThreads() throws MSDKException {
+
+		DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+		RawDataFile rawFile = createRawDataFile(dataStore);
+
+		List<Feature> expected = detect(dataStore, rawFile, 1);
+		Assert.assertFalse(expected.isEmpty());
+
+		// One of the features is the peak at m/z 300 and 60 s
+		boolean found = false;
+		for (Feature feature : expected) {
+			if (java.lang.Math.abs(feature.getMz() - 300.0) < 0.01
+					&& java.lang.Math.abs(feature.getRetentionTime() - 60f) < 5f)
+				found = true;
+		}
+		Assert.assertTrue(found);
+
+		for (int parallelism : new int[] {2, 4}) {
+			List<Feature> actual = detect(dataStore, rawFile, parallelism);
+			Assert.assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(expected.get(i).getMz(), actual.get(i).getMz());
+				Assert.assertEquals(expected.get(i).getRetentionTime(),
+						actual.get(i).getRetentionTime());
+				Assert.assertEquals(expected.get(i).getArea(), actual.get(i).getArea());
+				Assert.assertEquals(expected.get(i).getChromatogram().getNumberOfDataPoints(),
+						actual.get(i).getChromatogram().getNumberOfDataPoints());
+			}
+		}
+	}
+
+	private static List<Feature> detect(DataPointStore dataStore, RawDataFile rawFile,
+			int parallelism) throws MSDKException {
+		ADAP3DFeatureDetectionMethod method = new ADAP3DFeatureDetectionMethod(dataStore, rawFile,
+				1000.0, 3.0, Range.closed(0.0, 10.0), 5.0, 50, parallelism);
+		List<Feature> features = method.execute();
+		Assert.assertEquals(1.0, method.getFinishedPercentage(), 0.0001);
+		return features;
+	}
+
+	/**
+	 * Scans every second with Gaussian peaks at a few m/z values over random noise.
+	 */
+	private static RawDataFile createRawDataFile(DataPointStore dataStore) {
+		final Random random = new Random(19);
+		final double peakMz[] = {300.0, 300.5, 412.2, 412.21, 550.0};
+		final double peakRt[] = {60.0, 62.0, 100.0, 40.0, 150.0};
+		final double peakHeight[] = {1e6, 5e5, 2e5, 3e5, 8e5};
+
+		SimpleRawDataFile rawFile =
+				new SimpleRawDataFile("test", Optional.empty(), FileType.UNKNOWN, dataStore);
+		double mzValues[] = new double[500];
+		float intensityValues[] = new float[500];
+		for (int s = 0; s < 200; s++) {
+			SimpleMsScan scan =
+					new SimpleMsScan(dataStore, s + 1, MSDKObjectBuilder.getMsFunction("ms"));
+			scan.setRetentionTime((float) s);
+			int size = 0;
+			for (int p = 0; p < peakMz.length; p++) {
+				double distance = (s - peakRt[p]) / 4.0;
+				mzValues[size] = peakMz[p] + (random.nextDouble() - 0.5) * 0.002;
+				intensityValues[size] =
+						(float) (peakHeight[p] * java.lang.Math.exp(-distance * distance / 2))
+								+ random.nextInt(100);
+				size++;
+			}
+			for (int i = 0; i < 100; i++) {
+				mzValues[size] = 200.0 + random.nextDouble() * 400.0;
+				intensityValues[size] = random.nextInt(500);
+				size++;
+			}
+			DataPointSorter.sortDataPoints(mzValues, intensityValues, size, SortingProperty.MZ,
+					SortingDirection.ASCENDING);
+			scan.setDataPoints(mzValues, intensityValues, size);
+			rawFile.addScan(scan);
+		}
+		return rawFile;
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of the wavelet coefficients of ContinuousWaveletTransform for slices of 200 to 5000
+ * scans and 10 or 30 scales, computed by direct summation, by FFT, and by FFT with the scales in
+ * parallel. The same transform object is used for all invocations, as for the slices of one file,
+ * so the FFT kernels are cached. Run the main() method from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContinuousWaveletTransformBenchmark {
+
+	@State(Scope.Thread)
+	public static class Slice {
+
+		@Param({"200", "1000", "5000"})
+		public int size;
+
+		@Param({"10", "30"})
+		public int numOfScales;
+
+		ContinuousWaveletTransform direct, fft, parallelFft;
+
+		@Setup
+		public void setup() {
+			List<ContinuousWaveletTransform.DataPoint> listOfDataPoint =
+					FftWaveletTransformTest.createSignal(size);
+			direct = createTransform(listOfDataPoint, numOfScales, false, false);
+			fft = createTransform(listOfDataPoint, numOfScales, true, false);
+			parallelFft = createTransform(listOfDataPoint, numOfScales, true, true);
+		}
+	}
+
+	@Benchmark
+	public double[][] direct(Slice slice) {
+		slice.direct.getCoefficientsForAllScales();
+		return slice.direct.returnAllCoefficients();
+	}
+
+	@Benchmark
+	public double[][] fft(Slice slice) {
+		slice.fft.getCoefficientsForAllScales();
+		return slice.fft.returnAllCoefficients();
+	}
+
+	@Benchmark
+	public double[][] parallelFft(Slice slice) {
+		slice.parallelFft.getCoefficientsForAllScales();
+		return slice.parallelFft.returnAllCoefficients();
+	}
+
+	private static ContinuousWaveletTransform createTransform(
+			List<ContinuousWaveletTransform.DataPoint> listOfDataPoint, int numOfScales,
+			boolean useFFT, boolean parallel) {
+		ContinuousWaveletTransform continuousWavelet =
+				new ContinuousWaveletTransform(1, numOfScales, 1);
+		continuousWavelet.setX(listOfDataPoint);
+		continuousWavelet.setSignal(listOfDataPoint);
+		continuousWavelet.setUseFFT(useFFT);
+		continuousWavelet.setParallelScales(parallel);
+		return continuousWavelet;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(ContinuousWaveletTransformBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
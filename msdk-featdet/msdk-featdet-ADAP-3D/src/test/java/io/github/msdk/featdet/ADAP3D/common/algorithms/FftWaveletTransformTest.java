@@ -0,0 +1,109 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.msdk.featdet.ADAP3D.datamodel.Result;
+
+public class FftWaveletTransformTest {
+
+	@Test
+	public void testSameCoefficientsAsDirectSummation() {
+
+		for (int size : new int[] {5, 60, 517}) {
+			List<ContinuousWaveletTransform.DataPoint> listOfDataPoint = createSignal(size);
+
+			ContinuousWaveletTransform direct = createTransform(listOfDataPoint, false, false);
+			direct.getCoefficientsForAllScales();
+			double expected[][] = direct.returnAllCoefficients();
+
+			for (boolean parallel : new boolean[] {false, true}) {
+				ContinuousWaveletTransform fft = createTransform(listOfDataPoint, true, parallel);
+				fft.getCoefficientsForAllScales();
+				double actual[][] = fft.returnAllCoefficients();
+				Assert.assertEquals(expected.length, actual.length);
+				for (int s = 0; s < expected.length; s++) {
+					Assert.assertEquals(size, actual[s].length);
+					double maxCoefficient = 0.0;
+					for (int i = 0; i < size; i++)
+						maxCoefficient = java.lang.Math.max(maxCoefficient, java.lang.Math.abs(expected[s][i]));
+					for (int i = 0; i < size; i++)
+						Assert.assertEquals(expected[s][i], actual[s][i], maxCoefficient * 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSamePeaksAsDirectSummation() {
+
+		List<ContinuousWaveletTransform.DataPoint> listOfDataPoint = createSignal(400);
+		List<Result> expected = createTransform(listOfDataPoint, false, false).findPeaks();
+		List<Result> actual = createTransform(listOfDataPoint, true, true).findPeaks();
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).curLeftBound, actual.get(i).curLeftBound);
+			Assert.assertEquals(expected.get(i).curRightBound, actual.get(i).curRightBound);
+			Assert.assertEquals(expected.get(i).bestCoefficient, actual.get(i).bestCoefficient,
+					expected.get(i).bestCoefficient * 1e-9);
+		}
+	}
+
+	private static ContinuousWaveletTransform createTransform(
+			List<ContinuousWaveletTransform.DataPoint> listOfDataPoint, boolean useFFT,
+			boolean parallel) {
+		ContinuousWaveletTransform continuousWavelet = new ContinuousWaveletTransform(1, 10, 1);
+		continuousWavelet.setX(listOfDataPoint);
+		continuousWavelet.setSignal(listOfDataPoint);
+		continuousWavelet.setPeakWidth(0.00, 10.00);
+		continuousWavelet.setcoefAreaRatioTolerance(5);
+		continuousWavelet.setUseFFT(useFFT);
+		continuousWavelet.setParallelScales(parallel);
+		return continuousWavelet;
+	}
+
+	/**
+	 * Equidistant Gaussian peaks of different widths over a noisy baseline, with zero intensity
+	 * between some of them.
+	 */
+	static List<ContinuousWaveletTransform.DataPoint> createSignal(int size) {
+		final Random random = new Random(size);
+		List<ContinuousWaveletTransform.DataPoint> listOfDataPoint =
+				new ArrayList<ContinuousWaveletTransform.DataPoint>();
+		double peakCenter = -100, peakWidth = 1, peakHeight = 0;
+		for (int i = 0; i < size; i++) {
+			if (i > peakCenter + 5 * peakWidth) {
+				peakWidth = 2 + random.nextInt(6);
+				peakCenter = i + peakWidth * (4 + random.nextInt(4));
+				peakHeight = java.lang.Math.pow(10, 4 + 2 * random.nextDouble());
+			}
+			double distance = (i - peakCenter) / peakWidth;
+			ContinuousWaveletTransform.DataPoint dataPoint = new ContinuousWaveletTransform.DataPoint();
+			dataPoint.rt = i * 0.05;
+			dataPoint.intensity = peakHeight * java.lang.Math.exp(-distance * distance / 2);
+			if (i % 50 > 5)
+				dataPoint.intensity += random.nextInt(100);
+			listOfDataPoint.add(dataPoint);
+		}
+		return listOfDataPoint;
+	}
+
+}
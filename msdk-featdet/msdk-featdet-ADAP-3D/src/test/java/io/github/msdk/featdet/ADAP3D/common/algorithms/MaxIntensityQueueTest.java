@@ -0,0 +1,78 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MaxIntensityQueueTest {
+
+	@Test
+	public void testSameOrderAsSortedList() {
+
+		final Random random = new Random(17);
+		SparseIntensityMatrix.Builder builder = new SparseIntensityMatrix.Builder(100);
+		double mzBuffer[] = new double[300];
+		float intensityBuffer[] = new float[300];
+		for (int s = 0; s < 40; s++) {
+			double mz = 200.0;
+			for (int i = 0; i < mzBuffer.length; i++) {
+				mz += 0.005 + random.nextDouble() * 0.05;
+				mzBuffer[i] = mz;
+				// Many equal intensities, and a few large ones
+				intensityBuffer[i] = random.nextInt(10) == 0 ? random.nextFloat() * 1e7f
+						: random.nextInt(50);
+			}
+			builder.addScan(s, mzBuffer, intensityBuffer, mzBuffer.length);
+		}
+		SparseIntensityMatrix matrix = builder.build();
+
+		// Expected order: descending intensity, then scan index and m/z bin
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int p = 0; p < matrix.getNumberOfEntries(); p++)
+			expected.add(p);
+		Collections.sort(expected, (p1, p2) -> {
+			int compare = Float.compare(matrix.getIntensityAt(p2), matrix.getIntensityAt(p1));
+			if (compare == 0)
+				compare = Integer.compare(matrix.getScanIndexAt(p1), matrix.getScanIndexAt(p2));
+			if (compare == 0)
+				compare = Integer.compare(matrix.getBinAt(p1), matrix.getBinAt(p2));
+			return compare;
+		});
+
+		BitSet removed = new BitSet();
+		MaxIntensityQueue queue = new MaxIntensityQueue(matrix, removed);
+		for (int i = 0; i < 100; i++)
+			Assert.assertEquals(expected.get(i).intValue(), queue.next());
+
+		// Removed data points are skipped, also after a reset
+		for (int i = 100; i < expected.size(); i += 2)
+			removed.set(expected.get(i));
+		for (int i = 101; i < expected.size(); i += 2)
+			Assert.assertEquals(expected.get(i).intValue(), queue.next());
+		Assert.assertEquals(-1, queue.next());
+
+		queue.reset();
+		for (int i = 0; i < 100; i++)
+			Assert.assertEquals(expected.get(i).intValue(), queue.next());
+		Assert.assertEquals(expected.get(101).intValue(), queue.next());
+	}
+
+}
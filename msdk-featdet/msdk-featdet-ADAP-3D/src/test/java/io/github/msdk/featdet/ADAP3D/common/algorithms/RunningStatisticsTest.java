@@ -0,0 +1,50 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RunningStatisticsTest {
+
+	@Test
+	public void testSameAsDescriptiveStatistics() {
+
+		RunningStatistics running = new RunningStatistics();
+		Assert.assertTrue(Double.isNaN(running.getMean()));
+		Assert.assertTrue(Double.isNaN(running.getStandardDeviation()));
+
+		// Large intensities with a small spread
+		final Random random = new Random(22);
+		DescriptiveStatistics expected = new DescriptiveStatistics();
+		for (int i = 0; i < 1000; i++) {
+			double value = 1e7 + random.nextGaussian() * 3.0;
+			running.addValue(value);
+			expected.addValue(value);
+			Assert.assertEquals(expected.getN(), running.getN());
+			Assert.assertEquals(expected.getMean(), running.getMean(), 1e-6);
+			Assert.assertEquals(expected.getStandardDeviation(), running.getStandardDeviation(),
+					expected.getStandardDeviation() * 1e-8);
+		}
+
+		running.clear();
+		running.addValues(new double[] {1.0, 2.0, 4.0}, 1, 2);
+		Assert.assertEquals(2.0, running.getMean(), 0.0);
+		Assert.assertEquals(0.0, running.getStandardDeviation(), 0.0);
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SignalToNoiseTest {
+
+	private static double[] createSignal(Random random, int length) {
+		double signal[] = new double[length];
+		for (int i = 0; i < length; i++)
+			signal[i] = 1000.0 + random.nextGaussian() * 50.0;
+		for (int p = 10; p < length; p += 40) {
+			double height = 1e4 + random.nextDouble() * 1e6;
+			for (int i = java.lang.Math.max(0, p - 15); i < java.lang.Math.min(length, p + 15); i++)
+				signal[i] += height * java.lang.Math.exp(-(i - p) * (i - p) / 18.0);
+		}
+		return signal;
+	}
+
+	@Test
+	public void testWindowSweepsSameAsDescriptiveStatistics() {
+
+		final Random random = new Random(20);
+		final double signal[] = createSignal(random, 400);
+
+		// Peaks of different widths everywhere, also close to both ends
+		for (int peakLeft = 0; peakLeft < signal.length - 1; peakLeft += 3) {
+			for (int peakWidth = 1; peakWidth <= 12 && peakLeft + peakWidth < signal.length;
+					peakWidth += 5) {
+				int peakRight = peakLeft + peakWidth;
+				double expected = windowSweep(signal, peakLeft, peakRight);
+				Assert.assertEquals(expected,
+						SignalToNoise.filterBySNWindowSweep(signal, peakLeft, peakRight),
+						java.lang.Math.abs(expected) * 1e-9);
+				expected = windowInOutSweep(signal, peakLeft, peakRight);
+				Assert.assertEquals(expected,
+						SignalToNoise.filterBySNWindowInOutSweep(signal, peakLeft, peakRight),
+						java.lang.Math.abs(expected) * 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testRandWindowSelect() {
+
+		// On constant noise every sample window has the same mean
+		double signal[] = new double[200];
+		java.util.Arrays.fill(signal, 5.0);
+		for (int i = 95; i <= 105; i++)
+			signal[i] = 500.0 - 40.0 * java.lang.Math.abs(i - 100);
+		Assert.assertEquals((500.0 - 5.0) / 5.0,
+				SignalToNoise.filterBySNRandWindowSelect(signal, 90, 110), 1e-9);
+	}
+
+	@Test
+	public void testQuantile() {
+
+		final Random random = new Random(21);
+		for (int size = 2; size < 300; size += 7) {
+			double values[] = new double[size + 5];
+			List<Double> list = new ArrayList<Double>();
+			for (int i = 0; i < size; i++) {
+				// Include ties
+				values[i] = random.nextInt(size / 2 + 1);
+				list.add(values[i]);
+			}
+			for (double probability : new double[] {0.5, 0.9, 0.95}) {
+				double expected = sortedQuantile(list, probability);
+				Assert.assertEquals(expected, SignalToNoise.getQuantile(values, size, probability),
+						1e-9);
+				Assert.assertEquals(expected, SignalToNoise.getQuantile(list, probability), 1e-9);
+			}
+		}
+	}
+
+	private static double sortedQuantile(List<Double> values, double probability) {
+		List<Double> sorted = new ArrayList<Double>(values);
+		Collections.sort(sorted);
+		int index1 = (int) (sorted.size() * probability);
+		double gamma = (sorted.size() - 1) * probability + 1 - index1;
+		return (1 - gamma) * sorted.get(index1 - 1) + gamma * sorted.get(index1);
+	}
+
+	/**
+	 * Noise estimate as filterBySNWindowSweep computed it with a cleared and refilled
+	 * DescriptiveStatistics for every window.
+	 */
+	private static double windowSweep(double intensities[], int peakLeft, int peakRight) {
+		int peakWidth = peakRight - peakLeft;
+		DescriptiveStatistics noise = new DescriptiveStatistics();
+		for (int i = 0; i < 9 * peakWidth + 1; i++) {
+			int curRight = java.lang.Math.min(peakRight + 3 * peakWidth + i, intensities.length - 1);
+			int curLeft = java.lang.Math.max(peakLeft - 3 * peakWidth - i, 0);
+			DescriptiveStatistics window = new DescriptiveStatistics();
+			for (int j = peakRight + 1; j <= curRight; j++)
+				window.addValue(intensities[j]);
+			for (int j = curLeft; j < peakLeft; j++)
+				window.addValue(intensities[j]);
+			noise.addValue(window.getStandardDeviation());
+		}
+		return signalToNoise(intensities, peakLeft, peakRight, noise.getMin());
+	}
+
+	/**
+	 * Noise estimate as filterBySNWindowInOutSweep computed it.
+	 */
+	private static double windowInOutSweep(double intensities[], int peakLeft, int peakRight) {
+		int peakWidth = peakRight - peakLeft;
+		int initialWindowSize = 2 * peakWidth;
+		int finalWindowSize = 8 * peakWidth;
+		int last = intensities.length - 1;
+		DescriptiveStatistics noise = new DescriptiveStatistics();
+		for (int i = 0; i < finalWindowSize + 1; i++) {
+			int curRight = java.lang.Math.min(peakRight + initialWindowSize + i + 1, last);
+			int curLeft = java.lang.Math.max(peakLeft - initialWindowSize - i - 1, 0);
+			DescriptiveStatistics window = new DescriptiveStatistics();
+			if (java.lang.Math.abs(curLeft - peakLeft) >= initialWindowSize)
+				for (int j = curLeft; j < peakLeft; j++)
+					window.addValue(intensities[j]);
+			if (java.lang.Math.abs(curRight - peakRight) >= initialWindowSize)
+				for (int j = curRight; j > peakRight; j--)
+					window.addValue(intensities[j]);
+			if (window.getN() > 0)
+				noise.addValue(window.getStandardDeviation());
+		}
+		int anchorRight = java.lang.Math.min(peakRight + initialWindowSize + finalWindowSize, last);
+		int anchorLeft = java.lang.Math.max(peakRight - initialWindowSize - finalWindowSize, 0);
+		for (int i = 0; i < finalWindowSize - initialWindowSize; i++) {
+			int curRight = java.lang.Math.min(peakRight + 1 + i, last);
+			int curLeft = java.lang.Math.max(peakLeft - 1 - i, 0);
+			DescriptiveStatistics window = new DescriptiveStatistics();
+			if (java.lang.Math.abs(curLeft - anchorLeft) >= initialWindowSize)
+				for (int j = curLeft; j > anchorLeft; j--)
+					window.addValue(intensities[j]);
+			if (java.lang.Math.abs(curRight - anchorRight) >= initialWindowSize)
+				for (int j = curRight; j < anchorRight; j++)
+					window.addValue(intensities[j]);
+			if (window.getN() > 0)
+				noise.addValue(window.getStandardDeviation());
+		}
+		return signalToNoise(intensities, peakLeft, peakRight, noise.getMin());
+	}
+
+	private static double signalToNoise(double intensities[], int peakLeft, int peakRight,
+			double noise) {
+		int peakWidth = peakRight - peakLeft;
+		DescriptiveStatistics stats = new DescriptiveStatistics();
+		for (int i = peakLeft; i <= peakRight; i++)
+			stats.addValue(intensities[i]);
+		double peakHeight = stats.getMax();
+		stats.clear();
+		for (int i = peakRight; i <= java.lang.Math.min(peakRight + peakWidth,
+				intensities.length - 1); i++)
+			stats.addValue(intensities[i]);
+		double smallIntensity1 = stats.getMin();
+		stats.clear();
+		for (int i = java.lang.Math.max(peakLeft - peakWidth, 0); i <= peakLeft; i++)
+			stats.addValue(intensities[i]);
+		double smallIntensity2 = stats.getMin();
+		return (peakHeight - (smallIntensity1 + smallIntensity2) / 2.0) / noise;
+	}
+
+}
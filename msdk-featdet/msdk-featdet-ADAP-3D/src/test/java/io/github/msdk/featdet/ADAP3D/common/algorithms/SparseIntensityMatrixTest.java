@@ -0,0 +1,98 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.ADAP3D.common.algorithms;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SparseIntensityMatrixTest {
+
+	@Test
+	public void testSameIntensitiesAsMap() {
+
+		final Random random = new Random(16);
+		final int numOfScans = 60;
+		SparseIntensityMatrix.Builder builder = new SparseIntensityMatrix.Builder(100);
+		Map<Long, Float> expected = new HashMap<Long, Float>();
+		double mzBuffer[] = new double[500];
+		float intensityBuffer[] = new float[500];
+
+		// Every third scan is skipped and every fourth scan is not sorted by m/z
+		for (int s = 0; s < numOfScans; s++) {
+			if (s % 3 == 1)
+				continue;
+			int size = random.nextInt(mzBuffer.length);
+			for (int i = 0; i < size; i++) {
+				mzBuffer[i] = 300.0 + random.nextDouble() * 2.0;
+				intensityBuffer[i] = random.nextInt(1000);
+			}
+			if (s % 4 != 0)
+				Arrays.sort(mzBuffer, 0, size);
+			for (int i = 0; i < size; i++) {
+				long key = (long) s << 32 | (int) java.lang.Math.round(mzBuffer[i] * 100);
+				Float previous = expected.get(key);
+				expected.put(key, (previous == null ? 0f : previous) + intensityBuffer[i]);
+			}
+			builder.addScan(s, mzBuffer, intensityBuffer, size);
+		}
+		SparseIntensityMatrix matrix = builder.build();
+
+		Assert.assertEquals(expected.size(), matrix.getNumberOfEntries());
+		Assert.assertEquals(30000, matrix.getMinBin());
+		Assert.assertEquals(30200, matrix.getMaxBin());
+
+		float slice[] = new float[numOfScans];
+		for (int bin = 29990; bin <= 30210; bin++) {
+			int count = matrix.getSlice(bin, 0, numOfScans - 1, slice);
+			int expectedCount = 0;
+			for (int s = 0; s < numOfScans; s++) {
+				Float intensity = expected.get((long) s << 32 | bin);
+				if (intensity != null)
+					expectedCount++;
+				Assert.assertEquals(intensity == null ? 0f : intensity, slice[s], 0.01);
+				int position = matrix.findPosition(bin, s);
+				Assert.assertEquals(intensity == null, position < 0);
+				if (position >= 0) {
+					Assert.assertEquals(bin, matrix.getBinAt(position));
+					Assert.assertEquals(s, matrix.getScanIndexAt(position));
+				}
+			}
+			Assert.assertEquals(expectedCount, count);
+		}
+	}
+
+	@Test
+	public void testPartialSlice() {
+
+		SparseIntensityMatrix.Builder builder = new SparseIntensityMatrix.Builder(100);
+		builder.addScan(2, new double[] {100.001, 100.004, 200.0}, new float[] {1f, 2f, 5f}, 3);
+		builder.addScan(5, new double[] {100.0}, new float[] {7f}, 1);
+		builder.addScan(9, new double[] {100.0, 150.0}, new float[] {4f, 6f}, 2);
+		SparseIntensityMatrix matrix = builder.build();
+
+		float slice[] = new float[4];
+		Assert.assertEquals(2, matrix.getSlice(10000, 2, 5, slice));
+		Assert.assertArrayEquals(new float[] {3f, 0f, 0f, 7f}, slice, 0f);
+		Assert.assertEquals(0, matrix.getSlice(10000, 6, 8, slice));
+		Assert.assertEquals(0, matrix.getSlice(50000, 0, 3, slice));
+		Assert.assertEquals(matrix.getSliceStart(10000, 6), matrix.getSliceStart(10000, 9));
+		Assert.assertEquals(matrix.getRowStart(15000), matrix.getRowEnd(14999));
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.chromatogrambuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.MSDKMethod;
+import io.github.msdk.datamodel.chromatograms.Chromatogram;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.util.tolerances.MzTolerance;
+
+/**
+ * <p>
+ * Runs the ChromatogramBuilderMethod on a batch of raw data files in parallel. The number of scan
+ * data points decoded at the same time by all the files is limited by a memory budget. The result
+ * maps each raw data file to its chromatograms, in the order of the input files.
+ * </p>
+ */
+public class ChromatogramBuilderBatchMethod
+    implements MSDKMethod<Map<RawDataFile, List<Chromatogram>>> {
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+  private final @Nonnull DataPointStore dataPointStore;
+  private final @Nonnull List<RawDataFile> inputFiles;
+  private final @Nonnull Double noiseLevel;
+  private final @Nonnull Double minimumTimeSpan, minimumHeight;
+  private final @Nonnull MzTolerance mzTolerance;
+  private final @Nonnull ScanMemoryBudget scanMemoryBudget;
+
+  // Either the executor provided by the caller, or the number of threads of
+  // our own fork-join pool
+  private final @Nullable ExecutorService executor;
+  private final int numberOfThreads;
+
+  private final List<ChromatogramBuilderMethod> runningMethods = new ArrayList<>();
+  private volatile boolean canceled = false;
+  private Map<RawDataFile, List<Chromatogram>> result;
+
+  /**
+   * <p>
+   * Constructor for ChromatogramBuilderBatchMethod, which processes the files in its own fork-join
+   * pool.
+   * </p>
+   *
+   * @param dataPointStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   * @param inputFiles the raw data files to process.
+   * @param noiseLevel a {@link java.lang.Double} object.
+   * @param minimumTimeSpan a {@link java.lang.Double} object.
+   * @param minimumHeight a {@link java.lang.Double} object.
+   * @param mzTolerance an object that implements the MZTolerance interface.
+   * @param numberOfThreads maximum number of raw data files processed in parallel.
+   * @param memoryBudget maximum number of bytes taken by the scan data points decoded at the same
+   *        time.
+   */
+  public ChromatogramBuilderBatchMethod(@Nonnull DataPointStore dataPointStore,
+      @Nonnull List<RawDataFile> inputFiles, @Nonnull Double noiseLevel,
+      @Nonnull Double minimumTimeSpan, @Nonnull Double minimumHeight,
+      @Nonnull MzTolerance mzTolerance, int numberOfThreads, long memoryBudget) {
+    this(dataPointStore, inputFiles, noiseLevel, minimumTimeSpan, minimumHeight, mzTolerance,
+        null, numberOfThreads, memoryBudget);
+  }
+
+  /**
+   * <p>
+   * Constructor for ChromatogramBuilderBatchMethod, which processes the files in the given executor
+   * (e.g. a shared fork-join pool or a virtual-thread executor). The executor is not shut down by
+   * this method.
+   * </p>
+   *
+   * @param dataPointStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   * @param inputFiles the raw data files to process.
+   * @param noiseLevel a {@link java.lang.Double} object.
+   * @param minimumTimeSpan a {@link java.lang.Double} object.
+   * @param minimumHeight a {@link java.lang.Double} object.
+   * @param mzTolerance an object that implements the MZTolerance interface.
+   * @param executor a {@link java.util.concurrent.ExecutorService} object.
+   * @param memoryBudget maximum number of bytes taken by the scan data points decoded at the same
+   *        time.
+   */
+  public ChromatogramBuilderBatchMethod(@Nonnull DataPointStore dataPointStore,
+      @Nonnull List<RawDataFile> inputFiles, @Nonnull Double noiseLevel,
+      @Nonnull Double minimumTimeSpan, @Nonnull Double minimumHeight,
+      @Nonnull MzTolerance mzTolerance, @Nonnull ExecutorService executor, long memoryBudget) {
+    this(dataPointStore, inputFiles, noiseLevel, minimumTimeSpan, minimumHeight, mzTolerance,
+        executor, 1, memoryBudget);
+  }
+
+  private ChromatogramBuilderBatchMethod(@Nonnull DataPointStore dataPointStore,
+      @Nonnull List<RawDataFile> inputFiles, @Nonnull Double noiseLevel,
+      @Nonnull Double minimumTimeSpan, @Nonnull Double minimumHeight,
+      @Nonnull MzTolerance mzTolerance, @Nullable ExecutorService executor, int numberOfThreads,
+      long memoryBudget) {
+    Preconditions.checkArgument(numberOfThreads > 0, "Number of threads must be positive");
+    this.dataPointStore = dataPointStore;
+    this.inputFiles = inputFiles;
+    this.noiseLevel = noiseLevel;
+    this.minimumTimeSpan = minimumTimeSpan;
+    this.minimumHeight = minimumHeight;
+    this.mzTolerance = mzTolerance;
+    this.executor = executor;
+    this.numberOfThreads = numberOfThreads;
+    this.scanMemoryBudget = new ScanMemoryBudget(memoryBudget);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public Map<RawDataFile, List<Chromatogram>> execute() throws MSDKException {
+
+    logger.info("Started chromatogram builder on " + inputFiles.size() + " files");
+
+    if (inputFiles.isEmpty())
+      throw new MSDKException("No raw data files provided for Chromatogram Builder");
+
+    final ExecutorService pool = executor != null ? executor
+        : new ForkJoinPool(Math.min(numberOfThreads, inputFiles.size()));
+    final List<Future<List<Chromatogram>>> futures = new ArrayList<>();
+
+    try {
+      for (RawDataFile inputFile : inputFiles) {
+        if (canceled)
+          return null;
+        ChromatogramBuilderMethod chromBuilder = new ChromatogramBuilderMethod(dataPointStore,
+            inputFile, noiseLevel, minimumTimeSpan, minimumHeight, mzTolerance);
+        chromBuilder.setScanMemoryBudget(scanMemoryBudget);
+        synchronized (runningMethods) {
+          runningMethods.add(chromBuilder);
+        }
+        futures.add(pool.submit(chromBuilder::execute));
+      }
+
+      Map<RawDataFile, List<Chromatogram>> chromatograms = new LinkedHashMap<>();
+      for (int i = 0; i < inputFiles.size(); i++) {
+        List<Chromatogram> fileChromatograms = futures.get(i).get();
+        if (canceled || fileChromatograms == null)
+          return null;
+        chromatograms.put(inputFiles.get(i), fileChromatograms);
+      }
+      result = chromatograms;
+
+    } catch (InterruptedException e) {
+      cancel();
+      throw new MSDKException(e);
+    } catch (ExecutionException e) {
+      // Stop processing the other files
+      cancel();
+      if (e.getCause() instanceof MSDKException)
+        throw (MSDKException) e.getCause();
+      throw new MSDKException(e.getCause());
+    } finally {
+      if (executor == null)
+        pool.shutdownNow();
+    }
+
+    logger.info("Finished chromatogram builder on " + inputFiles.size() + " files");
+
+    return result;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public Float getFinishedPercentage() {
+    if (inputFiles.isEmpty())
+      return null;
+    float finished = 0f;
+    synchronized (runningMethods) {
+      for (ChromatogramBuilderMethod method : runningMethods) {
+        Float methodFinished = method.getFinishedPercentage();
+        if (methodFinished != null)
+          finished += methodFinished;
+      }
+    }
+    return finished / inputFiles.size();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public Map<RawDataFile, List<Chromatogram>> getResult() {
+    return result;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void cancel() {
+    canceled = true;
+    synchronized (runningMethods) {
+      for (ChromatogramBuilderMethod method : runningMethods)
+        method.cancel();
+    }
+  }
+
+}
@@ -50,9 +50,12 @@ public class ChromatogramBuilderMethod implements MSDKMethod<List<Chromatogram>>
   private final @Nonnull MzTolerance mzTolerance;
 
   private int processedScans = 0, totalScans = 0;
-  private boolean canceled = false;
+  private volatile boolean canceled = false;
   private List<Chromatogram> result;
 
+  // Shared with other chromatogram builders running in parallel, may be null
+  private @Nullable ScanMemoryBudget scanMemoryBudget;
+
   /**
    * <p>
    * Constructor for ChromatogramBuilderMethod. This version expects every scan to provide its own
@@ -151,7 +154,7 @@ public class ChromatogramBuilderMethod implements MSDKMethod<List<Chromatogram>>
     }
 
     HighestDataPointConnector massConnector =
-        new HighestDataPointConnector(noiseLevel, minimumTimeSpan, minimumHeight);
+        new IndexedHighestDataPointConnector(noiseLevel, minimumTimeSpan, minimumHeight);
 
     for (MsScan scan : inputScans) {
 
@@ -165,7 +168,22 @@ public class ChromatogramBuilderMethod implements MSDKMethod<List<Chromatogram>>
         throw new MSDKException(
             String.format("Unable to find a m/z tolerance for scan %l.", scan.getScanNumber()));
       }
-      massConnector.addScan(inputFile, scan, mzTolerance);
+
+      if (scanMemoryBudget == null) {
+        massConnector.addScan(inputFile, scan, mzTolerance);
+      } else {
+        int permits;
+        try {
+          permits = scanMemoryBudget.acquire(scan.getNumberOfDataPoints());
+        } catch (InterruptedException e) {
+          throw new MSDKException(e);
+        }
+        try {
+          massConnector.addScan(inputFile, scan, mzTolerance);
+        } finally {
+          scanMemoryBudget.release(permits);
+        }
+      }
       processedScans++;
     }
 
@@ -177,6 +195,14 @@ public class ChromatogramBuilderMethod implements MSDKMethod<List<Chromatogram>>
     return result;
   }
 
+  /**
+   * Sets the memory budget shared by several chromatogram builders. Before each scan is decoded,
+   * the memory for its data points is reserved from the budget.
+   */
+  void setScanMemoryBudget(@Nullable ScanMemoryBudget scanMemoryBudget) {
+    this.scanMemoryBudget = scanMemoryBudget;
+  }
+
   /** {@inheritDoc} */
   @Override
   @Nullable
@@ -45,7 +45,7 @@ class HighestDataPointConnector {
   private final @Nonnull Double noiseLevel;
   private final double minimumTimeSpan, minimumHeight;
 
-  private final Set<BuildingChromatogram> buildingChromatograms, connectedChromatograms;
+  final Set<BuildingChromatogram> buildingChromatograms, connectedChromatograms;
 
   // Data structures
   private float rtBuffer[] = new float[10000];
@@ -69,10 +69,14 @@ class HighestDataPointConnector {
 
   void addScan(RawDataFile dataFile, MsScan scan, MzTolerance mzTolerance) {
 
-    // Load data points
-    mzBuffer = scan.getMzValues();
-    intensityBuffer = scan.getIntensityValues();
+    // Load data points, the buffers are only reallocated for a larger scan
     int numOfDataPoints = scan.getNumberOfDataPoints();
+    if (mzBuffer.length < numOfDataPoints) {
+      mzBuffer = new double[numOfDataPoints];
+      intensityBuffer = new float[numOfDataPoints];
+    }
+    scan.getMzValues(mzBuffer);
+    scan.getIntensityValues(intensityBuffer);
 
     // Sort m/z peaks by descending intensity
     DataPointSorter.sortDataPoints(mzBuffer, intensityBuffer, numOfDataPoints,
@@ -81,6 +85,8 @@ class HighestDataPointConnector {
     // A set of already connected chromatograms in each iteration
     connectedChromatograms.clear();
 
+    startScan();
+
     for (int i = 0; i < numOfDataPoints; i++) {
 
       if (intensityBuffer[i] < noiseLevel)
@@ -88,20 +94,7 @@ class HighestDataPointConnector {
 
       // Search for best chromatogram, which has the highest _last_ data
       // point
-      BuildingChromatogram bestChromatogram = null;
-
-      for (BuildingChromatogram testChrom : buildingChromatograms) {
-
-        Range<Double> toleranceRange = mzTolerance.getToleranceRange(testChrom.getLastMz());
-
-        if (toleranceRange.contains(mzBuffer[i])) {
-          if ((bestChromatogram == null)
-              || (testChrom.getLastIntensity() > bestChromatogram.getLastIntensity())) {
-            bestChromatogram = testChrom;
-          }
-        }
-
-      }
+      BuildingChromatogram bestChromatogram = findBestChromatogram(mzBuffer[i], mzTolerance);
 
       // If we found best chromatogram, check if it is already connected.
       // In such case, we may discard this mass and continue. If we
@@ -159,6 +152,38 @@ class HighestDataPointConnector {
 
   }
 
+  /**
+   * Called at the beginning of each scan, before any data point of the scan is connected. At this
+   * point, buildingChromatograms contains the chromatograms that may be extended by the scan.
+   */
+  void startScan() {
+  }
+
+  /**
+   * Returns the chromatogram from buildingChromatograms, whose last data point is within the m/z
+   * tolerance of the given m/z value and has the highest intensity. If several chromatograms have
+   * the same last intensity, the first one in buildingChromatograms is returned.
+   */
+  BuildingChromatogram findBestChromatogram(double mz, MzTolerance mzTolerance) {
+
+    BuildingChromatogram bestChromatogram = null;
+
+    for (BuildingChromatogram testChrom : buildingChromatograms) {
+
+      Range<Double> toleranceRange = mzTolerance.getToleranceRange(testChrom.getLastMz());
+
+      if (toleranceRange.contains(mz)) {
+        if ((bestChromatogram == null)
+            || (testChrom.getLastIntensity() > bestChromatogram.getLastIntensity())) {
+          bestChromatogram = testChrom;
+        }
+      }
+
+    }
+
+    return bestChromatogram;
+  }
+
   void finishChromatograms(@Nonnull RawDataFile inputFile, @Nonnull DataPointStore dataPointStore,
       List<Chromatogram> finalList) {
 
@@ -0,0 +1,176 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.chromatogrambuilder;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.Range;
+
+import io.github.msdk.util.tolerances.MzTolerance;
+
+/**
+ * A HighestDataPointConnector, which keeps the chromatograms that are being built in an m/z-sorted
+ * primitive index. Instead of testing every chromatogram for every data point, only the
+ * chromatograms with the last m/z value close to the data point are tested. The connected
+ * chromatograms are exactly the same as with HighestDataPointConnector.
+ */
+class IndexedHighestDataPointConnector extends HighestDataPointConnector {
+
+  // Chromatograms in the iteration order of buildingChromatograms
+  private BuildingChromatogram chromatograms[] = new BuildingChromatogram[1000];
+
+  // Last m/z values at the beginning of the scan, sorted ascending, and the
+  // position of the corresponding chromatogram in the chromatograms array
+  private double indexMz[] = new double[1000];
+  private int indexPosition[] = new int[1000];
+  private int indexSize;
+
+  IndexedHighestDataPointConnector(@Nonnull Double noiseLevel, double minimumTimeSpan,
+      double minimumHeight) {
+    super(noiseLevel, minimumTimeSpan, minimumHeight);
+  }
+
+  @Override
+  void startScan() {
+
+    indexSize = buildingChromatograms.size();
+    if (chromatograms.length < indexSize) {
+      int newSize = Math.max(indexSize, chromatograms.length * 2);
+      chromatograms = new BuildingChromatogram[newSize];
+      indexMz = new double[newSize];
+      indexPosition = new int[newSize];
+    }
+
+    int i = 0;
+    for (BuildingChromatogram chromatogram : buildingChromatograms) {
+      chromatograms[i] = chromatogram;
+      indexMz[i] = chromatogram.getLastMz();
+      indexPosition[i] = i;
+      i++;
+    }
+
+    // Release the references from the previous scans
+    for (int j = indexSize; j < chromatograms.length && chromatograms[j] != null; j++)
+      chromatograms[j] = null;
+
+    sortIndex(0, indexSize - 1);
+
+  }
+
+  @Override
+  BuildingChromatogram findBestChromatogram(double mz, MzTolerance mzTolerance) {
+
+    if (indexSize == 0)
+      return null;
+
+    // The index contains the last m/z values from the beginning of the scan.
+    // A chromatogram that has been connected during this scan has a new last
+    // m/z value, which is within the tolerance of the indexed one, so we
+    // search a window of several tolerance widths and test the actual last
+    // m/z values of the candidates.
+    Range<Double> queryRange = mzTolerance.getToleranceRange(mz);
+    double width = Math.max(mz - queryRange.lowerEndpoint(), queryRange.upperEndpoint() - mz);
+    double lowerMz = mz - 4 * width;
+    double upperMz = mz + 4 * width;
+
+    BuildingChromatogram bestChromatogram = null;
+    int bestPosition = Integer.MAX_VALUE;
+
+    for (int i = lowerBound(lowerMz); i < indexSize && indexMz[i] <= upperMz; i++) {
+
+      int position = indexPosition[i];
+      BuildingChromatogram testChrom = chromatograms[position];
+
+      Range<Double> toleranceRange = mzTolerance.getToleranceRange(testChrom.getLastMz());
+      if (!toleranceRange.contains(mz))
+        continue;
+
+      // Same rule as in HighestDataPointConnector: the highest last data
+      // point wins, ties are resolved by the order of buildingChromatograms
+      if ((bestChromatogram == null)
+          || (testChrom.getLastIntensity() > bestChromatogram.getLastIntensity())
+          || ((testChrom.getLastIntensity() == bestChromatogram.getLastIntensity())
+              && (position < bestPosition))) {
+        bestChromatogram = testChrom;
+        bestPosition = position;
+      }
+
+    }
+
+    return bestChromatogram;
+  }
+
+  /**
+   * Returns the first index position with m/z value greater or equal to the given m/z.
+   */
+  private int lowerBound(double mz) {
+    int low = 0, high = indexSize;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (indexMz[mid] < mz)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  /**
+   * Sorts indexMz ascending and moves indexPosition along with it.
+   */
+  private void sortIndex(int left, int right) {
+
+    while (right - left > 16) {
+      int mid = (left + right) >>> 1;
+      double pivot = indexMz[mid];
+      int i = left, j = right;
+      while (i <= j) {
+        while (indexMz[i] < pivot)
+          i++;
+        while (indexMz[j] > pivot)
+          j--;
+        if (i <= j) {
+          swap(i, j);
+          i++;
+          j--;
+        }
+      }
+      // Recurse into the smaller part to limit the stack depth
+      if (j - left < right - i) {
+        sortIndex(left, j);
+        left = i;
+      } else {
+        sortIndex(i, right);
+        right = j;
+      }
+    }
+
+    // Insertion sort for the short ranges
+    for (int i = left + 1; i <= right; i++) {
+      for (int j = i; j > left && indexMz[j - 1] > indexMz[j]; j--)
+        swap(j, j - 1);
+    }
+
+  }
+
+  private void swap(int i, int j) {
+    double mz = indexMz[i];
+    indexMz[i] = indexMz[j];
+    indexMz[j] = mz;
+    int position = indexPosition[i];
+    indexPosition[i] = indexPosition[j];
+    indexPosition[j] = position;
+  }
+
+}
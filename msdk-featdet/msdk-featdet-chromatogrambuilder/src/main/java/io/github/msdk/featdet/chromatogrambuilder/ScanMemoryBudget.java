@@ -0,0 +1,58 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.chromatogrambuilder;
+
+import java.util.concurrent.Semaphore;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Limits the memory taken by the scan data points, which are decoded at the same time by several
+ * chromatogram builders. The memory is counted in kilobytes, each data point takes 12 bytes (m/z
+ * value as double and intensity as float).
+ */
+class ScanMemoryBudget {
+
+  private static final int BYTES_PER_DATA_POINT = 12;
+  private static final int BYTES_PER_PERMIT = 1024;
+
+  private final Semaphore semaphore;
+  private final int totalPermits;
+
+  ScanMemoryBudget(long budgetBytes) {
+    Preconditions.checkArgument(budgetBytes > 0, "Memory budget must be positive");
+    this.totalPermits = (int) Math.min(Integer.MAX_VALUE,
+        Math.max(1, budgetBytes / BYTES_PER_PERMIT));
+    this.semaphore = new Semaphore(totalPermits, true);
+  }
+
+  /**
+   * Waits until there is enough memory for the given number of data points. A scan that is bigger
+   * than the whole budget takes the whole budget.
+   *
+   * @return the number of permits, which must be passed to release()
+   */
+  int acquire(int numOfDataPoints) throws InterruptedException {
+    long bytes = (long) numOfDataPoints * BYTES_PER_DATA_POINT;
+    int permits = (int) Math.min(totalPermits,
+        Math.max(1, (bytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT));
+    semaphore.acquire(permits);
+    return permits;
+  }
+
+  void release(int permits) {
+    semaphore.release(permits);
+  }
+
+}
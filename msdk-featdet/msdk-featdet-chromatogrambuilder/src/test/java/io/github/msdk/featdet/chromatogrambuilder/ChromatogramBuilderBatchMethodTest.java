@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.chromatogrambuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.datamodel.chromatograms.Chromatogram;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.util.tolerances.ConstantPpmTolerance;
+import io.github.msdk.util.tolerances.MzTolerance;
+
+public class ChromatogramBuilderBatchMethodTest {
+
+  @Test
+  public void testBatchMatchesSingleFiles() throws MSDKException {
+
+    DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+    List<RawDataFile> rawFiles = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      rawFiles.add(HighestDataPointConnectorBenchmark.createSyntheticRawDataFile(dataStore, 200,
+          50 + i * 10, i));
+    }
+
+    double noiseLevel = 0;
+    double minimumTimeSpan = 5;
+    double minimumHeight = 1E4;
+    MzTolerance mzTolerance = new ConstantPpmTolerance(5.0);
+
+    // The memory budget only allows a single scan to be decoded at a time
+    ChromatogramBuilderBatchMethod batchBuilder = new ChromatogramBuilderBatchMethod(dataStore,
+        rawFiles, noiseLevel, minimumTimeSpan, minimumHeight, mzTolerance, 3, 1024);
+    Map<RawDataFile, List<Chromatogram>> batchResult = batchBuilder.execute();
+    Assert.assertNotNull(batchResult);
+    Assert.assertEquals(1.0, batchBuilder.getFinishedPercentage(), 0.0001);
+    Assert.assertEquals(rawFiles, new ArrayList<>(batchResult.keySet()));
+
+    for (RawDataFile rawFile : rawFiles) {
+      ChromatogramBuilderMethod chromBuilder = new ChromatogramBuilderMethod(dataStore, rawFile,
+          noiseLevel, minimumTimeSpan, minimumHeight, mzTolerance);
+      List<Chromatogram> expected = chromBuilder.execute();
+      List<Chromatogram> actual = batchResult.get(rawFile);
+      Assert.assertTrue(expected.size() > 10);
+      Assert.assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        Assert.assertEquals(expected.get(i).getMz(), actual.get(i).getMz());
+        Assert.assertArrayEquals(expected.get(i).getIntensityValues(),
+            actual.get(i).getIntensityValues(), 0f);
+      }
+    }
+
+  }
+
+}
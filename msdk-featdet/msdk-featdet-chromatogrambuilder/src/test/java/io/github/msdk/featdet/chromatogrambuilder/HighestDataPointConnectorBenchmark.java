@@ -0,0 +1,159 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.chromatogrambuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.github.msdk.datamodel.chromatograms.Chromatogram;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+import io.github.msdk.datamodel.files.FileType;
+import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
+import io.github.msdk.datamodel.impl.SimpleMsScan;
+import io.github.msdk.datamodel.impl.SimpleRawDataFile;
+import io.github.msdk.datamodel.rawdata.MsScan;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.util.DataPointSorter;
+import io.github.msdk.util.DataPointSorter.SortingDirection;
+import io.github.msdk.util.DataPointSorter.SortingProperty;
+import io.github.msdk.util.tolerances.ConstantPpmTolerance;
+import io.github.msdk.util.tolerances.MzTolerance;
+
+/**
+ * JMH benchmark comparing HighestDataPointConnector and IndexedHighestDataPointConnector on a
+ * synthetic 10000-scan file. Run the main() method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HighestDataPointConnectorBenchmark {
+
+  @Param({"100", "1000"})
+  public int numOfTraces;
+
+  private final MzTolerance mzTolerance = new ConstantPpmTolerance(5.0);
+
+  private DataPointStore dataStore;
+  private RawDataFile rawFile;
+
+  @Setup
+  public void setup() {
+    dataStore = DataPointStoreFactory.getMemoryDataStore();
+    rawFile = createSyntheticRawDataFile(dataStore, 10000, numOfTraces, 1234L);
+  }
+
+  @Benchmark
+  public List<Chromatogram> originalConnector() {
+    return connectAll(new HighestDataPointConnector(0.0, 5.0, 0.0), rawFile, mzTolerance,
+        dataStore);
+  }
+
+  @Benchmark
+  public List<Chromatogram> indexedConnector() {
+    return connectAll(new IndexedHighestDataPointConnector(0.0, 5.0, 0.0), rawFile,
+        mzTolerance, dataStore);
+  }
+
+  static List<Chromatogram> connectAll(HighestDataPointConnector connector, RawDataFile rawFile,
+      MzTolerance mzTolerance, DataPointStore dataStore) {
+    for (MsScan scan : rawFile.getScans())
+      connector.addScan(rawFile, scan, mzTolerance);
+    List<Chromatogram> result = new ArrayList<>();
+    connector.finishChromatograms(rawFile, dataStore, result);
+    return result;
+  }
+
+  /**
+   * Creates a raw data file with the given number of scans, one second apart. Each scan contains a
+   * data point for every trace, whose m/z value slightly fluctuates around the trace m/z and whose
+   * intensity follows a series of Gaussian peaks, plus the same number of random noise points.
+   */
+  static RawDataFile createSyntheticRawDataFile(DataPointStore dataStore, int numOfScans,
+      int numOfTraces, long seed) {
+
+    final Random random = new Random(seed);
+
+    final double traceMz[] = new double[numOfTraces];
+    final float tracePeakWidth[] = new float[numOfTraces];
+    final float tracePeakDistance[] = new float[numOfTraces];
+    for (int t = 0; t < numOfTraces; t++) {
+      traceMz[t] = 100.0 + random.nextDouble() * 900.0;
+      tracePeakWidth[t] = 2f + random.nextFloat() * 8f;
+      tracePeakDistance[t] = 50f + random.nextFloat() * 200f;
+    }
+
+    SimpleRawDataFile rawFile =
+        new SimpleRawDataFile("synthetic", Optional.empty(), FileType.UNKNOWN, dataStore);
+
+    final int numOfPoints = numOfTraces * 2;
+    final double mzValues[] = new double[numOfPoints];
+    final float intensityValues[] = new float[numOfPoints];
+
+    for (int scanNumber = 1; scanNumber <= numOfScans; scanNumber++) {
+      float rt = scanNumber;
+
+      for (int t = 0; t < numOfTraces; t++) {
+        float phase = (rt % tracePeakDistance[t]) - tracePeakDistance[t] / 2f;
+        float distance = phase / tracePeakWidth[t];
+        mzValues[t] = traceMz[t] * (1.0 + (random.nextDouble() - 0.5) * 2e-6);
+        intensityValues[t] = 500f + 1e5f * (float) Math.exp(-distance * distance);
+      }
+      for (int i = numOfTraces; i < numOfPoints; i++) {
+        mzValues[i] = 100.0 + random.nextDouble() * 900.0;
+        intensityValues[i] = random.nextFloat() * 1000f;
+      }
+
+      DataPointSorter.sortDataPoints(mzValues, intensityValues, numOfPoints, SortingProperty.MZ,
+          SortingDirection.ASCENDING);
+
+      SimpleMsScan scan =
+          new SimpleMsScan(dataStore, scanNumber, MSDKObjectBuilder.getMsFunction(1));
+      scan.setRetentionTime(rt);
+      scan.setDataPoints(mzValues, intensityValues, numOfPoints);
+      rawFile.addScan(scan);
+    }
+
+    return rawFile;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(HighestDataPointConnectorBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.chromatogrambuilder;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.msdk.datamodel.chromatograms.Chromatogram;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.util.tolerances.ConstantPpmTolerance;
+import io.github.msdk.util.tolerances.MzTolerance;
+
+public class HighestDataPointConnectorTest {
+
+  @Test
+  public void testIndexedConnectorMatchesOriginal() {
+
+    DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+    RawDataFile rawFile =
+        HighestDataPointConnectorBenchmark.createSyntheticRawDataFile(dataStore, 500, 200, 42L);
+    MzTolerance mzTolerance = new ConstantPpmTolerance(5.0);
+
+    List<Chromatogram> original = HighestDataPointConnectorBenchmark.connectAll(
+        new HighestDataPointConnector(0.0, 5.0, 1E4), rawFile, mzTolerance, dataStore);
+    List<Chromatogram> indexed = HighestDataPointConnectorBenchmark.connectAll(
+        new IndexedHighestDataPointConnector(0.0, 5.0, 1E4), rawFile, mzTolerance, dataStore);
+
+    Assert.assertTrue(original.size() > 100);
+    Assert.assertEquals(original.size(), indexed.size());
+
+    for (int i = 0; i < original.size(); i++) {
+      Chromatogram originalChrom = original.get(i);
+      Chromatogram indexedChrom = indexed.get(i);
+      Assert.assertEquals(originalChrom.getMz(), indexedChrom.getMz());
+      Assert.assertEquals(originalChrom.getNumberOfDataPoints(),
+          indexedChrom.getNumberOfDataPoints());
+      Assert.assertArrayEquals(originalChrom.getRetentionTimes(),
+          indexedChrom.getRetentionTimes(), 0f);
+      Assert.assertArrayEquals(originalChrom.getMzValues(), indexedChrom.getMzValues(), 0.0);
+      Assert.assertArrayEquals(originalChrom.getIntensityValues(),
+          indexedChrom.getIntensityValues(), 0f);
+    }
+
+  }
+
+}
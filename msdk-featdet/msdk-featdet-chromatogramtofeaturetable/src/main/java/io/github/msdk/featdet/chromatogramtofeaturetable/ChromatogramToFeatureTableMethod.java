@@ -18,6 +18,8 @@ import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -35,12 +37,18 @@ import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
 import io.github.msdk.datamodel.impl.SimpleIonAnnotation;
 import io.github.msdk.datamodel.ionannotations.IonAnnotation;
 import io.github.msdk.datamodel.rawdata.IsolationInfo;
-import io.github.msdk.util.ChromatogramUtil;
+import io.github.msdk.util.ChromatogramMetrics;
 import io.github.msdk.util.FeatureTableUtil;
 
 /**
  * This class adds a list of chromatograms to a feature table.
  *
+ * <p>
+ * All the feature descriptors of a chromatogram are computed together by a
+ * {@link io.github.msdk.util.ChromatogramMetrics} kernel, and the rows of many chromatograms can be
+ * filled in parallel.
+ * </p>
+ *
  * @author plusik
  * @version $Id: $Id
  */
@@ -57,8 +65,15 @@ public class ChromatogramToFeatureTableMethod implements MSDKMethod<FeatureTable
       MSDKObjectBuilder.getFeatureTableColumn(ColumnName.GROUPID, null);
   Map<Double, Integer> srmGroups = new HashMap<Double, Integer>();
 
-  private boolean canceled = false;
-  private int processedChromatograms = 0, totalChromatograms = 0;
+  // The buffers of addDataToRow, reused by each thread across all calls
+  private static final ThreadLocal<RowDataBuilder> builders =
+      ThreadLocal.withInitial(RowDataBuilder::new);
+
+  private final boolean parallel;
+
+  private volatile boolean canceled = false;
+  private final AtomicInteger processedChromatograms = new AtomicInteger();
+  private int totalChromatograms = 0;
 
   /**
    * <p>
@@ -72,9 +87,32 @@ public class ChromatogramToFeatureTableMethod implements MSDKMethod<FeatureTable
    */
   public ChromatogramToFeatureTableMethod(@Nonnull List<Chromatogram> chromatograms,
       @Nonnull FeatureTable featureTable, @Nonnull Sample sample) {
+    this(chromatograms, featureTable, sample, false);
+  }
+
+  /**
+   * <p>
+   * Constructor for ChromatogramToFeatureTableMethod.
+   * </p>
+   *
+   * <p>
+   * If parallel is true, the feature descriptors of the chromatograms are computed on the common
+   * fork-join pool. This requires that the data points of the chromatograms can be loaded
+   * concurrently. The rows are added to the feature table in the order of the chromatograms.
+   * </p>
+   *
+   * @param chromatograms a list of {@link io.github.msdk.datamodel.chromatograms.Chromatogram}
+   *        objects.
+   * @param featureTable a {@link io.github.msdk.datamodel.featuretables.FeatureTable} object.
+   * @param sample a {@link io.github.msdk.datamodel.featuretables.Sample} object.
+   * @param parallel whether to process the chromatograms in parallel.
+   */
+  public ChromatogramToFeatureTableMethod(@Nonnull List<Chromatogram> chromatograms,
+      @Nonnull FeatureTable featureTable, @Nonnull Sample sample, boolean parallel) {
     this.chromatograms = chromatograms;
     this.featureTable = featureTable;
     this.sample = sample;
+    this.parallel = parallel;
   }
 
   /** {@inheritDoc} */
@@ -100,16 +138,33 @@ public class ChromatogramToFeatureTableMethod implements MSDKMethod<FeatureTable
       lastID = featureTable.getRows().get(featureTable.getRows().size()).getId();
     }
 
-    // Loop through all chromatograms and add values to the feature table
-    FeatureTableColumn<Object> column;
-    for (Chromatogram chromatogram : chromatograms) {
+    // Create the rows in the order of the chromatograms
+    FeatureTableColumn<Object> column = featureTable.getColumn(ColumnName.ID, null);
+    final FeatureTableRow newRows[] = new FeatureTableRow[totalChromatograms];
+    for (int i = 0; i < totalChromatograms; i++) {
       lastID++;
-      FeatureTableRow newRow = MSDKObjectBuilder.getFeatureTableRow(featureTable, lastID);
-      column = featureTable.getColumn(ColumnName.ID, null);
-      newRow.setData(column, lastID);
+      newRows[i] = MSDKObjectBuilder.getFeatureTableRow(featureTable, lastID);
+      newRows[i].setData(column, lastID);
+    }
 
-      // Add the data to the feature table row
-      addDataToRow(newRow, chromatogram, tableColumns);
+    // Add the data to the feature table rows, with buffers reused by each thread
+    IntStream indices = IntStream.range(0, totalChromatograms);
+    if (parallel)
+      indices = indices.parallel();
+    indices.forEach(i -> {
+      if (canceled)
+        return;
+      builders.get().addDataToRow(newRows[i], chromatograms.get(i), tableColumns);
+      processedChromatograms.incrementAndGet();
+    });
+
+    // Check if cancel is requested
+    if (canceled)
+      return null;
+
+    for (int i = 0; i < totalChromatograms; i++) {
+      final Chromatogram chromatogram = chromatograms.get(i);
+      final FeatureTableRow newRow = newRows[i];
 
       // Add Q3 column and data for SRM chromatograms
       if (chromatogram.getChromatogramType() == ChromatogramType.MRM_SRM) {
@@ -146,7 +201,7 @@ public class ChromatogramToFeatureTableMethod implements MSDKMethod<FeatureTable
         // Group ID
         Integer groupID = srmGroups.get(mzQ1);
         if (groupID == null) {
-          srmGroups.put(mzQ1, processedChromatograms + 1);
+          srmGroups.put(mzQ1, i + 1);
 
           // Assign the first row to the 0 ID
           newRow.setData(column, 0);
@@ -157,13 +212,6 @@ public class ChromatogramToFeatureTableMethod implements MSDKMethod<FeatureTable
 
       // Add row to feature table
       featureTable.addRow(newRow);
-
-      // Increase counter
-      processedChromatograms++;
-
-      // Check if cancel is requested
-      if (canceled)
-        return null;
     }
 
     // Re-calculate average row m/z and RT values
@@ -174,110 +222,17 @@ public class ChromatogramToFeatureTableMethod implements MSDKMethod<FeatureTable
 
   /**
    * <p>
-   * addDataToRow.
+   * addDataToRow. The buffers are reused by the calls from the same thread, so batch callers do
+   * not allocate for each row.
    * </p>
    *
    * @param row a {@link io.github.msdk.datamodel.featuretables.FeatureTableRow} object.
    * @param chromatogram a {@link io.github.msdk.datamodel.chromatograms.Chromatogram} object.
    * @param tableColumns a {@link java.util.Map} object.
    */
-  @SuppressWarnings("unchecked")
   public static void addDataToRow(@Nonnull FeatureTableRow row, @Nonnull Chromatogram chromatogram,
       @Nullable Map<ColumnName, FeatureTableColumn<Object>> tableColumns) {
-
-    FeatureTable featureTable = row.getFeatureTable();
-
-    // Get tableColumns
-    if (tableColumns == null) {
-
-    }
-
-    // Data structures
-    float rtBuffer[];
-    float intensityBuffer[] = new float[10000];
-
-    // Load data
-    rtBuffer = chromatogram.getRetentionTimes();
-    intensityBuffer = chromatogram.getIntensityValues(intensityBuffer);
-    int numOfDataPoints = chromatogram.getNumberOfDataPoints();
-
-    FeatureTableColumn<Object> column;
-
-    if (chromatogram.getIonAnnotation() != null) {
-      column = featureTable.getColumn(ColumnName.IONANNOTATION, null);
-      List<IonAnnotation> ionAnnotations = (List<IonAnnotation>) row.getData(column);
-      if (ionAnnotations == null)
-        ionAnnotations = new ArrayList<IonAnnotation>();
-      ionAnnotations.add(chromatogram.getIonAnnotation());
-      row.setData(column, ionAnnotations);
-    }
-
-    column = tableColumns.get(ColumnName.CHROMATOGRAM);
-    row.setData(column, chromatogram);
-
-    Double mz = chromatogram.getMz();
-    column = tableColumns.get(ColumnName.MZ);
-    if (mz != null)
-      row.setData(column, mz);
-
-    Float rt = ChromatogramUtil.getRt(rtBuffer, intensityBuffer, numOfDataPoints);
-    column = tableColumns.get(ColumnName.RT);
-    row.setData(column, rt);
-
-    Float rtStart = ChromatogramUtil.getRtStart(rtBuffer, numOfDataPoints);
-    column = tableColumns.get(ColumnName.RTSTART);
-    if (rtStart != null) {
-      double doubleVal = rtStart;
-      row.setData(column, doubleVal);
-    }
-
-    Float rtEnd = ChromatogramUtil.getRtEnd(rtBuffer, numOfDataPoints);
-    column = tableColumns.get(ColumnName.RTEND);
-    if (rtEnd != null) {
-      double doubleVal = rtEnd;
-      row.setData(column, doubleVal);
-    }
-
-    Float duration = ChromatogramUtil.getDuration(rtBuffer, numOfDataPoints);
-    column = tableColumns.get(ColumnName.DURATION);
-    if (duration != null) {
-      double doubleVal = duration;
-      row.setData(column, doubleVal);
-    }
-
-    Double area = ChromatogramUtil.getArea(rtBuffer, intensityBuffer, numOfDataPoints);
-    column = tableColumns.get(ColumnName.AREA);
-    if (area != null)
-      row.setData(column, area);
-
-    Float height = ChromatogramUtil.getMaxHeight(intensityBuffer, numOfDataPoints);
-    column = tableColumns.get(ColumnName.HEIGHT);
-    if (height != null)
-      row.setData(column, height);
-
-    column = tableColumns.get(ColumnName.NUMBEROFDATAPOINTS);
-    row.setData(column, numOfDataPoints);
-
-    Double fwhm = ChromatogramUtil.getFwhm(rtBuffer, intensityBuffer, numOfDataPoints);
-    if (fwhm != null) {
-      column = tableColumns.get(ColumnName.FWHM);
-      row.setData(column, fwhm);
-    }
-
-    Double tailingFactor =
-        ChromatogramUtil.getTailingFactor(rtBuffer, intensityBuffer, numOfDataPoints);
-    if (tailingFactor != null) {
-      column = tableColumns.get(ColumnName.TAILINGFACTOR);
-      row.setData(column, tailingFactor);
-    }
-
-    Double asymmetryFactor =
-        ChromatogramUtil.getAsymmetryFactor(rtBuffer, intensityBuffer, numOfDataPoints);
-    if (asymmetryFactor != null) {
-      column = tableColumns.get(ColumnName.ASYMMETRYFACTOR);
-      row.setData(column, asymmetryFactor);
-    }
-
+    builders.get().addDataToRow(row, chromatogram, tableColumns);
   }
 
   private void addCommonColumns(@Nonnull FeatureTable featureTable) {
@@ -345,7 +300,8 @@ public class ChromatogramToFeatureTableMethod implements MSDKMethod<FeatureTable
   @Override
   @Nullable
   public Float getFinishedPercentage() {
-    return totalChromatograms == 0 ? null : (float) processedChromatograms / totalChromatograms;
+    return totalChromatograms == 0 ? null
+        : (float) processedChromatograms.get() / totalChromatograms;
   }
 
   /** {@inheritDoc} */
@@ -361,4 +317,90 @@ public class ChromatogramToFeatureTableMethod implements MSDKMethod<FeatureTable
     canceled = true;
   }
 
+  /**
+   * Fills the sample columns of feature table rows. The buffers and the metrics kernel are reused
+   * for each chromatogram, so an instance must only be used by one thread.
+   */
+  private static class RowDataBuilder {
+
+    private final ChromatogramMetrics metrics = new ChromatogramMetrics();
+    private float rtBuffer[] = new float[10000];
+    private float intensityBuffer[] = new float[10000];
+
+    @SuppressWarnings("unchecked")
+    private void addDataToRow(@Nonnull FeatureTableRow row, @Nonnull Chromatogram chromatogram,
+        @Nullable Map<ColumnName, FeatureTableColumn<Object>> tableColumns) {
+
+      FeatureTable featureTable = row.getFeatureTable();
+
+      // Load data
+      rtBuffer = chromatogram.getRetentionTimes(rtBuffer);
+      intensityBuffer = chromatogram.getIntensityValues(intensityBuffer);
+      int numOfDataPoints = chromatogram.getNumberOfDataPoints();
+
+      // Compute all the feature descriptors at once
+      metrics.compute(rtBuffer, intensityBuffer, numOfDataPoints);
+
+      FeatureTableColumn<Object> column;
+
+      if (chromatogram.getIonAnnotation() != null) {
+        column = featureTable.getColumn(ColumnName.IONANNOTATION, null);
+        List<IonAnnotation> ionAnnotations = (List<IonAnnotation>) row.getData(column);
+        if (ionAnnotations == null)
+          ionAnnotations = new ArrayList<IonAnnotation>();
+        ionAnnotations.add(chromatogram.getIonAnnotation());
+        row.setData(column, ionAnnotations);
+      }
+
+      column = tableColumns.get(ColumnName.CHROMATOGRAM);
+      row.setData(column, chromatogram);
+
+      Double mz = chromatogram.getMz();
+      column = tableColumns.get(ColumnName.MZ);
+      if (mz != null)
+        row.setData(column, mz);
+
+      if (numOfDataPoints > 0) {
+        column = tableColumns.get(ColumnName.RT);
+        row.setData(column, metrics.getRt());
+
+        column = tableColumns.get(ColumnName.RTSTART);
+        row.setData(column, (double) metrics.getRtStart());
+
+        column = tableColumns.get(ColumnName.RTEND);
+        row.setData(column, (double) metrics.getRtEnd());
+
+        column = tableColumns.get(ColumnName.DURATION);
+        row.setData(column, (double) metrics.getDuration());
+
+        column = tableColumns.get(ColumnName.AREA);
+        row.setData(column, metrics.getArea());
+
+        column = tableColumns.get(ColumnName.HEIGHT);
+        row.setData(column, metrics.getHeight());
+      }
+
+      column = tableColumns.get(ColumnName.NUMBEROFDATAPOINTS);
+      row.setData(column, numOfDataPoints);
+
+      Double fwhm = metrics.getFwhm();
+      if (fwhm != null) {
+        column = tableColumns.get(ColumnName.FWHM);
+        row.setData(column, fwhm);
+      }
+
+      Double tailingFactor = metrics.getTailingFactor();
+      if (tailingFactor != null) {
+        column = tableColumns.get(ColumnName.TAILINGFACTOR);
+        row.setData(column, tailingFactor);
+      }
+
+      Double asymmetryFactor = metrics.getAsymmetryFactor();
+      if (asymmetryFactor != null) {
+        column = tableColumns.get(ColumnName.ASYMMETRYFACTOR);
+        row.setData(column, asymmetryFactor);
+      }
+    }
+  }
+
 }
@@ -15,6 +15,7 @@ package io.github.msdk.featdet.msmsdetection;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.List;
 
@@ -52,7 +53,7 @@ public class MsMsDetectionMethod implements MSDKMethod<List<IonAnnotation>> {
   private int processedScans = 0, totalScans = 0;
 
   // Data structures
-  private float intensityBuffer[];
+  private float intensityBuffer[] = new float[10000];
 
   /**
    * <p>
@@ -96,9 +97,12 @@ public class MsMsDetectionMethod implements MSDKMethod<List<IonAnnotation>> {
     for (MsScan scan : msScans) {
 
       // Calculate total intensity of the ions in the MS/MS spectrum
-      intensityBuffer = scan.getIntensityValues();
+      final int numOfDataPoints = scan.getNumberOfDataPoints();
+      if (intensityBuffer.length < numOfDataPoints)
+        intensityBuffer = new float[numOfDataPoints];
+      scan.getIntensityValues(intensityBuffer);
       double totalInteisity = 0;
-      for (int i = 0; i < scan.getNumberOfDataPoints(); i++) {
+      for (int i = 0; i < numOfDataPoints; i++) {
         totalInteisity = totalInteisity + intensityBuffer[i];
       }
 
@@ -138,42 +142,23 @@ public class MsMsDetectionMethod implements MSDKMethod<List<IonAnnotation>> {
       }
     });
 
-    // Loop through the array and find duplicates within the m/z and RT
-    // tolerances
-    List<Integer> removeEntries = new ArrayList<>();
-    for (int firstIndex = 0; firstIndex < scanData.length; firstIndex++) {
-
-      double floatMz1 = scanData[firstIndex][0];
-      float floatRt1 = (float) scanData[firstIndex][1];
-
-      // Loop through all the entries with lower intensity
-      for (int secondIndex = firstIndex + 1; secondIndex < scanData.length; secondIndex++) {
-
-        if (removeEntries.contains(secondIndex))
-          continue;
-
-        double floatMz2 = scanData[secondIndex][0];
-        float floatRt2 = (float) scanData[secondIndex][1];
-
-        // Compare m/z
-        final boolean sameMz = mzTolerance.getToleranceRange(floatMz1).contains(floatMz2);
-
-        // Compare RT
-        final boolean sameRt = rtTolerance.getToleranceRange(floatRt1).contains(floatRt2);
-
-        // Same feature?
-        if (sameMz && sameRt) {
-          removeEntries.add(secondIndex);
-        }
-      }
-
+    // Find duplicates within the m/z and RT tolerances, the most intense
+    // precursor of each group is kept
+    double mzValues[] = new double[scanData.length];
+    float rtValues[] = new float[scanData.length];
+    for (int i = 0; i < scanData.length; i++) {
+      mzValues[i] = scanData[i][0];
+      rtValues[i] = (float) scanData[i][1];
     }
+    PrecursorDuplicateFilter duplicateFilter =
+        new PrecursorDuplicateFilter(mzTolerance, rtTolerance);
+    BitSet removeEntries = duplicateFilter.findDuplicates(mzValues, rtValues, scanData.length);
 
     // Add the unique entries to the result list
     for (int i = 0; i < scanData.length; i++) {
-      if (!removeEntries.contains(i)) {
-        double mzValue = scanData[i][0];
-        float rtValue = (float) scanData[i][1];
+      if (!removeEntries.get(i)) {
+        double mzValue = mzValues[i];
+        float rtValue = rtValues[i];
 
         // Create ion
         SimpleIonAnnotation ionAnnotation = new SimpleIonAnnotation();
@@ -0,0 +1,161 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.msmsdetection;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Range;
+
+import io.github.msdk.util.tolerances.MzTolerance;
+import io.github.msdk.util.tolerances.RTTolerance;
+
+/**
+ * <p>
+ * This class finds duplicate MS/MS precursors. The precursors are given in the order of descending
+ * intensity, and a precursor is a duplicate if its m/z and RT are within the tolerance ranges of a
+ * more intense precursor, so the most intense precursor of a group wins.
+ * </p>
+ *
+ * <p>
+ * The precursors are bucketed on an m/z x RT grid whose cells are as large as the widest tolerance
+ * ranges, so each precursor is only compared with the precursors in the few cells its tolerance
+ * ranges overlap. The tolerance ranges are created once per precursor and the duplicates are marked
+ * in a bit set, so the running time is close to linear in the number of precursors.
+ * </p>
+ */
+public class PrecursorDuplicateFilter {
+
+  private final @Nonnull MzTolerance mzTolerance;
+  private final @Nonnull RTTolerance rtTolerance;
+
+  /**
+   * <p>
+   * Constructor for PrecursorDuplicateFilter.
+   * </p>
+   *
+   * @param mzTolerance a {@link io.github.msdk.util.tolerances.MzTolerance} object.
+   * @param rtTolerance a {@link io.github.msdk.util.tolerances.RTTolerance} object.
+   */
+  public PrecursorDuplicateFilter(@Nonnull MzTolerance mzTolerance,
+      @Nonnull RTTolerance rtTolerance) {
+    this.mzTolerance = mzTolerance;
+    this.rtTolerance = rtTolerance;
+  }
+
+  /**
+   * <p>
+   * This method returns the duplicates among the given precursors, which must be sorted by
+   * descending intensity. Precursor j is a duplicate if there is a precursor i &lt; j whose m/z and
+   * RT tolerance ranges contain the m/z and RT of precursor j.
+   * </p>
+   *
+   * @param mzValues m/z values of the precursors.
+   * @param rtValues RT values of the precursors.
+   * @param size number of precursors.
+   * @return a {@link java.util.BitSet} with the indices of the duplicates.
+   */
+  public @Nonnull BitSet findDuplicates(@Nonnull double mzValues[], @Nonnull float rtValues[],
+      int size) {
+    Preconditions.checkArgument(mzValues.length >= size && rtValues.length >= size);
+
+    // Bounds of the (closed) tolerance ranges of each precursor and the size of the grid cells
+    final double mzLow[] = new double[size], mzHigh[] = new double[size];
+    final float rtLow[] = new float[size], rtHigh[] = new float[size];
+    double mzCellSize = 0, rtCellSize = 0;
+    for (int i = 0; i < size; i++) {
+      final Range<Double> mzRange = mzTolerance.getToleranceRange(mzValues[i]);
+      final Range<Float> rtRange = rtTolerance.getToleranceRange(rtValues[i]);
+      mzLow[i] = mzRange.lowerEndpoint();
+      mzHigh[i] = mzRange.upperEndpoint();
+      rtLow[i] = rtRange.lowerEndpoint();
+      rtHigh[i] = rtRange.upperEndpoint();
+      mzCellSize = Math.max(mzCellSize, mzHigh[i] - mzLow[i]);
+      rtCellSize = Math.max(rtCellSize, rtHigh[i] - rtLow[i]);
+    }
+    // Any cell size is correct, zero tolerances only need a positive one
+    if (!(mzCellSize > 0))
+      mzCellSize = 1.0;
+    if (!(rtCellSize > 0))
+      rtCellSize = 1.0;
+
+    // Group the precursors by cell, in ascending order within each cell
+    final Map<Long, Integer> cellIndices = new HashMap<>();
+    final int precursorCells[] = new int[size];
+    for (int i = 0; i < size; i++) {
+      final long key =
+          cellKey(cell(mzValues[i], mzCellSize), cell(rtValues[i], rtCellSize));
+      Integer cellIndex = cellIndices.get(key);
+      if (cellIndex == null) {
+        cellIndex = cellIndices.size();
+        cellIndices.put(key, cellIndex);
+      }
+      precursorCells[i] = cellIndex;
+    }
+    final int cellStarts[] = new int[cellIndices.size() + 1];
+    for (int i = 0; i < size; i++)
+      cellStarts[precursorCells[i] + 1]++;
+    for (int c = 0; c < cellIndices.size(); c++)
+      cellStarts[c + 1] += cellStarts[c];
+    final int cellPrecursors[] = new int[size];
+    final int fill[] = cellStarts.clone();
+    for (int i = 0; i < size; i++)
+      cellPrecursors[fill[precursorCells[i]]++] = i;
+
+    // Compare each precursor with the less intense ones in the cells its ranges overlap
+    final BitSet duplicates = new BitSet(size);
+    for (int i = 0; i < size; i++) {
+      final int firstMzCell = cell(mzLow[i], mzCellSize);
+      final int lastMzCell = cell(mzHigh[i], mzCellSize);
+      final int firstRtCell = cell(rtLow[i], rtCellSize);
+      final int lastRtCell = cell(rtHigh[i], rtCellSize);
+      for (int mzCell = firstMzCell; mzCell <= lastMzCell; mzCell++) {
+        for (int rtCell = firstRtCell; rtCell <= lastRtCell; rtCell++) {
+          final Integer cellIndex = cellIndices.get(cellKey(mzCell, rtCell));
+          if (cellIndex == null)
+            continue;
+          // Skip the more intense precursors of the cell
+          int p = Arrays.binarySearch(cellPrecursors, cellStarts[cellIndex],
+              cellStarts[cellIndex + 1], i + 1);
+          if (p < 0)
+            p = -p - 1;
+          for (; p < cellStarts[cellIndex + 1]; p++) {
+            final int j = cellPrecursors[p];
+            if (duplicates.get(j))
+              continue;
+            if (mzValues[j] >= mzLow[i] && mzValues[j] <= mzHigh[i] && rtValues[j] >= rtLow[i]
+                && rtValues[j] <= rtHigh[i])
+              duplicates.set(j);
+          }
+        }
+      }
+    }
+
+    return duplicates;
+  }
+
+  private static int cell(double value, double cellSize) {
+    return (int) Math.floor(value / cellSize);
+  }
+
+  private static long cellKey(int mzCell, int rtCell) {
+    return ((long) mzCell << 32) | (rtCell & 0xffffffffL);
+  }
+
+}
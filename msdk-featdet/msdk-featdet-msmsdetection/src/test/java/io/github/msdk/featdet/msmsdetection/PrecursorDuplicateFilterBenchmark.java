@@ -0,0 +1,83 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.msmsdetection;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.github.msdk.util.tolerances.MaximumMzTolerance;
+import io.github.msdk.util.tolerances.RTTolerance;
+
+/**
+ * JMH benchmark of the precursor de-duplication of MsMsDetectionMethod for DDA runs of 1000 to
+ * 60000 MS/MS scans. The time per scan should stay about the same for all sizes. Run the main()
+ * method from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrecursorDuplicateFilterBenchmark {
+
+  @State(Scope.Thread)
+  public static class Precursors {
+
+    @Param({"1000", "10000", "60000"})
+    public int size;
+
+    double mzValues[];
+    float rtValues[];
+    PrecursorDuplicateFilter filter;
+
+    @Setup
+    public void setup() {
+      mzValues = new double[size];
+      rtValues = new float[size];
+      PrecursorDuplicateFilterTest.createPrecursors(new Random(size), mzValues, rtValues);
+      filter = new PrecursorDuplicateFilter(new MaximumMzTolerance(0.003, 5.0),
+          new RTTolerance(6f, true));
+    }
+  }
+
+  @Benchmark
+  public BitSet findDuplicates(Precursors precursors) {
+    return precursors.filter.findDuplicates(precursors.mzValues, precursors.rtValues,
+        precursors.size);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(PrecursorDuplicateFilterBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.msmsdetection;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.github.msdk.util.tolerances.ConstantPpmTolerance;
+import io.github.msdk.util.tolerances.MaximumMzTolerance;
+import io.github.msdk.util.tolerances.MzTolerance;
+import io.github.msdk.util.tolerances.RTTolerance;
+
+public class PrecursorDuplicateFilterTest {
+
+  /**
+   * Creates precursors of a DDA run in the order of descending intensity: each ion is fragmented a
+   * few times at slightly different m/z and RT values.
+   */
+  static void createPrecursors(Random random, double mzValues[], float rtValues[]) {
+    int i = 0;
+    while (i < mzValues.length) {
+      double mz = 100.0 + random.nextDouble() * 900.0;
+      float rt = 60f + random.nextFloat() * 3600f;
+      for (int repeat = random.nextInt(5); repeat >= 0 && i < mzValues.length; repeat--, i++) {
+        mzValues[i] = mz + random.nextGaussian() * 0.002;
+        rtValues[i] = rt + (float) random.nextGaussian() * 5f;
+      }
+    }
+    // Shuffle, so the order of intensities is random
+    for (int j = mzValues.length - 1; j > 0; j--) {
+      int k = random.nextInt(j + 1);
+      double mz = mzValues[j];
+      mzValues[j] = mzValues[k];
+      mzValues[k] = mz;
+      float rt = rtValues[j];
+      rtValues[j] = rtValues[k];
+      rtValues[k] = rt;
+    }
+  }
+
+  @Test
+  public void testSameAsAllPairs() {
+    final Random random = new Random(21);
+    final double mzValues[] = new double[3000];
+    final float rtValues[] = new float[3000];
+    createPrecursors(random, mzValues, rtValues);
+
+    final MzTolerance mzTolerances[] =
+        {new MaximumMzTolerance(0.003, 5.0), new ConstantPpmTolerance(10.0)};
+    final RTTolerance rtTolerances[] = {new RTTolerance(6f, true), new RTTolerance(0.002f, false)};
+    for (MzTolerance mzTolerance : mzTolerances) {
+      for (RTTolerance rtTolerance : rtTolerances) {
+        // Every pair of a more intense and a less intense precursor
+        BitSet expected = new BitSet();
+        for (int i = 0; i < mzValues.length; i++) {
+          for (int j = i + 1; j < mzValues.length; j++) {
+            if (mzTolerance.getToleranceRange(mzValues[i]).contains(mzValues[j])
+                && rtTolerance.getToleranceRange(rtValues[i]).contains(rtValues[j]))
+              expected.set(j);
+          }
+        }
+        Assert.assertTrue(expected.cardinality() > 100);
+
+        PrecursorDuplicateFilter filter = new PrecursorDuplicateFilter(mzTolerance, rtTolerance);
+        Assert.assertEquals(expected, filter.findDuplicates(mzValues, rtValues, mzValues.length));
+      }
+    }
+  }
+
+  @Test
+  public void testMostIntenseWins() {
+    PrecursorDuplicateFilter filter =
+        new PrecursorDuplicateFilter(new MaximumMzTolerance(0.003, 5.0), new RTTolerance(1f, true));
+    double mzValues[] = {500.0, 300.0, 500.002, 500.002, 500.0};
+    float rtValues[] = {60f, 60f, 60.5f, 70f, 61.5f};
+    BitSet duplicates = filter.findDuplicates(mzValues, rtValues, 5);
+    Assert.assertEquals(BitSet.valueOf(new long[] {0b10100}), duplicates);
+
+    Assert.assertTrue(filter.findDuplicates(new double[0], new float[0], 0).isEmpty());
+  }
+
+}
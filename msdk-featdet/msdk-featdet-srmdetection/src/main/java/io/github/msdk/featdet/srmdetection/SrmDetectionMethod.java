@@ -14,12 +14,8 @@
 package io.github.msdk.featdet.srmdetection;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -27,21 +23,14 @@ import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Range;
-
 import io.github.msdk.MSDKException;
 import io.github.msdk.MSDKMethod;
 import io.github.msdk.datamodel.chromatograms.Chromatogram;
 import io.github.msdk.datamodel.chromatograms.ChromatogramType;
 import io.github.msdk.datamodel.datastore.DataPointStore;
 import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
-import io.github.msdk.datamodel.impl.SimpleChromatogram;
-import io.github.msdk.datamodel.impl.SimpleIsolationInfo;
-import io.github.msdk.datamodel.rawdata.IsolationInfo;
-import io.github.msdk.datamodel.rawdata.MsFunction;
 import io.github.msdk.datamodel.rawdata.MsScan;
 import io.github.msdk.datamodel.rawdata.RawDataFile;
-import io.github.msdk.datamodel.rawdata.SeparationType;
 
 /**
  * This class creates a feature table based on the SRM chromatograms from a raw data file.
@@ -54,11 +43,13 @@ public class SrmDetectionMethod implements MSDKMethod<List<Chromatogram>> {
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
   private final @Nonnull RawDataFile rawDataFile;
+  private final @Nonnull Iterable<MsScan> scans;
   private final @Nonnull DataPointStore dataStore;
 
   private List<Chromatogram> result;
   private boolean canceled = false;
   private int parsed = 0, total = 0;
+  private boolean totalKnown = true;
 
   /**
    * <p>
@@ -70,7 +61,27 @@ public class SrmDetectionMethod implements MSDKMethod<List<Chromatogram>> {
    */
   public SrmDetectionMethod(@Nonnull RawDataFile rawDataFile,
       @Nonnull DataPointStore dataPointStore) {
+    this(rawDataFile, rawDataFile.getScans(), dataPointStore);
+  }
+
+  /**
+   * <p>
+   * Constructor for SrmDetectionMethod which streams the scans. The scans are read once, in order,
+   * and each scan is only needed while its data point is added to the chromatogram of its
+   * transition, so the scans can be supplied by a lazy source instead of a list in memory. If the
+   * scans are not a {@link java.util.Collection}, the progress is unknown until the method has
+   * finished.
+   * </p>
+   *
+   * @param rawDataFile a {@link io.github.msdk.datamodel.rawdata.RawDataFile} object providing the
+   *        chromatograms.
+   * @param scans the {@link io.github.msdk.datamodel.rawdata.MsScan} objects of the raw data file.
+   * @param dataPointStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   */
+  public SrmDetectionMethod(@Nonnull RawDataFile rawDataFile, @Nonnull Iterable<MsScan> scans,
+      @Nonnull DataPointStore dataPointStore) {
     this.rawDataFile = rawDataFile;
+    this.scans = scans;
     this.dataStore = dataPointStore;
 
     // Make a new array
@@ -88,11 +99,13 @@ public class SrmDetectionMethod implements MSDKMethod<List<Chromatogram>> {
     total += chromatograms.size();
 
     // Scans
-    List<MsScan> scans = rawDataFile.getScans();
-    total += scans.size();
+    if (scans instanceof Collection)
+      total += ((Collection<?>) scans).size();
+    else
+      totalKnown = false;
 
     // Check if we have any chomatograms or scans
-    if (total == 0) {
+    if (totalKnown && total == 0) {
       throw new MSDKException("No chromatograms or scans provided for SRM detection method");
     }
 
@@ -114,103 +127,30 @@ public class SrmDetectionMethod implements MSDKMethod<List<Chromatogram>> {
       parsed++;
     }
 
-    // Iterate over all scans
-    Map<String, BuildingChromatogram> chromatogramMap = new HashMap<String, BuildingChromatogram>();
-    Map<Double, Range<Double>> q1IsolationMzRangeMap = new HashMap<Double, Range<Double>>();
-    Map<Double, Range<Double>> q3IsolationMzRangeMap = new HashMap<Double, Range<Double>>();
+    // Iterate over all scans. The Q3 values are taken from the scan definitions, because the scans
+    // only have the Q1 isolation, see https://github.com/msdk/msdk/issues/127
+    SrmTransitionExtractor extractor = new SrmTransitionExtractor();
+    int numOfScans = 0;
     for (MsScan scan : scans) {
       // Canceled
       if (canceled)
         return null;
 
-      // Ignore non SRM scans
-      MsFunction msFunction = scan.getMsFunction();
-      if (!msFunction.getName().equals("srm")) {
-        parsed++;
-        continue;
-      }
-
-      // Q1 data
-      Double q1 = scan.getIsolations().get(0).getPrecursorMz();
-
-      // Q3 data
-      /*
-       * TODO: This is a workaround for issue # 123: https://github.com/msdk/msdk/issues/127
-       */
-      String scanDefinition = scan.getScanDefinition();
-      Pattern pattern = Pattern.compile("(?<=\\[)(.*)(?=\\])");
-      Matcher matcher = pattern.matcher(scanDefinition);
-      Double q3 = 1d;
-      Range<Double> q3IsolationMzRange = Range.singleton(q3);
-      if (matcher.find()) {
-        String str = matcher.group(0);
-        String[] mzValues = str.split("-");
-        double mz1 = Double.parseDouble(mzValues[0]);
-        double mz2 = Double.parseDouble(mzValues[1]);
-        q3 = (mz1 + mz2) / 2;
-        q3IsolationMzRange = Range.closed(mz1, mz2);
-      }
-
-      // Get the chromatogram for the Q1 and Q3 value or generate a new
-      BuildingChromatogram buildingChromatogram = chromatogramMap.get(q1 + ";" + q3);
-      if (buildingChromatogram == null) {
-        buildingChromatogram = new BuildingChromatogram();
-        chromatogramMap.put(q1 + ";" + q3, buildingChromatogram);
-
-        // Store the mz isolation range for the q1 and q3 values
-        q1IsolationMzRangeMap.put(q1, scan.getIsolations().get(0).getIsolationMzRange());
-        q3IsolationMzRangeMap.put(q3, q3IsolationMzRange);
-      }
-
-      // Add the new data point
-      Float rt = scan.getRetentionTime();
-      float intenstiy = scan.getIntensityValues()[0]; // Assume only 1
-                                                      // value
-      buildingChromatogram.addDataPoint(rt, 0d, intenstiy);
-
+      extractor.addScan(scan);
+      numOfScans++;
       parsed++;
     }
 
-    // Add the newly generated chromatograms to the result list
-    int chromatogramNumber = 1;
-    Iterator<Map.Entry<String, BuildingChromatogram>> iterator =
-        chromatogramMap.entrySet().iterator();
-    while (iterator.hasNext()) {
-      Map.Entry<String, BuildingChromatogram> entry = iterator.next();
-      String q1q3 = entry.getKey();
-      BuildingChromatogram buildingChromatogram = entry.getValue();
-
-      // Create the final chromatogram
-      SimpleChromatogram chromatogram = new SimpleChromatogram(dataStore, chromatogramNumber,
-          ChromatogramType.MRM_SRM, SeparationType.UNKNOWN);
-
-      // Add the data points to the final chromatogram
-      float[] rtValues = buildingChromatogram.getRtValues();
-      double[] mzValues = buildingChromatogram.getMzValues();
-      float[] intensityValues = buildingChromatogram.getIntensityValues();
-      int size = buildingChromatogram.getSize();
-      chromatogram.setDataPoints(rtValues, mzValues, intensityValues, size);
-
-      // Set the Q1 and Q3 values to the isolations for the chromatogram
-      String[] strs = q1q3.split(";");
-      double q1 = Double.parseDouble(strs[0]);
-      double q3 = Double.parseDouble(strs[1]);
-      List<IsolationInfo> isolations = chromatogram.getIsolations();
-      IsolationInfo isolationInfo =
-          new SimpleIsolationInfo(q1IsolationMzRangeMap.get(q1), null, q1, null, null);
-      isolations.add(isolationInfo);
-      isolationInfo =
-          new SimpleIsolationInfo(q3IsolationMzRangeMap.get(q3), null, q3, null, null);
-      isolations.add(isolationInfo);
-
-      // Add the chromatogram
-      result.add(chromatogram);
-
-      chromatogramNumber++;
-
-      iterator.remove();
+    if (!totalKnown) {
+      if (chromatograms.isEmpty() && numOfScans == 0)
+        throw new MSDKException("No chromatograms or scans provided for SRM detection method");
+      total += numOfScans;
+      totalKnown = true;
     }
 
+    // Add the newly generated chromatograms to the result list
+    result.addAll(extractor.buildChromatograms(dataStore, 1));
+
     return result;
   }
 
@@ -218,7 +158,7 @@ public class SrmDetectionMethod implements MSDKMethod<List<Chromatogram>> {
   @Override
   @Nullable
   public Float getFinishedPercentage() {
-    return total == 0 ? null : (float) parsed / total;
+    return total == 0 || !totalKnown ? null : (float) parsed / total;
   }
 
   /** {@inheritDoc} */
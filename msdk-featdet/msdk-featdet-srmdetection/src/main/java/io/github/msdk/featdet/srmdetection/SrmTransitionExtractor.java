@@ -0,0 +1,255 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.srmdetection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Range;
+import com.google.common.primitives.Ints;
+
+import io.github.msdk.datamodel.chromatograms.Chromatogram;
+import io.github.msdk.datamodel.chromatograms.ChromatogramType;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.impl.SimpleChromatogram;
+import io.github.msdk.datamodel.impl.SimpleIsolationInfo;
+import io.github.msdk.datamodel.rawdata.IsolationInfo;
+import io.github.msdk.datamodel.rawdata.MsFunction;
+import io.github.msdk.datamodel.rawdata.MsScan;
+import io.github.msdk.datamodel.rawdata.SeparationType;
+
+/**
+ * <p>
+ * This class collects the data points of SRM scans into one chromatogram per Q1/Q3 transition, as
+ * the scans arrive, so the scans of a raw data file do not need to be in memory at the same time.
+ * </p>
+ *
+ * <p>
+ * The Q1 and Q3 values are rounded to the nearest multiple of 1e-4 m/z and packed into a primitive
+ * key, which an open addressing table maps to a dense transition number. Q1 or Q3 values which round
+ * to the same multiple, e.g. 499.99998 and 500.00003, therefore belong to the same transition, and
+ * the values of the first scan of the transition are kept. The retention times and intensities of
+ * each transition are appended to primitive arrays.
+ * </p>
+ */
+public class SrmTransitionExtractor {
+
+  // Q1 and Q3 values which round to the same multiple of this are the same transition
+  private static final double MZ_QUANTUM = 1e-4;
+
+  // Transition table, the slots hold the transition number + 1, or 0 if empty
+  private long tableKeys[] = new long[64];
+  private int tableSlots[] = new int[64];
+
+  // Transitions
+  private int numOfTransitions = 0;
+  private double q1Values[] = new double[16], q3Values[] = new double[16];
+  private final List<Range<Double>> q1Ranges = new ArrayList<>(), q3Ranges = new ArrayList<>();
+  private float rtValues[][] = new float[16][], intensityValues[][] = new float[16][];
+  private int sizes[] = new int[16];
+
+  private float intensityBuffer[] = new float[16];
+
+  /**
+   * <p>
+   * This method adds the data point of an SRM scan to the chromatogram of its transition.
+   * </p>
+   *
+   * @param scan a {@link io.github.msdk.datamodel.rawdata.MsScan} object.
+   * @return true if the scan is an SRM scan with a data point, false if it was ignored.
+   */
+  public boolean addScan(@Nonnull MsScan scan) {
+
+    // Ignore non SRM scans
+    MsFunction msFunction = scan.getMsFunction();
+    if (!msFunction.getName().equals("srm"))
+      return false;
+
+    // Q1 data
+    List<IsolationInfo> isolations = scan.getIsolations();
+    if (isolations.isEmpty() || isolations.get(0).getPrecursorMz() == null)
+      return false;
+    final double q1 = isolations.get(0).getPrecursorMz();
+
+    // Q3 data. The scans only have the Q1 isolation, so the Q3 value is the center of the m/z range
+    // in brackets in the scan definition, e.g. "[99.5-100.5]"
+    double q3 = 1d;
+    Range<Double> q3IsolationMzRange = null;
+    String scanDefinition = scan.getScanDefinition();
+    int start = scanDefinition == null ? -1 : scanDefinition.indexOf('[');
+    int end = start < 0 ? -1 : scanDefinition.lastIndexOf(']');
+    if (end > start) {
+      String[] mzValues = scanDefinition.substring(start + 1, end).split("-");
+      double mz1 = Double.parseDouble(mzValues[0]);
+      double mz2 = Double.parseDouble(mzValues[1]);
+      q3 = (mz1 + mz2) / 2;
+      q3IsolationMzRange = Range.closed(mz1, mz2);
+    }
+
+    // Assume only 1 value
+    final int numOfDataPoints = scan.getNumberOfDataPoints();
+    if (numOfDataPoints == 0)
+      return false;
+    if (intensityBuffer.length < numOfDataPoints)
+      intensityBuffer = new float[numOfDataPoints * 2];
+    scan.getIntensityValues(intensityBuffer);
+
+    final int transition = getTransition(q1, q3);
+    if (transition == numOfTransitions) {
+      // Store the mz isolation ranges of the new transition
+      addTransition(q1, q3, isolations.get(0).getIsolationMzRange(),
+          q3IsolationMzRange == null ? Range.singleton(q3) : q3IsolationMzRange);
+    }
+
+    // Add the new data point
+    final int size = sizes[transition];
+    if (size == rtValues[transition].length) {
+      rtValues[transition] = Arrays.copyOf(rtValues[transition], size * 2);
+      intensityValues[transition] = Arrays.copyOf(intensityValues[transition], size * 2);
+    }
+    rtValues[transition][size] = scan.getRetentionTime();
+    intensityValues[transition][size] = intensityBuffer[0];
+    sizes[transition] = size + 1;
+
+    return true;
+  }
+
+  /**
+   * <p>
+   * getNumberOfTransitions.
+   * </p>
+   *
+   * @return the number of transitions found so far.
+   */
+  public int getNumberOfTransitions() {
+    return numOfTransitions;
+  }
+
+  /**
+   * <p>
+   * getNumberOfDataPoints.
+   * </p>
+   *
+   * @param transition the number of the transition, in the order they were found.
+   * @return the number of data points of the transition.
+   */
+  public int getNumberOfDataPoints(int transition) {
+    return sizes[transition];
+  }
+
+  /**
+   * <p>
+   * This method creates a chromatogram for each transition, in the order the transitions were
+   * found, with the Q1 and Q3 values as isolations.
+   * </p>
+   *
+   * @param dataStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   * @param firstChromatogramNumber the number of the first chromatogram.
+   * @return a list of {@link io.github.msdk.datamodel.chromatograms.Chromatogram} objects.
+   */
+  public @Nonnull List<Chromatogram> buildChromatograms(@Nonnull DataPointStore dataStore,
+      int firstChromatogramNumber) {
+    List<Chromatogram> chromatograms = new ArrayList<>(numOfTransitions);
+    for (int t = 0; t < numOfTransitions; t++) {
+
+      // Create the final chromatogram
+      SimpleChromatogram chromatogram = new SimpleChromatogram(dataStore,
+          firstChromatogramNumber + t, ChromatogramType.MRM_SRM, SeparationType.UNKNOWN);
+
+      // Add the data points to the final chromatogram, all m/z values are 0
+      chromatogram.setDataPoints(rtValues[t], new double[sizes[t]], intensityValues[t], sizes[t]);
+
+      // Set the Q1 and Q3 values to the isolations for the chromatogram
+      List<IsolationInfo> isolations = chromatogram.getIsolations();
+      isolations.add(new SimpleIsolationInfo(q1Ranges.get(t), null, q1Values[t], null, null));
+      isolations.add(new SimpleIsolationInfo(q3Ranges.get(t), null, q3Values[t], null, null));
+
+      chromatograms.add(chromatogram);
+    }
+    return chromatograms;
+  }
+
+  /**
+   * Returns the number of the transition, or numOfTransitions if it is new. A new transition is
+   * entered into the table and must be added by {@link #addTransition}.
+   */
+  private int getTransition(double q1, double q3) {
+    final long key = ((long) quantize(q1) << 32) | (quantize(q3) & 0xffffffffL);
+    final int mask = tableKeys.length - 1;
+    int slot = hash(key) & mask;
+    while (tableSlots[slot] != 0) {
+      if (tableKeys[slot] == key)
+        return tableSlots[slot] - 1;
+      slot = (slot + 1) & mask;
+    }
+    tableKeys[slot] = key;
+    tableSlots[slot] = numOfTransitions + 1;
+
+    // Keep the table at most half full
+    if (2 * (numOfTransitions + 1) > tableKeys.length)
+      rehash(tableKeys.length * 2);
+    return numOfTransitions;
+  }
+
+  private void addTransition(double q1, double q3, @Nullable Range<Double> q1Range,
+      @Nonnull Range<Double> q3Range) {
+    if (numOfTransitions == sizes.length) {
+      final int capacity = numOfTransitions * 2;
+      q1Values = Arrays.copyOf(q1Values, capacity);
+      q3Values = Arrays.copyOf(q3Values, capacity);
+      rtValues = Arrays.copyOf(rtValues, capacity);
+      intensityValues = Arrays.copyOf(intensityValues, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+    }
+    q1Values[numOfTransitions] = q1;
+    q3Values[numOfTransitions] = q3;
+    q1Ranges.add(q1Range);
+    q3Ranges.add(q3Range);
+    rtValues[numOfTransitions] = new float[100];
+    intensityValues[numOfTransitions] = new float[100];
+    numOfTransitions++;
+  }
+
+  private void rehash(int capacity) {
+    final long oldKeys[] = tableKeys;
+    final int oldSlots[] = tableSlots;
+    tableKeys = new long[capacity];
+    tableSlots = new int[capacity];
+    final int mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldSlots[i] == 0)
+        continue;
+      int slot = hash(oldKeys[i]) & mask;
+      while (tableSlots[slot] != 0)
+        slot = (slot + 1) & mask;
+      tableKeys[slot] = oldKeys[i];
+      tableSlots[slot] = oldSlots[i];
+    }
+  }
+
+  private static int quantize(double mz) {
+    // Fails for m/z values whose multiple of the quantum does not fit in an int (above ~214748)
+    return Ints.checkedCast(Math.round(mz / MZ_QUANTUM));
+  }
+
+  private static int hash(long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.srmdetection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.datamodel.chromatograms.Chromatogram;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+import io.github.msdk.datamodel.files.FileType;
+import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
+import io.github.msdk.datamodel.impl.SimpleIsolationInfo;
+import io.github.msdk.datamodel.impl.SimpleMsScan;
+import io.github.msdk.datamodel.impl.SimpleRawDataFile;
+import io.github.msdk.datamodel.rawdata.MsScan;
+
+public class SrmTransitionExtractorTest {
+
+  private static final int NUM_OF_TRANSITIONS = 300, NUM_OF_CYCLES = 20;
+
+  @Test
+  public void testStreamedScans() throws MSDKException {
+
+    final DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+    final SimpleRawDataFile rawFile =
+        new SimpleRawDataFile("SRM", Optional.empty(), FileType.UNKNOWN, dataStore);
+
+    // Cycles over all transitions, with a full scan in each cycle
+    List<MsScan> scans = new ArrayList<>();
+    int scanNumber = 1;
+    for (int cycle = 0; cycle < NUM_OF_CYCLES; cycle++) {
+      for (int t = 0; t < NUM_OF_TRANSITIONS; t++) {
+        double q1 = 400.0 + (t / 3) * 0.7;
+        double q3 = 100.0 + (t % 3) * 50.0 + t * 0.001;
+        SimpleMsScan scan =
+            new SimpleMsScan(dataStore, scanNumber++, MSDKObjectBuilder.getMsFunction("srm"));
+        scan.setRetentionTime(cycle * 3.0f + t * 0.01f);
+        scan.setScanDefinition(
+            "+ c ESI SRM ms2 " + q1 + " [" + (q3 - 0.5) + "-" + (q3 + 0.5) + "]");
+        scan.getIsolations().add(
+            new SimpleIsolationInfo(Range.closed(q1 - 0.35, q1 + 0.35), null, q1, null, null));
+        scan.setDataPoints(new double[] {q3}, new float[] {cycle * 1000f + t}, 1);
+        scans.add(scan);
+      }
+      SimpleMsScan fullScan =
+          new SimpleMsScan(dataStore, scanNumber++, MSDKObjectBuilder.getMsFunction(1));
+      fullScan.setDataPoints(new double[] {500.0}, new float[] {1f}, 1);
+      scans.add(fullScan);
+    }
+
+    // Streamed scans, not a collection
+    SrmDetectionMethod srmMethod =
+        new SrmDetectionMethod(rawFile, () -> scans.iterator(), dataStore);
+    Assert.assertNull(srmMethod.getFinishedPercentage());
+    List<Chromatogram> chromatograms = srmMethod.execute();
+    Assert.assertEquals(1.0, srmMethod.getFinishedPercentage(), 0.0001);
+
+    // One chromatogram per transition, in the order of the method
+    Assert.assertEquals(NUM_OF_TRANSITIONS, chromatograms.size());
+    for (int t = 0; t < NUM_OF_TRANSITIONS; t++) {
+      Chromatogram chromatogram = chromatograms.get(t);
+      Assert.assertEquals(t + 1, chromatogram.getChromatogramNumber().intValue());
+      Assert.assertEquals(400.0 + (t / 3) * 0.7,
+          chromatogram.getIsolations().get(0).getPrecursorMz(), 1e-9);
+      Assert.assertEquals(100.0 + (t % 3) * 50.0 + t * 0.001,
+          chromatogram.getIsolations().get(1).getPrecursorMz(), 1e-9);
+      Assert.assertEquals(NUM_OF_CYCLES, chromatogram.getNumberOfDataPoints().intValue());
+      float intensities[] = chromatogram.getIntensityValues();
+      float rtValues[] = chromatogram.getRetentionTimes();
+      for (int cycle = 0; cycle < NUM_OF_CYCLES; cycle++) {
+        Assert.assertEquals(cycle * 1000f + t, intensities[cycle], 0f);
+        Assert.assertEquals(cycle * 3.0f + t * 0.01f, rtValues[cycle], 0f);
+      }
+    }
+
+    // The same result from the scan list
+    srmMethod = new SrmDetectionMethod(rawFile, scans, dataStore);
+    Assert.assertEquals(NUM_OF_TRANSITIONS, srmMethod.execute().size());
+    Assert.assertEquals(1.0, srmMethod.getFinishedPercentage(), 0.0001);
+  }
+
+  @Test
+  public void testTransitionQuantum() {
+
+    final DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+    SrmTransitionExtractor extractor = new SrmTransitionExtractor();
+
+    // 5e-5 apart and rounding to the same multiple of 1e-4, so the same transition
+    Assert.assertTrue(extractor.addScan(createSrmScan(dataStore, 1, 499.99998, 100.0)));
+    Assert.assertTrue(extractor.addScan(createSrmScan(dataStore, 2, 500.00003, 100.0)));
+    Assert.assertEquals(1, extractor.getNumberOfTransitions());
+    Assert.assertEquals(2, extractor.getNumberOfDataPoints(0));
+
+    // Also 5e-5 apart, but rounding to the next multiple
+    Assert.assertTrue(extractor.addScan(createSrmScan(dataStore, 3, 500.00008, 100.0)));
+    Assert.assertEquals(2, extractor.getNumberOfTransitions());
+
+    // The first Q1 value of the transition is kept
+    List<Chromatogram> chromatograms = extractor.buildChromatograms(dataStore, 1);
+    Assert.assertEquals(499.99998, chromatograms.get(0).getIsolations().get(0).getPrecursorMz(),
+        0.0);
+    Assert.assertEquals(500.00008, chromatograms.get(1).getIsolations().get(0).getPrecursorMz(),
+        0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTransitionOverflow() {
+    final DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+    new SrmTransitionExtractor().addScan(createSrmScan(dataStore, 1, 300000.0, 100.0));
+  }
+
+  private static MsScan createSrmScan(DataPointStore dataStore, int scanNumber, double q1,
+      double q3) {
+    SimpleMsScan scan =
+        new SimpleMsScan(dataStore, scanNumber, MSDKObjectBuilder.getMsFunction("srm"));
+    scan.setRetentionTime(scanNumber * 1.0f);
+    scan.setScanDefinition("+ c ESI SRM ms2 " + q1 + " [" + (q3 - 0.5) + "-" + (q3 + 0.5) + "]");
+    scan.getIsolations()
+        .add(new SimpleIsolationInfo(Range.closed(q1 - 0.35, q1 + 0.35), null, q1, null, null));
+    scan.setDataPoints(new double[] {q3}, new float[] {1000f}, 1);
+    return scan;
+  }
+
+}
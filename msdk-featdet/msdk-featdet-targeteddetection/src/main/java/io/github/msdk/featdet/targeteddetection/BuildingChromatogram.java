@@ -25,6 +25,20 @@ class BuildingChromatogram {
   private double[] mzValues = new double[100];
   private float[] intensityValues = new float[100];
 
+  BuildingChromatogram() {
+  }
+
+  /**
+   * Creates a chromatogram of the given data points. The arrays are not copied.
+   */
+  BuildingChromatogram(@Nonnull float[] rtValues, @Nonnull double[] mzValues,
+      @Nonnull float[] intensityValues, int size) {
+    this.rtValues = rtValues;
+    this.mzValues = mzValues;
+    this.intensityValues = intensityValues;
+    this.size = size;
+  }
+
   void addDataPoint(@Nonnull Float rt, @Nonnull Double mz, @Nonnull Float intensity) {
 
     // Make sure we have enough space to add a new data point
@@ -0,0 +1,142 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.targeteddetection;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Extracts the ion chromatograms of many target m/z windows at once. The windows are sorted by
+ * their lower end when the extractor is created, so each scan is processed in a single pass over
+ * its sorted m/z values: the first data point of each window is found by advancing a cursor which
+ * never moves back, and only the data points within the window are compared.
+ *
+ * <p>
+ * For each target and scan, the most intense data point within the window is stored in primitive
+ * per-target columns, or zero values if the window has no data points. Each scan writes its own
+ * column entries only, therefore different scans may be extracted by different threads at the same
+ * time.
+ * </p>
+ */
+class MultiTargetXicExtractor {
+
+  private final int numOfTargets, numOfScans;
+
+  // Windows sorted by their lower end, and the target of each sorted window
+  private final double lowerMz[], upperMz[];
+  private final int targets[];
+
+  // Columns of the extracted chromatograms, the retention times are shared
+  private final float rtValues[];
+  private final double mzValues[][];
+  private final float intensityValues[][];
+
+  /**
+   * @param targetLowerMz lower ends of the closed m/z windows of the targets.
+   * @param targetUpperMz upper ends of the closed m/z windows of the targets.
+   * @param numOfTargets number of targets.
+   * @param numOfScans number of scans to extract.
+   */
+  MultiTargetXicExtractor(@Nonnull double targetLowerMz[], @Nonnull double targetUpperMz[],
+      int numOfTargets, int numOfScans) {
+
+    Preconditions.checkPositionIndex(numOfTargets, targetLowerMz.length);
+    Preconditions.checkPositionIndex(numOfTargets, targetUpperMz.length);
+    Preconditions.checkArgument(numOfScans >= 0);
+
+    this.numOfTargets = numOfTargets;
+    this.numOfScans = numOfScans;
+
+    Integer order[] = new Integer[numOfTargets];
+    for (int i = 0; i < numOfTargets; i++)
+      order[i] = i;
+    Arrays.sort(order, (t1, t2) -> Double.compare(targetLowerMz[t1], targetLowerMz[t2]));
+
+    lowerMz = new double[numOfTargets];
+    upperMz = new double[numOfTargets];
+    targets = new int[numOfTargets];
+    for (int i = 0; i < numOfTargets; i++) {
+      targets[i] = order[i];
+      lowerMz[i] = targetLowerMz[order[i]];
+      upperMz[i] = targetUpperMz[order[i]];
+    }
+
+    rtValues = new float[numOfScans];
+    mzValues = new double[numOfTargets][numOfScans];
+    intensityValues = new float[numOfTargets][numOfScans];
+  }
+
+  /**
+   * Extracts the base peak of each target window from one scan. The m/z values must be sorted in
+   * ascending order.
+   *
+   * @param scanIndex index of the scan in the extracted chromatograms.
+   * @param rt retention time of the scan.
+   * @param scanMzValues m/z values of the scan.
+   * @param scanIntensityValues intensity values of the scan.
+   * @param size number of data points of the scan.
+   */
+  void extractScan(int scanIndex, float rt, @Nonnull double scanMzValues[],
+      @Nonnull float scanIntensityValues[], int size) {
+
+    Preconditions.checkElementIndex(scanIndex, numOfScans);
+    Preconditions.checkPositionIndex(size, scanMzValues.length);
+    Preconditions.checkPositionIndex(size, scanIntensityValues.length);
+
+    rtValues[scanIndex] = rt;
+    int start = 0;
+    for (int w = 0; w < numOfTargets; w++) {
+
+      // The lower ends are sorted, so the first data point of the window
+      // is never before the first data point of the previous window
+      final double lower = lowerMz[w], upper = upperMz[w];
+      while (start < size && scanMzValues[start] < lower)
+        start++;
+
+      int topIndex = -1;
+      float topIntensity = 0f;
+      for (int i = start; i < size && scanMzValues[i] <= upper; i++) {
+        if (topIndex < 0 || scanIntensityValues[i] > topIntensity) {
+          topIndex = i;
+          topIntensity = scanIntensityValues[i];
+        }
+      }
+
+      final int target = targets[w];
+      mzValues[target][scanIndex] = topIndex < 0 ? 0.0 : scanMzValues[topIndex];
+      intensityValues[target][scanIndex] = topIntensity;
+    }
+  }
+
+  /**
+   * Returns the chromatogram of the given target, once all scans were extracted. The columns of the
+   * target are handed over to the chromatogram and released by the extractor, so this method can
+   * be called only once for each target.
+   */
+  @Nonnull
+  BuildingChromatogram getChromatogram(int target) {
+    Preconditions.checkElementIndex(target, numOfTargets);
+    Preconditions.checkState(mzValues[target] != null, "Chromatogram was already returned");
+    BuildingChromatogram chromatogram =
+        new BuildingChromatogram(Arrays.copyOf(rtValues, numOfScans), mzValues[target],
+            intensityValues[target], numOfScans);
+    mzValues[target] = null;
+    intensityValues[target] = null;
+    return chromatogram;
+  }
+
+}
@@ -15,6 +15,8 @@ package io.github.msdk.featdet.targeteddetection;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -33,7 +35,6 @@ import io.github.msdk.datamodel.rawdata.RawDataFile;
 import io.github.msdk.datamodel.rawdata.SeparationType;
 import io.github.msdk.util.ChromatogramUtil;
 import io.github.msdk.util.ChromatogramUtil.CalculationMethod;
-import io.github.msdk.util.MsSpectrumUtil;
 import io.github.msdk.util.RawDataFileUtil;
 import io.github.msdk.util.tolerances.MzTolerance;
 import io.github.msdk.util.tolerances.RTTolerance;
@@ -41,6 +42,11 @@ import io.github.msdk.util.tolerances.RTTolerance;
 /**
  * This class creates a list of Chromatograms from a RawDataFile based on a list of IonAnnotations.
  *
+ * <p>
+ * The chromatograms of all ions are extracted together, each scan is processed in a single pass
+ * over its m/z values, see {@link MultiTargetXicExtractor}.
+ * </p>
+ *
  * @author plusik
  * @version $Id: $Id
  */
@@ -54,14 +60,12 @@ public class TargetedDetectionMethod implements MSDKMethod<List<Chromatogram>> {
   private final @Nonnull Double intensityTolerance;
   private final @Nonnull Double noiseLevel;
 
-  private List<Chromatogram> result;
-  private boolean canceled = false;
-  private int processedScans = 0, totalScans = 0;
+  private final boolean parallel;
 
-  // Data structures
-  private @Nonnull double mzBuffer[];
-  private @Nonnull float intensityBuffer[];
-  private int numOfDataPoints;
+  private List<Chromatogram> result;
+  private volatile boolean canceled = false;
+  private final AtomicInteger processedScans = new AtomicInteger();
+  private int totalScans = 0;
 
   /**
    * <p>
@@ -80,6 +84,34 @@ public class TargetedDetectionMethod implements MSDKMethod<List<Chromatogram>> {
       @Nonnull RawDataFile rawDataFile, @Nonnull DataPointStore dataPointStore,
       @Nonnull MzTolerance mzTolerance, @Nonnull RTTolerance rtTolerance,
       @Nonnull Double intensityTolerance, @Nonnull Double noiseLevel) {
+    this(ionAnnotations, rawDataFile, dataPointStore, mzTolerance, rtTolerance, intensityTolerance,
+        noiseLevel, false);
+  }
+
+  /**
+   * <p>
+   * Constructor for TargetedDetectionMethod.
+   * </p>
+   *
+   * <p>
+   * If parallel is true, the scans are divided among the available processors. This requires that
+   * the data points of different scans of the raw data file can be loaded at the same time.
+   * </p>
+   *
+   * @param ionAnnotations a {@link java.util.List} object.
+   * @param rawDataFile a {@link io.github.msdk.datamodel.rawdata.RawDataFile} object.
+   * @param dataPointStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   * @param mzTolerance an object
+   * @param rtTolerance a {@link io.github.msdk.util.tolerances.RTTolerance} object.
+   * @param intensityTolerance a {@link java.lang.Double} object.
+   * @param noiseLevel a {@link java.lang.Double} object.
+   * @param parallel whether the scans are processed by several threads.
+   */
+  public TargetedDetectionMethod(@Nonnull List<IonAnnotation> ionAnnotations,
+      @Nonnull RawDataFile rawDataFile, @Nonnull DataPointStore dataPointStore,
+      @Nonnull MzTolerance mzTolerance, @Nonnull RTTolerance rtTolerance,
+      @Nonnull Double intensityTolerance, @Nonnull Double noiseLevel, boolean parallel) {
+    this.parallel = parallel;
     this.ionAnnotations = ionAnnotations;
     this.rawDataFile = rawDataFile;
     this.dataPointStore = dataPointStore;
@@ -94,7 +126,6 @@ public class TargetedDetectionMethod implements MSDKMethod<List<Chromatogram>> {
   public List<Chromatogram> execute() throws MSDKException {
 
     result = new ArrayList<Chromatogram>();
-    List<BuildingChromatogram> tempChromatogramList = new ArrayList<BuildingChromatogram>();
     int chromatogramNumber = RawDataFileUtil.getNextChromatogramNumber(rawDataFile);
 
     // Variables
@@ -102,12 +133,6 @@ public class TargetedDetectionMethod implements MSDKMethod<List<Chromatogram>> {
     BuildingChromatogram buildingChromatogram;
     int ionNr;
 
-    // Create a new BuildingChromatogram for all ions
-    for (int i = 0; i < ionAnnotations.size(); i++) {
-      BuildingChromatogram newChromatogram = new BuildingChromatogram();
-      tempChromatogramList.add(newChromatogram);
-    }
-
     // Get MS1 scans from the raw data file
     List<MsScan> allScans = rawDataFile.getScans();
     List<MsScan> msScans = new ArrayList<MsScan>();
@@ -119,55 +144,54 @@ public class TargetedDetectionMethod implements MSDKMethod<List<Chromatogram>> {
       }
     }
 
-    // Loop through all scans
-    totalScans = msScans.size();
-    for (MsScan msScan : msScans) {
-
-      // Load data points
-      mzBuffer = msScan.getMzValues();
-      intensityBuffer = msScan.getIntensityValues();
-      numOfDataPoints = msScan.getNumberOfDataPoints();
-
-      Float chromatographyInfo = msScan.getRetentionTime();
-
-      // Loop through all the ions in the ion annotation list
-      ionNr = 0;
-      for (IonAnnotation ionAnnotation : ionAnnotations) {
-        Double ionMz = ionAnnotation.getExpectedMz();
-        if (ionMz != null) {
-          Range<Double> mzRange = mzTolerance.getToleranceRange(ionMz);
-
-          // Get highest data point which has a m/z within the mzRange
-          Double mz = 0d;
-          Float intensity = 0f;
-          Integer index =
-              MsSpectrumUtil.getBasePeakIndex(mzBuffer, intensityBuffer, numOfDataPoints, mzRange);
-          if (index != null) {
-            mz = mzBuffer[index];
-            intensity = intensityBuffer[index];
-          }
-
-          // Add this mzPeak or zero values to the chromatogram
-          buildingChromatogram = tempChromatogramList.get(ionNr);
-          buildingChromatogram.addDataPoint(chromatographyInfo, mz, intensity);
-
-        }
-        ionNr++;
-      }
-
-      processedScans++;
+    // The m/z windows of the ions which have an m/z value
+    final int ionTargets[] = new int[ionAnnotations.size()];
+    final double lowerMz[] = new double[ionAnnotations.size()];
+    final double upperMz[] = new double[ionAnnotations.size()];
+    int numOfTargets = 0;
+    for (int i = 0; i < ionAnnotations.size(); i++) {
+      Double ionMz = ionAnnotations.get(i).getExpectedMz();
+      ionTargets[i] = -1;
+      if (ionMz == null)
+        continue;
+      Range<Double> mzRange = mzTolerance.getToleranceRange(ionMz);
+      ionTargets[i] = numOfTargets;
+      lowerMz[numOfTargets] = mzRange.lowerEndpoint();
+      upperMz[numOfTargets] = mzRange.upperEndpoint();
+      numOfTargets++;
+    }
 
+    // Extract the highest data point within each m/z window from all scans
+    totalScans = msScans.size();
+    final MultiTargetXicExtractor extractor =
+        new MultiTargetXicExtractor(lowerMz, upperMz, numOfTargets, totalScans);
+    // Each thread loads the scans into its own buffers
+    final ThreadLocal<ScanBuffers> scanBuffers = ThreadLocal.withInitial(ScanBuffers::new);
+    IntStream scanIndices = IntStream.range(0, totalScans);
+    if (parallel)
+      scanIndices = scanIndices.parallel();
+    scanIndices.forEach(scanIndex -> {
       if (canceled)
-        return null;
-
-    }
+        return;
+      MsScan msScan = msScans.get(scanIndex);
+      ScanBuffers buffers = scanBuffers.get();
+      int numOfDataPoints = buffers.load(msScan);
+      extractor.extractScan(scanIndex, msScan.getRetentionTime(), buffers.mzValues,
+          buffers.intensityValues, numOfDataPoints);
+      processedScans.incrementAndGet();
+    });
+
+    if (canceled)
+      return null;
 
     // Loop through all the ions in the ion annotation list
     ionNr = 0;
     for (IonAnnotation ionAnnotation : ionAnnotations) {
 
-      // Temporary chromatogram
-      buildingChromatogram = tempChromatogramList.get(ionNr);
+      // Temporary chromatogram, empty for ions without m/z value
+      final int target = ionTargets[ionNr];
+      buildingChromatogram =
+          target < 0 ? new BuildingChromatogram() : extractor.getChromatogram(target);
 
       // Find the most intense data point and crop the chromatogram based
       // on the input parameters
@@ -212,7 +236,7 @@ public class TargetedDetectionMethod implements MSDKMethod<List<Chromatogram>> {
   @Override
   @Nullable
   public Float getFinishedPercentage() {
-    return totalScans == 0 ? null : (float) processedScans / totalScans;
+    return totalScans == 0 ? null : (float) processedScans.get() / totalScans;
   }
 
   /** {@inheritDoc} */
@@ -228,4 +252,25 @@ public class TargetedDetectionMethod implements MSDKMethod<List<Chromatogram>> {
     canceled = true;
   }
 
+  /**
+   * Data point buffers of one thread. The buffers are only reallocated when a scan does not fit.
+   */
+  private static class ScanBuffers {
+
+    double mzValues[] = new double[10000];
+    float intensityValues[] = new float[10000];
+
+    int load(@Nonnull MsScan scan) {
+      final int numOfDataPoints = scan.getNumberOfDataPoints();
+      if (mzValues.length < numOfDataPoints) {
+        mzValues = new double[numOfDataPoints];
+        intensityValues = new float[numOfDataPoints];
+      }
+      scan.getMzValues(mzValues);
+      scan.getIntensityValues(intensityValues);
+      return numOfDataPoints;
+    }
+
+  }
+
 }
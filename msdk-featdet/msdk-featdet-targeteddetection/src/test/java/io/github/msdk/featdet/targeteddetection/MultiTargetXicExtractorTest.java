@@ -0,0 +1,76 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.featdet.targeteddetection;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+import io.github.msdk.util.MsSpectrumUtil;
+
+public class MultiTargetXicExtractorTest {
+
+  @Test
+  public void testSameResultsAsSingleTargetSearch() {
+
+    final Random random = new Random(13);
+    final int numOfScans = 50, numOfTargets = 500;
+
+    // Overlapping windows in random order, some outside of the spectra
+    double lowerMz[] = new double[numOfTargets];
+    double upperMz[] = new double[numOfTargets];
+    for (int t = 0; t < numOfTargets; t++) {
+      double mz = 90.0 + random.nextDouble() * 1020.0;
+      double tolerance = 0.001 + random.nextDouble() * 0.05;
+      lowerMz[t] = mz - tolerance;
+      upperMz[t] = mz + tolerance;
+    }
+
+    double scanMzValues[][] = new double[numOfScans][];
+    float scanIntensityValues[][] = new float[numOfScans][];
+    MultiTargetXicExtractor extractor =
+        new MultiTargetXicExtractor(lowerMz, upperMz, numOfTargets, numOfScans);
+    for (int s = 0; s < numOfScans; s++) {
+      int size = random.nextInt(5000);
+      scanMzValues[s] = new double[size + 5];
+      scanIntensityValues[s] = new float[size + 5];
+      double mz = 100.0;
+      for (int i = 0; i < size; i++) {
+        mz += random.nextDouble() * 0.4;
+        scanMzValues[s][i] = mz;
+        scanIntensityValues[s][i] = random.nextInt(20);
+      }
+      extractor.extractScan(s, s * 1.5f, scanMzValues[s], scanIntensityValues[s], size);
+    }
+
+    for (int t = 0; t < numOfTargets; t++) {
+      BuildingChromatogram chromatogram = extractor.getChromatogram(t);
+      Assert.assertEquals(numOfScans, chromatogram.getSize());
+      Range<Double> mzRange = Range.closed(lowerMz[t], upperMz[t]);
+      for (int s = 0; s < numOfScans; s++) {
+        Integer index = MsSpectrumUtil.getBasePeakIndex(scanMzValues[s], scanIntensityValues[s],
+            scanMzValues[s].length - 5, mzRange);
+        double expectedMz = index == null ? 0.0 : scanMzValues[s][index];
+        float expectedIntensity = index == null ? 0f : scanIntensityValues[s][index];
+        Assert.assertEquals(s * 1.5f, chromatogram.getRtValues()[s], 0.0);
+        Assert.assertEquals(expectedMz, chromatogram.getMzValues()[s], 0.0);
+        Assert.assertEquals(expectedIntensity, chromatogram.getIntensityValues()[s], 0.0);
+      }
+    }
+  }
+
+}
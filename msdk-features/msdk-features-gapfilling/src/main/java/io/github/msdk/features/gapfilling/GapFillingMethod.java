@@ -14,8 +14,15 @@
 package io.github.msdk.features.gapfilling;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -23,6 +30,8 @@ import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
+
 import io.github.msdk.MSDKException;
 import io.github.msdk.MSDKMethod;
 import io.github.msdk.datamodel.chromatograms.Chromatogram;
@@ -44,6 +53,10 @@ import io.github.msdk.util.tolerances.RTTolerance;
 /**
  * This class fills in the missing gaps in a FeatureTable.
  *
+ * By default, the raw data file is searched separately for each gap. In the batch mode, all gaps
+ * of one sample are extracted together in a single pass over the scans of its raw data file, and
+ * the raw data files are processed in parallel.
+ *
  * @author plusik
  * @version $Id: $Id
  */
@@ -58,11 +71,14 @@ public class GapFillingMethod implements MSDKMethod<FeatureTable> {
   private @Nonnull RTTolerance rtTolerance;
   private final @Nonnull Double intensityTolerance;
   private final @Nonnull String nameSuffix;
+  private final boolean batchMode;
+  private final int numberOfThreads;
 
   // Helper variables
   private boolean canceled = false;
   private int processedGaps = 0, totalGaps = 0;
   private final @Nonnull FeatureTable result;
+  private final @Nonnull List<TargetedDetectionMethod> runningMethods = new ArrayList<>();
 
   /**
    * <p>
@@ -80,12 +96,45 @@ public class GapFillingMethod implements MSDKMethod<FeatureTable> {
   public GapFillingMethod(@Nonnull FeatureTable featureTable, @Nonnull DataPointStore dataStore,
       @Nonnull MzTolerance mzTolerance, @Nonnull RTTolerance rtTolerance,
       @Nonnull Double intensityTolerance, @Nonnull String nameSuffix) {
+    this(featureTable, dataStore, mzTolerance, rtTolerance, intensityTolerance, nameSuffix, false,
+        1);
+  }
+
+  /**
+   * <p>
+   * Constructor for GapFillingMethod in the batch mode. All gaps of one sample are filled in a
+   * single pass over its raw data file.
+   * </p>
+   *
+   * @param featureTable a {@link io.github.msdk.datamodel.featuretables.FeatureTable} object.
+   * @param dataStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   * @param mzTolerance an object that implements the
+   *        {@link io.github.msdk.util.tolerances.MzTolerance} interface.
+   * @param rtTolerance a {@link io.github.msdk.util.tolerances.RTTolerance} object.
+   * @param intensityTolerance a {@link java.lang.Double} object.
+   * @param nameSuffix a {@link java.lang.String} object.
+   * @param numberOfThreads maximum number of raw data files processed in parallel.
+   */
+  public GapFillingMethod(@Nonnull FeatureTable featureTable, @Nonnull DataPointStore dataStore,
+      @Nonnull MzTolerance mzTolerance, @Nonnull RTTolerance rtTolerance,
+      @Nonnull Double intensityTolerance, @Nonnull String nameSuffix, int numberOfThreads) {
+    this(featureTable, dataStore, mzTolerance, rtTolerance, intensityTolerance, nameSuffix, true,
+        numberOfThreads);
+  }
+
+  private GapFillingMethod(@Nonnull FeatureTable featureTable, @Nonnull DataPointStore dataStore,
+      @Nonnull MzTolerance mzTolerance, @Nonnull RTTolerance rtTolerance,
+      @Nonnull Double intensityTolerance, @Nonnull String nameSuffix, boolean batchMode,
+      int numberOfThreads) {
+    Preconditions.checkArgument(numberOfThreads > 0, "Number of threads must be positive");
     this.featureTable = featureTable;
     this.dataStore = dataStore;
     this.mzTolerance = mzTolerance;
     this.rtTolerance = rtTolerance;
     this.intensityTolerance = intensityTolerance;
     this.nameSuffix = nameSuffix;
+    this.batchMode = batchMode;
+    this.numberOfThreads = numberOfThreads;
 
     // Make a copy of the input feature table
     result = FeatureTableUtil.clone(dataStore, featureTable, featureTable.getName() + nameSuffix);
@@ -121,6 +170,23 @@ public class GapFillingMethod implements MSDKMethod<FeatureTable> {
     if (totalGaps == 0)
       return result;
 
+    if (batchMode)
+      fillGapsBySample(gapRow, gapSample);
+    else
+      fillGapsOneByOne(gapRow, gapSample);
+
+    if (canceled)
+      return null;
+
+    // Recalculate average values
+    FeatureTableUtil.recalculateAverages(result);
+
+    return result;
+  }
+
+  private void fillGapsOneByOne(@Nonnull List<FeatureTableRow> gapRow,
+      @Nonnull List<Sample> gapSample) throws MSDKException {
+
     // Iterate over all the gaps
     for (int i = 0; i < totalGaps; i++) {
       FeatureTableRow row = gapRow.get(i);
@@ -152,13 +218,92 @@ public class GapFillingMethod implements MSDKMethod<FeatureTable> {
 
       // Cancel?
       if (canceled)
-        return null;
+        return;
     }
 
-    // Recalculate average values
-    FeatureTableUtil.recalculateAverages(result);
+  }
 
-    return result;
+  /**
+   * Groups the gaps by sample and extracts all missing chromatograms of one sample with a single
+   * TargetedDetectionMethod, i.e. in one pass over the scans of the raw data file. The raw data
+   * files are processed in parallel, the results are written to the feature table in the order of
+   * the samples.
+   */
+  private void fillGapsBySample(@Nonnull List<FeatureTableRow> gapRow,
+      @Nonnull List<Sample> gapSample) throws MSDKException {
+
+    // Group the gaps by sample
+    final Map<Sample, List<IonAnnotation>> sampleIons = new LinkedHashMap<>();
+    final Map<IonAnnotation, FeatureTableRow> ionRows = new IdentityHashMap<>();
+    FeatureTableColumn<Float> rtColumn =
+        result.getColumn(ColumnName.RT.getName(), null, Float.class);
+    for (int i = 0; i < totalGaps; i++) {
+      FeatureTableRow row = gapRow.get(i);
+      Sample sample = gapSample.get(i);
+
+      // Create an ion annotation
+      SimpleIonAnnotation ion = new SimpleIonAnnotation();
+      ion.setAnnotationId(row.getId().toString());
+      ion.setExpectedMz(row.getMz());
+      ion.setExpectedRetentionTime(row.getData(rtColumn));
+
+      List<IonAnnotation> ions = sampleIons.get(sample);
+      if (ions == null) {
+        ions = new ArrayList<>();
+        sampleIons.put(sample, ions);
+      }
+      ions.add(ion);
+      ionRows.put(ion, row);
+    }
+
+    // Sort the m/z - RT windows of each sample
+    final Comparator<IonAnnotation> mzRtComparator =
+        Comparator.comparing(IonAnnotation::getExpectedMz,
+            Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(IonAnnotation::getExpectedRetentionTime,
+                Comparator.nullsLast(Comparator.naturalOrder()));
+    for (List<IonAnnotation> ions : sampleIons.values())
+      ions.sort(mzRtComparator);
+
+    // Extract the chromatograms of each raw data file in parallel
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(numberOfThreads, sampleIons.size()));
+    final Map<Sample, Future<List<Chromatogram>>> sampleChromatograms = new LinkedHashMap<>();
+    try {
+      for (Map.Entry<Sample, List<IonAnnotation>> entry : sampleIons.entrySet()) {
+        final RawDataFile rawFile = entry.getKey().getRawDataFile();
+        if (rawFile == null)
+          throw new MSDKException("Sample " + entry.getKey().getName()
+              + " does not have any raw data file to fill the gaps from");
+        final TargetedDetectionMethod chromBuilder = new TargetedDetectionMethod(entry.getValue(),
+            rawFile, dataStore, mzTolerance, rtTolerance, intensityTolerance, 0.0);
+        synchronized (runningMethods) {
+          runningMethods.add(chromBuilder);
+        }
+        sampleChromatograms.put(entry.getKey(), executor.submit(chromBuilder::execute));
+      }
+
+      // Add the data to the feature table rows
+      for (Map.Entry<Sample, Future<List<Chromatogram>>> entry : sampleChromatograms
+          .entrySet()) {
+        final List<Chromatogram> chromatograms = entry.getValue().get();
+        if (canceled || chromatograms == null)
+          return;
+
+        Map<ColumnName, FeatureTableColumn<Object>> tableColumns =
+            ChromatogramToFeatureTableMethod.addSampleColumns(result, entry.getKey());
+        for (Chromatogram chromatogram : chromatograms) {
+          FeatureTableRow row = ionRows.get(chromatogram.getIonAnnotation());
+          ChromatogramToFeatureTableMethod.addDataToRow(row, chromatogram, tableColumns);
+          processedGaps++;
+        }
+      }
+
+    } catch (InterruptedException | ExecutionException e) {
+      throw new MSDKException(e);
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
   /** {@inheritDoc} */
@@ -179,6 +324,10 @@ public class GapFillingMethod implements MSDKMethod<FeatureTable> {
   @Override
   public void cancel() {
     canceled = true;
+    synchronized (runningMethods) {
+      for (TargetedDetectionMethod method : runningMethods)
+        method.cancel();
+    }
   }
 
 }
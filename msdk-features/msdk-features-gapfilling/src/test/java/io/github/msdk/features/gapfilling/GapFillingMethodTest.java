@@ -16,6 +16,7 @@ package io.github.msdk.features.gapfilling;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -30,8 +31,11 @@ import io.github.msdk.datamodel.featuretables.FeatureTable;
 import io.github.msdk.datamodel.featuretables.FeatureTableColumn;
 import io.github.msdk.datamodel.featuretables.FeatureTableRow;
 import io.github.msdk.datamodel.featuretables.Sample;
+import io.github.msdk.datamodel.files.FileType;
 import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
 import io.github.msdk.datamodel.impl.SimpleIonAnnotation;
+import io.github.msdk.datamodel.impl.SimpleMsScan;
+import io.github.msdk.datamodel.impl.SimpleRawDataFile;
 import io.github.msdk.datamodel.impl.SimpleSample;
 import io.github.msdk.datamodel.ionannotations.IonAnnotation;
 import io.github.msdk.datamodel.rawdata.RawDataFile;
@@ -216,4 +220,113 @@ public class GapFillingMethodTest {
 
   }
 
+  @Test
+  public void testBatchModeMatchesSingleGapMode() throws MSDKException {
+
+    final DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+
+    final double peakMz[] = {300.1, 410.2, 520.3, 630.4};
+    final float peakRt[] = {40f, 80f, 120f, 160f};
+
+    // Feature table with the common columns and no sample data, so every cell is a gap
+    FeatureTable featureTable = MSDKObjectBuilder.getFeatureTable("synthetic", dataStore);
+    featureTable.addColumn(MSDKObjectBuilder.getIdFeatureTableColumn());
+    featureTable.addColumn(MSDKObjectBuilder.getMzFeatureTableColumn());
+    featureTable.addColumn(MSDKObjectBuilder.getPpmFeatureTableColumn());
+    featureTable.addColumn(MSDKObjectBuilder.getRetentionTimeFeatureTableColumn());
+    featureTable.addColumn(MSDKObjectBuilder.getIonAnnotationFeatureTableColumn());
+
+    for (int s = 0; s < 3; s++) {
+      SimpleSample sample = new SimpleSample("sample" + s);
+      sample.setRawDataFile(createRawDataFile(dataStore, peakMz, peakRt, 1f + s * 0.5f));
+      ChromatogramToFeatureTableMethod.addSampleColumns(featureTable, sample);
+    }
+
+    // Rows in reverse m/z order, so the batch mode has to sort them
+    for (int i = peakMz.length - 1; i >= 0; i--) {
+      FeatureTableRow row = MSDKObjectBuilder.getFeatureTableRow(featureTable, i + 1);
+      row.setData(featureTable.getColumn(ColumnName.ID, null), i + 1);
+      row.setData(featureTable.getColumn(ColumnName.MZ, null), peakMz[i]);
+      row.setData(featureTable.getColumn(ColumnName.RT.getName(), null, Float.class), peakRt[i]);
+      featureTable.addRow(row);
+    }
+
+    MaximumMzTolerance mzTolerance = new MaximumMzTolerance(0.003, 5.0);
+    RTTolerance rtTolerance = new RTTolerance(10f, true);
+
+    GapFillingMethod singleGapMethod = new GapFillingMethod(featureTable, dataStore, mzTolerance,
+        rtTolerance, 0.1, " single");
+    FeatureTable singleGapResult = singleGapMethod.execute();
+    Assert.assertEquals(1.0, singleGapMethod.getFinishedPercentage(), 0.0001);
+
+    GapFillingMethod batchMethod = new GapFillingMethod(featureTable, dataStore, mzTolerance,
+        rtTolerance, 0.1, " batch", 2);
+    FeatureTable batchResult = batchMethod.execute();
+    Assert.assertEquals(1.0, batchMethod.getFinishedPercentage(), 0.0001);
+
+    Assert.assertEquals(singleGapResult.getRows().size(), batchResult.getRows().size());
+    for (int r = 0; r < singleGapResult.getRows().size(); r++) {
+      FeatureTableRow singleRow = singleGapResult.getRows().get(r);
+      FeatureTableRow batchRow = batchResult.getRows().get(r);
+      for (Sample sample : featureTable.getSamples()) {
+        for (ColumnName columnName : new ColumnName[] {ColumnName.AREA, ColumnName.HEIGHT,
+            ColumnName.RT, ColumnName.MZ, ColumnName.NUMBEROFDATAPOINTS}) {
+          FeatureTableColumn<Object> singleColumn =
+              singleGapResult.getColumn(columnName, sample);
+          FeatureTableColumn<Object> batchColumn = batchResult.getColumn(columnName, sample);
+          Object singleValue = singleRow.getData(singleColumn);
+          Assert.assertNotNull(singleValue);
+          Assert.assertEquals(singleValue, batchRow.getData(batchColumn));
+        }
+      }
+    }
+
+    // The peak of the first row (m/z 630.4) must have been found in every sample
+    Assert.assertEquals(3, batchResult.getSamples().size());
+    for (Sample sample : batchResult.getSamples()) {
+      Double area = batchResult.getRows().get(0)
+          .getData(batchResult.getColumn(ColumnName.AREA, sample));
+      Assert.assertTrue(area > 0);
+    }
+  }
+
+  private RawDataFile createRawDataFile(DataPointStore dataStore, double peakMz[],
+      float peakRt[], float scale) {
+
+    SimpleRawDataFile rawFile =
+        new SimpleRawDataFile("synthetic", Optional.empty(), FileType.UNKNOWN, dataStore);
+
+    final int numOfPoints = 200;
+    double mzValues[] = new double[numOfPoints];
+    float intensityValues[] = new float[numOfPoints];
+    for (int scanNumber = 1; scanNumber <= 200; scanNumber++) {
+      float rt = scanNumber;
+
+      // Background points spread over the m/z range, plus one point at each peak m/z
+      int size = 0;
+      int peak = 0;
+      for (int i = 0; size < numOfPoints; i++) {
+        double mz = 250.0 + i * 2.0;
+        if ((peak < peakMz.length) && (peakMz[peak] < mz)) {
+          mzValues[size] = peakMz[peak];
+          float distance = (rt - peakRt[peak]) / 5f;
+          intensityValues[size] = 1000f + scale * 1e6f * (float) Math.exp(-distance * distance);
+          peak++;
+        } else {
+          mzValues[size] = mz;
+          intensityValues[size] = 100f;
+        }
+        size++;
+      }
+
+      SimpleMsScan scan =
+          new SimpleMsScan(dataStore, scanNumber, MSDKObjectBuilder.getMsFunction(1));
+      scan.setRetentionTime(rt);
+      scan.setDataPoints(mzValues, intensityValues, size);
+      rawFile.addScan(scan);
+    }
+
+    return rawFile;
+  }
+
 }
@@ -0,0 +1,187 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.id.localdatabasesearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+
+import io.github.msdk.datamodel.impl.SimpleIonAnnotation;
+
+/**
+ * <p>
+ * Index of a local database of ion annotations, sorted by the expected m/z value. The index is
+ * built once and can be shared by any number of searches, also from several threads at the same
+ * time, as it is never modified after its construction.
+ * </p>
+ *
+ * <p>
+ * The expected retention times of the database are in seconds, while the retention times of the
+ * feature tables are in minutes, so the retention times are converted to minutes when the index is
+ * built. Ion annotations without an expected m/z value or retention time are not indexed.
+ * </p>
+ */
+public class LocalDatabaseIndex {
+
+  private final @Nonnull SimpleIonAnnotation ionAnnotations[];
+
+  // Sorted by m/z, ties by the position in the database
+  private final @Nonnull double mzValues[];
+  private final @Nonnull float rtValues[];
+  private final @Nonnull int positions[];
+
+  /**
+   * <p>
+   * Constructor for LocalDatabaseIndex.
+   * </p>
+   *
+   * @param ionAnnotations the ion annotations of the local database.
+   */
+  public LocalDatabaseIndex(@Nonnull List<SimpleIonAnnotation> ionAnnotations) {
+
+    this.ionAnnotations = ionAnnotations.toArray(new SimpleIonAnnotation[ionAnnotations.size()]);
+
+    // Sort the positions of the valid annotations by m/z
+    Integer order[] = new Integer[this.ionAnnotations.length];
+    int size = 0;
+    for (int i = 0; i < this.ionAnnotations.length; i++) {
+      SimpleIonAnnotation ionAnnotation = this.ionAnnotations[i];
+      if ((ionAnnotation.getExpectedMz() == null)
+          || (ionAnnotation.getExpectedRetentionTime() == null))
+        continue;
+      order[size++] = i;
+    }
+    order = Arrays.copyOf(order, size);
+    Arrays.sort(order, (i1, i2) -> {
+      int c = Double.compare(this.ionAnnotations[i1].getExpectedMz(),
+          this.ionAnnotations[i2].getExpectedMz());
+      return c != 0 ? c : Integer.compare(i1, i2);
+    });
+
+    mzValues = new double[size];
+    rtValues = new float[size];
+    positions = new int[size];
+    for (int i = 0; i < size; i++) {
+      SimpleIonAnnotation ionAnnotation = this.ionAnnotations[order[i]];
+      positions[i] = order[i];
+      mzValues[i] = ionAnnotation.getExpectedMz();
+      // Convert from seconds to minutes
+      rtValues[i] = ionAnnotation.getExpectedRetentionTime() / 60.0f;
+    }
+  }
+
+  /**
+   * Returns the number of indexed ion annotations.
+   *
+   * @return an int.
+   */
+  public int size() {
+    return mzValues.length;
+  }
+
+  /**
+   * Returns the ion annotations whose expected m/z value and retention time (in minutes) are
+   * within the given ranges, in the order of the database.
+   *
+   * @param mzRange a {@link com.google.common.collect.Range} of m/z values.
+   * @param rtRange a {@link com.google.common.collect.Range} of retention times, in minutes.
+   * @return a {@link java.util.List} of matching ion annotations, possibly empty.
+   */
+  @Nonnull
+  public List<SimpleIonAnnotation> search(@Nonnull Range<Double> mzRange,
+      @Nonnull Range<Float> rtRange) {
+
+    int first = mzRange.hasLowerBound() ? lowerBound(mzRange.lowerEndpoint()) : 0;
+    if (first == mzValues.length)
+      return Collections.emptyList();
+
+    final boolean hasUpperMz = mzRange.hasUpperBound();
+    final double upperMz = hasUpperMz ? mzRange.upperEndpoint() : 0.0;
+
+    int matches[] = null;
+    int numOfMatches = 0;
+    for (int i = first; i < mzValues.length; i++) {
+      final double mz = mzValues[i];
+      if (hasUpperMz && mz > upperMz)
+        break;
+      if (!contains(mzRange, mz) || !contains(rtRange, rtValues[i]))
+        continue;
+      if (matches == null)
+        matches = new int[4];
+      else if (numOfMatches == matches.length)
+        matches = Arrays.copyOf(matches, 2 * numOfMatches);
+      matches[numOfMatches++] = positions[i];
+    }
+
+    if (numOfMatches == 0)
+      return Collections.emptyList();
+
+    // Return the matches in the order of the database
+    Arrays.sort(matches, 0, numOfMatches);
+    List<SimpleIonAnnotation> result = new ArrayList<>(numOfMatches);
+    for (int i = 0; i < numOfMatches; i++)
+      result.add(ionAnnotations[matches[i]]);
+    return result;
+  }
+
+  /**
+   * Returns the position of the first m/z value which is not smaller than the given value.
+   */
+  private int lowerBound(double mz) {
+    int low = 0, high = mzValues.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (mzValues[mid] < mz)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  private static boolean contains(@Nonnull Range<Double> range, double value) {
+    if (range.hasLowerBound()) {
+      double lower = range.lowerEndpoint();
+      if (value < lower || (value == lower && range.lowerBoundType() == BoundType.OPEN))
+        return false;
+    }
+    if (range.hasUpperBound()) {
+      double upper = range.upperEndpoint();
+      if (value > upper || (value == upper && range.upperBoundType() == BoundType.OPEN))
+        return false;
+    }
+    return true;
+  }
+
+  private static boolean contains(@Nonnull Range<Float> range, float value) {
+    if (range.hasLowerBound()) {
+      float lower = range.lowerEndpoint();
+      if (value < lower || (value == lower && range.lowerBoundType() == BoundType.OPEN))
+        return false;
+    }
+    if (range.hasUpperBound()) {
+      float upper = range.upperEndpoint();
+      if (value > upper || (value == upper && range.upperBoundType() == BoundType.OPEN))
+        return false;
+    }
+    return true;
+  }
+
+}
@@ -14,7 +14,10 @@
 package io.github.msdk.id.localdatabasesearch;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -35,7 +38,8 @@ import io.github.msdk.util.tolerances.RTTolerance;
 
 /**
  * This class searches through a feature table to find hits in a local database using m/z and
- * retention time values.
+ * retention time values. The database is searched through a {@link LocalDatabaseIndex}, which can
+ * be built once and shared by several searches, and the features are searched in parallel.
  *
  * @author plusik
  * @version $Id: $Id
@@ -43,12 +47,13 @@ import io.github.msdk.util.tolerances.RTTolerance;
 public class LocalDatabaseSearchMethod implements MSDKMethod<Void> {
 
   private final @Nonnull FeatureTable featureTable;
-  private final @Nonnull List<SimpleIonAnnotation> ionAnnotations;
+  private final @Nonnull LocalDatabaseIndex databaseIndex;
   private final @Nonnull MzTolerance mzTolerance;
   private final @Nonnull RTTolerance rtTolerance;
 
-  private boolean canceled = false;
-  private int processedFeatures = 0, totalFeatures = 0;
+  private volatile boolean canceled = false;
+  private final AtomicInteger processedFeatures = new AtomicInteger();
+  private int totalFeatures = 0;
 
   /**
    * <p>
@@ -64,8 +69,26 @@ public class LocalDatabaseSearchMethod implements MSDKMethod<Void> {
   public LocalDatabaseSearchMethod(@Nonnull FeatureTable featureTable,
       @Nonnull List<SimpleIonAnnotation> ionAnnotations, @Nonnull MzTolerance mzTolerance,
       @Nonnull RTTolerance rtTolerance) {
+    this(featureTable, new LocalDatabaseIndex(ionAnnotations), mzTolerance, rtTolerance);
+  }
+
+  /**
+   * <p>
+   * Constructor for LocalDatabaseSearchMethod, which searches a prebuilt index of the local
+   * database. The same index can be used to search any number of feature tables.
+   * </p>
+   *
+   * @param featureTable a {@link io.github.msdk.datamodel.featuretables.FeatureTable} object.
+   * @param databaseIndex a {@link io.github.msdk.id.localdatabasesearch.LocalDatabaseIndex}
+   *        object.
+   * @param mzTolerance an object
+   * @param rtTolerance a {@link io.github.msdk.util.tolerances.RTTolerance} object.
+   */
+  public LocalDatabaseSearchMethod(@Nonnull FeatureTable featureTable,
+      @Nonnull LocalDatabaseIndex databaseIndex, @Nonnull MzTolerance mzTolerance,
+      @Nonnull RTTolerance rtTolerance) {
     this.featureTable = featureTable;
-    this.ionAnnotations = ionAnnotations;
+    this.databaseIndex = databaseIndex;
     this.mzTolerance = mzTolerance;
     this.rtTolerance = rtTolerance;
   }
@@ -74,7 +97,8 @@ public class LocalDatabaseSearchMethod implements MSDKMethod<Void> {
   @Override
   public Void execute() throws MSDKException {
 
-    totalFeatures = featureTable.getRows().size();
+    final List<FeatureTableRow> rows = featureTable.getRows();
+    totalFeatures = rows.size();
     FeatureTableColumn<List<SimpleIonAnnotation>> ionAnnotationColumn =
         featureTable.getColumn(ColumnName.IONANNOTATION, null);
 
@@ -84,66 +108,62 @@ public class LocalDatabaseSearchMethod implements MSDKMethod<Void> {
       featureTable.addColumn(ionAnnotationColumn);
     }
 
-    // Loop through all features in the feature table
-    for (FeatureTableRow row : featureTable.getRows()) {
-
+    // Search the database for all features in parallel, the rows are only
+    // read at this stage. Each feature only sets its own element of the
+    // matches, so the list is never resized.
+    final List<List<SimpleIonAnnotation>> matches =
+        new ArrayList<>(Collections.nCopies(rows.size(), null));
+    IntStream.range(0, rows.size()).parallel().forEach(i -> {
+      if (canceled)
+        return;
+      final FeatureTableRow row = rows.get(i);
       final Double mz = row.getMz();
       final Float rt = row.getRT();
-      if ((mz == null) || (rt == null))
+      if ((mz != null) && (rt != null)) {
+        Range<Double> mzRange = mzTolerance.getToleranceRange(mz);
+        Range<Float> rtRange = rtTolerance.getToleranceRange(rt);
+        matches.set(i, databaseIndex.search(mzRange, rtRange));
+      }
+      processedFeatures.incrementAndGet();
+    });
+
+    if (canceled)
+      return null;
+
+    // Update the ion annotations of the features
+    for (int i = 0; i < rows.size(); i++) {
+
+      if (matches.get(i) == null)
         continue;
 
-      // Row values
-      Range<Double> mzRange = mzTolerance.getToleranceRange(mz);
-      Range<Float> rtRange = rtTolerance.getToleranceRange(rt);
+      final FeatureTableRow row = rows.get(i);
       List<SimpleIonAnnotation> rowIonAnnotations = row.getData(ionAnnotationColumn);
 
       // Empty rowIonAnnotations
       if (rowIonAnnotations == null)
         rowIonAnnotations = new ArrayList<SimpleIonAnnotation>();
 
-      // Loop through all ion annotations from the local database
-      for (SimpleIonAnnotation ionAnnotation : ionAnnotations) {
-
-        // Ion values
-        final Double ionMz = ionAnnotation.getExpectedMz();
-        final Float ionRT = ionAnnotation.getExpectedRetentionTime();
-        if ((ionMz == null) || (ionRT == null))
-          continue;
-
-        // Convert from seconds to minutes
-        float ionRtSec = ionRT / 60.0f;
-        final boolean mzMatch = mzRange.contains(ionMz);
-        final boolean rtMatch = rtRange.contains(ionRtSec);
-
-        // If match, add the ion annotation to the list
-        if (mzMatch && rtMatch) {
-
-          // If first ion annotation is empty then remove it
-          if (rowIonAnnotations.size() > 0) {
-            IonAnnotation firstionAnnotation = rowIonAnnotations.get(0);
-            if (firstionAnnotation.isNA())
-              rowIonAnnotations.remove(0);
-          }
-
-          // Only add annotation if it is not already present
-          boolean addIon = true;
-          for (SimpleIonAnnotation ionAnnotations : rowIonAnnotations) {
-            if (ionAnnotations.compareTo(ionAnnotation) == 0)
-              addIon = false;
-          }
-          if (addIon)
-            rowIonAnnotations.add(ionAnnotation);
+      // Add the matching ion annotations, in the order of the database
+      for (SimpleIonAnnotation ionAnnotation : matches.get(i)) {
+
+        // If first ion annotation is empty then remove it
+        if (rowIonAnnotations.size() > 0) {
+          IonAnnotation firstionAnnotation = rowIonAnnotations.get(0);
+          if (firstionAnnotation.isNA())
+            rowIonAnnotations.remove(0);
         }
 
+        // Only add annotation if it is not already present
+        boolean addIon = true;
+        for (SimpleIonAnnotation ionAnnotations : rowIonAnnotations) {
+          if (ionAnnotations.compareTo(ionAnnotation) == 0)
+            addIon = false;
+        }
+        if (addIon)
+          rowIonAnnotations.add(ionAnnotation);
       }
 
-      // Update the ion annotations of the feature
       row.setData(ionAnnotationColumn, rowIonAnnotations);
-
-      if (canceled)
-        return null;
-
-      processedFeatures++;
     }
 
     return null;
@@ -153,7 +173,7 @@ public class LocalDatabaseSearchMethod implements MSDKMethod<Void> {
   @Override
   @Nullable
   public Float getFinishedPercentage() {
-    return totalFeatures == 0 ? null : (float) processedFeatures / totalFeatures;
+    return totalFeatures == 0 ? null : (float) processedFeatures.get() / totalFeatures;
   }
 
   /** {@inheritDoc} */
@@ -0,0 +1,138 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.id.localdatabasesearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.datamodel.datastore.DataPointStore;
+import io.github.msdk.datamodel.datastore.DataPointStoreFactory;
+import io.github.msdk.datamodel.featuretables.ColumnName;
+import io.github.msdk.datamodel.featuretables.FeatureTable;
+import io.github.msdk.datamodel.featuretables.FeatureTableColumn;
+import io.github.msdk.datamodel.featuretables.FeatureTableRow;
+import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
+import io.github.msdk.datamodel.impl.SimpleIonAnnotation;
+import io.github.msdk.util.tolerances.MaximumMzTolerance;
+import io.github.msdk.util.tolerances.MzTolerance;
+import io.github.msdk.util.tolerances.RTTolerance;
+
+public class LocalDatabaseIndexTest {
+
+  @Test
+  public void testSearch() {
+
+    List<SimpleIonAnnotation> database = new ArrayList<>();
+    database.add(createIonAnnotation("1", 300.2, 600f));
+    database.add(createIonAnnotation("2", 300.1, 630f));
+    database.add(createIonAnnotation("3", 300.1, null));
+    database.add(createIonAnnotation("4", 300.15, 1200f));
+    database.add(createIonAnnotation("5", 500.0, 600f));
+
+    LocalDatabaseIndex index = new LocalDatabaseIndex(database);
+    Assert.assertEquals(4, index.size());
+
+    // Retention times are searched in minutes, results in database order
+    List<SimpleIonAnnotation> result =
+        index.search(Range.closed(300.0, 300.3), Range.closed(9.0f, 11.0f));
+    Assert.assertEquals(2, result.size());
+    Assert.assertEquals("1", result.get(0).getAnnotationId());
+    Assert.assertEquals("2", result.get(1).getAnnotationId());
+
+    // Bounds are honored
+    Assert.assertEquals(2,
+        index.search(Range.closed(300.1, 300.15), Range.closed(10.5f, 20.0f)).size());
+    Assert.assertEquals(1,
+        index.search(Range.openClosed(300.1, 300.15), Range.closed(10.5f, 20.0f)).size());
+    Assert.assertEquals(1,
+        index.search(Range.closed(300.1, 300.15), Range.closedOpen(10.5f, 20.0f)).size());
+    Assert.assertTrue(index.search(Range.closed(600.0, 700.0), Range.<Float>all()).isEmpty());
+  }
+
+  @Test
+  public void testSameResultsAsLinearSearch() throws MSDKException {
+
+    final Random random = new Random(7);
+    final MzTolerance mzTolerance = new MaximumMzTolerance(0.003, 5.0);
+    final RTTolerance rtTolerance = new RTTolerance(0.2f, false);
+
+    List<SimpleIonAnnotation> database = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      database.add(createIonAnnotation(String.valueOf(i), 100.0 + random.nextInt(40000) * 0.01,
+          random.nextInt(300) * 6f));
+    }
+
+    DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+    FeatureTable featureTable = MSDKObjectBuilder.getFeatureTable("synthetic", dataStore);
+    featureTable.addColumn(MSDKObjectBuilder.getIdFeatureTableColumn());
+    featureTable.addColumn(MSDKObjectBuilder.getMzFeatureTableColumn());
+    featureTable.addColumn(MSDKObjectBuilder.getRetentionTimeFeatureTableColumn());
+    for (int i = 0; i < 2000; i++) {
+      FeatureTableRow row = MSDKObjectBuilder.getFeatureTableRow(featureTable, i + 1);
+      row.setData(featureTable.getColumn(ColumnName.ID, null), i + 1);
+      // Half of the features are on database entries
+      SimpleIonAnnotation target = database.get(random.nextInt(database.size()));
+      double mz = (i % 2 == 0) ? target.getExpectedMz() : 100.0 + random.nextDouble() * 400.0;
+      float rt = (i % 2 == 0) ? target.getExpectedRetentionTime() / 60f : random.nextFloat() * 30f;
+      row.setData(featureTable.getColumn(ColumnName.MZ, null), mz);
+      row.setData(featureTable.getColumn(ColumnName.RT.getName(), null, Float.class), rt);
+      featureTable.addRow(row);
+    }
+
+    // The same index can be used for several searches
+    LocalDatabaseIndex index = new LocalDatabaseIndex(database);
+    LocalDatabaseSearchMethod method =
+        new LocalDatabaseSearchMethod(featureTable, index, mzTolerance, rtTolerance);
+    method.execute();
+    Assert.assertEquals(1.0, method.getFinishedPercentage(), 0.0001);
+    new LocalDatabaseSearchMethod(featureTable, index, mzTolerance, rtTolerance).execute();
+
+    FeatureTableColumn<List<SimpleIonAnnotation>> column =
+        featureTable.getColumn(ColumnName.IONANNOTATION, null);
+    int annotatedFeatures = 0;
+    for (FeatureTableRow row : featureTable.getRows()) {
+      Range<Double> mzRange = mzTolerance.getToleranceRange(row.getMz());
+      Range<Float> rtRange = rtTolerance.getToleranceRange(row.getRT());
+      List<SimpleIonAnnotation> expected = new ArrayList<>();
+      for (SimpleIonAnnotation ionAnnotation : database) {
+        if (mzRange.contains(ionAnnotation.getExpectedMz())
+            && rtRange.contains(ionAnnotation.getExpectedRetentionTime() / 60.0f))
+          expected.add(ionAnnotation);
+      }
+      List<SimpleIonAnnotation> actual = row.getData(column);
+      Assert.assertNotNull(actual);
+      Assert.assertEquals(expected, actual);
+      if (!actual.isEmpty())
+        annotatedFeatures++;
+    }
+    Assert.assertTrue(annotatedFeatures >= 1000);
+  }
+
+  private static SimpleIonAnnotation createIonAnnotation(String id, Double mz, Float rt) {
+    SimpleIonAnnotation ionAnnotation = new SimpleIonAnnotation();
+    ionAnnotation.setAnnotationId(id);
+    ionAnnotation.setDescription("Compound " + id);
+    ionAnnotation.setExpectedMz(mz);
+    ionAnnotation.setExpectedRetentionTime(rt);
+    return ionAnnotation;
+  }
+
+}
@@ -18,6 +18,7 @@ import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Range;
 
 import io.github.msdk.MSDKRuntimeException;
@@ -58,29 +59,45 @@ class MzMLMsScan extends AbstractReadOnlyMsScan {
   @Override
   @Nonnull
   public double[] getMzValues() {
-    try {
-      MzMLUnmarshaller parser = dataFile.getParser();
-      if (parser == null) {
-        throw new MSDKRuntimeException("The raw data file object has been disposed");
-      }
-      Spectrum jmzSpectrum = parser.getSpectrumById(spectrumId);
-      return MzMLConverter.extractMzValues(jmzSpectrum, null);
-    } catch (MzMLUnmarshallerException e) {
-      throw (new MSDKRuntimeException(e));
-    }
+    return MzMLConverter.extractMzValues(getJmzSpectrum(), null);
   }
 
   /** {@inheritDoc} */
   @Override
   @Nonnull
   public float[] getIntensityValues() {
+    return MzMLConverter.extractIntensityValues(getJmzSpectrum(), null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getMzValues(@Nonnull double array[]) {
+    final int size = getNumberOfDataPoints();
+    Preconditions.checkArgument(array.length >= size,
+        "The array is too small for " + size + " values");
+    if (MzMLConverter.extractMzValues(getJmzSpectrum(), array) != array)
+      throw new MSDKRuntimeException("Unexpected number of data points in spectrum " + spectrumId);
+    return size;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getIntensityValues(@Nonnull float array[]) {
+    final int size = getNumberOfDataPoints();
+    Preconditions.checkArgument(array.length >= size,
+        "The array is too small for " + size + " values");
+    if (MzMLConverter.extractIntensityValues(getJmzSpectrum(), array) != array)
+      throw new MSDKRuntimeException("Unexpected number of data points in spectrum " + spectrumId);
+    return size;
+  }
+
+  private @Nonnull Spectrum getJmzSpectrum() {
     try {
       MzMLUnmarshaller parser = dataFile.getParser();
       if (parser == null) {
         throw new MSDKRuntimeException("The raw data file object has been disposed");
       }
-      Spectrum jmzSpectrum = parser.getSpectrumById(spectrumId);
-      return MzMLConverter.extractIntensityValues(jmzSpectrum, null);
+      return parser.getSpectrumById(spectrumId);
     } catch (MzMLUnmarshallerException e) {
       throw (new MSDKRuntimeException(e));
     }
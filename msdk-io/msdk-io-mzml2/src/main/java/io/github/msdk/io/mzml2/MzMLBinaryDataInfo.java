@@ -45,7 +45,7 @@ class MzMLBinaryDataInfo {
   }
 
   static enum MzMLArrayType {
-    MZ("MS:1000514"), INTENSITY("MS:1000515");
+    MZ("MS:1000514"), INTENSITY("MS:1000515"), TIME("MS:1000595");
 
     private String accession;
 
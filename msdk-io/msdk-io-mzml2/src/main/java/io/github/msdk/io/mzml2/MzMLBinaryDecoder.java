@@ -0,0 +1,306 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.io.mzml2;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.io.mzml2.MzMLBinaryDataInfo.MzMLCompressionType;
+import io.github.msdk.io.mzml2.util.MSNumpressDouble;
+import io.github.msdk.io.mzml2.util.MSNumpressFloat;
+
+/**
+ * <p>
+ * Decodes the binary data arrays of the memory-mapped mzML file into caller-supplied arrays. The
+ * base64 text is read directly from the mapped buffers, and the decoded bytes are kept in scratch
+ * buffers which are reused by each thread, together with its {@link Inflater}. Once the scratch
+ * buffers have grown to the size of the largest spectrum, decoding a spectrum does not allocate
+ * any memory (except for a few small objects in the MS-Numpress decoders).
+ * </p>
+ */
+class MzMLBinaryDecoder {
+
+  private static final int CHUNK_MASK = (int) (MzMLFileMemoryMapper.CHUNK_SIZE - 1);
+
+  // Values of the base64 characters, -1 for the characters to skip
+  // (whitespace), -2 for the padding character
+  private static final byte base64Values[] = new byte[256];
+
+  static {
+    Arrays.fill(base64Values, (byte) -1);
+    final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    for (int i = 0; i < alphabet.length(); i++)
+      base64Values[alphabet.charAt(i)] = (byte) i;
+    base64Values['='] = -2;
+  }
+
+  /**
+   * Per-thread scratch space.
+   */
+  private static class Scratch {
+    final Inflater inflater = new Inflater();
+    byte decoded[] = new byte[0];
+    byte inflated[] = new byte[0];
+  }
+
+  private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+  private MzMLBinaryDecoder() {}
+
+  /**
+   * Decodes a binary data array into the given array.
+   *
+   * @param buffers the mzML file, as returned by {@link MzMLFileMemoryMapper#mapToBuffers}.
+   * @param info the binary data array to decode.
+   * @param target the array to fill, at least {@link MzMLBinaryDataInfo#getArrayLength()} long.
+   * @return the number of decoded values.
+   * @throws io.github.msdk.MSDKException if the data cannot be decoded.
+   */
+  static int decode(@Nonnull ByteBuffer buffers[], @Nonnull MzMLBinaryDataInfo info,
+      @Nonnull double target[]) throws MSDKException {
+
+    final int arrayLength = info.getArrayLength();
+    Preconditions.checkArgument(target.length >= arrayLength,
+        "The target array is too small for " + arrayLength + " values");
+
+    final Scratch s = scratch.get();
+    final int length = readBinary(buffers, info, s);
+    if (length == 0)
+      return 0;
+    final byte bytes[] = bytesOf(info, s);
+
+    switch (getCompressionType(info)) {
+      case NUMPRESS_LINPRED:
+        return checkNumpress(MSNumpressDouble.decodeLinear(bytes, length, target), "linear");
+      case NUMPRESS_POSINT:
+        return checkNumpress(MSNumpressDouble.decodePic(bytes, length, target),
+            "positive integer");
+      case NUMPRESS_SHLOGF:
+        return checkNumpress(MSNumpressDouble.decodeSlof(bytes, length, target),
+            "short logged float");
+      default:
+        break;
+    }
+
+    final int precision = getPrecision(info);
+    final int numOfValues = Math.min(arrayLength, length / (precision / 8));
+    if (precision == 32) {
+      for (int i = 0, offset = 0; i < numOfValues; i++, offset += 4)
+        target[i] = Float.intBitsToFloat(getInt(bytes, offset));
+    } else {
+      for (int i = 0, offset = 0; i < numOfValues; i++, offset += 8)
+        target[i] = Double.longBitsToDouble(getLong(bytes, offset));
+    }
+    return numOfValues;
+  }
+
+  /**
+   * Decodes a binary data array into the given array.
+   *
+   * @param buffers the mzML file, as returned by {@link MzMLFileMemoryMapper#mapToBuffers}.
+   * @param info the binary data array to decode.
+   * @param target the array to fill, at least {@link MzMLBinaryDataInfo#getArrayLength()} long.
+   * @return the number of decoded values.
+   * @throws io.github.msdk.MSDKException if the data cannot be decoded.
+   */
+  static int decode(@Nonnull ByteBuffer buffers[], @Nonnull MzMLBinaryDataInfo info,
+      @Nonnull float target[]) throws MSDKException {
+
+    final int arrayLength = info.getArrayLength();
+    Preconditions.checkArgument(target.length >= arrayLength,
+        "The target array is too small for " + arrayLength + " values");
+
+    final Scratch s = scratch.get();
+    final int length = readBinary(buffers, info, s);
+    if (length == 0)
+      return 0;
+    final byte bytes[] = bytesOf(info, s);
+
+    switch (getCompressionType(info)) {
+      case NUMPRESS_LINPRED:
+        return checkNumpress(MSNumpressFloat.decodeLinear(bytes, length, target), "linear");
+      case NUMPRESS_POSINT:
+        return checkNumpress(MSNumpressFloat.decodePic(bytes, length, target),
+            "positive integer");
+      case NUMPRESS_SHLOGF:
+        return checkNumpress(MSNumpressFloat.decodeSlof(bytes, length, target),
+            "short logged float");
+      default:
+        break;
+    }
+
+    final int precision = getPrecision(info);
+    final int numOfValues = Math.min(arrayLength, length / (precision / 8));
+    if (precision == 32) {
+      for (int i = 0, offset = 0; i < numOfValues; i++, offset += 4)
+        target[i] = Float.intBitsToFloat(getInt(bytes, offset));
+    } else {
+      for (int i = 0, offset = 0; i < numOfValues; i++, offset += 8)
+        target[i] = (float) Double.longBitsToDouble(getLong(bytes, offset));
+    }
+    return numOfValues;
+  }
+
+  /**
+   * Decodes the base64 text and inflates it, if necessary. The result is left in the decoded or
+   * inflated scratch buffer (see {@link #bytesOf}).
+   *
+   * @return the number of bytes of the binary data.
+   */
+  private static int readBinary(@Nonnull ByteBuffer buffers[], @Nonnull MzMLBinaryDataInfo info,
+      @Nonnull Scratch s) throws MSDKException {
+
+    if (info.getArrayLength() == 0 || info.getEncodedLength() == 0)
+      return 0;
+
+    final int decodedLength = decodeBase64(buffers, info.getPosition(), info.getEncodedLength(), s);
+
+    if (getCompressionType(info) != MzMLCompressionType.ZLIB)
+      return decodedLength;
+
+    // Start with the size of 64-bit values, grow if needed
+    final Inflater inflater = s.inflater;
+    inflater.reset();
+    inflater.setInput(s.decoded, 0, decodedLength);
+    int inflatedLength = 0;
+    try {
+      while (!inflater.finished()) {
+        if (inflatedLength == s.inflated.length) {
+          int expected = info.getArrayLength() * 8;
+          s.inflated = Arrays.copyOf(s.inflated, Math.max(expected, 2 * s.inflated.length));
+        }
+        int n = inflater.inflate(s.inflated, inflatedLength, s.inflated.length - inflatedLength);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new MSDKException("Truncated zlib data at offset " + info.getPosition());
+        inflatedLength += n;
+      }
+    } catch (DataFormatException e) {
+      throw new MSDKException(e);
+    }
+    return inflatedLength;
+  }
+
+  private static byte[] bytesOf(@Nonnull MzMLBinaryDataInfo info, @Nonnull Scratch s) {
+    return getCompressionType(info) == MzMLCompressionType.ZLIB ? s.inflated : s.decoded;
+  }
+
+  /**
+   * Decodes the base64 text at the given file offset into the decoded scratch buffer. Whitespace
+   * is skipped, decoding stops at the first padding character.
+   *
+   * @return the number of decoded bytes.
+   */
+  private static int decodeBase64(@Nonnull ByteBuffer buffers[], long position, int encodedLength,
+      @Nonnull Scratch s) throws MSDKException {
+
+    final int maxLength = (int) (encodedLength * 3L / 4) + 3;
+    if (s.decoded.length < maxLength)
+      s.decoded = new byte[maxLength];
+    final byte decoded[] = s.decoded;
+
+    int length = 0, bits = 0, numOfSextets = 0;
+    long remaining = encodedLength;
+    long pos = position;
+
+    decoding: while (remaining > 0) {
+      final int chunk = (int) (pos >>> MzMLFileMemoryMapper.CHUNK_SHIFT);
+      if (chunk >= buffers.length)
+        throw new MSDKException("Binary data at offset " + position + " exceed the file size");
+      final ByteBuffer buffer = buffers[chunk];
+      final int start = (int) (pos & CHUNK_MASK);
+      final int end = (int) Math.min(buffer.limit(), start + remaining);
+      for (int i = start; i < end; i++) {
+        final int value = base64Values[buffer.get(i) & 0xFF];
+        if (value == -1)
+          continue;
+        if (value == -2)
+          break decoding;
+        bits = (bits << 6) | value;
+        if (++numOfSextets == 4) {
+          decoded[length++] = (byte) (bits >> 16);
+          decoded[length++] = (byte) (bits >> 8);
+          decoded[length++] = (byte) bits;
+          bits = 0;
+          numOfSextets = 0;
+        }
+      }
+      if (end == start)
+        throw new MSDKException("Binary data at offset " + position + " exceed the file size");
+      remaining -= end - start;
+      pos += end - start;
+    }
+
+    // Last incomplete group (padded or not)
+    switch (numOfSextets) {
+      case 2:
+        decoded[length++] = (byte) (bits >> 4);
+        break;
+      case 3:
+        decoded[length++] = (byte) (bits >> 10);
+        decoded[length++] = (byte) (bits >> 2);
+        break;
+      case 1:
+        throw new MSDKException("Invalid base64 data at offset " + position);
+      default:
+        break;
+    }
+
+    return length;
+  }
+
+  @Nonnull
+  private static MzMLCompressionType getCompressionType(@Nonnull MzMLBinaryDataInfo info) {
+    return info.getCompressionType() == null ? MzMLCompressionType.NO_COMPRESSION
+        : info.getCompressionType();
+  }
+
+  private static int getPrecision(@Nonnull MzMLBinaryDataInfo info) throws MSDKException {
+    if (info.getBitLength() == null)
+      throw new MSDKException(
+          "Precision MUST be specified, if MS-NUMPRESS compression was not used");
+    switch (info.getBitLength()) {
+      case THIRTY_TWO_BIT_FLOAT:
+      case THIRTY_TWO_BIT_INTEGER:
+        return 32;
+      case SIXTY_FOUR_BIT_FLOAT:
+      case SIXTY_FOUR_BIT_INTEGER:
+        return 64;
+      default:
+        throw new MSDKException("Unsupported bit length " + info.getBitLength());
+    }
+  }
+
+  private static int checkNumpress(int numOfValues, String decoderName) throws MSDKException {
+    if (numOfValues < 0)
+      throw new MSDKException("MSNumpress " + decoderName + " decoder failed");
+    return numOfValues;
+  }
+
+  private static int getInt(byte bytes[], int offset) {
+    return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8)
+        | ((bytes[offset + 2] & 0xFF) << 16) | ((bytes[offset + 3] & 0xFF) << 24);
+  }
+
+  private static long getLong(byte bytes[], int offset) {
+    return (getInt(bytes, offset) & 0xFFFFFFFFL) | ((long) getInt(bytes, offset + 4) << 32);
+  }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.io.mzml2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Range;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.MSDKRuntimeException;
+import io.github.msdk.datamodel.chromatograms.Chromatogram;
+import io.github.msdk.datamodel.chromatograms.ChromatogramType;
+import io.github.msdk.datamodel.impl.SimpleActivationInfo;
+import io.github.msdk.datamodel.impl.SimpleIsolationInfo;
+import io.github.msdk.datamodel.ionannotations.IonAnnotation;
+import io.github.msdk.datamodel.rawdata.ActivationInfo;
+import io.github.msdk.datamodel.rawdata.ActivationType;
+import io.github.msdk.datamodel.rawdata.IsolationInfo;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.datamodel.rawdata.SeparationType;
+
+/**
+ * <p>
+ * A chromatogram of an mzML file. The chromatogram element is parsed by a
+ * {@link MzMLSpectrumLoader} when the chromatogram is first touched, and the binary data are
+ * decoded from the memory-mapped file on every call. The retention times are converted to seconds.
+ * </p>
+ */
+class MzMLChromatogram implements Chromatogram {
+
+  private final @Nonnull MzMLRawDataFile dataFile;
+  private final @Nonnull String id;
+  private final @Nonnull Integer chromatogramNumber;
+  private final @Nonnull List<MzMLCVParam> cvParams = new ArrayList<>();
+  private final @Nonnull List<MzMLCVParam> precursorCvParams = new ArrayList<>();
+  private final @Nonnull List<MzMLCVParam> productCvParams = new ArrayList<>();
+  private MzMLBinaryDataInfo timeBinaryDataInfo;
+  private MzMLBinaryDataInfo intensityBinaryDataInfo;
+  private float timeFactor = 60f;
+  private List<IsolationInfo> isolations;
+  private Range<Float> rtRange;
+
+  private MzMLSpectrumLoader loader;
+  private final long offset;
+  private volatile boolean loaded = false;
+  private boolean loading = false;
+
+  MzMLChromatogram(@Nonnull MzMLRawDataFile dataFile, @Nonnull String id,
+      @Nonnull Integer chromatogramNumber, @Nonnull MzMLSpectrumLoader loader, long offset) {
+    this.dataFile = dataFile;
+    this.id = id;
+    this.chromatogramNumber = chromatogramNumber;
+    this.loader = loader;
+    this.offset = offset;
+  }
+
+  /**
+   * <p>Getter for the field <code>id</code>.</p>
+   *
+   * @return a {@link java.lang.String} object.
+   */
+  @Nonnull
+  String getId() {
+    return id;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public RawDataFile getRawDataFile() {
+    return dataFile;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Integer getChromatogramNumber() {
+    return chromatogramNumber;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public ChromatogramType getChromatogramType() {
+    if (getCVValue(cvParams, MzMLCV.cvChromatogramTIC) != null)
+      return ChromatogramType.TIC;
+    if (getCVValue(cvParams, MzMLCV.cvChromatogramMRM_SRM) != null)
+      return ChromatogramType.MRM_SRM;
+    if (getCVValue(cvParams, MzMLCV.cvChromatogramSIC) != null)
+      return ChromatogramType.SIC;
+    if (getCVValue(cvParams, MzMLCV.cvChromatogramBPC) != null)
+      return ChromatogramType.BPC;
+    return ChromatogramType.UNKNOWN;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Integer getNumberOfDataPoints() {
+    ensureLoaded();
+    return timeBinaryDataInfo == null ? 0 : timeBinaryDataInfo.getArrayLength();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public float[] getRetentionTimes() {
+    return getRetentionTimes(null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public float[] getRetentionTimes(@Nullable float array[]) {
+    ensureLoaded();
+    array = decode(timeBinaryDataInfo, array);
+    if (timeFactor != 1f) {
+      final int numOfValues = getNumberOfDataPoints();
+      for (int i = 0; i < numOfValues; i++)
+        array[i] *= timeFactor;
+    }
+    return array;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public float[] getIntensityValues() {
+    return getIntensityValues(null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public float[] getIntensityValues(@Nullable float array[]) {
+    ensureLoaded();
+    return decode(intensityBinaryDataInfo, array);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public double[] getMzValues() {
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public Double getMz() {
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public List<IsolationInfo> getIsolations() {
+    ensureLoaded();
+    if (isolations == null)
+      isolations = extractIsolations();
+    return isolations;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public SeparationType getSeparationType() {
+    return SeparationType.UNKNOWN;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public IonAnnotation getIonAnnotation() {
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public Range<Float> getRtRange() {
+    if (rtRange == null) {
+      final int numOfValues = getNumberOfDataPoints();
+      if (numOfValues == 0)
+        return null;
+      final float rtValues[] = getRetentionTimes();
+      rtRange = Range.closed(rtValues[0], rtValues[numOfValues - 1]);
+    }
+    return rtRange;
+  }
+
+  List<MzMLCVParam> getCVParams() {
+    ensureLoaded();
+    return cvParams;
+  }
+
+  List<MzMLCVParam> getPrecursorCVParams() {
+    ensureLoaded();
+    return precursorCvParams;
+  }
+
+  List<MzMLCVParam> getProductCVParams() {
+    ensureLoaded();
+    return productCvParams;
+  }
+
+  void setTimeBinaryDataInfo(@Nonnull MzMLBinaryDataInfo timeBinaryDataInfo,
+      @Nullable String unitAccession) {
+    this.timeBinaryDataInfo = timeBinaryDataInfo;
+    // Same units as the scan start time of the spectra
+    if (MzMLCV.cvUnitsSec.equals(unitAccession))
+      timeFactor = 1f;
+    else
+      timeFactor = 60f;
+  }
+
+  void setIntensityBinaryDataInfo(@Nonnull MzMLBinaryDataInfo intensityBinaryDataInfo) {
+    this.intensityBinaryDataInfo = intensityBinaryDataInfo;
+  }
+
+  private float[] decode(@Nullable MzMLBinaryDataInfo binaryDataInfo, @Nullable float array[]) {
+    final int numOfValues = getNumberOfDataPoints();
+    if ((array == null) || (array.length < numOfValues))
+      array = new float[numOfValues];
+    if (binaryDataInfo == null)
+      return array;
+    final ByteBuffer mappedBuffers[] = dataFile.getMappedBuffers();
+    if (mappedBuffers == null)
+      throw new MSDKRuntimeException("The raw data file object has been disposed");
+    try {
+      MzMLBinaryDecoder.decode(mappedBuffers, binaryDataInfo, array);
+    } catch (MSDKException e) {
+      throw new MSDKRuntimeException(e);
+    }
+    return array;
+  }
+
+  private List<IsolationInfo> extractIsolations() {
+    if (getChromatogramType() != ChromatogramType.MRM_SRM)
+      return Collections.emptyList();
+
+    List<IsolationInfo> isolations = new ArrayList<>();
+
+    // Precursor isolation window and activation
+    String cvVal = getCVValue(precursorCvParams, MzMLCV.cvIsolationWindowTarget);
+    if (!Strings.isNullOrEmpty(cvVal)) {
+      Double precursorIsolationMz = Double.parseDouble(cvVal);
+      ActivationType precursorActivation = ActivationType.UNKNOWN;
+      if (getCVValue(precursorCvParams, MzMLCV.cvActivationCID) != null)
+        precursorActivation = ActivationType.CID;
+      ActivationInfo activationInfo = null;
+      cvVal = getCVValue(precursorCvParams, MzMLCV.cvActivationEnergy);
+      if (!Strings.isNullOrEmpty(cvVal))
+        activationInfo = new SimpleActivationInfo(Double.parseDouble(cvVal), precursorActivation);
+      isolations.add(new SimpleIsolationInfo(Range.singleton(precursorIsolationMz), null,
+          precursorIsolationMz, null, activationInfo));
+    }
+
+    // Product isolation window
+    cvVal = getCVValue(productCvParams, MzMLCV.cvIsolationWindowTarget);
+    if (!Strings.isNullOrEmpty(cvVal)) {
+      Double productIsolationMz = Double.parseDouble(cvVal);
+      isolations.add(new SimpleIsolationInfo(Range.singleton(productIsolationMz), null,
+          productIsolationMz, null, null));
+    }
+
+    return Collections.unmodifiableList(isolations);
+  }
+
+  private String getCVValue(@Nonnull List<MzMLCVParam> cvParams, @Nonnull String accession) {
+    ensureLoaded();
+    for (MzMLCVParam cvParam : cvParams) {
+      if (accession.equals(cvParam.getAccession()))
+        return cvParam.getValue() == null ? "" : cvParam.getValue();
+    }
+    return null;
+  }
+
+  private void ensureLoaded() {
+    if (loaded)
+      return;
+    synchronized (this) {
+      // The loader fills the chromatogram through its getters, so
+      // re-entrant calls during loading must return immediately
+      if (loaded || loading)
+        return;
+      loading = true;
+      try {
+        loader.loadChromatogram(this, offset);
+        loader = null;
+        loaded = true;
+      } catch (RuntimeException e) {
+        // Allow a clean retry
+        cvParams.clear();
+        precursorCvParams.clear();
+        productCvParams.clear();
+        timeBinaryDataInfo = null;
+        intensityBinaryDataInfo = null;
+        throw e;
+      } finally {
+        loading = false;
+      }
+    }
+  }
+
+}
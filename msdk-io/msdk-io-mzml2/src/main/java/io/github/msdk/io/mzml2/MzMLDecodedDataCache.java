@@ -0,0 +1,288 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.io.mzml2;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.github.msdk.datamodel.rawdata.MsScan;
+
+/**
+ * <p>
+ * Cache of decoded m/z and intensity arrays of the spectra of one mzML file. The cache is bounded
+ * by the total size of the cached arrays in bytes, the least recently used spectra are evicted
+ * first.
+ * </p>
+ *
+ * <p>
+ * When the spectra are read in sequence (e.g. by iterating over the scans of the file), the
+ * following spectra are decoded in advance on a shared pool of worker threads, so the reading
+ * thread finds them already decoded. Random access does not trigger any read-ahead.
+ * </p>
+ */
+public class MzMLDecodedDataCache {
+
+  /** Default maximum size of the cached arrays, in bytes. */
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  /** Default number of spectra decoded ahead of a sequential reader. */
+  public static final int DEFAULT_PREFETCH_DEPTH = Runtime.getRuntime().availableProcessors();
+
+  private static final ExecutorService decodingExecutor =
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("msdk-mzml-decoder-%d").build());
+
+  /**
+   * Decoded m/z and intensity values of one spectrum. The arrays must not be modified.
+   */
+  static class DecodedArrays {
+
+    private final @Nonnull double mzValues[];
+    private final @Nonnull float intensityValues[];
+
+    DecodedArrays(@Nonnull double mzValues[], @Nonnull float intensityValues[]) {
+      this.mzValues = mzValues;
+      this.intensityValues = intensityValues;
+    }
+
+    double[] getMzValues() {
+      return mzValues;
+    }
+
+    float[] getIntensityValues() {
+      return intensityValues;
+    }
+
+    long getSizeInBytes() {
+      return 8L * mzValues.length + 4L * intensityValues.length;
+    }
+  }
+
+  private final @Nonnull List<MsScan> spectra;
+
+  // Guarded by this
+  private final LinkedHashMap<MzMLSpectrum, DecodedArrays> cache =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedBytes = 0;
+  private long maxBytes = DEFAULT_MAX_BYTES;
+
+  // Spectra being decoded by the worker threads
+  private final Map<MzMLSpectrum, Future<DecodedArrays>> pending = new ConcurrentHashMap<>();
+
+  // Read-ahead state, guarded by prefetchLock
+  private final Object prefetchLock = new Object();
+  private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+  private int lastReadIndex = -1, nextPrefetchIndex = 0;
+
+  private final AtomicLong hitCount = new AtomicLong(), missCount = new AtomicLong();
+
+  /**
+   * <p>
+   * Constructor for MzMLDecodedDataCache.
+   * </p>
+   *
+   * @param spectra the scans of the file, in the order of the file.
+   */
+  MzMLDecodedDataCache(@Nonnull List<MsScan> spectra) {
+    this.spectra = spectra;
+  }
+
+  /**
+   * Returns the decoded arrays of the given spectrum, from the cache if possible.
+   */
+  @Nonnull
+  DecodedArrays getDecodedArrays(@Nonnull MzMLSpectrum spectrum) {
+
+    DecodedArrays arrays;
+    synchronized (this) {
+      arrays = cache.get(spectrum);
+    }
+
+    if (arrays == null) {
+      Future<DecodedArrays> future = pending.get(spectrum);
+      if (future != null) {
+        try {
+          arrays = future.get();
+        } catch (InterruptedException | ExecutionException e) {
+          // Decode again on this thread, which reports the actual error
+          arrays = null;
+        }
+      }
+    }
+
+    if (arrays != null) {
+      hitCount.incrementAndGet();
+    } else {
+      missCount.incrementAndGet();
+      arrays = decode(spectrum);
+      put(spectrum, arrays);
+    }
+
+    prefetchAfter(spectrum.getSpectrumIndex());
+    return arrays;
+  }
+
+  /**
+   * Returns the decoded arrays of the given spectrum if they are in the cache, without decoding
+   * the spectrum.
+   */
+  @Nullable
+  synchronized DecodedArrays getCachedArrays(@Nonnull MzMLSpectrum spectrum) {
+    return cache.get(spectrum);
+  }
+
+  /**
+   * Returns the number of requests that found the spectrum decoded, either in the cache or by a
+   * worker thread.
+   *
+   * @return a long.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of requests that had to decode the spectrum on the calling thread.
+   *
+   * @return a long.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Returns the current size of the cached arrays, in bytes.
+   *
+   * @return a long.
+   */
+  public synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  /**
+   * Sets the maximum size of the cached arrays, in bytes. Zero disables the caching.
+   *
+   * @param maxBytes a long.
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    Preconditions.checkArgument(maxBytes >= 0, "Cache size must not be negative");
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  /**
+   * Sets the number of spectra decoded ahead of a sequential reader. Zero disables the read-ahead.
+   *
+   * @param prefetchDepth an int.
+   */
+  public void setPrefetchDepth(int prefetchDepth) {
+    Preconditions.checkArgument(prefetchDepth >= 0, "Prefetch depth must not be negative");
+    synchronized (prefetchLock) {
+      this.prefetchDepth = prefetchDepth;
+    }
+  }
+
+  /**
+   * Removes all the cached arrays and cancels the pending read-ahead.
+   */
+  public void clear() {
+    for (Future<DecodedArrays> future : pending.values())
+      future.cancel(false);
+    pending.clear();
+    synchronized (this) {
+      cache.clear();
+      cachedBytes = 0;
+    }
+  }
+
+  private void prefetchAfter(int index) {
+
+    if (index < 0)
+      return;
+
+    final int first, last;
+    synchronized (prefetchLock) {
+      // Reading both arrays of the same spectrum
+      if (index == lastReadIndex)
+        return;
+      // Only a sequential reader triggers the read-ahead
+      boolean sequential = (index == lastReadIndex + 1);
+      lastReadIndex = index;
+      if (!sequential || prefetchDepth == 0) {
+        nextPrefetchIndex = index + 1;
+        return;
+      }
+      first = Math.max(nextPrefetchIndex, index + 1);
+      last = Math.min(index + prefetchDepth, spectra.size() - 1);
+      nextPrefetchIndex = Math.max(nextPrefetchIndex, last + 1);
+    }
+
+    for (int i = first; i <= last; i++) {
+      MsScan scan = spectra.get(i);
+      if (!(scan instanceof MzMLSpectrum))
+        continue;
+      final MzMLSpectrum spectrum = (MzMLSpectrum) scan;
+      synchronized (this) {
+        if (cache.containsKey(spectrum))
+          continue;
+      }
+      pending.computeIfAbsent(spectrum, s -> decodingExecutor.submit(() -> {
+        try {
+          DecodedArrays arrays = decode(s);
+          put(s, arrays);
+          return arrays;
+        } finally {
+          pending.remove(s);
+        }
+      }));
+    }
+  }
+
+  private static DecodedArrays decode(@Nonnull MzMLSpectrum spectrum) {
+    return new DecodedArrays(spectrum.decodeMzValues(), spectrum.decodeIntensityValues());
+  }
+
+  private synchronized void put(@Nonnull MzMLSpectrum spectrum, @Nonnull DecodedArrays arrays) {
+    if (arrays.getSizeInBytes() > maxBytes)
+      return;
+    DecodedArrays previous = cache.put(spectrum, arrays);
+    if (previous != null)
+      cachedBytes -= previous.getSizeInBytes();
+    cachedBytes += arrays.getSizeInBytes();
+    evict();
+  }
+
+  private synchronized void evict() {
+    Iterator<DecodedArrays> iterator = cache.values().iterator();
+    while (cachedBytes > maxBytes && iterator.hasNext()) {
+      cachedBytes -= iterator.next().getSizeInBytes();
+      iterator.remove();
+    }
+  }
+
+}
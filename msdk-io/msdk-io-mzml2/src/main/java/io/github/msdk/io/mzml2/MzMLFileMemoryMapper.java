@@ -16,6 +16,7 @@ package io.github.msdk.io.mzml2;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 import javax.xml.stream.XMLStreamException;
@@ -25,6 +26,10 @@ import it.unimi.dsi.io.ByteBufferInputStream;
 
 class MzMLFileMemoryMapper {
 
+  /** Size of the mapped chunks returned by {@link #mapToBuffers(File)}. */
+  static final int CHUNK_SHIFT = 30;
+  static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
   /**
    * <p>mapToMemory.</p>
    *
@@ -45,4 +50,28 @@ class MzMLFileMemoryMapper {
 
     return is;
   }
+
+  /**
+   * Maps the file to memory as a sequence of read-only buffers of {@link #CHUNK_SIZE} bytes (the
+   * last one may be shorter). The byte at file offset <code>pos</code> is
+   * <code>buffers[pos &gt;&gt;&gt; CHUNK_SHIFT].get(pos &amp; (CHUNK_SIZE - 1))</code>. Absolute
+   * gets do not change the state of the buffers, so they can be shared by several threads.
+   *
+   * @param mzMLFile a {@link java.io.File} object.
+   * @return an array of {@link java.nio.ByteBuffer}s.
+   * @throws java.io.IOException if any.
+   */
+  ByteBuffer[] mapToBuffers(File mzMLFile) throws IOException {
+    try (RandomAccessFile aFile = new RandomAccessFile(mzMLFile, "r");
+        FileChannel inChannel = aFile.getChannel()) {
+      final long size = inChannel.size();
+      final ByteBuffer buffers[] = new ByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+      for (int i = 0; i < buffers.length; i++) {
+        long position = (long) i << CHUNK_SHIFT;
+        buffers[i] = inChannel.map(FileChannel.MapMode.READ_ONLY, position,
+            Math.min(CHUNK_SIZE, size - position));
+      }
+      return buffers;
+    }
+  }
 }
@@ -15,6 +15,7 @@ package io.github.msdk.io.mzml2;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
@@ -23,7 +24,8 @@ import java.util.regex.Pattern;
 
 import javax.annotation.Nonnull;
 
-import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.github.msdk.MSDKException;
 import io.github.msdk.MSDKMethod;
@@ -31,8 +33,10 @@ import io.github.msdk.datamodel.chromatograms.Chromatogram;
 import io.github.msdk.datamodel.rawdata.MsFunction;
 import io.github.msdk.datamodel.rawdata.MsScan;
 import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.io.mzml2.MzMLBinaryDataInfo.MzMLArrayType;
 import it.unimi.dsi.io.ByteBufferInputStream;
 import javolution.osgi.internal.OSGiServices;
+import javolution.text.CharArray;
 import javolution.xml.stream.XMLInputFactory;
 import javolution.xml.stream.XMLStreamException;
 import javolution.xml.stream.XMLStreamReader;
@@ -46,9 +50,13 @@ import javolution.xml.stream.XMLStreamReader;
  * @version $Id: $Id
  */
 public class MzMLFileParser implements MSDKMethod<RawDataFile> {
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
   private final @Nonnull File mzMLFile;
   private final @Nonnull ArrayList<MsScan> spectrumList;
   private final ArrayList<MzMLReferenceableParamGroup> referenceableParamGroupList;
+  private final boolean indexFirst;
   private RawDataFile newRawFile;
   private Integer lastScanNumber = 0;
   private boolean canceled;
@@ -84,7 +92,28 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
    * @param mzMLFile a {@link java.io.File} object.
    */
   public MzMLFileParser(File mzMLFile) {
+    this(mzMLFile, false);
+  }
+
+  /**
+   * <p>
+   * Constructor for MzMLFileParser. In the index-first mode, the spectra and chromatograms are
+   * located using the indexList of the mzML file (or a sidecar index file, which is created on the
+   * first opening of a file without a valid indexList) and each spectrum element is parsed only
+   * when the spectrum is first touched. Opening a large file is then nearly instant.
+   * </p>
+   *
+   * <p>
+   * In both modes, the chromatogram elements are parsed when the chromatograms are first touched,
+   * and the MS functions of the file are collected from its spectra when they are first requested.
+   * </p>
+   *
+   * @param mzMLFile a {@link java.io.File} object.
+   * @param indexFirst true to open the file in the index-first mode.
+   */
+  public MzMLFileParser(File mzMLFile, boolean indexFirst) {
     this.mzMLFile = mzMLFile;
+    this.indexFirst = indexFirst;
     this.spectrumList = new ArrayList<>();
     this.referenceableParamGroupList = new ArrayList<>();
     this.canceled = false;
@@ -101,9 +130,14 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
    */
   public RawDataFile execute() throws MSDKException {
 
+    if (indexFirst)
+      return executeIndexFirst();
+
+    XMLStreamReader xmlStreamReader = null;
     try {
       MzMLFileMemoryMapper mapper = new MzMLFileMemoryMapper();
       ByteBufferInputStream is = mapper.mapToMemory(mzMLFile);
+      ByteBuffer mappedBuffers[] = mapper.mapToBuffers(mzMLFile);
 
       List<Chromatogram> chromatogramsList = new ArrayList<>();
       List<MsFunction> msFunctionsList = new ArrayList<>();
@@ -112,10 +146,14 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
       final MzMLRawDataFile newRawFile =
           new MzMLRawDataFile(mzMLFile, null, msFunctionsList, spectrumList, chromatogramsList);
       this.newRawFile = newRawFile;
+      newRawFile.setMappedBuffers(mappedBuffers);
 
-      XMLInputFactory xmlInputFactory = OSGiServices.getXMLInputFactory();
-      XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(is);
+      // The shared factory recycles its readers, and a reader whose input
+      // could not be set up stays in its pool, so each parse uses a copy
+      XMLInputFactory xmlInputFactory = OSGiServices.getXMLInputFactory().clone();
+      xmlStreamReader = xmlInputFactory.createXMLStreamReader(is);
 
+      boolean chromatogramListFound = false;
       boolean insideSpectrumListFlag = false;
       boolean insideBinaryDataArrayFlag = false;
       boolean insideReferenceableParamGroupList = false;
@@ -132,6 +170,11 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
 
           if (xmlStreamReader.hasNext()) {
             switch (xmlStreamReader.getLocalName().toString()) {
+              case "chromatogramList":
+                // The chromatograms are located by the index and loaded
+                // on demand
+                chromatogramListFound = true;
+                break;
               case "spectrumList":
                 insideSpectrumListFlag = true;
                 break;
@@ -143,16 +186,13 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
             if (insideReferenceableParamGroupList) {
               switch (xmlStreamReader.getLocalName().toString()) {
                 case "referenceableParamGroup":
-                  String id = xmlStreamReader.getAttributeValue("http://psi.hupo.org/ms/mzml", "id")
-                      .toString();
+                  String id = getAttribute(xmlStreamReader, "id");
                   referenceableParamGroup = new MzMLReferenceableParamGroup(id);
                   break;
                 case "cvParam":
-                  String accession =
-                      xmlStreamReader.getAttributeValue(null, "accession").toString();
-                  String value = xmlStreamReader.getAttributeValue(null, "value").toString();
-                  String unitAccession =
-                      xmlStreamReader.getAttributeValue(null, "unitAccession").toString();
+                  String accession = getAttribute(xmlStreamReader, "accession");
+                  String value = getAttribute(xmlStreamReader, "value");
+                  String unitAccession = getAttribute(xmlStreamReader, "unitAccession");
                   MzMLCVParam cvParam = new MzMLCVParam(accession, null, null);
                   if (value != null)
                     cvParam.setValue(value);
@@ -167,9 +207,9 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
               switch (xmlStreamReader.getLocalName().toString()) {
                 case "spectrum":
                   spectrum = new MzMLSpectrum(newRawFile);
-                  String id = xmlStreamReader.getAttributeValue(null, "id").toString();
+                  String id = getAttribute(xmlStreamReader, "id");
                   defaultArrayLength =
-                      xmlStreamReader.getAttributeValue(null, "defaultArrayLength").toInt();
+                      getIntAttribute(xmlStreamReader, "defaultArrayLength", 0);
                   spectrum.setId(id);
                   spectrum.setScanNumber(getScanNumber(id));
                   spectrum.setByteBufferInputStream(is);
@@ -177,23 +217,16 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
                 case "binaryDataArray":
                   insideBinaryDataArrayFlag = true;
                   binaryDataInfo = new MzMLBinaryDataInfo();
-                  int encodedLength =
-                      xmlStreamReader.getAttributeValue(null, "encodedLength").toInt();
-                  Integer arrayLength =
-                      xmlStreamReader.getAttributeValue(null, "arrayLength").toInt();
-                  binaryDataInfo.setEncodedLength(encodedLength);
-                  if (arrayLength != null) {
-                    defaultArrayLength = arrayLength;
-                  }
-                  binaryDataInfo.setArrayLength(defaultArrayLength);
+                  binaryDataInfo
+                      .setEncodedLength(getIntAttribute(xmlStreamReader, "encodedLength", 0));
+                  binaryDataInfo.setArrayLength(
+                      getIntAttribute(xmlStreamReader, "arrayLength", defaultArrayLength));
                   break;
                 case "cvParam":
                   if (!insideBinaryDataArrayFlag && spectrum != null) {
-                    String accession =
-                        xmlStreamReader.getAttributeValue(null, "accession").toString();
-                    String value = xmlStreamReader.getAttributeValue(null, "value").toString();
-                    String unitAccession =
-                        xmlStreamReader.getAttributeValue(null, "unitAccession").toString();
+                    String accession = getAttribute(xmlStreamReader, "accession");
+                    String value = getAttribute(xmlStreamReader, "value");
+                    String unitAccession = getAttribute(xmlStreamReader, "unitAccession");
                     MzMLCVParam cvParam = new MzMLCVParam(accession, null, null);
                     if (value != null)
                       cvParam.setValue(value);
@@ -209,17 +242,13 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
                       if (xmlStreamReader.isCharacters()) {
                         binaryDataInfo
                             .setPosition(xmlStreamReader.getLocation().getCharacterOffset());
-                        ByteBufferInputStreamAdapter decodedIs =
-                            new ByteBufferInputStreamAdapter(is.copy(),
-                                binaryDataInfo.getPosition(), binaryDataInfo.getEncodedLength());
-                        System.out.println(new String(IOUtils.toByteArray(decodedIs)));
                         break;
                       }
                     }
                   }
                   break;
                 case "referenceableParamGroupRef":
-                  String refValue = xmlStreamReader.getAttributeValue(null, "ref").toString();
+                  String refValue = getAttribute(xmlStreamReader, "ref");
 
                   for (MzMLReferenceableParamGroup ref : referenceableParamGroupList) {
                     if (ref.getParamGroupName().equals(refValue)) {
@@ -231,10 +260,11 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
               }
             }
 
-            if (insideBinaryDataArrayFlag
+            // The reader may have moved to the content of a binary element
+            if (insideBinaryDataArrayFlag && xmlStreamReader.isStartElement()
                 && xmlStreamReader.getLocalName().toString().equals("cvParam")
                 && binaryDataInfo != null) {
-              String accession = xmlStreamReader.getAttributeValue(null, "accession").toString();
+              String accession = getAttribute(xmlStreamReader, "accession");
               if (binaryDataInfo.isBitLengthAccession(accession)) {
                 binaryDataInfo.setBitLength(accession);
               } else if (binaryDataInfo.isCompressionTypeAccession(accession)) {
@@ -269,13 +299,14 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
           if (insideSpectrumListFlag) {
             switch (xmlStreamReader.getLocalName().toString()) {
               case "binaryDataArray":
-                if (binaryDataInfo.getArrayType().getValue().equals("MS:1000514"))
+                if (binaryDataInfo.getArrayType() == MzMLArrayType.MZ)
                   spectrum.setMzBinaryDataInfo(binaryDataInfo);
-                if (binaryDataInfo.getArrayType().getValue().equals("MS:1000515"))
+                if (binaryDataInfo.getArrayType() == MzMLArrayType.INTENSITY)
                   spectrum.setIntensityBinaryDataInfo(binaryDataInfo);
                 insideBinaryDataArrayFlag = false;
                 break;
               case "spectrum":
+                spectrum.setSpectrumIndex(spectrumList.size());
                 spectrumList.add(spectrum);
             }
           }
@@ -283,6 +314,16 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
 
       }
 
+      if (chromatogramListFound) {
+        MzMLSpectrumIndex index = MzMLSpectrumIndex.readIndexList(is);
+        if (index == null)
+          index = MzMLSpectrumIndex.build(is);
+        if (canceled)
+          return null;
+        addChromatograms(newRawFile, index,
+            new MzMLSpectrumLoader(is, referenceableParamGroupList), chromatogramsList);
+      }
+
       progress = 1f;
     } catch (IOException e) {
       throw (new MSDKException(e));
@@ -290,11 +331,107 @@ public class MzMLFileParser implements MSDKMethod<RawDataFile> {
       throw (new MSDKException(e));
     } catch (javax.xml.stream.XMLStreamException e) {
       throw (new MSDKException(e));
+    } finally {
+      // The readers of the factory are reused, so the reader must be closed even if the file
+      // could not be parsed
+      if (xmlStreamReader != null) {
+        try {
+          xmlStreamReader.close();
+        } catch (XMLStreamException e) {
+          logger.warn("Could not close the XML reader of " + mzMLFile, e);
+        }
+      }
+    }
+
+    return newRawFile;
+  }
+
+  private RawDataFile executeIndexFirst() throws MSDKException {
+
+    try {
+      MzMLFileMemoryMapper mapper = new MzMLFileMemoryMapper();
+      ByteBufferInputStream is = mapper.mapToMemory(mzMLFile);
+      ByteBuffer mappedBuffers[] = mapper.mapToBuffers(mzMLFile);
+
+      List<Chromatogram> chromatogramsList = new ArrayList<>();
+      List<MsFunction> msFunctionsList = new ArrayList<>();
+
+      final MzMLRawDataFile newRawFile =
+          new MzMLRawDataFile(mzMLFile, null, msFunctionsList, spectrumList, chromatogramsList);
+      this.newRawFile = newRawFile;
+      newRawFile.setMappedBuffers(mappedBuffers);
+
+      MzMLSpectrumIndex index = MzMLSpectrumIndex.load(mzMLFile, is);
+      if (canceled)
+        return null;
+
+      long firstElementOffset = index.size() > 0 ? index.getOffset(0) : is.length();
+      if (index.getNumberOfChromatograms() > 0)
+        firstElementOffset = Math.min(firstElementOffset, index.getChromatogramOffset(0));
+      referenceableParamGroupList
+          .addAll(MzMLSpectrumLoader.readReferenceableParamGroups(is, firstElementOffset));
+      MzMLSpectrumLoader loader = new MzMLSpectrumLoader(is, referenceableParamGroupList);
+
+      for (int i = 0; i < index.size(); i++) {
+        if (canceled)
+          return null;
+        MzMLSpectrum spectrum = new MzMLSpectrum(newRawFile);
+        String id = index.getId(i);
+        spectrum.setId(id);
+        spectrum.setScanNumber(getScanNumber(id == null ? "" : id));
+        spectrum.setByteBufferInputStream(is);
+        spectrum.setLoader(loader, index.getOffset(i));
+        spectrum.setSpectrumIndex(i);
+        spectrumList.add(spectrum);
+      }
+      addChromatograms(newRawFile, index, loader, chromatogramsList);
+
+      progress = 1f;
+    } catch (IOException | javax.xml.stream.XMLStreamException e) {
+      throw new MSDKException(e);
     }
 
     return newRawFile;
   }
 
+  /**
+   * Adds the chromatograms of the index to the list. The chromatogram elements are parsed when the
+   * chromatograms are first touched.
+   */
+  private static void addChromatograms(@Nonnull MzMLRawDataFile newRawFile,
+      @Nonnull MzMLSpectrumIndex index, @Nonnull MzMLSpectrumLoader loader,
+      @Nonnull List<Chromatogram> chromatogramsList) {
+    for (int i = 0; i < index.getNumberOfChromatograms(); i++) {
+      String id = index.getChromatogramId(i);
+      chromatogramsList.add(new MzMLChromatogram(newRawFile, id == null ? "" : id, i + 1, loader,
+          index.getChromatogramOffset(i)));
+    }
+  }
+
+  /**
+   * Returns the value of the given attribute of the current element, or null if the element does
+   * not have the attribute. The attributes are matched by their local name, as the lookup by a null
+   * namespace URI does not find the unprefixed mzML attributes.
+   */
+  private static CharArray getAttributeValue(XMLStreamReader xmlStreamReader, String localName) {
+    for (int i = 0; i < xmlStreamReader.getAttributeCount(); i++) {
+      if (localName.contentEquals(xmlStreamReader.getAttributeLocalName(i)))
+        return xmlStreamReader.getAttributeValue(i);
+    }
+    return null;
+  }
+
+  private static String getAttribute(XMLStreamReader xmlStreamReader, String localName) {
+    CharArray value = getAttributeValue(xmlStreamReader, localName);
+    return value == null ? null : value.toString();
+  }
+
+  private static int getIntAttribute(XMLStreamReader xmlStreamReader, String localName,
+      int defaultValue) {
+    CharArray value = getAttributeValue(xmlStreamReader, localName);
+    return value == null ? defaultValue : value.toInt();
+  }
+
   /**
    * <p>
    * Getter for the field <code>spectrumList</code>.
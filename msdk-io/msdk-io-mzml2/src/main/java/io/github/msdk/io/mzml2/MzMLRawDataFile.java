@@ -14,8 +14,11 @@
 package io.github.msdk.io.mzml2;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -29,7 +32,12 @@ import io.github.msdk.datamodel.rawdata.MsScan;
 import io.github.msdk.datamodel.rawdata.RawDataFile;
 import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshaller;
 
-class MzMLRawDataFile implements RawDataFile {
+/**
+ * <p>
+ * MzMLRawDataFile class.
+ * </p>
+ */
+public class MzMLRawDataFile implements RawDataFile {
 
   private static final @Nonnull FileType fileType = FileType.MZML;
 
@@ -39,6 +47,9 @@ class MzMLRawDataFile implements RawDataFile {
   private final @Nonnull List<MsFunction> msFunctions;
   private final @Nonnull List<MsScan> msScans;
   private final @Nonnull List<Chromatogram> chromatograms;
+  private final @Nonnull MzMLDecodedDataCache decodedDataCache;
+  private @Nullable ByteBuffer mappedBuffers[];
+  private volatile @Nullable List<MsFunction> scanMsFunctions;
 
   private @Nonnull String name;
 
@@ -62,6 +73,7 @@ class MzMLRawDataFile implements RawDataFile {
     this.msFunctions = msFunctions;
     this.msScans = msScans;
     this.chromatograms = chromatograms;
+    this.decodedDataCache = new MzMLDecodedDataCache(msScans);
   }
 
   /** {@inheritDoc} */
@@ -85,12 +97,30 @@ class MzMLRawDataFile implements RawDataFile {
     return fileType;
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   * If no MS functions were given to the constructor, the MS functions are collected from the
+   * scans of the file, in the order of their first appearance. In the index-first mode, this parses
+   * the spectrum elements that were not touched yet (but does not decode their binary data).
+   * </p>
+   */
   @SuppressWarnings("null")
   @Override
   @Nonnull
   public List<MsFunction> getMsFunctions() {
-    return ImmutableList.copyOf(msFunctions);
+    if (!msFunctions.isEmpty())
+      return ImmutableList.copyOf(msFunctions);
+    List<MsFunction> scanMsFunctions = this.scanMsFunctions;
+    if (scanMsFunctions == null) {
+      final Set<MsFunction> functions = new LinkedHashSet<>();
+      for (MsScan scan : msScans)
+        functions.add(scan.getMsFunction());
+      scanMsFunctions = ImmutableList.copyOf(functions);
+      this.scanMsFunctions = scanMsFunctions;
+    }
+    return scanMsFunctions;
   }
 
   /** {@inheritDoc} */
@@ -113,6 +143,32 @@ class MzMLRawDataFile implements RawDataFile {
   @Override
   public void dispose() {
     parser = null;
+    mappedBuffers = null;
+    decodedDataCache.clear();
+  }
+
+  /**
+   * Returns the cache of the decoded spectrum data of this file, which also provides the cache
+   * hit and miss counts.
+   *
+   * @return a {@link io.github.msdk.io.mzml2.MzMLDecodedDataCache} object.
+   */
+  @Nonnull
+  public MzMLDecodedDataCache getDecodedDataCache() {
+    return decodedDataCache;
+  }
+
+  /**
+   * Returns the memory-mapped file, as returned by {@link MzMLFileMemoryMapper#mapToBuffers}, or
+   * null if the file was disposed.
+   */
+  @Nullable
+  ByteBuffer[] getMappedBuffers() {
+    return mappedBuffers;
+  }
+
+  void setMappedBuffers(@Nullable ByteBuffer mappedBuffers[]) {
+    this.mappedBuffers = mappedBuffers;
   }
 
   @Nullable
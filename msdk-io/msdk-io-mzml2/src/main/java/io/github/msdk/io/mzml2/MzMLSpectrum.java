@@ -14,16 +14,21 @@
 package io.github.msdk.io.mzml2;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.EnumSet;
 import java.util.List;
 
+import javax.annotation.Nonnull;
+
 import org.apache.commons.io.IOUtils;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Range;
 
+import io.github.msdk.MSDKException;
 import io.github.msdk.MSDKRuntimeException;
 import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
 import io.github.msdk.datamodel.msspectra.MsSpectrumType;
@@ -34,6 +39,7 @@ import io.github.msdk.datamodel.rawdata.MsScan;
 import io.github.msdk.datamodel.rawdata.MsScanType;
 import io.github.msdk.datamodel.rawdata.PolarityType;
 import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.io.mzml2.MzMLDecodedDataCache.DecodedArrays;
 import io.github.msdk.spectra.spectrumtypedetection.SpectrumTypeDetectionAlgorithm;
 import io.github.msdk.util.MsSpectrumUtil;
 import io.github.msdk.util.tolerances.MzTolerance;
@@ -59,6 +65,13 @@ public class MzMLSpectrum implements MsScan {
   private Float retentionTime;
   private Range<Double> mzRange;
   private Range<Double> mzScanWindowRange;
+  private int spectrumIndex = -1;
+
+  // Index-first mode: the spectrum element is parsed when first touched
+  private MzMLSpectrumLoader loader;
+  private long offset;
+  private volatile boolean loaded = true;
+  private boolean loading = false;
 
   /**
    * <p>Constructor for MzMLSpectrum.</p>
@@ -82,6 +95,7 @@ public class MzMLSpectrum implements MsScan {
    * @return a {@link java.util.ArrayList} object.
    */
   public ArrayList<MzMLCVParam> getCVParams() {
+    ensureLoaded();
     return cvParams;
   }
 
@@ -91,6 +105,7 @@ public class MzMLSpectrum implements MsScan {
    * @return a {@link io.github.msdk.io.mzml2.MzMLBinaryDataInfo} object.
    */
   public MzMLBinaryDataInfo getMzBinaryDataInfo() {
+    ensureLoaded();
     return mzBinaryDataInfo;
   }
 
@@ -109,6 +124,7 @@ public class MzMLSpectrum implements MsScan {
    * @return a {@link io.github.msdk.io.mzml2.MzMLBinaryDataInfo} object.
    */
   public MzMLBinaryDataInfo getIntensityBinaryDataInfo() {
+    ensureLoaded();
     return intensityBinaryDataInfo;
   }
 
@@ -148,8 +164,127 @@ public class MzMLSpectrum implements MsScan {
   /** {@inheritDoc} */
   @Override
   public double[] getMzValues() {
-    double[] mzValues = null;
     this.mzArrayLength = getMzBinaryDataInfo().getArrayLength();
+    MzMLDecodedDataCache cache = dataFile == null ? null : dataFile.getDecodedDataCache();
+    if (cache == null)
+      return decodeMzValues();
+    // The caller may modify the returned array, so we return a copy
+    return cache.getDecodedArrays(this).getMzValues().clone();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public float[] getIntensityValues() {
+    this.mzArrayLength = getIntensityBinaryDataInfo().getArrayLength();
+    MzMLDecodedDataCache cache = dataFile == null ? null : dataFile.getDecodedDataCache();
+    if (cache == null)
+      return decodeIntensityValues();
+    return cache.getDecodedArrays(this).getIntensityValues().clone();
+  }
+
+  /**
+   * <p>
+   * Decodes the m/z values into the given array, without allocating a new array. If the values
+   * are in the cache of the file, they are copied from there, otherwise they are decoded directly
+   * from the mapped file into the array.
+   * </p>
+   *
+   * @param array an array of at least {@link #getNumberOfDataPoints()} values.
+   * @return the number of values.
+   */
+  @Override
+  public int getMzValues(@Nonnull double array[]) {
+    MzMLDecodedDataCache cache = dataFile == null ? null : dataFile.getDecodedDataCache();
+    DecodedArrays arrays = cache == null ? null : cache.getCachedArrays(this);
+    if (arrays == null)
+      return decodeMzValues(array);
+    final double mzValues[] = arrays.getMzValues();
+    Preconditions.checkArgument(array.length >= mzValues.length,
+        "The array is too small for " + mzValues.length + " values");
+    System.arraycopy(mzValues, 0, array, 0, mzValues.length);
+    return mzValues.length;
+  }
+
+  /**
+   * <p>
+   * Decodes the intensity values into the given array, without allocating a new array. If the
+   * values are in the cache of the file, they are copied from there, otherwise they are decoded
+   * directly from the mapped file into the array.
+   * </p>
+   *
+   * @param array an array of at least {@link #getNumberOfDataPoints()} values.
+   * @return the number of values.
+   */
+  @Override
+  public int getIntensityValues(@Nonnull float array[]) {
+    MzMLDecodedDataCache cache = dataFile == null ? null : dataFile.getDecodedDataCache();
+    DecodedArrays arrays = cache == null ? null : cache.getCachedArrays(this);
+    if (arrays == null)
+      return decodeIntensityValues(array);
+    final float intensityValues[] = arrays.getIntensityValues();
+    Preconditions.checkArgument(array.length >= intensityValues.length,
+        "The array is too small for " + intensityValues.length + " values");
+    System.arraycopy(intensityValues, 0, array, 0, intensityValues.length);
+    return intensityValues.length;
+  }
+
+  /**
+   * Decodes the m/z values from the mapped file. Safe to be called from several threads.
+   */
+  double[] decodeMzValues() {
+    final double mzValues[] = new double[getMzBinaryDataInfo().getArrayLength()];
+    decodeMzValues(mzValues);
+    return mzValues;
+  }
+
+  /**
+   * Decodes the intensity values from the mapped file. Safe to be called from several threads.
+   */
+  float[] decodeIntensityValues() {
+    final float intensityValues[] = new float[getIntensityBinaryDataInfo().getArrayLength()];
+    decodeIntensityValues(intensityValues);
+    return intensityValues;
+  }
+
+  private int decodeMzValues(@Nonnull double target[]) {
+    final ByteBuffer mappedBuffers[] = dataFile == null ? null : dataFile.getMappedBuffers();
+    if (mappedBuffers == null) {
+      final double mzValues[] = decodeMzValuesFromStream();
+      Preconditions.checkArgument(target.length >= mzValues.length,
+          "The array is too small for " + mzValues.length + " values");
+      System.arraycopy(mzValues, 0, target, 0, mzValues.length);
+      return mzValues.length;
+    }
+    try {
+      return MzMLBinaryDecoder.decode(mappedBuffers, getMzBinaryDataInfo(), target);
+    } catch (MSDKException e) {
+      throw new MSDKRuntimeException(e);
+    }
+  }
+
+  private int decodeIntensityValues(@Nonnull float target[]) {
+    final ByteBuffer mappedBuffers[] = dataFile == null ? null : dataFile.getMappedBuffers();
+    if (mappedBuffers == null) {
+      final float intensityValues[] = decodeIntensityValuesFromStream();
+      Preconditions.checkArgument(target.length >= intensityValues.length,
+          "The array is too small for " + intensityValues.length + " values");
+      System.arraycopy(intensityValues, 0, target, 0, intensityValues.length);
+      return intensityValues.length;
+    }
+    try {
+      return MzMLBinaryDecoder.decode(mappedBuffers, getIntensityBinaryDataInfo(), target);
+    } catch (MSDKException e) {
+      throw new MSDKRuntimeException(e);
+    }
+  }
+
+  /**
+   * Decodes the m/z values through the input stream of the mapped file, which is used when the
+   * mapped buffers are not available.
+   */
+  double[] decodeMzValuesFromStream() {
+    double[] mzValues = null;
+    final int arrayLength = getMzBinaryDataInfo().getArrayLength();
     Integer precision;
     EnumSet<MzMLBinaryDataInfo.MzMLCompressionType> compressions =
         EnumSet.noneOf(MzMLBinaryDataInfo.MzMLCompressionType.class);
@@ -169,13 +304,13 @@ public class MzMLSpectrum implements MsScan {
 
       compressions.add(getMzBinaryDataInfo().getCompressionType());
 
-      InputStream encodedIs = new ByteBufferInputStreamAdapter(mappedByteBufferInputStream,
+      InputStream encodedIs = new ByteBufferInputStreamAdapter(mappedByteBufferInputStream.copy(),
           getMzBinaryDataInfo().getPosition(), getMzBinaryDataInfo().getEncodedLength());
       InputStream decodedIs = Base64.getDecoder().wrap(encodedIs);
       byte[] decodedData = IOUtils.toByteArray(decodedIs);
 
       mzValues = MzMLMZPeaksDecoder.decode(decodedData, decodedData.length, precision,
-          mzArrayLength, compressions).arr;
+          arrayLength, compressions).arr;
     } catch (Exception e) {
       throw (new MSDKRuntimeException(e));
     }
@@ -183,17 +318,17 @@ public class MzMLSpectrum implements MsScan {
     return mzValues;
   }
 
-  /** {@inheritDoc} */
-  @Override
-  public float[] getIntensityValues() {
+  /**
+   * Decodes the intensity values through the input stream of the mapped file, which is used when
+   * the mapped buffers are not available.
+   */
+  float[] decodeIntensityValuesFromStream() {
     float[] intensityValues = null;
-    this.mzArrayLength = getIntensityBinaryDataInfo().getArrayLength();
+    final int arrayLength = getIntensityBinaryDataInfo().getArrayLength();
     Integer precision;
     EnumSet<MzMLBinaryDataInfo.MzMLCompressionType> compressions =
         EnumSet.noneOf(MzMLBinaryDataInfo.MzMLCompressionType.class);
     try {
-      mappedByteBufferInputStream.position(getIntensityBinaryDataInfo().getPosition());
-
       switch (getIntensityBinaryDataInfo().getBitLength()) {
         case THIRTY_TWO_BIT_FLOAT:
         case THIRTY_TWO_BIT_INTEGER:
@@ -209,14 +344,14 @@ public class MzMLSpectrum implements MsScan {
 
       compressions.add(getIntensityBinaryDataInfo().getCompressionType());
 
-      InputStream encodedIs = new ByteBufferInputStreamAdapter(mappedByteBufferInputStream,
+      InputStream encodedIs = new ByteBufferInputStreamAdapter(mappedByteBufferInputStream.copy(),
           getIntensityBinaryDataInfo().getPosition(),
           getIntensityBinaryDataInfo().getEncodedLength());
       InputStream decodedIs = Base64.getDecoder().wrap(encodedIs);
       byte[] decodedData = IOUtils.toByteArray(decodedIs);
 
       intensityValues = MzMLIntensityPeaksDecoder.decode(decodedData, decodedData.length, precision,
-          mzArrayLength, compressions).arr;
+          arrayLength, compressions).arr;
     } catch (Exception e) {
       throw (new MSDKRuntimeException(e));
     }
@@ -364,6 +499,7 @@ public class MzMLSpectrum implements MsScan {
   @Override
   public Float getRetentionTime() {
     if (retentionTime == null) {
+      ensureLoaded();
       for (MzMLCVParam param : cvParams) {
         String accession = param.getAccession();
         String unitAccession = param.getUnitAccession();
@@ -416,6 +552,52 @@ public class MzMLSpectrum implements MsScan {
     this.scanNumber = scanNumber;
   }
 
+  /**
+   * Returns the position of this spectrum in the list of scans of the raw data file.
+   */
+  int getSpectrumIndex() {
+    return spectrumIndex;
+  }
+
+  void setSpectrumIndex(int spectrumIndex) {
+    this.spectrumIndex = spectrumIndex;
+  }
+
+  /**
+   * Defers the parsing of the spectrum element at the given byte offset until the spectrum data
+   * are first needed.
+   */
+  void setLoader(MzMLSpectrumLoader loader, long offset) {
+    this.loader = loader;
+    this.offset = offset;
+    this.loaded = false;
+  }
+
+  private void ensureLoaded() {
+    if (loaded)
+      return;
+    synchronized (this) {
+      // The loader fills the spectrum through its getters, so re-entrant
+      // calls during loading must return immediately
+      if (loaded || loading)
+        return;
+      loading = true;
+      try {
+        loader.load(this, offset);
+        loader = null;
+        loaded = true;
+      } catch (RuntimeException e) {
+        // Allow a clean retry
+        cvParams.clear();
+        mzBinaryDataInfo = null;
+        intensityBinaryDataInfo = null;
+        throw e;
+      } finally {
+        loading = false;
+      }
+    }
+  }
+
   /**
    * <p>getCVValue.</p>
    *
@@ -423,6 +605,7 @@ public class MzMLSpectrum implements MsScan {
    * @return a {@link java.lang.String} object.
    */
   public String getCVValue(String accession) {
+    ensureLoaded();
     for (MzMLCVParam cvParam : cvParams) {
       if (cvParam.getAccession().equals(accession))
         return cvParam.getValue();
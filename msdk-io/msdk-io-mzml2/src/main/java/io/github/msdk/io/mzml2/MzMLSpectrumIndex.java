@@ -0,0 +1,352 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.io.mzml2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unimi.dsi.io.ByteBufferInputStream;
+
+/**
+ * <p>
+ * Byte offsets of the spectrum and chromatogram elements in an mzML file. The offsets are taken
+ * from the indexList of indexed mzML files. For files without a valid index, the elements are
+ * located by skimming the tags of the file (the encoded binary data are skipped) and the result is
+ * stored in a sidecar file next to the mzML file, so the next opening of the file is immediate.
+ * </p>
+ */
+class MzMLSpectrumIndex {
+
+  private static final Logger logger = LoggerFactory.getLogger(MzMLSpectrumIndex.class);
+
+  static final String SIDECAR_SUFFIX = ".msdkidx";
+
+  private static final int SIDECAR_MAGIC = 0x4D5A4958; // "MZIX"
+  private static final int SIDECAR_VERSION = 2;
+
+  // The indexListOffset element is near the end of the file
+  private static final int TAIL_LENGTH = 4096;
+  private static final Pattern indexListOffsetPattern =
+      Pattern.compile("<indexListOffset>\\s*([0-9]+)\\s*</indexListOffset>");
+
+  private final @Nonnull List<String> ids;
+  private final @Nonnull long offsets[];
+  private final @Nonnull List<String> chromatogramIds;
+  private final @Nonnull long chromatogramOffsets[];
+
+  private MzMLSpectrumIndex(@Nonnull List<String> ids, @Nonnull long offsets[],
+      @Nonnull List<String> chromatogramIds, @Nonnull long chromatogramOffsets[]) {
+    this.ids = ids;
+    this.offsets = offsets;
+    this.chromatogramIds = chromatogramIds;
+    this.chromatogramOffsets = chromatogramOffsets;
+  }
+
+  int size() {
+    return offsets.length;
+  }
+
+  String getId(int i) {
+    return ids.get(i);
+  }
+
+  long getOffset(int i) {
+    return offsets[i];
+  }
+
+  int getNumberOfChromatograms() {
+    return chromatogramOffsets.length;
+  }
+
+  String getChromatogramId(int i) {
+    return chromatogramIds.get(i);
+  }
+
+  long getChromatogramOffset(int i) {
+    return chromatogramOffsets[i];
+  }
+
+  /**
+   * Returns the index of the given mzML file. The indexList of the file is used if it is
+   * present and valid, then the sidecar file, otherwise the index is built and saved to the
+   * sidecar file.
+   *
+   * @param mzMLFile the mzML file.
+   * @param is the memory-mapped mzML file.
+   */
+  @Nonnull
+  static MzMLSpectrumIndex load(@Nonnull File mzMLFile, @Nonnull ByteBufferInputStream is) {
+
+    MzMLSpectrumIndex index = readIndexList(is);
+    if (index != null)
+      return index;
+
+    File sidecarFile = new File(mzMLFile.getPath() + SIDECAR_SUFFIX);
+    index = readSidecar(mzMLFile, sidecarFile, is);
+    if (index != null)
+      return index;
+
+    index = build(is);
+    try {
+      index.writeSidecar(mzMLFile, sidecarFile);
+    } catch (IOException e) {
+      logger.warn("Could not save the index of " + mzMLFile + " to " + sidecarFile + ": "
+          + e.getMessage());
+    }
+    return index;
+  }
+
+  /**
+   * Reads the spectrum and chromatogram offsets from the indexList element, which is referenced by the
+   * indexListOffset element at the end of indexed mzML files.
+   */
+  @Nullable
+  static MzMLSpectrumIndex readIndexList(@Nonnull ByteBufferInputStream is) {
+
+    final long length = is.length();
+    final int tailLength = (int) Math.min(TAIL_LENGTH, length);
+    final byte tail[] = new byte[tailLength];
+    final ByteBufferInputStream tailIs = is.copy();
+    tailIs.position(length - tailLength);
+    int read = 0;
+    while (read < tailLength) {
+      int n = tailIs.read(tail, read, tailLength - read);
+      if (n <= 0)
+        return null;
+      read += n;
+    }
+
+    Matcher matcher =
+        indexListOffsetPattern.matcher(new String(tail, StandardCharsets.ISO_8859_1));
+    if (!matcher.find())
+      return null;
+    final long indexListOffset = Long.parseLong(matcher.group(1));
+    if (indexListOffset <= 0 || indexListOffset >= length)
+      return null;
+
+    final List<String> ids = new ArrayList<>();
+    final List<Long> offsets = new ArrayList<>();
+    final List<String> chromatogramIds = new ArrayList<>();
+    final List<Long> chromatogramOffsets = new ArrayList<>();
+    final MzMLTagReader reader = new MzMLTagReader(is, indexListOffset);
+    if (!reader.nextTag() || !reader.getName().equals("indexList"))
+      return null;
+
+    List<String> indexIds = null;
+    List<Long> indexOffsets = null;
+    while (reader.nextTag()) {
+      if (reader.isEndTag()) {
+        if (reader.getName().equals("index"))
+          indexOffsets = null;
+        if (reader.getName().equals("indexList"))
+          break;
+        continue;
+      }
+      switch (reader.getName()) {
+        case "index":
+          String name = reader.getAttribute("name");
+          if ("spectrum".equals(name)) {
+            indexIds = ids;
+            indexOffsets = offsets;
+          } else if ("chromatogram".equals(name)) {
+            indexIds = chromatogramIds;
+            indexOffsets = chromatogramOffsets;
+          }
+          break;
+        case "offset":
+          if (indexOffsets == null)
+            break;
+          String id = reader.getAttribute("idRef");
+          try {
+            indexOffsets.add(Long.parseLong(reader.readText().trim()));
+          } catch (NumberFormatException e) {
+            return null;
+          }
+          indexIds.add(id);
+          break;
+      }
+    }
+
+    MzMLSpectrumIndex index = new MzMLSpectrumIndex(ids, toArray(offsets), chromatogramIds,
+        toArray(chromatogramOffsets));
+
+    // Some converters write wrong offsets, check that they point to
+    // spectrum and chromatogram elements (the first and the last one is
+    // enough to detect a shifted index)
+    if (!index.isValid(is)) {
+      logger.warn("The indexList of the mzML file does not point to the spectra and "
+          + "chromatograms, ignoring it");
+      return null;
+    }
+
+    return index;
+  }
+
+  /**
+   * Locates the spectrum and chromatogram elements by reading the tags of the file. The content of
+   * the binary elements is skipped.
+   */
+  @Nonnull
+  static MzMLSpectrumIndex build(@Nonnull ByteBufferInputStream is) {
+
+    final List<String> ids = new ArrayList<>();
+    final List<Long> offsets = new ArrayList<>();
+    final List<String> chromatogramIds = new ArrayList<>();
+    final List<Long> chromatogramOffsets = new ArrayList<>();
+    final MzMLTagReader reader = new MzMLTagReader(is, 0);
+
+    long encodedLength = 0;
+    while (reader.nextTag()) {
+      if (reader.isEndTag()) {
+        // The chromatogramList follows the spectrumList in the run
+        if (reader.getName().equals("chromatogramList") || reader.getName().equals("run"))
+          break;
+        continue;
+      }
+      switch (reader.getName()) {
+        case "spectrum":
+          ids.add(reader.getAttribute("id"));
+          offsets.add(reader.getTagPosition());
+          break;
+        case "chromatogram":
+          chromatogramIds.add(reader.getAttribute("id"));
+          chromatogramOffsets.add(reader.getTagPosition());
+          break;
+        case "binaryDataArray":
+          String encodedLengthValue = reader.getAttribute("encodedLength");
+          encodedLength = encodedLengthValue == null ? 0 : Long.parseLong(encodedLengthValue);
+          break;
+        case "binary":
+          if (!reader.isEmptyElement())
+            reader.skip(encodedLength);
+          encodedLength = 0;
+          break;
+      }
+    }
+
+    return new MzMLSpectrumIndex(ids, toArray(offsets), chromatogramIds,
+        toArray(chromatogramOffsets));
+  }
+
+  /**
+   * Reads the sidecar file, if it exists and matches the size and modification time of the mzML
+   * file.
+   */
+  @Nullable
+  static MzMLSpectrumIndex readSidecar(@Nonnull File mzMLFile, @Nonnull File sidecarFile,
+      @Nonnull ByteBufferInputStream is) {
+
+    if (!sidecarFile.canRead())
+      return null;
+
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(sidecarFile)))) {
+      if (in.readInt() != SIDECAR_MAGIC || in.readInt() != SIDECAR_VERSION)
+        return null;
+      if (in.readLong() != mzMLFile.length() || in.readLong() != mzMLFile.lastModified())
+        return null;
+      final List<String> ids = new ArrayList<>();
+      final long offsets[] = readOffsets(in, ids);
+      final List<String> chromatogramIds = new ArrayList<>();
+      final long chromatogramOffsets[] = readOffsets(in, chromatogramIds);
+      MzMLSpectrumIndex index =
+          new MzMLSpectrumIndex(ids, offsets, chromatogramIds, chromatogramOffsets);
+      return index.isValid(is) ? index : null;
+    } catch (IOException e) {
+      logger.warn("Could not read the index " + sidecarFile + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  void writeSidecar(@Nonnull File mzMLFile, @Nonnull File sidecarFile) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(sidecarFile)))) {
+      out.writeInt(SIDECAR_MAGIC);
+      out.writeInt(SIDECAR_VERSION);
+      out.writeLong(mzMLFile.length());
+      out.writeLong(mzMLFile.lastModified());
+      writeOffsets(out, ids, offsets);
+      writeOffsets(out, chromatogramIds, chromatogramOffsets);
+    }
+  }
+
+  private static long[] readOffsets(@Nonnull DataInputStream in, @Nonnull List<String> ids)
+      throws IOException {
+    final int size = in.readInt();
+    final long offsets[] = new long[size];
+    for (int i = 0; i < size; i++) {
+      offsets[i] = in.readLong();
+      ids.add(in.readUTF());
+    }
+    return offsets;
+  }
+
+  private static void writeOffsets(@Nonnull DataOutputStream out, @Nonnull List<String> ids,
+      @Nonnull long offsets[]) throws IOException {
+    out.writeInt(offsets.length);
+    for (int i = 0; i < offsets.length; i++) {
+      out.writeLong(offsets[i]);
+      out.writeUTF(ids.get(i) == null ? "" : ids.get(i));
+    }
+  }
+
+  /**
+   * Checks that the first and the last offsets point to spectrum and chromatogram elements.
+   */
+  private boolean isValid(@Nonnull ByteBufferInputStream is) {
+    return isValid(is, offsets, "spectrum") && isValid(is, chromatogramOffsets, "chromatogram");
+  }
+
+  private static boolean isValid(@Nonnull ByteBufferInputStream is, @Nonnull long offsets[],
+      @Nonnull String elementName) {
+    if (offsets.length == 0)
+      return true;
+    return isElementAt(is, offsets[0], elementName)
+        && isElementAt(is, offsets[offsets.length - 1], elementName);
+  }
+
+  private static boolean isElementAt(@Nonnull ByteBufferInputStream is, long offset,
+      @Nonnull String elementName) {
+    if (offset < 0 || offset >= is.length())
+      return false;
+    MzMLTagReader reader = new MzMLTagReader(is, offset);
+    return reader.nextTag() && reader.getTagPosition() == offset
+        && reader.getName().equals(elementName) && reader.isStartTag();
+  }
+
+  private static long[] toArray(List<Long> values) {
+    long array[] = new long[values.size()];
+    for (int i = 0; i < array.length; i++)
+      array[i] = values.get(i);
+    return array;
+  }
+
+}
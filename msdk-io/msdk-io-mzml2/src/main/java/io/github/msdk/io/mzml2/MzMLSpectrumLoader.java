@@ -0,0 +1,285 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.io.mzml2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import io.github.msdk.MSDKRuntimeException;
+import io.github.msdk.io.mzml2.MzMLBinaryDataInfo.MzMLArrayType;
+import it.unimi.dsi.io.ByteBufferInputStream;
+
+/**
+ * <p>
+ * Parses the spectrum and chromatogram elements of a memory-mapped mzML file on demand. Used by
+ * the index-first mode of {@link MzMLFileParser}, where the spectra are only located when the file
+ * is opened and each spectrum element is parsed when it is first touched. The chromatograms are
+ * loaded the same way in both modes.
+ * </p>
+ */
+class MzMLSpectrumLoader {
+
+  private final @Nonnull ByteBufferInputStream is;
+  private final @Nonnull List<MzMLReferenceableParamGroup> referenceableParamGroups;
+
+  MzMLSpectrumLoader(@Nonnull ByteBufferInputStream is,
+      @Nonnull List<MzMLReferenceableParamGroup> referenceableParamGroups) {
+    this.is = is;
+    this.referenceableParamGroups = referenceableParamGroups;
+  }
+
+  /**
+   * Reads the referenceableParamGroupList element, which precedes the spectra in the file.
+   *
+   * @param is the memory-mapped mzML file.
+   * @param endOffset byte offset, where the reading can stop (the first spectrum).
+   */
+  @Nonnull
+  static List<MzMLReferenceableParamGroup> readReferenceableParamGroups(
+      @Nonnull ByteBufferInputStream is, long endOffset) {
+
+    final List<MzMLReferenceableParamGroup> groups = new ArrayList<>();
+    final MzMLTagReader reader = new MzMLTagReader(is, 0);
+    MzMLReferenceableParamGroup group = null;
+
+    while (reader.nextTag() && reader.getTagPosition() < endOffset) {
+      if (reader.isEndTag()) {
+        if (reader.getName().equals("referenceableParamGroup") && group != null) {
+          groups.add(group);
+          group = null;
+        }
+        if (reader.getName().equals("referenceableParamGroupList")
+            || reader.getName().equals("run"))
+          break;
+        continue;
+      }
+      switch (reader.getName()) {
+        case "referenceableParamGroup":
+          group = new MzMLReferenceableParamGroup(reader.getAttribute("id"));
+          break;
+        case "cvParam":
+          if (group != null)
+            group.addReferenceableCvParam(readCvParam(reader));
+          break;
+        case "run":
+        case "spectrumList":
+          return groups;
+      }
+    }
+
+    return groups;
+  }
+
+  /**
+   * Parses the spectrum element at the given offset and fills its CV parameters and binary data
+   * information into the spectrum.
+   */
+  void load(@Nonnull MzMLSpectrum spectrum, long offset) {
+
+    final MzMLTagReader reader = new MzMLTagReader(is, offset);
+    if (!reader.nextTag() || !reader.getName().equals("spectrum") || reader.isEndTag())
+      throw new MSDKRuntimeException("No spectrum element found at offset " + offset);
+
+    int defaultArrayLength = parseInt(reader.getAttribute("defaultArrayLength"), 0);
+    MzMLBinaryDataInfo binaryDataInfo = null;
+
+    while (reader.nextTag()) {
+
+      if (reader.isEndTag()) {
+        switch (reader.getName()) {
+          case "binaryDataArray":
+            if (binaryDataInfo != null && binaryDataInfo.getArrayType() != null) {
+              switch (binaryDataInfo.getArrayType()) {
+                case MZ:
+                  spectrum.setMzBinaryDataInfo(binaryDataInfo);
+                  break;
+                case INTENSITY:
+                  spectrum.setIntensityBinaryDataInfo(binaryDataInfo);
+                  break;
+                default:
+                  break;
+              }
+            }
+            binaryDataInfo = null;
+            break;
+          case "spectrum":
+            return;
+        }
+        continue;
+      }
+
+      switch (reader.getName()) {
+        case "binaryDataArray":
+          binaryDataInfo = new MzMLBinaryDataInfo();
+          binaryDataInfo.setEncodedLength(parseInt(reader.getAttribute("encodedLength"), 0));
+          binaryDataInfo.setArrayLength(
+              parseInt(reader.getAttribute("arrayLength"), defaultArrayLength));
+          break;
+        case "cvParam":
+          addCvParam(spectrum, binaryDataInfo, readCvParam(reader));
+          break;
+        case "referenceableParamGroupRef":
+          String ref = reader.getAttribute("ref");
+          for (MzMLReferenceableParamGroup group : referenceableParamGroups) {
+            if (group.getParamGroupName().equals(ref)) {
+              for (MzMLCVParam cvParam : group.getReferenceableCvParams())
+                addCvParam(spectrum, binaryDataInfo, cvParam);
+              break;
+            }
+          }
+          break;
+        case "binary":
+          if (binaryDataInfo != null && !reader.isEmptyElement()) {
+            binaryDataInfo.setPosition(reader.getPosition());
+            reader.skip(binaryDataInfo.getEncodedLength());
+          }
+          break;
+      }
+    }
+
+    throw new MSDKRuntimeException("Spectrum element at offset " + offset + " is not complete");
+  }
+
+  /**
+   * Parses the chromatogram element at the given offset and fills its CV parameters, the CV
+   * parameters of its precursor and product and its binary data information into the
+   * chromatogram.
+   */
+  void loadChromatogram(@Nonnull MzMLChromatogram chromatogram, long offset) {
+
+    final MzMLTagReader reader = new MzMLTagReader(is, offset);
+    if (!reader.nextTag() || !reader.getName().equals("chromatogram") || reader.isEndTag())
+      throw new MSDKRuntimeException("No chromatogram element found at offset " + offset);
+
+    int defaultArrayLength = parseInt(reader.getAttribute("defaultArrayLength"), 0);
+    List<MzMLCVParam> cvParams = chromatogram.getCVParams();
+    MzMLBinaryDataInfo binaryDataInfo = null;
+    String timeUnitAccession = null;
+
+    while (reader.nextTag()) {
+
+      if (reader.isEndTag()) {
+        switch (reader.getName()) {
+          case "precursor":
+          case "product":
+            cvParams = chromatogram.getCVParams();
+            break;
+          case "binaryDataArray":
+            if (binaryDataInfo != null && binaryDataInfo.getArrayType() != null) {
+              switch (binaryDataInfo.getArrayType()) {
+                case TIME:
+                  chromatogram.setTimeBinaryDataInfo(binaryDataInfo, timeUnitAccession);
+                  break;
+                case INTENSITY:
+                  chromatogram.setIntensityBinaryDataInfo(binaryDataInfo);
+                  break;
+                default:
+                  break;
+              }
+            }
+            binaryDataInfo = null;
+            break;
+          case "chromatogram":
+            return;
+        }
+        continue;
+      }
+
+      switch (reader.getName()) {
+        case "precursor":
+          cvParams = chromatogram.getPrecursorCVParams();
+          break;
+        case "product":
+          cvParams = chromatogram.getProductCVParams();
+          break;
+        case "binaryDataArray":
+          binaryDataInfo = new MzMLBinaryDataInfo();
+          binaryDataInfo.setEncodedLength(parseInt(reader.getAttribute("encodedLength"), 0));
+          binaryDataInfo.setArrayLength(
+              parseInt(reader.getAttribute("arrayLength"), defaultArrayLength));
+          break;
+        case "cvParam":
+          MzMLCVParam cvParam = readCvParam(reader);
+          if (binaryDataInfo == null) {
+            cvParams.add(cvParam);
+            break;
+          }
+          if (MzMLArrayType.TIME.getValue().equals(cvParam.getAccession()))
+            timeUnitAccession = cvParam.getUnitAccession();
+          addBinaryDataCvParam(binaryDataInfo, cvParam);
+          break;
+        case "referenceableParamGroupRef":
+          String ref = reader.getAttribute("ref");
+          for (MzMLReferenceableParamGroup group : referenceableParamGroups) {
+            if (group.getParamGroupName().equals(ref)) {
+              for (MzMLCVParam groupCvParam : group.getReferenceableCvParams()) {
+                if (binaryDataInfo == null)
+                  cvParams.add(groupCvParam);
+                else
+                  addBinaryDataCvParam(binaryDataInfo, groupCvParam);
+              }
+              break;
+            }
+          }
+          break;
+        case "binary":
+          if (binaryDataInfo != null && !reader.isEmptyElement()) {
+            binaryDataInfo.setPosition(reader.getPosition());
+            reader.skip(binaryDataInfo.getEncodedLength());
+          }
+          break;
+      }
+    }
+
+    throw new MSDKRuntimeException(
+        "Chromatogram element at offset " + offset + " is not complete");
+  }
+
+  private static void addCvParam(@Nonnull MzMLSpectrum spectrum,
+      MzMLBinaryDataInfo binaryDataInfo, @Nonnull MzMLCVParam cvParam) {
+    if (binaryDataInfo == null)
+      spectrum.getCVParams().add(cvParam);
+    else
+      addBinaryDataCvParam(binaryDataInfo, cvParam);
+  }
+
+  private static void addBinaryDataCvParam(@Nonnull MzMLBinaryDataInfo binaryDataInfo,
+      @Nonnull MzMLCVParam cvParam) {
+    String accession = cvParam.getAccession();
+    if (binaryDataInfo.isBitLengthAccession(accession))
+      binaryDataInfo.setBitLength(accession);
+    else if (binaryDataInfo.isCompressionTypeAccession(accession))
+      binaryDataInfo.setCompressionType(accession);
+    else if (binaryDataInfo.isArrayTypeAccession(accession))
+      binaryDataInfo.setArrayType(accession);
+  }
+
+  private static MzMLCVParam readCvParam(@Nonnull MzMLTagReader reader) {
+    return new MzMLCVParam(reader.getAttribute("accession"), reader.getAttribute("value"),
+        reader.getAttribute("unitAccession"));
+  }
+
+  private static int parseInt(String value, int defaultValue) {
+    if (value == null)
+      return defaultValue;
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+}
@@ -0,0 +1,297 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.io.mzml2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.io.ByteBufferInputStream;
+
+/**
+ * <p>
+ * A minimal reader of XML tags in the memory-mapped mzML file, which can start at any byte offset.
+ * Unlike a full XML parser, it reports the exact byte positions of the tags and it can skip the
+ * content of an element (e.g. the base64 data in the binary element) without reading it. Comments
+ * and processing instructions are skipped, text content is only read on request.
+ * </p>
+ */
+class MzMLTagReader {
+
+  private final ByteBufferInputStream is;
+  private final ByteArrayOutputStream tagBytes = new ByteArrayOutputStream(256);
+  private final Map<String, String> attributes = new HashMap<>();
+
+  private String name;
+  private boolean endTag, emptyElement;
+  private long tagPosition;
+
+  /**
+   * <p>
+   * Constructor for MzMLTagReader. The reader works on its own copy of the stream, so several
+   * readers can be used at the same time.
+   * </p>
+   *
+   * @param is the memory-mapped mzML file.
+   * @param position byte offset, where the reading starts.
+   */
+  MzMLTagReader(ByteBufferInputStream is, long position) {
+    this.is = is.copy();
+    this.is.position(position);
+  }
+
+  /**
+   * Moves to the next start, end or empty-element tag.
+   *
+   * @return false if the end of the file was reached.
+   */
+  boolean nextTag() {
+    while (true) {
+      int b;
+      do {
+        b = is.read();
+        if (b == -1)
+          return false;
+      } while (b != '<');
+
+      tagPosition = is.position() - 1;
+      b = is.read();
+      if (b == -1)
+        return false;
+
+      if (b == '!') {
+        // Comment, CDATA section or DOCTYPE
+        if (!skipMarkup())
+          return false;
+        continue;
+      }
+      if (b == '?') {
+        if (!skipPast("?>"))
+          return false;
+        continue;
+      }
+
+      endTag = (b == '/');
+      tagBytes.reset();
+      if (!endTag)
+        tagBytes.write(b);
+
+      // Read the rest of the tag, '>' can appear inside attribute values
+      int quote = 0;
+      while (true) {
+        b = is.read();
+        if (b == -1)
+          return false;
+        if (quote != 0) {
+          if (b == quote)
+            quote = 0;
+        } else if (b == '"' || b == '\'') {
+          quote = b;
+        } else if (b == '>') {
+          break;
+        }
+        tagBytes.write(b);
+      }
+
+      parseTag(new String(tagBytes.toByteArray(), StandardCharsets.UTF_8));
+      return true;
+    }
+  }
+
+  /**
+   * Returns the local name (without namespace prefix) of the current tag.
+   */
+  String getName() {
+    return name;
+  }
+
+  boolean isEndTag() {
+    return endTag;
+  }
+
+  boolean isStartTag() {
+    return !endTag;
+  }
+
+  boolean isEmptyElement() {
+    return emptyElement;
+  }
+
+  /**
+   * Returns the byte offset of the '&lt;' character of the current tag.
+   */
+  long getTagPosition() {
+    return tagPosition;
+  }
+
+  /**
+   * Returns the byte offset right after the current tag, i.e. the start of its content.
+   */
+  long getPosition() {
+    return is.position();
+  }
+
+  /**
+   * Returns the unescaped value of the attribute with the given local name, or null.
+   */
+  @Nullable
+  String getAttribute(String attributeName) {
+    return attributes.get(attributeName);
+  }
+
+  /**
+   * Reads the text content up to the next tag. The reader is left before the next tag.
+   */
+  String readText() {
+    tagBytes.reset();
+    while (true) {
+      long position = is.position();
+      int b = is.read();
+      if (b == -1)
+        break;
+      if (b == '<') {
+        is.position(position);
+        break;
+      }
+      tagBytes.write(b);
+    }
+    return unescape(new String(tagBytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Skips the given number of bytes, e.g. the encoded data of a binary element.
+   */
+  void skip(long bytes) {
+    is.position(Math.min(is.position() + bytes, is.length()));
+  }
+
+  private boolean skipMarkup() {
+    int first = is.read();
+    if (first == -1)
+      return false;
+    if (first == '-')
+      return skipPast("-->");
+    if (first == '[')
+      return skipPast("]]>");
+    return skipPast(">");
+  }
+
+  private boolean skipPast(String terminator) {
+    // Rolling window of the last bytes read
+    final int length = terminator.length();
+    final int window[] = new int[length];
+    long count = 0;
+    while (true) {
+      int b = is.read();
+      if (b == -1)
+        return false;
+      window[(int) (count++ % length)] = b;
+      if (count < length)
+        continue;
+      boolean matches = true;
+      for (int i = 0; i < length && matches; i++)
+        matches = window[(int) ((count + i) % length)] == terminator.charAt(i);
+      if (matches)
+        return true;
+    }
+  }
+
+  private void parseTag(String tag) {
+
+    attributes.clear();
+
+    int length = tag.length();
+    emptyElement = length > 0 && tag.charAt(length - 1) == '/';
+    if (emptyElement)
+      length--;
+
+    int i = 0;
+    while (i < length && !Character.isWhitespace(tag.charAt(i)))
+      i++;
+    name = localName(tag.substring(0, i));
+
+    while (i < length) {
+      while (i < length && Character.isWhitespace(tag.charAt(i)))
+        i++;
+      int nameStart = i;
+      while (i < length && tag.charAt(i) != '=' && !Character.isWhitespace(tag.charAt(i)))
+        i++;
+      if (i == nameStart)
+        break;
+      String attributeName = localName(tag.substring(nameStart, i));
+      while (i < length && tag.charAt(i) != '"' && tag.charAt(i) != '\'')
+        i++;
+      if (i >= length)
+        break;
+      char quote = tag.charAt(i++);
+      int valueStart = i;
+      while (i < length && tag.charAt(i) != quote)
+        i++;
+      attributes.put(attributeName, unescape(tag.substring(valueStart, i)));
+      i++;
+    }
+  }
+
+  private static String localName(String qualifiedName) {
+    int colon = qualifiedName.indexOf(':');
+    return colon < 0 ? qualifiedName : qualifiedName.substring(colon + 1);
+  }
+
+  private static String unescape(String value) {
+    if (value.indexOf('&') < 0)
+      return value;
+    StringBuilder sb = new StringBuilder(value.length());
+    int i = 0;
+    while (i < value.length()) {
+      char c = value.charAt(i);
+      int semicolon = (c == '&') ? value.indexOf(';', i) : -1;
+      if (semicolon < 0) {
+        sb.append(c);
+        i++;
+        continue;
+      }
+      String entity = value.substring(i + 1, semicolon);
+      switch (entity) {
+        case "amp":
+          sb.append('&');
+          break;
+        case "lt":
+          sb.append('<');
+          break;
+        case "gt":
+          sb.append('>');
+          break;
+        case "quot":
+          sb.append('"');
+          break;
+        case "apos":
+          sb.append('\'');
+          break;
+        default:
+          if (entity.startsWith("#x"))
+            sb.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+          else if (entity.startsWith("#"))
+            sb.appendCodePoint(Integer.parseInt(entity.substring(1)));
+          else
+            sb.append('&').append(entity).append(';');
+      }
+      i = semicolon + 1;
+    }
+    return sb.toString();
+  }
+
+}
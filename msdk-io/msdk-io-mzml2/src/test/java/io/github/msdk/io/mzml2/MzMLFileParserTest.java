@@ -15,11 +15,16 @@
 package io.github.msdk.io.mzml2;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import io.github.msdk.MSDKException;
 import io.github.msdk.datamodel.chromatograms.Chromatogram;
@@ -36,6 +41,9 @@ public class MzMLFileParserTest {
 
   private static final String TEST_DATA_PATH = "src/test/resources/";
 
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Test
   public void testFuleWithUV() throws MSDKException {
 
@@ -372,6 +380,227 @@ public class MzMLFileParserTest {
 
   }
 
+  @Test
+  public void testIndexFirst() throws MSDKException {
+
+    // The file contains an indexList
+    File inputFile = new File(TEST_DATA_PATH + "5peptideFT.mzML");
+    Assert.assertTrue(inputFile.canRead());
+    MzMLFileParser parser = new MzMLFileParser(inputFile, true);
+    RawDataFile rawFile = parser.execute();
+    Assert.assertNotNull(rawFile);
+    Assert.assertEquals(1.0, parser.getFinishedPercentage(), 0.0001);
+    Assert.assertFalse(new File(inputFile.getPath() + MzMLSpectrumIndex.SIDECAR_SUFFIX).exists());
+
+    // The file has 7 scans
+    List<MsScan> scans = rawFile.getScans();
+    Assert.assertEquals(7, scans.size());
+
+    // 5th scan, #5, is parsed first
+    MsScan scan5 = scans.get(4);
+    Assert.assertEquals(new Integer(5), scan5.getScanNumber());
+    Assert.assertEquals(new Integer(2), scan5.getMsFunction().getMsLevel());
+    Assert.assertEquals(2.094f, scan5.getRetentionTime(), 0.01f);
+    Assert.assertEquals(837, (int) scan5.getNumberOfDataPoints());
+    Float scan5maxInt = MsSpectrumUtil.getMaxIntensity(scan5.getIntensityValues(),
+        scan5.getNumberOfDataPoints());
+    Assert.assertEquals(8.6E3f, scan5maxInt, 1E2f);
+
+    // 2nd scan, #2
+    MsScan scan2 = scans.get(1);
+    Assert.assertEquals(new Integer(2), scan2.getScanNumber());
+    Assert.assertEquals(new Integer(1), scan2.getMsFunction().getMsLevel());
+    Assert.assertEquals(0.474f, scan2.getRetentionTime(), 0.01f);
+    Assert.assertEquals(PolarityType.POSITIVE, scan2.getPolarity());
+    Assert.assertEquals(19800, (int) scan2.getNumberOfDataPoints());
+    Assert.assertEquals(19800, scan2.getMzValues().length);
+    Float scan2maxInt = MsSpectrumUtil.getMaxIntensity(scan2.getIntensityValues(),
+        scan2.getNumberOfDataPoints());
+    Assert.assertEquals(1.8E5f, scan2maxInt, 1E4f);
+
+    // The MS functions are collected from the scans
+    Assert.assertEquals(Arrays.asList(1, 2),
+        Arrays.asList(rawFile.getMsFunctions().get(0).getMsLevel(),
+            rawFile.getMsFunctions().get(1).getMsLevel()));
+    Assert.assertEquals(1, rawFile.getChromatograms().size());
+
+    rawFile.dispose();
+
+  }
+
+  @Test
+  public void testChromatogramsInBothModes() throws MSDKException {
+
+    File inputFile = new File(TEST_DATA_PATH + "SRM.mzML");
+    Assert.assertTrue(inputFile.canRead());
+    RawDataFile rawFile = new MzMLFileParser(inputFile).execute();
+    RawDataFile indexedRawFile = new MzMLFileParser(inputFile, true).execute();
+
+    List<Chromatogram> chromatograms = rawFile.getChromatograms();
+    List<Chromatogram> indexedChromatograms = indexedRawFile.getChromatograms();
+    Assert.assertEquals(37, chromatograms.size());
+    Assert.assertEquals(chromatograms.size(), indexedChromatograms.size());
+
+    for (int i = 0; i < chromatograms.size(); i++) {
+      Chromatogram chromatogram = chromatograms.get(i);
+      Chromatogram indexedChromatogram = indexedChromatograms.get(i);
+      Assert.assertEquals(chromatogram.getChromatogramNumber(),
+          indexedChromatogram.getChromatogramNumber());
+      Assert.assertEquals(chromatogram.getChromatogramType(),
+          indexedChromatogram.getChromatogramType());
+      Assert.assertEquals(chromatogram.getNumberOfDataPoints(),
+          indexedChromatogram.getNumberOfDataPoints());
+      Assert.assertEquals(chromatogram.getIsolations().size(),
+          indexedChromatogram.getIsolations().size());
+      for (int j = 0; j < chromatogram.getIsolations().size(); j++) {
+        Assert.assertEquals(chromatogram.getIsolations().get(j).getPrecursorMz(),
+            indexedChromatogram.getIsolations().get(j).getPrecursorMz());
+      }
+      Assert.assertArrayEquals(chromatogram.getRetentionTimes(),
+          indexedChromatogram.getRetentionTimes(), 0f);
+      Assert.assertArrayEquals(chromatogram.getIntensityValues(),
+          indexedChromatogram.getIntensityValues(), 0f);
+      Assert.assertEquals(chromatogram.getRtRange(), indexedChromatogram.getRtRange());
+    }
+
+    // The times are stored in minutes, the first one is 0.01095 min
+    Assert.assertEquals(0.657f, indexedChromatograms.get(3).getRetentionTimes()[0], 0.001f);
+
+    // The file has no spectra
+    Assert.assertEquals(0, rawFile.getMsFunctions().size());
+    Assert.assertEquals(0, indexedRawFile.getMsFunctions().size());
+
+    rawFile.dispose();
+    indexedRawFile.dispose();
+
+  }
+
+  @Test
+  public void testIndexFirstSidecar() throws MSDKException, IOException {
+
+    // The file does not contain an indexList, so a sidecar index is created
+    File inputFile = tempFolder.newFile("RawCentriodCidWithMsLevelInRefParamGroup.mzML");
+    File sourceFile = new File(TEST_DATA_PATH + "RawCentriodCidWithMsLevelInRefParamGroup.mzML");
+    Files.copy(sourceFile.toPath(), inputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    File sidecarFile = new File(inputFile.getPath() + MzMLSpectrumIndex.SIDECAR_SUFFIX);
+
+    for (int i = 0; i < 2; i++) {
+      MzMLFileParser parser = new MzMLFileParser(inputFile, true);
+      RawDataFile rawFile = parser.execute();
+      Assert.assertNotNull(rawFile);
+      Assert.assertTrue(sidecarFile.exists());
+
+      // The file has 102 scans
+      List<MsScan> scans = rawFile.getScans();
+      Assert.assertEquals(102, scans.size());
+
+      // 2nd scan, #1001, MS level is defined in a referenceableParamGroup
+      MsScan scan2 = scans.get(1);
+      Assert.assertEquals(new Integer(1001), scan2.getScanNumber());
+      Assert.assertEquals(new Integer(2), scan2.getMsFunction().getMsLevel());
+      Assert.assertEquals(100.002f, scan2.getRetentionTime(), 0.01f);
+      Assert.assertEquals(33, (int) scan2.getNumberOfDataPoints());
+      Float scan2maxInt = MsSpectrumUtil.getMaxIntensity(scan2.getIntensityValues(),
+          scan2.getNumberOfDataPoints());
+      Assert.assertEquals(6.8E3f, scan2maxInt, 1E2f);
+
+      // 101th scan, #1100
+      MsScan scan101 = scans.get(100);
+      Assert.assertEquals(new Integer(1100), scan101.getScanNumber());
+      Assert.assertEquals(new Integer(1), scan101.getMsFunction().getMsLevel());
+      Assert.assertEquals(21, scan101.getMzValues().length);
+
+      rawFile.dispose();
+    }
+
+  }
+
+  @Test
+  public void testDecodedDataCache() throws MSDKException {
+
+    File inputFile = new File(TEST_DATA_PATH + "5peptideFT.mzML");
+    Assert.assertTrue(inputFile.canRead());
+    MzMLFileParser parser = new MzMLFileParser(inputFile, true);
+    MzMLRawDataFile rawFile = (MzMLRawDataFile) parser.execute();
+    Assert.assertNotNull(rawFile);
+    MzMLDecodedDataCache cache = rawFile.getDecodedDataCache();
+
+    // Sequential pass, the following spectra are decoded in advance
+    List<MsScan> scans = rawFile.getScans();
+    for (MsScan scan : scans) {
+      double mzValues[] = scan.getMzValues();
+      float intensityValues[] = scan.getIntensityValues();
+      Assert.assertEquals((int) scan.getNumberOfDataPoints(), mzValues.length);
+      Assert.assertEquals((int) scan.getNumberOfDataPoints(), intensityValues.length);
+    }
+    Assert.assertEquals(2 * scans.size(), cache.getHitCount() + cache.getMissCount());
+    Assert.assertTrue(cache.getHitCount() >= scans.size());
+    Assert.assertTrue(cache.getCachedBytes() > 0);
+
+    // The returned arrays are copies of the cached ones
+    MzMLSpectrum spectrum = (MzMLSpectrum) scans.get(1);
+    double mzValues[] = spectrum.getMzValues();
+    Arrays.fill(mzValues, 0.0);
+    Assert.assertTrue(Arrays.equals(spectrum.decodeMzValues(), spectrum.getMzValues()));
+
+    // A cache without any space decodes every request
+    cache.clear();
+    cache.setMaxBytes(0);
+    cache.setPrefetchDepth(0);
+    long misses = cache.getMissCount();
+    spectrum.getMzValues();
+    spectrum.getIntensityValues();
+    Assert.assertEquals(misses + 2, cache.getMissCount());
+    Assert.assertEquals(0, cache.getCachedBytes());
+
+    rawFile.dispose();
+
+  }
+
+  @Test
+  public void testDecodeIntoArray() throws MSDKException {
+
+    File compressedFile = new File(TEST_DATA_PATH + "MzMLFile_7_compressed.mzML");
+    File uncompressedFile = new File(TEST_DATA_PATH + "MzMLFile_7_uncompressed.mzML");
+    Assert.assertTrue(compressedFile.canRead());
+    Assert.assertTrue(uncompressedFile.canRead());
+    MzMLRawDataFile compressed =
+        (MzMLRawDataFile) new MzMLFileParser(compressedFile, true).execute();
+    MzMLRawDataFile uncompressed =
+        (MzMLRawDataFile) new MzMLFileParser(uncompressedFile, true).execute();
+    Assert.assertEquals(compressed.getScans().size(), uncompressed.getScans().size());
+
+    // The same arrays are reused for all the scans
+    double mzBuffer[] = new double[0];
+    float intensityBuffer[] = new float[0];
+    for (int i = 0; i < compressed.getScans().size(); i++) {
+      MzMLSpectrum zlibSpectrum = (MzMLSpectrum) compressed.getScans().get(i);
+      MzMLSpectrum plainSpectrum = (MzMLSpectrum) uncompressed.getScans().get(i);
+      int numOfDataPoints = zlibSpectrum.getNumberOfDataPoints();
+      if (mzBuffer.length < numOfDataPoints) {
+        mzBuffer = new double[numOfDataPoints];
+        intensityBuffer = new float[numOfDataPoints];
+      }
+
+      Assert.assertEquals(numOfDataPoints, zlibSpectrum.getMzValues(mzBuffer));
+      Assert.assertEquals(numOfDataPoints, zlibSpectrum.getIntensityValues(intensityBuffer));
+      Assert.assertArrayEquals(zlibSpectrum.decodeMzValuesFromStream(),
+          Arrays.copyOf(mzBuffer, numOfDataPoints), 0.0);
+      Assert.assertArrayEquals(plainSpectrum.getMzValues(),
+          Arrays.copyOf(mzBuffer, numOfDataPoints), 0.0);
+
+      Assert.assertEquals(numOfDataPoints, plainSpectrum.getIntensityValues(intensityBuffer));
+      Assert.assertArrayEquals(plainSpectrum.decodeIntensityValuesFromStream(),
+          Arrays.copyOf(intensityBuffer, numOfDataPoints), 0.0f);
+      Assert.assertArrayEquals(zlibSpectrum.getIntensityValues(),
+          Arrays.copyOf(intensityBuffer, numOfDataPoints), 0.0f);
+    }
+
+    compressed.dispose();
+    uncompressed.dispose();
+
+  }
+
   @Test(expected = MSDKException.class)
   public void testTruncated() throws MSDKException {
 
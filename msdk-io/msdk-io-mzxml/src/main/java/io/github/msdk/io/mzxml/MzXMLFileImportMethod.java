@@ -13,12 +13,15 @@
 
 package io.github.msdk.io.mzxml;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Date;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.zip.DataFormatException;
 
@@ -33,8 +36,10 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Range;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.github.msdk.MSDKException;
 import io.github.msdk.MSDKMethod;
@@ -55,6 +60,14 @@ import io.github.msdk.spectra.spectrumtypedetection.SpectrumTypeDetectionAlgorit
 /**
  * This class reads mzXML file format.
  *
+ * <p>
+ * The peaks of the scans can be decoded by a pool of threads while the file is being parsed. The
+ * parser then only collects the base64 text of the peaks, and the decoding threads do the base64
+ * decoding, zlib inflation, byte order conversion and spectrum type detection. At most a bounded
+ * number of scans wait for their peaks, which are stored in the data point store by the parser
+ * thread in scan order, so the data point store does not need to be thread safe.
+ * </p>
+ *
  * @author plusik
  * @version $Id: $Id
  */
@@ -70,6 +83,10 @@ public class MzXMLFileImportMethod implements MSDKMethod<RawDataFile> {
 
   private int totalScans = 0, parsedScans;
 
+  private final int decodingThreads;
+  private ExecutorService decodingExecutor;
+  private final ArrayDeque<PendingScan> pendingScans = new ArrayDeque<>();
+
   private int peaksCount = 0;
   private boolean compressFlag = false;
 
@@ -80,13 +97,11 @@ public class MzXMLFileImportMethod implements MSDKMethod<RawDataFile> {
 
   // Buffers
   private final StringBuilder charBuffer = new StringBuilder(1 << 18);
-  private double mzValues[] = new double[1000];
-  private float intensityValues[] = new float[1000];
 
   // Retention time parser
   private DatatypeFactory dataTypeFactory;
 
-  private boolean canceled = false;
+  private volatile boolean canceled = false;
 
   /*
    * This variable hold the present scan or fragment, it is send to the stack when another
@@ -103,8 +118,25 @@ public class MzXMLFileImportMethod implements MSDKMethod<RawDataFile> {
    * @param dataStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
    */
   public MzXMLFileImportMethod(@Nonnull File sourceFile, @Nonnull DataPointStore dataStore) {
+    this(sourceFile, dataStore, 0);
+  }
+
+  /**
+   * <p>
+   * Constructor for MzXMLFileImportMethod.
+   * </p>
+   *
+   * @param sourceFile a {@link java.io.File} object.
+   * @param dataStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   * @param decodingThreads the number of threads decoding the peaks while the file is parsed, or 0
+   *        to decode them on the parser thread.
+   */
+  public MzXMLFileImportMethod(@Nonnull File sourceFile, @Nonnull DataPointStore dataStore,
+      int decodingThreads) {
+    Preconditions.checkArgument(decodingThreads >= 0);
     this.sourceFile = sourceFile;
     this.dataStore = dataStore;
+    this.decodingThreads = decodingThreads;
   }
 
   /** {@inheritDoc} */
@@ -123,8 +155,16 @@ public class MzXMLFileImportMethod implements MSDKMethod<RawDataFile> {
       SAXParserFactory factory = SAXParserFactory.newInstance();
       dataTypeFactory = DatatypeFactory.newInstance();
       SAXParser saxParser = factory.newSAXParser();
+      if (decodingThreads > 0) {
+        decodingExecutor = Executors.newFixedThreadPool(decodingThreads, new ThreadFactoryBuilder()
+            .setDaemon(true).setNameFormat("msdk-mzxml-decoder-%d").build());
+      }
       saxParser.parse(sourceFile, handler);
 
+      // Store the peaks of the last scans
+      while (!pendingScans.isEmpty())
+        storeNextPendingScan();
+
       logger.info("Finished parsing " + sourceFile + ", parsed " + parsedScans + " scans");
 
       return newRawDataFile;
@@ -138,6 +178,14 @@ public class MzXMLFileImportMethod implements MSDKMethod<RawDataFile> {
       else
         throw new MSDKException(e);
 
+    } finally {
+
+      if (decodingExecutor != null) {
+        decodingExecutor.shutdownNow();
+        decodingExecutor = null;
+      }
+      pendingScans.clear();
+
     }
 
   }
@@ -160,6 +208,93 @@ public class MzXMLFileImportMethod implements MSDKMethod<RawDataFile> {
     this.canceled = true;
   }
 
+  /**
+   * Waits for the peaks of the first pending scan and stores them.
+   */
+  private void storeNextPendingScan() throws SAXException {
+    final PendingScan pendingScan = pendingScans.removeFirst();
+    try {
+      pendingScan.peaks.get().storeTo(pendingScan.scan);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception)
+        throw new SAXException((Exception) e.getCause());
+      throw new SAXException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SAXException(e);
+    }
+  }
+
+  /**
+   * Decodes the base64 encoded, optionally zlib compressed, big endian m/z-int pairs of a scan.
+   */
+  private static DecodedPeaks decodePeaks(@Nonnull String encodedPeaks, boolean compressed,
+      String precision, int peaksCount) throws DataFormatException {
+
+    // Base64 decoder
+    byte[] peakBytes = DatatypeConverter.parseBase64Binary(encodedPeaks);
+
+    if (compressed)
+      peakBytes = ZlibCompressionUtil.decompress(peakBytes);
+
+    final boolean doublePrecision = "64".equals(precision);
+    final int requiredBytes = peaksCount * (doublePrecision ? 16 : 8);
+    if (peakBytes.length < requiredBytes)
+      throw new DataFormatException("Expected " + requiredBytes + " bytes of peaks, found "
+          + peakBytes.length);
+
+    // The buffer is big endian, like the peaks
+    final ByteBuffer peakBuffer = ByteBuffer.wrap(peakBytes);
+    final DecodedPeaks peaks = new DecodedPeaks(peaksCount);
+    for (int i = 0; i < peaksCount; i++) {
+
+      // Always respect this order pairOrder="m/z-int"
+      if (doublePrecision) {
+        peaks.mzValues[i] = peakBuffer.getDouble();
+        peaks.intensityValues[i] = (float) peakBuffer.getDouble();
+      } else {
+        peaks.mzValues[i] = (double) peakBuffer.getFloat();
+        peaks.intensityValues[i] = peakBuffer.getFloat();
+      }
+
+    }
+
+    // Auto-detect whether this scan is centroided
+    peaks.spectrumType = SpectrumTypeDetectionAlgorithm.detectSpectrumType(peaks.mzValues,
+        peaks.intensityValues, peaksCount);
+
+    return peaks;
+  }
+
+  private static class DecodedPeaks {
+
+    private final double mzValues[];
+    private final float intensityValues[];
+    private MsSpectrumType spectrumType;
+
+    private DecodedPeaks(int peaksCount) {
+      mzValues = new double[peaksCount];
+      intensityValues = new float[peaksCount];
+    }
+
+    private void storeTo(@Nonnull SimpleMsScan scan) {
+      // Set the final data points to the scan
+      scan.setDataPoints(mzValues, intensityValues, mzValues.length);
+      scan.setSpectrumType(spectrumType);
+    }
+  }
+
+  private static class PendingScan {
+
+    private final SimpleMsScan scan;
+    private final Future<DecodedPeaks> peaks;
+
+    private PendingScan(SimpleMsScan scan, Future<DecodedPeaks> peaks) {
+      this.scan = scan;
+      this.peaks = peaks;
+    }
+  }
+
   private class MzXMLHandler extends DefaultHandler {
 
     public void startElement(String namespaceURI, String lName, // local
@@ -283,48 +418,25 @@ public class MzXMLFileImportMethod implements MSDKMethod<RawDataFile> {
       // <peaks>
       if (qName.equalsIgnoreCase("peaks")) {
 
-        // Base64 decoder
-        byte[] peakBytes = DatatypeConverter.parseBase64Binary(charBuffer.toString());
+        final String encodedPeaks = charBuffer.toString();
 
-        if (compressFlag) {
+        if (decodingExecutor == null) {
           try {
-            peakBytes = ZlibCompressionUtil.decompress(peakBytes);
+            decodePeaks(encodedPeaks, compressFlag, precision, peaksCount).storeTo(buildingScan);
           } catch (DataFormatException e) {
             throw new SAXException(e);
           }
+          return;
         }
 
-        // make a data input stream
-        DataInputStream peakStream = new DataInputStream(new ByteArrayInputStream(peakBytes));
-
-        if (peaksCount > mzValues.length) {
-          mzValues = new double[peaksCount];
-          intensityValues = new float[peaksCount];
-        }
-
-        try {
-          for (int i = 0; i < peaksCount; i++) {
-
-            // Always respect this order pairOrder="m/z-int"
-            if ("64".equals(precision)) {
-              mzValues[i] = peakStream.readDouble();
-              intensityValues[i] = (float) peakStream.readDouble();
-            } else {
-              mzValues[i] = (double) peakStream.readFloat();
-              intensityValues[i] = peakStream.readFloat();
-            }
-
-          }
-        } catch (IOException eof) {
-          throw new SAXException(eof);
-        }
-        // Set the final data points to the scan
-        buildingScan.setDataPoints(mzValues, intensityValues, peaksCount);
-
-        // Auto-detect whether this scan is centroided
-        MsSpectrumType spectrumType = SpectrumTypeDetectionAlgorithm.detectSpectrumType(mzValues,
-            intensityValues, peaksCount);
-        buildingScan.setSpectrumType(spectrumType);
+        // Decode the peaks in the pool, waiting for the oldest scans if too many are pending
+        final boolean compressed = compressFlag;
+        final String peaksPrecision = precision;
+        final int numOfPeaks = peaksCount;
+        pendingScans.addLast(new PendingScan(buildingScan, decodingExecutor
+            .submit(() -> decodePeaks(encodedPeaks, compressed, peaksPrecision, numOfPeaks))));
+        while (pendingScans.size() > 4 * decodingThreads)
+          storeNextPendingScan();
 
         return;
       }
@@ -13,6 +13,7 @@
 
 package io.github.msdk.io.mzxml;
 
+import java.util.Arrays;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -37,22 +38,23 @@ public class ZlibCompressionUtil {
 
     decompresser.setInput(compressedBytes);
 
-    byte[] resultBuffer = new byte[compressedBytes.length * 2];
-    byte[] resultTotal = new byte[0];
-
-    int resultLength = decompresser.inflate(resultBuffer);
-
-    while (resultLength > 0) {
-      byte previousResult[] = resultTotal;
-      resultTotal = new byte[resultTotal.length + resultLength];
-      System.arraycopy(previousResult, 0, resultTotal, 0, previousResult.length);
-      System.arraycopy(resultBuffer, 0, resultTotal, previousResult.length, resultLength);
-      resultLength = decompresser.inflate(resultBuffer);
+    // Grow the result geometrically, copying each inflated byte only a few times
+    byte[] resultTotal = new byte[Math.max(compressedBytes.length * 2, 64)];
+    int resultLength = 0;
+
+    while (!decompresser.finished()) {
+      if (resultLength == resultTotal.length)
+        resultTotal = Arrays.copyOf(resultTotal, resultTotal.length * 2);
+      int inflated =
+          decompresser.inflate(resultTotal, resultLength, resultTotal.length - resultLength);
+      if (inflated == 0 && (decompresser.needsInput() || decompresser.needsDictionary()))
+        break;
+      resultLength += inflated;
     }
 
     decompresser.end();
 
-    return resultTotal;
+    return Arrays.copyOf(resultTotal, resultLength);
   }
 
 }
@@ -121,4 +121,35 @@ public class MzXMLFileImportMethodTest {
 
   }
 
+  @Test
+  public void testPipelinedDecoding() throws MSDKException {
+
+    File inputFile = new File(TEST_DATA_PATH + "R1_RG59_B4_1.mzXML");
+    Assert.assertTrue(inputFile.canRead());
+    DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+    RawDataFile rawFile = new MzXMLFileImportMethod(inputFile, dataStore).execute();
+
+    // Few threads, so the parser has to wait for the pending scans
+    MzXMLFileImportMethod importer = new MzXMLFileImportMethod(inputFile, dataStore, 2);
+    RawDataFile pipelinedRawFile = importer.execute();
+    Assert.assertNotNull(pipelinedRawFile);
+    Assert.assertEquals(1.0, importer.getFinishedPercentage(), 0.0001);
+
+    // Same scans, in the same order
+    List<MsScan> scans = rawFile.getScans();
+    List<MsScan> pipelinedScans = pipelinedRawFile.getScans();
+    Assert.assertEquals(scans.size(), pipelinedScans.size());
+    for (int i = 0; i < scans.size(); i++) {
+      MsScan scan = scans.get(i);
+      MsScan pipelinedScan = pipelinedScans.get(i);
+      Assert.assertEquals(scan.getScanNumber(), pipelinedScan.getScanNumber());
+      Assert.assertEquals(scan.getSpectrumType(), pipelinedScan.getSpectrumType());
+      Assert.assertArrayEquals(scan.getMzValues(), pipelinedScan.getMzValues(), 0.0);
+      Assert.assertArrayEquals(scan.getIntensityValues(), pipelinedScan.getIntensityValues(), 0f);
+    }
+
+    rawFile.dispose();
+
+  }
+
 }
@@ -48,6 +48,12 @@ import ucar.nc2.Variable;
  * NetCDFFileImportMethod class.
  * </p>
  *
+ * <p>
+ * In the lazy mode, the data points are not copied to a data point store. The method returns a
+ * {@link io.github.msdk.io.netcdf.NetCDFRawDataFile}, which keeps the file open and reads the data
+ * points of each scan when they are accessed.
+ * </p>
+ *
  * @author plusik
  * @version $Id: $Id
  */
@@ -65,8 +71,9 @@ public class NetCDFFileImportMethod implements MSDKMethod<RawDataFile> {
   private final @Nonnull File sourceFile;
   private final @Nonnull FileType fileType = FileType.NETCDF;
   private final @Nonnull DataPointStore dataStore;
+  private final boolean lazy;
 
-  private SimpleRawDataFile newRawFile;
+  private RawDataFile newRawFile;
   private boolean canceled = false;
 
   private Variable massValueVariable, intensityValueVariable;
@@ -89,8 +96,25 @@ public class NetCDFFileImportMethod implements MSDKMethod<RawDataFile> {
    * @param dataStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
    */
   public NetCDFFileImportMethod(@Nonnull File sourceFile, @Nonnull DataPointStore dataStore) {
+    this(sourceFile, dataStore, false);
+  }
+
+  /**
+   * <p>
+   * Constructor for NetCDFFileImportMethod. In the lazy mode, only the scan positions and
+   * retention times are read, and the data store is not used. The returned raw data file must be
+   * disposed to close the netCDF file.
+   * </p>
+   *
+   * @param sourceFile a {@link java.io.File} object.
+   * @param dataStore a {@link io.github.msdk.datamodel.datastore.DataPointStore} object.
+   * @param lazy true to read the data points of the scans when they are accessed.
+   */
+  public NetCDFFileImportMethod(@Nonnull File sourceFile, @Nonnull DataPointStore dataStore,
+      boolean lazy) {
     this.sourceFile = sourceFile;
     this.dataStore = dataStore;
+    this.lazy = lazy;
   }
 
   /** {@inheritDoc} */
@@ -105,7 +129,6 @@ public class NetCDFFileImportMethod implements MSDKMethod<RawDataFile> {
     }
 
     String fileName = sourceFile.getName();
-    newRawFile = new SimpleRawDataFile(fileName, Optional.of(sourceFile), fileType, dataStore);
 
     try {
 
@@ -115,6 +138,20 @@ public class NetCDFFileImportMethod implements MSDKMethod<RawDataFile> {
       // Read NetCDF variables
       readVariables();
 
+      if (lazy) {
+        // The raw data file closes the NetCDF-file when it is disposed
+        newRawFile = new NetCDFRawDataFile(sourceFile, inputFile, massValueVariable,
+            intensityValueVariable, massValueScaleFactor, intensityValueScaleFactor,
+            scanStartPositions, scanRetentionTimes);
+        parsedScans = totalScans;
+        logger.info("Opened " + sourceFile + " with " + totalScans + " scans");
+        return newRawFile;
+      }
+
+      SimpleRawDataFile newRawFile =
+          new SimpleRawDataFile(fileName, Optional.of(sourceFile), fileType, dataStore);
+      this.newRawFile = newRawFile;
+
       // Parse scans
       for (int scanIndex = 0; scanIndex < totalScans; scanIndex++) {
 
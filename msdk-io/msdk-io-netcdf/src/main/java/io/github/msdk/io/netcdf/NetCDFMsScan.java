@@ -0,0 +1,208 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.io.netcdf;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Range;
+
+import io.github.msdk.datamodel.msspectra.MsSpectrumType;
+import io.github.msdk.datamodel.rawdata.ActivationInfo;
+import io.github.msdk.datamodel.rawdata.IsolationInfo;
+import io.github.msdk.datamodel.rawdata.MsFunction;
+import io.github.msdk.datamodel.rawdata.MsScan;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import io.github.msdk.io.netcdf.NetCDFRawDataFile.DataPoints;
+import io.github.msdk.spectra.spectrumtypedetection.SpectrumTypeDetectionAlgorithm;
+import io.github.msdk.util.MsSpectrumUtil;
+import io.github.msdk.util.tolerances.MzTolerance;
+
+/**
+ * <p>
+ * A scan of a {@link io.github.msdk.io.netcdf.NetCDFRawDataFile}. The data points are read from
+ * the file when they are accessed. The spectrum type, TIC and m/z range are computed from the data
+ * points on their first access and kept.
+ * </p>
+ */
+public class NetCDFMsScan implements MsScan {
+
+  private final @Nonnull NetCDFRawDataFile dataFile;
+  private final int scanIndex;
+  private final float retentionTime;
+
+  // Computed from the data points on first access
+  private volatile MsSpectrumType spectrumType;
+  private volatile Float tic;
+  private volatile Range<Double> mzRange;
+
+  NetCDFMsScan(@Nonnull NetCDFRawDataFile dataFile, int scanIndex, float retentionTime) {
+    this.dataFile = dataFile;
+    this.scanIndex = scanIndex;
+    this.retentionTime = retentionTime;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public RawDataFile getRawDataFile() {
+    return dataFile;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Integer getScanNumber() {
+    return scanIndex + 1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public String getScanDefinition() {
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public MsFunction getMsFunction() {
+    // Always MS level 1 for netCDF data
+    return dataFile.getMsFunction();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Float getRetentionTime() {
+    return retentionTime;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public Range<Double> getScanningRange() {
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public ActivationInfo getSourceInducedFragmentation() {
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @SuppressWarnings("null")
+  @Override
+  @Nonnull
+  public List<IsolationInfo> getIsolations() {
+    return Collections.emptyList();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public MsSpectrumType getSpectrumType() {
+    if (spectrumType == null)
+      computeProperties();
+    return spectrumType;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Integer getNumberOfDataPoints() {
+    return dataFile.getNumberOfDataPoints(scanIndex);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public double[] getMzValues() {
+    // The caller may modify the returned array, so we return a copy
+    return dataFile.getDataPoints(scanIndex).getMzValues().clone();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public float[] getIntensityValues() {
+    return dataFile.getDataPoints(scanIndex).getIntensityValues().clone();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getMzValues(@Nonnull double array[]) {
+    final double mzValues[] = dataFile.getDataPoints(scanIndex).getMzValues();
+    Preconditions.checkArgument(array.length >= mzValues.length,
+        "The array is too small for " + mzValues.length + " values");
+    System.arraycopy(mzValues, 0, array, 0, mzValues.length);
+    return mzValues.length;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getIntensityValues(@Nonnull float array[]) {
+    final float intensityValues[] = dataFile.getDataPoints(scanIndex).getIntensityValues();
+    Preconditions.checkArgument(array.length >= intensityValues.length,
+        "The array is too small for " + intensityValues.length + " values");
+    System.arraycopy(intensityValues, 0, array, 0, intensityValues.length);
+    return intensityValues.length;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Float getTIC() {
+    if (spectrumType == null)
+      computeProperties();
+    return tic;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public Range<Double> getMzRange() {
+    if (spectrumType == null)
+      computeProperties();
+    return mzRange;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nullable
+  public MzTolerance getMzTolerance() {
+    return null;
+  }
+
+  private void computeProperties() {
+    final DataPoints dataPoints = dataFile.getDataPoints(scanIndex);
+    final double mzValues[] = dataPoints.getMzValues();
+    final float intensityValues[] = dataPoints.getIntensityValues();
+    final int size = mzValues.length;
+    mzRange = MsSpectrumUtil.getMzRange(mzValues, size);
+    tic = MsSpectrumUtil.getTIC(intensityValues, size);
+
+    // Auto-detect whether this scan is centroided, written last as the other fields are checked
+    // through it
+    spectrumType =
+        SpectrumTypeDetectionAlgorithm.detectSpectrumType(mzValues, intensityValues, size);
+  }
+
+}
@@ -0,0 +1,333 @@
+/*
+ * (C) Copyright 2015-2017 by MSDK Development Team
+ *
+ * This software is dual-licensed under either
+ *
+ * (a) the terms of the GNU Lesser General Public License version 2.1 as published by the Free
+ * Software Foundation
+ *
+ * or (per the licensee's choosing)
+ *
+ * (b) the terms of the Eclipse Public License v1.0 as published by the Eclipse Foundation.
+ */
+
+package io.github.msdk.io.netcdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import io.github.msdk.MSDKRuntimeException;
+import io.github.msdk.datamodel.chromatograms.Chromatogram;
+import io.github.msdk.datamodel.files.FileType;
+import io.github.msdk.datamodel.impl.MSDKObjectBuilder;
+import io.github.msdk.datamodel.rawdata.MsFunction;
+import io.github.msdk.datamodel.rawdata.MsScan;
+import io.github.msdk.datamodel.rawdata.RawDataFile;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+/**
+ * <p>
+ * A raw data file which reads the data points of its scans from an open ANDI/netCDF file when they
+ * are first accessed. Only the scan start positions and retention times are kept in memory, so
+ * opening a large file is nearly instant.
+ * </p>
+ *
+ * <p>
+ * The data points of the recently accessed scans are kept in a cache, which is bounded by the total
+ * size of the cached arrays in bytes and evicts the least recently used scans first. The netCDF
+ * file stays open until {@link #dispose()} is called.
+ * </p>
+ */
+public class NetCDFRawDataFile implements RawDataFile {
+
+  /** Default maximum size of the cached arrays, in bytes. */
+  public static final long DEFAULT_MAX_CACHED_BYTES = 64L * 1024 * 1024;
+
+  private static final @Nonnull FileType fileType = FileType.NETCDF;
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+  /**
+   * Data points of one scan. The arrays must not be modified.
+   */
+  static class DataPoints {
+
+    private final @Nonnull double mzValues[];
+    private final @Nonnull float intensityValues[];
+
+    DataPoints(@Nonnull double mzValues[], @Nonnull float intensityValues[]) {
+      this.mzValues = mzValues;
+      this.intensityValues = intensityValues;
+    }
+
+    double[] getMzValues() {
+      return mzValues;
+    }
+
+    float[] getIntensityValues() {
+      return intensityValues;
+    }
+
+    long getSizeInBytes() {
+      return 8L * mzValues.length + 4L * intensityValues.length;
+    }
+  }
+
+  private final @Nonnull File sourceFile;
+  private final @Nonnull String name;
+
+  // Guarded by this, null after the file was disposed
+  private @Nullable NetcdfFile netcdfFile;
+  private final @Nonnull Variable massValueVariable, intensityValueVariable;
+  private final double massValueScaleFactor, intensityValueScaleFactor;
+
+  private final @Nonnull int scanStartPositions[];
+  private final @Nonnull MsFunction msFunction = MSDKObjectBuilder.getMsFunction(1);
+  private final @Nonnull List<MsScan> scans;
+
+  // Guarded by cache
+  private final LinkedHashMap<Integer, DataPoints> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedBytes = 0;
+  private long maxCachedBytes = DEFAULT_MAX_CACHED_BYTES;
+
+  private final AtomicLong hitCount = new AtomicLong(), missCount = new AtomicLong();
+
+  /**
+   * <p>
+   * Constructor for NetCDFRawDataFile.
+   * </p>
+   *
+   * @param sourceFile the netCDF file.
+   * @param netcdfFile the open netCDF file, which is closed by {@link #dispose()}.
+   * @param massValueVariable the mass_values variable.
+   * @param intensityValueVariable the intensity_values variable.
+   * @param massValueScaleFactor the scale factor of the mass values.
+   * @param intensityValueScaleFactor the scale factor of the intensity values.
+   * @param scanStartPositions the position of the first data point of each scan, followed by the
+   *        total number of data points.
+   * @param scanRetentionTimes the retention time of each scan.
+   */
+  NetCDFRawDataFile(@Nonnull File sourceFile, @Nonnull NetcdfFile netcdfFile,
+      @Nonnull Variable massValueVariable, @Nonnull Variable intensityValueVariable,
+      double massValueScaleFactor, double intensityValueScaleFactor,
+      @Nonnull int scanStartPositions[], @Nonnull float scanRetentionTimes[]) {
+    Preconditions.checkArgument(scanStartPositions.length == scanRetentionTimes.length + 1);
+    this.sourceFile = sourceFile;
+    this.name = sourceFile.getName();
+    this.netcdfFile = netcdfFile;
+    this.massValueVariable = massValueVariable;
+    this.intensityValueVariable = intensityValueVariable;
+    this.massValueScaleFactor = massValueScaleFactor;
+    this.intensityValueScaleFactor = intensityValueScaleFactor;
+    this.scanStartPositions = scanStartPositions;
+
+    List<MsScan> scans = new ArrayList<>(scanRetentionTimes.length);
+    for (int i = 0; i < scanRetentionTimes.length; i++)
+      scans.add(new NetCDFMsScan(this, i, scanRetentionTimes[i]));
+    this.scans = Collections.unmodifiableList(scans);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public String getName() {
+    return name;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public Optional<File> getOriginalFile() {
+    return Optional.of(sourceFile);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public FileType getRawDataFileType() {
+    return fileType;
+  }
+
+  /** {@inheritDoc} */
+  @SuppressWarnings("null")
+  @Override
+  @Nonnull
+  public List<MsFunction> getMsFunctions() {
+    return scans.isEmpty() ? ImmutableList.of() : ImmutableList.of(msFunction);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  @Nonnull
+  public List<MsScan> getScans() {
+    return scans;
+  }
+
+  /** {@inheritDoc} */
+  @SuppressWarnings("null")
+  @Override
+  @Nonnull
+  public List<Chromatogram> getChromatograms() {
+    return ImmutableList.of();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void dispose() {
+    synchronized (this) {
+      if (netcdfFile != null) {
+        try {
+          netcdfFile.close();
+        } catch (IOException e) {
+          logger.warn("Could not close " + sourceFile, e);
+        }
+        netcdfFile = null;
+      }
+    }
+    synchronized (cache) {
+      cache.clear();
+      cachedBytes = 0;
+    }
+  }
+
+  /**
+   * Sets the maximum size of the cached arrays, in bytes. Zero disables the caching.
+   *
+   * @param maxCachedBytes a long.
+   */
+  public void setMaxCachedBytes(long maxCachedBytes) {
+    Preconditions.checkArgument(maxCachedBytes >= 0, "Cache size must not be negative");
+    synchronized (cache) {
+      this.maxCachedBytes = maxCachedBytes;
+      evict();
+    }
+  }
+
+  /**
+   * Returns the current size of the cached arrays, in bytes.
+   *
+   * @return a long.
+   */
+  public long getCachedBytes() {
+    synchronized (cache) {
+      return cachedBytes;
+    }
+  }
+
+  /**
+   * Returns the number of requests that found the data points of the scan in the cache.
+   *
+   * @return a long.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of requests that read the data points of the scan from the file.
+   *
+   * @return a long.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  @Nonnull
+  MsFunction getMsFunction() {
+    return msFunction;
+  }
+
+  int getNumberOfDataPoints(int scanIndex) {
+    return scanStartPositions[scanIndex + 1] - scanStartPositions[scanIndex];
+  }
+
+  /**
+   * Returns the data points of the given scan, from the cache if possible.
+   */
+  @Nonnull
+  DataPoints getDataPoints(int scanIndex) {
+
+    DataPoints dataPoints;
+    synchronized (cache) {
+      dataPoints = cache.get(scanIndex);
+    }
+    if (dataPoints != null) {
+      hitCount.incrementAndGet();
+      return dataPoints;
+    }
+
+    missCount.incrementAndGet();
+    dataPoints = readDataPoints(scanIndex);
+
+    synchronized (cache) {
+      if (dataPoints.getSizeInBytes() <= maxCachedBytes) {
+        DataPoints previous = cache.put(scanIndex, dataPoints);
+        if (previous != null)
+          cachedBytes -= previous.getSizeInBytes();
+        cachedBytes += dataPoints.getSizeInBytes();
+        evict();
+      }
+    }
+    return dataPoints;
+  }
+
+  /**
+   * Reads the slab of the mass and intensity values of one scan. NetcdfFile is not thread safe, so
+   * the reads are serialized.
+   */
+  private @Nonnull DataPoints readDataPoints(int scanIndex) {
+
+    final int scanStartPosition[] = {scanStartPositions[scanIndex]};
+    final int scanLength[] = {getNumberOfDataPoints(scanIndex)};
+    final Array massValueArray, intensityValueArray;
+    synchronized (this) {
+      if (netcdfFile == null)
+        throw new MSDKRuntimeException("The raw data file " + name + " has been disposed");
+      try {
+        massValueArray = massValueVariable.read(scanStartPosition, scanLength);
+        intensityValueArray = intensityValueVariable.read(scanStartPosition, scanLength);
+      } catch (IOException | InvalidRangeException e) {
+        throw new MSDKRuntimeException(e);
+      }
+    }
+
+    // Load the data points
+    final int numOfDataPoints = scanLength[0];
+    final double mzValues[] = new double[numOfDataPoints];
+    final float intensityValues[] = new float[numOfDataPoints];
+    for (int i = 0; i < numOfDataPoints; i++) {
+      mzValues[i] = massValueArray.getDouble(i) * massValueScaleFactor;
+      intensityValues[i] = (float) (intensityValueArray.getDouble(i) * intensityValueScaleFactor);
+    }
+    return new DataPoints(mzValues, intensityValues);
+  }
+
+  // Guarded by cache
+  private void evict() {
+    Iterator<DataPoints> iterator = cache.values().iterator();
+    while (cachedBytes > maxCachedBytes && iterator.hasNext()) {
+      cachedBytes -= iterator.next().getSizeInBytes();
+      iterator.remove();
+    }
+  }
+
+}
@@ -84,4 +84,48 @@ public class NetCDFFileImportMethodTest {
 
   }
 
+  @Test
+  public void testLazyWT15() throws MSDKException {
+
+    File inputFile = new File(TEST_DATA_PATH + "wt15.CDF");
+    Assert.assertTrue(inputFile.canRead());
+    DataPointStore dataStore = DataPointStoreFactory.getMemoryDataStore();
+    RawDataFile rawFile = new NetCDFFileImportMethod(inputFile, dataStore).execute();
+
+    // Open the file without reading the data points
+    NetCDFFileImportMethod importer = new NetCDFFileImportMethod(inputFile, dataStore, true);
+    NetCDFRawDataFile lazyRawFile = (NetCDFRawDataFile) importer.execute();
+    Assert.assertNotNull(lazyRawFile);
+    Assert.assertEquals(1.0, importer.getFinishedPercentage(), 0.0001);
+    Assert.assertEquals(0, lazyRawFile.getMissCount());
+
+    // Same scans as the imported ones
+    List<MsScan> scans = rawFile.getScans();
+    List<MsScan> lazyScans = lazyRawFile.getScans();
+    Assert.assertEquals(scans.size(), lazyScans.size());
+    for (int i = 0; i < scans.size(); i++) {
+      MsScan scan = scans.get(i);
+      MsScan lazyScan = lazyScans.get(i);
+      Assert.assertEquals(scan.getScanNumber(), lazyScan.getScanNumber());
+      Assert.assertEquals(scan.getRetentionTime(), lazyScan.getRetentionTime());
+      Assert.assertEquals(scan.getNumberOfDataPoints(), lazyScan.getNumberOfDataPoints());
+      Assert.assertEquals(scan.getSpectrumType(), lazyScan.getSpectrumType());
+      Assert.assertArrayEquals(scan.getMzValues(), lazyScan.getMzValues(), 0.0);
+      Assert.assertArrayEquals(scan.getIntensityValues(), lazyScan.getIntensityValues(), 0f);
+    }
+    Assert.assertEquals(scans.size(), lazyRawFile.getMissCount());
+
+    // Without a cache, every access reads the file
+    lazyRawFile.setMaxCachedBytes(0);
+    Assert.assertEquals(0, lazyRawFile.getCachedBytes());
+    float intensityBuffer[] = new float[lazyScans.get(2).getNumberOfDataPoints()];
+    Assert.assertEquals(420, lazyScans.get(2).getIntensityValues(intensityBuffer));
+    lazyScans.get(2).getIntensityValues(intensityBuffer);
+    Assert.assertEquals(scans.size() + 2, lazyRawFile.getMissCount());
+
+    lazyRawFile.dispose();
+    rawFile.dispose();
+
+  }
+
 }